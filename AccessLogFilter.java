@@ -0,0 +1,58 @@
+package com.guvi.mindfulness.servlet;
+
+import com.guvi.mindfulness.logging.AsyncLog;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Writes one {@link AsyncLog} access event per API request: method, endpoint, client address,
+ * status and latency, plus the user and number of rows returned when the servlet sets the
+ * {@link #USER_ID} and {@link #ROWS} request attributes. Also tags audit events raised while the
+ * request runs. The log write is a handoff to the ring buffer; nothing is formatted or written
+ * on the request thread.
+ */
+@WebFilter(filterName = "AccessLogFilter", urlPatterns = "/api/*")
+public class AccessLogFilter implements Filter {
+
+    public static final String USER_ID = "com.guvi.mindfulness.access.userId";
+    public static final String ROWS = "com.guvi.mindfulness.access.rows";
+
+    private AsyncLog log;
+
+    @Override
+    public void init(FilterConfig config) {
+        this.log = AsyncLog.shared();
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+        long start = System.nanoTime();
+        AsyncLog.enterRequest(req.getMethod(), req.getServletPath(), req.getRemoteAddr());
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            AsyncLog.exitRequest();
+            log.access(req.getMethod(), req.getServletPath(), req.getRemoteAddr(), attribute(req, USER_ID),
+                    failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : resp.getStatus(),
+                    System.nanoTime() - start, (int) attribute(req, ROWS));
+        }
+    }
+
+    private static long attribute(HttpServletRequest req, String name) {
+        return req.getAttribute(name) instanceof Number value ? value.longValue() : -1;
+    }
+}
@@ -0,0 +1,122 @@
+package com.guvi.mindfulness.servlet;
+
+import com.guvi.mindfulness.cache.UserDirectory;
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
+import com.guvi.mindfulness.exception.ValidationException;
+import com.guvi.mindfulness.model.UserSummary;
+import com.guvi.mindfulness.service.UserService;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * User directory for the admin console, e.g. {@code /api/admin/users?limit=50} to list by id or
+ * {@code /api/admin/users?q=ann&field=name} to search by e-mail ({@code field=email}, the default)
+ * or full-name prefix, ignoring case. Answers
+ * {@code {"users":[{"id":..,"fullName":"..","email":".."}],"nextCursor":".."}}; pass
+ * {@code nextCursor} back as {@code cursor} for the next page. It is {@code null} on the last page.
+ * {@code limit} defaults to 50 and is at most 500. Passwords are never part of the response.
+ * <p>
+ * Only callers in the {@value #ADMIN_ROLE} role get an answer; {@code web.xml} makes the
+ * container authenticate {@code /api/admin/*}, and the role is checked here again so the servlet
+ * stays closed if that constraint is ever dropped.
+ */
+@WebServlet(name = "AdminUserServlet", urlPatterns = "/api/admin/users", loadOnStartup = 1)
+public class AdminUserServlet extends HttpServlet {
+
+    static final String ADMIN_ROLE = "admin";
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    private transient UserService userService;
+
+    @Override
+    public void init() throws ServletException {
+        this.userService = new UserService(Storage.users());
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        if (!req.isUserInRole(ADMIN_ROLE)) {
+            resp.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            resp.getWriter().write("{\"error\":\"Admin role required\"}");
+            return;
+        }
+        try {
+            String limitParameter = req.getParameter("limit");
+            int limit = limitParameter == null || limitParameter.isBlank() ? DEFAULT_LIMIT
+                    : Integer.parseInt(limitParameter.trim());
+            String cursor = emptyToNull(req.getParameter("cursor"));
+            String prefix = req.getParameter("q");
+            UserDirectory.Page page;
+            if (prefix == null) {
+                page = userService.listUsers(cursor, limit);
+            } else {
+                UserDirectory.Field field = parseField(req.getParameter("field"));
+                if (field == null) {
+                    resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    resp.getWriter().write("{\"error\":\"field must be email or name\"}");
+                    return;
+                }
+                page = userService.searchUsers(field, prefix, cursor, limit);
+            }
+            StringBuilder json = new StringBuilder(32 + page.users().size() * 96).append("{\"users\":[");
+            for (int i = 0; i < page.users().size(); i++) {
+                UserSummary user = page.users().get(i);
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"id\":").append(user.id())
+                        .append(",\"fullName\":").append(JsonStrings.quote(user.fullName()))
+                        .append(",\"email\":").append(JsonStrings.quote(user.email()))
+                        .append('}');
+            }
+            json.append("],\"nextCursor\":").append(page.nextCursor() == null ? "null" : JsonStrings.quote(page.nextCursor())).append('}');
+            req.setAttribute(AccessLogFilter.ROWS, page.users().size());
+            resp.getWriter().write(json.toString());
+        } catch (NumberFormatException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"limit must be a number\"}");
+        } catch (IllegalArgumentException e) {
+            // Malformed or foreign cursors the directory rejects
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"invalid cursor\"}");
+        } catch (ValidationException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (ServiceUnavailableException e) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (Exception e) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\":\"Internal error\"}");
+        }
+    }
+
+    /**
+     * The search field named by {@code value}, {@link UserDirectory.Field#EMAIL} if it is blank, or
+     * {@code null} if it names no field.
+     */
+    private static UserDirectory.Field parseField(String value) {
+        if (value == null || value.isBlank()) {
+            return UserDirectory.Field.EMAIL;
+        }
+        for (UserDirectory.Field field : UserDirectory.Field.values()) {
+            if (field.name().equalsIgnoreCase(value.trim())) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -0,0 +1,256 @@
+package com.guvi.mindfulness.dao;
+
+import com.guvi.mindfulness.model.MindfulnessSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only, memory-mapped view of one month of archived sessions written by {@link ArchiveSegmentWriter}.
+ * The per-user directory in the footer is binary searched in place, and only the row groups and
+ * columns a query needs are inflated.
+ */
+final class ArchiveSegment {
+
+    static final int MAGIC = 0x4D534131; // "MSA1"
+    static final int ROW_GROUP_SIZE = 4096;
+
+    static final int COL_ID = 0;
+    static final int COL_USER_ID = 1;
+    static final int COL_SCHEDULED_AT = 2;
+    static final int COL_DURATION = 3;
+    static final int COL_CATEGORY = 4;
+    static final int COL_DIFFICULTY = 5;
+    static final int COL_TITLE = 6;
+    static final int COL_DESCRIPTION = 7;
+    static final int COL_NOTES = 8;
+    static final int COLUMN_COUNT = 9;
+
+    private static final int CHUNK_ENTRY_BYTES = 16;
+    private static final int USER_ENTRY_BYTES = 16;
+
+    private final YearMonth month;
+    private final MappedByteBuffer buffer;
+    private final int rowCount;
+    private final int groupCount;
+    private final long minId;
+    private final long maxId;
+    private final int chunkIndexOffset;
+    private final int userCount;
+    private final int userDirectoryOffset;
+
+    private ArchiveSegment(YearMonth month, MappedByteBuffer buffer) throws IOException {
+        this.month = month;
+        this.buffer = buffer;
+        int size = buffer.capacity();
+        if (size < 12 || buffer.getInt(size - 4) != MAGIC) {
+            throw new IOException("Not a session archive segment: " + month);
+        }
+        int footer = (int) buffer.getLong(size - 12);
+        this.rowCount = buffer.getInt(footer);
+        this.groupCount = buffer.getInt(footer + 4);
+        this.minId = buffer.getLong(footer + 8);
+        this.maxId = buffer.getLong(footer + 16);
+        this.chunkIndexOffset = footer + 24;
+        int userHeader = chunkIndexOffset + groupCount * COLUMN_COUNT * CHUNK_ENTRY_BYTES;
+        this.userCount = buffer.getInt(userHeader);
+        this.userDirectoryOffset = userHeader + 4;
+    }
+
+    /**
+     * Maps the file read-only. The mapping stays valid after the channel is closed and after the
+     * file is replaced on disk, so readers holding an old segment are never disturbed.
+     */
+    static ArchiveSegment open(YearMonth month, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new ArchiveSegment(month, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    YearMonth month() {
+        return month;
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Sessions of one user in this month, newest first, decoding only the projection's columns.
+     */
+    List<MindfulnessSession> findByUser(long userId, SessionProjection projection,
+                                        MindfulnessSession.TextLoader textLoader) {
+        int entry = findUser(userId);
+        if (entry < 0) {
+            return List.of();
+        }
+        int firstRow = buffer.getInt(userDirectoryOffset + entry * USER_ENTRY_BYTES + 8);
+        int count = buffer.getInt(userDirectoryOffset + entry * USER_ENTRY_BYTES + 12);
+        List<MindfulnessSession> sessions = new ArrayList<>(count);
+        readRows(firstRow, firstRow + count, projection, textLoader, sessions::add);
+        return sessions;
+    }
+
+    /**
+     * Looks a session up by id, using the segment's id range to skip the scan when possible.
+     */
+    MindfulnessSession findById(long id, SessionProjection projection, MindfulnessSession.TextLoader textLoader) {
+        if (rowCount == 0 || id < minId || id > maxId) {
+            return null;
+        }
+        for (int group = 0; group < groupCount; group++) {
+            ByteBuffer ids = inflate(group, COL_ID);
+            long current = 0;
+            int rows = groupRows(group);
+            for (int i = 0; i < rows; i++) {
+                long value = ids.getLong();
+                current = i == 0 ? value : current + value;
+                if (current == id) {
+                    int row = group * ROW_GROUP_SIZE + i;
+                    MindfulnessSession[] found = new MindfulnessSession[1];
+                    readRows(row, row + 1, projection, textLoader, session -> found[0] = session);
+                    return found[0];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes every row with all columns; used when a month is rewritten.
+     */
+    void forEach(Consumer<MindfulnessSession> consumer) {
+        readRows(0, rowCount, SessionProjection.DETAIL, null, consumer);
+    }
+
+    private void readRows(int fromRow, int toRow, SessionProjection projection,
+                          MindfulnessSession.TextLoader textLoader, Consumer<MindfulnessSession> consumer) {
+        boolean scalars = projection != SessionProjection.NOTES;
+        boolean description = projection == SessionProjection.DETAIL;
+        boolean notes = projection != SessionProjection.SUMMARY;
+        for (int group = fromRow / ROW_GROUP_SIZE; group * ROW_GROUP_SIZE < toRow; group++) {
+            int groupStart = group * ROW_GROUP_SIZE;
+            int skip = Math.max(0, fromRow - groupStart);
+            int end = Math.min(groupRows(group), toRow - groupStart);
+
+            ByteBuffer ids = inflate(group, COL_ID);
+            ByteBuffer userIds = positioned(inflate(group, COL_USER_ID), skip * 8);
+            // scheduled_at is always decoded: date-range filters and merge ordering rely on it.
+            ByteBuffer scheduled = positioned(inflate(group, COL_SCHEDULED_AT), skip * 8);
+            ByteBuffer durations = scalars ? positioned(inflate(group, COL_DURATION), skip * 4) : null;
+            ByteBuffer categories = scalars ? positioned(inflate(group, COL_CATEGORY), skip * 2) : null;
+            ByteBuffer difficulties = scalars ? positioned(inflate(group, COL_DIFFICULTY), skip * 2) : null;
+            ByteBuffer titles = scalars ? skipStrings(inflate(group, COL_TITLE), skip) : null;
+            ByteBuffer descriptions = description ? skipStrings(inflate(group, COL_DESCRIPTION), skip) : null;
+            ByteBuffer reflections = notes ? skipStrings(inflate(group, COL_NOTES), skip) : null;
+
+            long id = 0;
+            for (int i = 0; i < skip; i++) {
+                long value = ids.getLong();
+                id = i == 0 ? value : id + value;
+            }
+            for (int i = skip; i < end; i++) {
+                long value = ids.getLong();
+                id = i == 0 ? value : id + value;
+                MindfulnessSession session = new MindfulnessSession();
+                session.setId(id);
+                session.setUserId(userIds.getLong());
+                session.setScheduledAt(LocalDateTime.ofEpochSecond(scheduled.getLong(), 0, ZoneOffset.UTC));
+                if (scalars) {
+                    session.setDurationMinutes(durations.getInt());
+                    session.setCategoryCode(categories.getShort());
+                    session.setDifficultyCode(difficulties.getShort());
+                    session.setTitle(readString(titles));
+                }
+                if (description) {
+                    session.setDescription(readString(descriptions));
+                }
+                if (notes) {
+                    session.setReflectionNotes(readString(reflections));
+                }
+                if (!description && textLoader != null) {
+                    session.deferTextFields(textLoader, true, !notes);
+                }
+                consumer.accept(session);
+            }
+        }
+    }
+
+    private int groupRows(int group) {
+        return Math.min(ROW_GROUP_SIZE, rowCount - group * ROW_GROUP_SIZE);
+    }
+
+    private int findUser(long userId) {
+        int low = 0;
+        int high = userCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long current = buffer.getLong(userDirectoryOffset + mid * USER_ENTRY_BYTES);
+            if (current < userId) {
+                low = mid + 1;
+            } else if (current > userId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private ByteBuffer inflate(int group, int column) {
+        int entry = chunkIndexOffset + (group * COLUMN_COUNT + column) * CHUNK_ENTRY_BYTES;
+        int offset = (int) buffer.getLong(entry);
+        int length = buffer.getInt(entry + 8);
+        byte[] raw = new byte[buffer.getInt(entry + 12)];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buffer.slice(offset, length));
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt archive segment " + month, e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    private static ByteBuffer positioned(ByteBuffer column, int offset) {
+        return column.position(offset);
+    }
+
+    private static ByteBuffer skipStrings(ByteBuffer column, int count) {
+        for (int i = 0; i < count; i++) {
+            int length = column.getInt();
+            if (length > 0) {
+                column.position(column.position() + length);
+            }
+        }
+        return column;
+    }
+
+    private static String readString(ByteBuffer column) {
+        int length = column.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(column.array(), column.position(), length, StandardCharsets.UTF_8);
+        column.position(column.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,181 @@
+package com.guvi.mindfulness.dao;
+
+import com.guvi.mindfulness.model.MindfulnessSession;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Writes one month of archived sessions in the columnar layout read by {@link ArchiveSegment}.
+ * <p>
+ * Rows must be appended grouped by user id (ascending), newest session first within a user.
+ * Every {@link ArchiveSegment#ROW_GROUP_SIZE} rows are flushed as a row group in which each column
+ * is deflated separately, so readers can inflate only the columns and groups they need.
+ * A footer with the chunk index and a per-user row directory closes the file.
+ */
+final class ArchiveSegmentWriter implements Closeable {
+
+    private final FileOutputStream fileStream;
+    private final DataOutputStream out;
+    private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    private final ColumnBuffers columns = new ColumnBuffers();
+
+    private long position;
+    private long[] chunkOffsets = new long[ArchiveSegment.COLUMN_COUNT * 16];
+    private int[] chunkLengths = new int[ArchiveSegment.COLUMN_COUNT * 16];
+    private int[] rawLengths = new int[ArchiveSegment.COLUMN_COUNT * 16];
+    private int groupCount;
+
+    private long[] userIds = new long[256];
+    private int[] userFirstRows = new int[256];
+    private int[] userRowCounts = new int[256];
+    private int userCount;
+
+    private int rowCount;
+    private int groupRows;
+    private long previousId;
+    private long minId = Long.MAX_VALUE;
+    private long maxId = Long.MIN_VALUE;
+
+    ArchiveSegmentWriter(Path path) throws IOException {
+        this.fileStream = new FileOutputStream(path.toFile());
+        this.out = new DataOutputStream(new BufferedOutputStream(fileStream, 1 << 16));
+    }
+
+    void append(MindfulnessSession session) throws IOException {
+        long userId = session.getUserId();
+        if (userCount == 0 || userIds[userCount - 1] != userId) {
+            if (userCount > 0 && userIds[userCount - 1] > userId) {
+                throw new IllegalStateException("Archive rows must be ordered by user id");
+            }
+            growUsers();
+            userIds[userCount] = userId;
+            userFirstRows[userCount] = rowCount;
+            userCount++;
+        }
+        userRowCounts[userCount - 1]++;
+
+        long id = session.getId();
+        columns.data[ArchiveSegment.COL_ID].writeLong(groupRows == 0 ? id : id - previousId);
+        previousId = id;
+        minId = Math.min(minId, id);
+        maxId = Math.max(maxId, id);
+        columns.data[ArchiveSegment.COL_USER_ID].writeLong(userId);
+        columns.data[ArchiveSegment.COL_SCHEDULED_AT].writeLong(session.getScheduledAt().toEpochSecond(ZoneOffset.UTC));
+        columns.data[ArchiveSegment.COL_DURATION].writeInt(session.getDurationMinutes());
+        columns.data[ArchiveSegment.COL_CATEGORY].writeShort(session.getCategoryCode());
+        columns.data[ArchiveSegment.COL_DIFFICULTY].writeShort(session.getDifficultyCode());
+        writeString(columns.data[ArchiveSegment.COL_TITLE], session.getTitle());
+        writeString(columns.data[ArchiveSegment.COL_DESCRIPTION], session.getDescription());
+        writeString(columns.data[ArchiveSegment.COL_NOTES], session.getReflectionNotes());
+
+        rowCount++;
+        if (++groupRows == ArchiveSegment.ROW_GROUP_SIZE) {
+            flushGroup();
+        }
+    }
+
+    /**
+     * Writes the footer and forces the file to disk. The segment is complete only after this returns.
+     */
+    void finish() throws IOException {
+        if (groupRows > 0) {
+            flushGroup();
+        }
+        long footerOffset = position;
+        out.writeInt(rowCount);
+        out.writeInt(groupCount);
+        out.writeLong(rowCount == 0 ? 0 : minId);
+        out.writeLong(rowCount == 0 ? 0 : maxId);
+        for (int i = 0; i < groupCount * ArchiveSegment.COLUMN_COUNT; i++) {
+            out.writeLong(chunkOffsets[i]);
+            out.writeInt(chunkLengths[i]);
+            out.writeInt(rawLengths[i]);
+        }
+        out.writeInt(userCount);
+        for (int i = 0; i < userCount; i++) {
+            out.writeLong(userIds[i]);
+            out.writeInt(userFirstRows[i]);
+            out.writeInt(userRowCounts[i]);
+        }
+        out.writeLong(footerOffset);
+        out.writeInt(ArchiveSegment.MAGIC);
+        out.flush();
+        fileStream.getChannel().force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        out.close();
+    }
+
+    private void flushGroup() throws IOException {
+        int needed = (groupCount + 1) * ArchiveSegment.COLUMN_COUNT;
+        if (needed > chunkOffsets.length) {
+            chunkOffsets = Arrays.copyOf(chunkOffsets, needed * 2);
+            chunkLengths = Arrays.copyOf(chunkLengths, needed * 2);
+            rawLengths = Arrays.copyOf(rawLengths, needed * 2);
+        }
+        byte[] scratch = new byte[1 << 16];
+        for (int column = 0; column < ArchiveSegment.COLUMN_COUNT; column++) {
+            byte[] raw = columns.bytes[column].toByteArray();
+            int chunk = groupCount * ArchiveSegment.COLUMN_COUNT + column;
+            chunkOffsets[chunk] = position;
+            rawLengths[chunk] = raw.length;
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            int compressed = 0;
+            while (!deflater.finished()) {
+                int n = deflater.deflate(scratch);
+                out.write(scratch, 0, n);
+                compressed += n;
+            }
+            chunkLengths[chunk] = compressed;
+            position += compressed;
+            columns.bytes[column].reset();
+        }
+        groupCount++;
+        groupRows = 0;
+    }
+
+    private void growUsers() {
+        if (userCount == userIds.length) {
+            userIds = Arrays.copyOf(userIds, userCount * 2);
+            userFirstRows = Arrays.copyOf(userFirstRows, userCount * 2);
+            userRowCounts = Arrays.copyOf(userRowCounts, userCount * 2);
+        }
+    }
+
+    private static void writeString(DataOutputStream column, String value) throws IOException {
+        if (value == null) {
+            column.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        column.writeInt(bytes.length);
+        column.write(bytes);
+    }
+
+    private static final class ColumnBuffers {
+        private final ByteArrayOutputStream[] bytes = new ByteArrayOutputStream[ArchiveSegment.COLUMN_COUNT];
+        private final DataOutputStream[] data = new DataOutputStream[ArchiveSegment.COLUMN_COUNT];
+
+        ColumnBuffers() {
+            for (int i = 0; i < ArchiveSegment.COLUMN_COUNT; i++) {
+                bytes[i] = new ByteArrayOutputStream(8 * ArchiveSegment.ROW_GROUP_SIZE);
+                data[i] = new DataOutputStream(bytes[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.guvi.mindfulness.logging;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured access and audit log written off the request path. Request threads copy a few fields
+ * into a preallocated {@link EventRing} slot and return; one consumer thread turns the events into
+ * JSON lines in {@code access.log} and {@code audit.log} under {@code LOG_DIR} (default
+ * {@code logs}). Files roll at {@code LOG_MAX_FILE_BYTES} (default 64 MB) or midnight and are
+ * gzipped; {@code LOG_MAX_FILES} (default 30) archives of each are kept.
+ * <p>
+ * When the ring ({@code LOG_RING_SIZE} slots, default 65536) is full, {@code ACCESS_LOG_OVERFLOW}
+ * and {@code AUDIT_LOG_OVERFLOW} decide per log whether the event is dropped ({@code drop}, the
+ * access log default) or the request thread waits for room ({@code block}, the audit default).
+ * Dropped events are counted and reported in the access log as {@code {"type":"dropped"}} lines.
+ */
+public final class AsyncLog implements AutoCloseable {
+
+    public enum Overflow {
+        DROP, BLOCK
+    }
+
+    private static final int BATCH = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final ThreadLocal<RequestContext> REQUEST = ThreadLocal.withInitial(RequestContext::new);
+
+    private static volatile AsyncLog shared;
+
+    private final EventRing ring;
+    private final Overflow accessOverflow;
+    private final Overflow auditOverflow;
+    private final RollingLogFile accessFile;
+    private final RollingLogFile auditFile;
+    private final ExecutorService compressor;
+    private final Thread consumer;
+    private final LongAdder dropped = new LongAdder();
+    private final StringBuilder line = new StringBuilder(256);
+    private long droppedReported;
+    private long formattedSecond = Long.MIN_VALUE;
+    private String secondPrefix;
+    private volatile boolean running = true;
+
+    public AsyncLog(Path directory, int ringSize, Overflow accessOverflow, Overflow auditOverflow,
+                    long maxFileBytes, int maxFiles) throws IOException {
+        this.ring = new EventRing(ringSize);
+        this.accessOverflow = accessOverflow;
+        this.auditOverflow = auditOverflow;
+        this.compressor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-compressor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.accessFile = new RollingLogFile(directory, "access", maxFileBytes, maxFiles, compressor);
+        this.auditFile = new RollingLogFile(directory, "audit", maxFileBytes, maxFiles, compressor);
+        this.consumer = new Thread(this::consume, "log-writer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Process-wide log configured from system properties, opened on first use and closed, with
+     * everything still in the ring written out, at shutdown.
+     */
+    public static AsyncLog shared() {
+        AsyncLog log = shared;
+        if (log == null) {
+            synchronized (AsyncLog.class) {
+                log = shared;
+                if (log == null) {
+                    try {
+                        log = new AsyncLog(Paths.get(System.getProperty("LOG_DIR", "logs")),
+                                Integer.getInteger("LOG_RING_SIZE", 1 << 16),
+                                overflow("ACCESS_LOG_OVERFLOW", Overflow.DROP),
+                                overflow("AUDIT_LOG_OVERFLOW", Overflow.BLOCK),
+                                Long.getLong("LOG_MAX_FILE_BYTES", 64L << 20),
+                                Integer.getInteger("LOG_MAX_FILES", 30));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to open log directory", e);
+                    }
+                    AsyncLog opened = log;
+                    Runtime.getRuntime().addShutdownHook(new Thread(opened::close, "log-shutdown"));
+                    shared = log;
+                }
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Marks the current thread as serving a request, so audit events raised while it runs carry
+     * its method, endpoint and client address. Pair with {@link #exitRequest()}.
+     */
+    public static void enterRequest(String method, String endpoint, String remoteAddress) {
+        RequestContext context = REQUEST.get();
+        context.method = method;
+        context.endpoint = endpoint;
+        context.remoteAddress = remoteAddress;
+    }
+
+    public static void exitRequest() {
+        RequestContext context = REQUEST.get();
+        context.method = null;
+        context.endpoint = null;
+        context.remoteAddress = null;
+    }
+
+    /**
+     * Logs a finished request. {@code userId} and {@code rows} are {@code -1} when not applicable.
+     *
+     * @return {@code false} if the event was dropped because the ring was full
+     */
+    public boolean access(String method, String endpoint, String remoteAddress, long userId, int status,
+                          long latencyNanos, int rows) {
+        long sequence = claim(accessOverflow);
+        if (sequence < 0) {
+            return false;
+        }
+        LogEvent event = ring.slot(sequence);
+        event.kind = LogEvent.ACCESS;
+        event.timestampMillis = System.currentTimeMillis();
+        event.method = method;
+        event.endpoint = endpoint;
+        event.remoteAddress = remoteAddress;
+        event.userId = userId;
+        event.status = status;
+        event.latencyNanos = latencyNanos;
+        event.rows = rows;
+        ring.publish(sequence);
+        return true;
+    }
+
+    /**
+     * Logs a committed mutation, tagged with the request being served on this thread, if any.
+     *
+     * @return {@code false} if the event was dropped because the ring was full
+     */
+    public boolean audit(String entity, String operation, long entityId, long userId, int version) {
+        long sequence = claim(auditOverflow);
+        if (sequence < 0) {
+            return false;
+        }
+        RequestContext context = REQUEST.get();
+        LogEvent event = ring.slot(sequence);
+        event.kind = LogEvent.AUDIT;
+        event.timestampMillis = System.currentTimeMillis();
+        event.method = context.method;
+        event.endpoint = context.endpoint;
+        event.remoteAddress = context.remoteAddress;
+        event.userId = userId;
+        event.entity = entity;
+        event.operation = operation;
+        event.entityId = entityId;
+        event.version = version;
+        ring.publish(sequence);
+        return true;
+    }
+
+    public long droppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * Events waiting to be written.
+     */
+    public long backlog() {
+        return ring.backlog();
+    }
+
+    /**
+     * Stops accepting work once the ring is drained and closes the files.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compressor.shutdown();
+    }
+
+    private long claim(Overflow overflow) {
+        if (overflow == Overflow.BLOCK && running) {
+            return ring.claim();
+        }
+        long sequence = ring.tryClaim();
+        if (sequence < 0) {
+            dropped.increment();
+        }
+        return sequence;
+    }
+
+    private void consume() {
+        boolean dirty = false;
+        while (true) {
+            try {
+                int handled = ring.drain(this::write, BATCH);
+                if (handled > 0) {
+                    dirty = true;
+                    if (handled == BATCH) {
+                        continue;
+                    }
+                }
+                // Caught up: make what we have visible before idling.
+                reportDropped();
+                if (dirty) {
+                    flush();
+                    dirty = false;
+                }
+            } catch (RuntimeException e) {
+                // E.g. a roll the closed compressor rejects. Losing the event beats losing this
+                // thread: without it the ring never empties and BLOCK producers wait forever.
+                dropped.increment();
+            }
+            if (!running && ring.backlog() == 0) {
+                break;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        try {
+            accessFile.close();
+            auditFile.close();
+        } catch (IOException e) {
+            // Buffered lines were flushed above; a failing close loses nothing more.
+        }
+    }
+
+    private void write(LogEvent event) {
+        line.setLength(0);
+        line.append("{\"ts\":");
+        appendTimestamp(event.timestampMillis);
+        if (event.kind == LogEvent.ACCESS) {
+            line.append(",\"method\":");
+            appendString(event.method);
+            line.append(",\"endpoint\":");
+            appendString(event.endpoint);
+            line.append(",\"remote\":");
+            appendString(event.remoteAddress);
+            if (event.userId >= 0) {
+                line.append(",\"userId\":").append(event.userId);
+            }
+            line.append(",\"status\":").append(event.status)
+                    .append(",\"latencyMicros\":").append(event.latencyNanos / 1000);
+            if (event.rows >= 0) {
+                line.append(",\"rows\":").append(event.rows);
+            }
+            append(accessFile, event.timestampMillis);
+        } else {
+            line.append(",\"entity\":");
+            appendString(event.entity);
+            line.append(",\"operation\":");
+            appendString(event.operation);
+            line.append(",\"entityId\":").append(event.entityId);
+            if (event.userId > 0) {
+                line.append(",\"userId\":").append(event.userId);
+            }
+            if (event.version > 0) {
+                line.append(",\"version\":").append(event.version);
+            }
+            if (event.endpoint != null) {
+                line.append(",\"method\":");
+                appendString(event.method);
+                line.append(",\"endpoint\":");
+                appendString(event.endpoint);
+                line.append(",\"remote\":");
+                appendString(event.remoteAddress);
+            }
+            append(auditFile, event.timestampMillis);
+        }
+    }
+
+    private void reportDropped() {
+        long total = dropped.sum();
+        if (total != droppedReported) {
+            line.setLength(0);
+            line.append("{\"ts\":");
+            appendTimestamp(System.currentTimeMillis());
+            line.append(",\"type\":\"dropped\",\"count\":")
+                    .append(total - droppedReported);
+            append(accessFile, System.currentTimeMillis());
+            droppedReported = dropped.sum();
+        }
+    }
+
+    private void append(RollingLogFile file, long nowMillis) {
+        line.append('}');
+        try {
+            file.write(line, nowMillis);
+        } catch (IOException e) {
+            // The disk is full or gone; count the line as dropped rather than stall the ring.
+            dropped.increment();
+        }
+    }
+
+    private void flush() {
+        try {
+            accessFile.flush();
+            auditFile.flush();
+        } catch (IOException e) {
+            // Retried on the next flush
+        }
+    }
+
+    /**
+     * Appends the time as a quoted UTC ISO-8601 string. The part up to the seconds is formatted
+     * once per second and reused.
+     */
+    private void appendTimestamp(long millis) {
+        long second = Math.floorDiv(millis, 1000);
+        if (second != formattedSecond) {
+            formattedSecond = second;
+            String iso = Instant.ofEpochSecond(second).toString(); // e.g. 2024-05-01T07:30:00Z
+            secondPrefix = iso.substring(0, iso.length() - 1);
+        }
+        int fraction = Math.floorMod(millis, 1000);
+        line.append('"').append(secondPrefix).append('.')
+                .append((char) ('0' + fraction / 100))
+                .append((char) ('0' + fraction / 10 % 10))
+                .append((char) ('0' + fraction % 10))
+                .append("Z\"");
+    }
+
+    private void appendString(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private static Overflow overflow(String property, Overflow fallback) {
+        return Overflow.valueOf(System.getProperty(property, fallback.name()).trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Per-thread request details, reused across requests so entering one allocates nothing.
+     */
+    private static final class RequestContext {
+        String method;
+        String endpoint;
+        String remoteAddress;
+    }
+}
@@ -0,0 +1,44 @@
+package com.guvi.mindfulness.resilience;
+
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of concurrent database calls for one group of operations so that a slow group
+ * cannot take every servlet thread with it. Callers wait at most {@code BULKHEAD_MAX_WAIT_MS}
+ * (or what is left of the request deadline) for a slot, then are shed.
+ */
+public final class Bulkhead {
+
+    private static final long MAX_WAIT_MILLIS = Long.getLong("BULKHEAD_MAX_WAIT_MS", 100L);
+
+    private final String name;
+    private final Semaphore permits;
+
+    public Bulkhead(String name, int maxConcurrentCalls) {
+        this.name = name;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+    }
+
+    public void acquire() {
+        long wait = Math.min(MAX_WAIT_MILLIS, Math.max(0, Deadline.remainingMillis()));
+        try {
+            if (!permits.tryAcquire(wait, TimeUnit.MILLISECONDS)) {
+                throw new ServiceUnavailableException("Too many concurrent " + name + " requests", 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for " + name + " capacity", 1, e);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+}
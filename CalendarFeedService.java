@@ -0,0 +1,268 @@
+package com.guvi.mindfulness.service;
+
+import com.guvi.mindfulness.cache.InvalidationBus;
+import com.guvi.mindfulness.cache.SessionListCache;
+import com.guvi.mindfulness.dao.SessionProjection;
+import com.guvi.mindfulness.dao.SessionStore;
+import com.guvi.mindfulness.exception.DataAccessException;
+import com.guvi.mindfulness.journal.ChangeJournal;
+import com.guvi.mindfulness.journal.ChangeRecord;
+import com.guvi.mindfulness.journal.ChangeTailer;
+import com.guvi.mindfulness.model.MindfulnessSession;
+import com.guvi.mindfulness.resilience.DaoGuard;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders a user's sessions as an iCalendar (RFC 5545) feed and keeps the rendered feed in memory.
+ * The feed covers {@code CALENDAR_PAST_DAYS} (default 30) before today to {@code CALENDAR_FUTURE_DAYS}
+ * (default 180) after it, with times left floating so 07:30 shows as 07:30 in the subscriber's zone.
+ * <p>
+ * A cached feed is only dropped when the change journal reports a write to that user's sessions,
+ * when a peer node announces one on the {@link SessionListCache} bus (the journal is per node), or
+ * when the window moves at midnight. A lost bus message marks every feed stale. The ETag is a hash of the content, so a re-render that
+ * produces the same calendar keeps its ETag and Last-Modified and polls still get {@code 304}.
+ * At most {@code CALENDAR_CACHE_MAX_USERS} (default 10000) feeds are kept.
+ */
+public class CalendarFeedService implements AutoCloseable, InvalidationBus.Listener {
+
+    private static final int PAST_DAYS = Integer.getInteger("CALENDAR_PAST_DAYS", 30);
+    private static final int FUTURE_DAYS = Integer.getInteger("CALENDAR_FUTURE_DAYS", 180);
+    private static final int MAX_USERS = Integer.getInteger("CALENDAR_CACHE_MAX_USERS", 10_000);
+
+    private static final DateTimeFormatter LOCAL_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final DateTimeFormatter UTC_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+    /** Same width as a real DTSTAMP; replaced after hashing so the stamp does not change the ETag. */
+    private static final String STAMP_PLACEHOLDER = "00000000T000000Z";
+
+    private final SessionStore sessionStore;
+    private final ChangeJournal journal;
+    private final SessionListCache peers;
+    private final DaoGuard guard = DaoGuard.SESSIONS;
+    private final ConcurrentMap<Long, Feed> feeds = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Thread invalidator;
+
+    public CalendarFeedService(SessionStore sessionStore) {
+        this(sessionStore, ChangeJournal.shared(), SessionListCache.shared());
+    }
+
+    public CalendarFeedService(SessionStore sessionStore, ChangeJournal journal, SessionListCache peers) {
+        this.sessionStore = sessionStore;
+        this.journal = journal;
+        this.peers = peers;
+        this.invalidator = new Thread(this::invalidateFromJournal, "calendar-invalidator");
+        invalidator.setDaemon(true);
+    }
+
+    /**
+     * Starts following the change journal and peer invalidations. Feeds are only cached while this runs.
+     */
+    public void start() {
+        peers.addPeerListener(this);
+        invalidator.start();
+    }
+
+    /**
+     * Returns the user's feed, from memory when nothing changed since it was rendered.
+     */
+    public Feed feed(long userId) {
+        LocalDate today = LocalDate.now();
+        Feed cached = feeds.get(userId);
+        if (cached != null && !cached.stale() && cached.renderedOn().equals(today)) {
+            return cached;
+        }
+        long seen = invalidations.get();
+        Feed fresh = render(userId, today, cached);
+        if (invalidator.isAlive()) {
+            // A write journalled while we were reading must win over what we read.
+            feeds.compute(userId, (id, current) -> invalidations.get() == seen ? fresh : current);
+            if (feeds.size() > MAX_USERS) {
+                evictOne(userId);
+            }
+        }
+        return fresh;
+    }
+
+    @Override
+    public void close() {
+        peers.removePeerListener(this);
+        invalidator.interrupt();
+    }
+
+    /**
+     * A peer node changed a session. Writers always name the owner; {@code 0} only comes from a
+     * session deleted concurrently, whose owner is unknown, and marks every feed stale.
+     */
+    @Override
+    public void onInvalidate(long userId, long sessionId) {
+        if (userId == 0) {
+            invalidateAll();
+        } else {
+            invalidate(userId);
+        }
+    }
+
+    @Override
+    public void onMessagesLost() {
+        invalidateAll();
+    }
+
+    private Feed render(long userId, LocalDate today, Feed previous) {
+        List<MindfulnessSession> sessions;
+        try {
+            sessions = guard.execute(() -> sessionStore.findByUserBetween(userId,
+                    today.minusDays(PAST_DAYS).atStartOfDay(), today.plusDays(FUTURE_DAYS + 1L).atStartOfDay(),
+                    SessionProjection.SUMMARY));
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to load sessions for calendar", e);
+        }
+        StringBuilder ics = new StringBuilder(512 + sessions.size() * 320);
+        line(ics, "BEGIN:VCALENDAR");
+        line(ics, "VERSION:2.0");
+        line(ics, "PRODID:-//GUVI//Mindfulness Platform//EN");
+        line(ics, "CALSCALE:GREGORIAN");
+        line(ics, "METHOD:PUBLISH");
+        line(ics, "X-WR-CALNAME:Mindfulness sessions");
+        line(ics, "REFRESH-INTERVAL;VALUE=DURATION:PT15M");
+        line(ics, "X-PUBLISHED-TTL:PT15M");
+        for (int i = sessions.size() - 1; i >= 0; i--) {
+            MindfulnessSession session = sessions.get(i);
+            LocalDateTime start = session.getScheduledAt();
+            line(ics, "BEGIN:VEVENT");
+            line(ics, "UID:session-" + session.getId() + "@mindfulness");
+            line(ics, "DTSTAMP:" + STAMP_PLACEHOLDER);
+            line(ics, "DTSTART:" + LOCAL_TIME.format(start));
+            line(ics, "DTEND:" + LOCAL_TIME.format(start.plusMinutes(Math.max(1, session.getDurationMinutes()))));
+            line(ics, "SEQUENCE:" + session.getVersion());
+            line(ics, "SUMMARY:" + text(session.getTitle()));
+            if (session.getCategory() != null) {
+                line(ics, "CATEGORIES:" + text(session.getCategory()));
+            }
+            line(ics, "DESCRIPTION:" + text((session.getDifficulty() != null ? session.getDifficulty() + " session, " : "")
+                    + session.getDurationMinutes() + " minutes"));
+            line(ics, "END:VEVENT");
+        }
+        line(ics, "END:VCALENDAR");
+
+        String template = ics.toString();
+        String etag = '"' + hash(template) + '"';
+        long lastModified = previous != null && previous.etag().equals(etag)
+                ? previous.lastModifiedMillis()
+                : TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+        String body = template.replace(STAMP_PLACEHOLDER, UTC_TIME.format(Instant.ofEpochMilli(lastModified)));
+        return new Feed(body, etag, lastModified, today, false);
+    }
+
+    /**
+     * Marks feeds touched by journalled session writes as stale. Session records carry their
+     * owner; a record without one marks every feed stale.
+     */
+    private void invalidateFromJournal() {
+        ChangeTailer tailer = journal.tail(journal.latestOffset());
+        while (!Thread.currentThread().isInterrupted() && !journal.isClosed()) {
+            List<ChangeRecord> records;
+            try {
+                records = tailer.poll(1_000, 1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            for (ChangeRecord record : records) {
+                if (record.entity() == ChangeRecord.Entity.USER) {
+                    if (record.operation() == ChangeRecord.Operation.DELETE) {
+                        invalidate(record.entityId());
+                    }
+                    continue;
+                }
+                onInvalidate(record.userId(), record.entityId());
+            }
+        }
+        feeds.clear();
+    }
+
+    private void invalidate(long userId) {
+        invalidations.incrementAndGet();
+        feeds.computeIfPresent(userId, (id, feed) -> feed.asStale());
+    }
+
+    private void invalidateAll() {
+        invalidations.incrementAndGet();
+        feeds.replaceAll((id, feed) -> feed.asStale());
+    }
+
+    private void evictOne(long keep) {
+        Iterator<Map.Entry<Long, Feed>> entries = feeds.entrySet().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().getKey() != keep) {
+                entries.remove();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Appends a content line, folded at 75 octets as RFC 5545 requires.
+     */
+    private static void line(StringBuilder ics, String content) {
+        int octets = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            // A surrogate pair is four octets, counted on the high half so the pair is never split.
+            int width = c < 0x80 ? 1 : c < 0x800 ? 2 : Character.isHighSurrogate(c) ? 4
+                    : Character.isLowSurrogate(c) ? 0 : 3;
+            if (octets + width > 75) {
+                ics.append("\r\n ");
+                octets = 1;
+            }
+            ics.append(c);
+            octets += width;
+        }
+        ics.append("\r\n");
+    }
+
+    private static String text(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace(";", "\\;").replace(",", "\\,")
+                .replace("\r\n", "\\n").replace("\n", "\\n").replace("\r", "");
+    }
+
+    private static String hash(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(Arrays.copyOf(digest, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A rendered feed. {@code stale} feeds are only kept to carry the ETag and Last-Modified over
+     * to the next render.
+     */
+    public record Feed(String body, String etag, long lastModifiedMillis, LocalDate renderedOn, boolean stale) {
+
+        Feed asStale() {
+            return new Feed(body, etag, lastModifiedMillis, renderedOn, true);
+        }
+    }
+}
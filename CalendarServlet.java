@@ -0,0 +1,97 @@
+package com.guvi.mindfulness.servlet;
+
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
+import com.guvi.mindfulness.resilience.Deadline;
+import com.guvi.mindfulness.service.CalendarFeedService;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Calendar subscription feed of a user's sessions, e.g. {@code /api/sessions/calendar.ics?userId=42}.
+ * Calendar apps poll it every few minutes; they send back the {@code ETag} or {@code Last-Modified}
+ * they got and receive {@code 304} until the user's sessions change.
+ */
+@WebServlet(name = "CalendarServlet", urlPatterns = "/api/sessions/calendar.ics", loadOnStartup = 1)
+public class CalendarServlet extends HttpServlet {
+
+    private transient CalendarFeedService calendarService;
+
+    @Override
+    public void init() throws ServletException {
+        this.calendarService = new CalendarFeedService(Storage.sessions());
+        calendarService.start();
+    }
+
+    @Override
+    public void destroy() {
+        calendarService.close();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        long userId;
+        try {
+            userId = Long.parseLong(req.getParameter("userId"));
+        } catch (NumberFormatException e) {
+            resp.setContentType("application/json");
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"userId must be a number\"}");
+            return;
+        }
+        CalendarFeedService.Feed feed;
+        try (Deadline.Scope deadline = Deadline.startRequest()) {
+            feed = calendarService.feed(userId);
+        } catch (ServiceUnavailableException e) {
+            resp.setContentType("application/json");
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+            return;
+        }
+        resp.setHeader("ETag", feed.etag());
+        resp.setDateHeader("Last-Modified", feed.lastModifiedMillis());
+        resp.setHeader("Cache-Control", "private, no-cache");
+        if (notModified(req, feed)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        byte[] body = feed.body().getBytes(StandardCharsets.UTF_8);
+        resp.setContentType("text/calendar; charset=utf-8");
+        resp.setHeader("Content-Disposition", "inline; filename=\"mindfulness.ics\"");
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    /**
+     * {@code If-None-Match} takes precedence over {@code If-Modified-Since} (RFC 9110, 13.2.2).
+     */
+    private static boolean notModified(HttpServletRequest req, CalendarFeedService.Feed feed) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(feed.etag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = req.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return ifModifiedSince >= 0 && feed.lastModifiedMillis() <= ifModifiedSince;
+    }
+}
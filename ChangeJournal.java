@@ -0,0 +1,350 @@
+package com.guvi.mindfulness.journal;
+
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.logging.AsyncLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of committed user and session mutations, kept in memory-mapped segment
+ * files ({@code changes-<baseOffset>.log}) under {@code JOURNAL_DIR} (default {@code journal/changes}).
+ * Consumers read it sequentially from an offset through {@link #read} or a {@link ChangeTailer}
+ * instead of polling MySQL.
+ * <p>
+ * Appends are memory writes under a lock. A single flusher thread forces the active segment to
+ * disk and every append waits until a force has covered it, so concurrent writers share one
+ * fsync (group commit). Readers only see records that are already durable.
+ * <p>
+ * {@code JOURNAL_SEGMENT_RECORDS} sets the records per segment (default 262144, about 12 MB) and
+ * {@code JOURNAL_RETAIN_SEGMENTS} how many segments are kept (default 16).
+ */
+public final class ChangeJournal implements AutoCloseable {
+
+    private static final String PREFIX = "changes-";
+    private static final String SUFFIX = ".log";
+
+    private static volatile ChangeJournal shared;
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final int retainSegments;
+    private final NavigableMap<Long, JournalSegment> segments = new ConcurrentSkipListMap<>();
+    private final Thread flusher;
+
+    private JournalSegment active;
+    private long nextOffset;
+    private volatile long durableOffset;
+    private boolean closed;
+
+    public ChangeJournal(Path directory, int segmentRecords, int retainSegments) throws IOException {
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        this.retainSegments = Math.max(1, retainSegments);
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(ChangeJournal::isSegmentFile).toList()) {
+                JournalSegment segment = JournalSegment.open(file);
+                segments.put(segment.baseOffset(), segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(0);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        nextOffset = active.nextOffset();
+        durableOffset = nextOffset;
+        flusher = new Thread(this::flushLoop, "change-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Process-wide journal configured from system properties, opened on first use.
+     */
+    public static ChangeJournal shared() {
+        ChangeJournal journal = shared;
+        if (journal == null) {
+            synchronized (ChangeJournal.class) {
+                journal = shared;
+                if (journal == null) {
+                    try {
+                        journal = new ChangeJournal(
+                                Paths.get(System.getProperty("JOURNAL_DIR", "journal/changes")),
+                                Integer.getInteger("JOURNAL_SEGMENT_RECORDS", 1 << 18),
+                                Integer.getInteger("JOURNAL_RETAIN_SEGMENTS", 16));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to open change journal", e);
+                    }
+                    shared = journal;
+                }
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Journals a change once it is committed. Inside a transaction ({@link Storage#begin()}) the record
+     * is appended after it commits and dropped if it rolls back; otherwise it is appended now.
+     * Returns once the record is durable. The change also goes to the {@link AsyncLog} audit trail.
+     */
+    public void record(ChangeRecord.Entity entity, ChangeRecord.Operation operation,
+                       long entityId, long userId, int version) {
+        Runnable append = () -> {
+            AsyncLog.shared().audit(entity.name(), operation.name(), entityId, userId, version);
+            append(entity, operation, entityId, userId, version);
+        };
+        if (!Storage.afterCommit(append)) {
+            append.run();
+        }
+    }
+
+    /**
+     * Journals one change per element of {@code entityIds}, owned by the matching element of
+     * {@code userIds}, with the same rules as {@link #record}. The records are appended together
+     * and share one wait for the flusher instead of one each.
+     */
+    public void recordAll(ChangeRecord.Entity entity, ChangeRecord.Operation operation,
+                          long[] entityIds, long[] userIds, int version) {
+        Runnable append = () -> {
+            for (int i = 0; i < entityIds.length; i++) {
+                AsyncLog.shared().audit(entity.name(), operation.name(), entityIds[i], userIds[i], version);
+            }
+            appendAll(entity, operation, entityIds, userIds, version);
+        };
+        if (!Storage.afterCommit(append)) {
+            append.run();
+        }
+    }
+
+    /**
+     * Appends a record and waits until it has been forced to disk.
+     *
+     * @return the record's offset
+     */
+    public long append(ChangeRecord.Entity entity, ChangeRecord.Operation operation,
+                       long entityId, long userId, int version) {
+        synchronized (this) {
+            long offset = appendLocked(entity, operation, entityId, userId, version);
+            awaitDurable(offset);
+            return offset;
+        }
+    }
+
+    /**
+     * Appends several records and waits once until the last of them has been forced to disk.
+     *
+     * @return the offset of the last record, or {@code -1} if there were none
+     */
+    public long appendAll(ChangeRecord.Entity entity, ChangeRecord.Operation operation,
+                          long[] entityIds, long[] userIds, int version) {
+        synchronized (this) {
+            long offset = -1;
+            for (int i = 0; i < entityIds.length; i++) {
+                offset = appendLocked(entity, operation, entityIds[i], userIds[i], version);
+            }
+            awaitDurable(offset);
+            return offset;
+        }
+    }
+
+    /**
+     * Offset of the oldest retained record.
+     */
+    public long earliestOffset() {
+        return segments.firstKey();
+    }
+
+    /**
+     * Offset the next record will get; every record below it is durable and readable.
+     */
+    public long latestOffset() {
+        return durableOffset;
+    }
+
+    /**
+     * Reads up to {@code max} durable records starting at {@code from}. Offsets that were already
+     * removed by retention are skipped, so the first returned offset may be larger than {@code from}.
+     */
+    public List<ChangeRecord> read(long from, int max) {
+        long end = durableOffset;
+        long offset = Math.max(from, earliestOffset());
+        List<ChangeRecord> records = new ArrayList<>((int) Math.max(0, Math.min(max, end - offset)));
+        while (offset < end && records.size() < max) {
+            Map.Entry<Long, JournalSegment> entry = segments.floorEntry(offset);
+            if (entry == null) {
+                break;
+            }
+            JournalSegment segment = entry.getValue();
+            long segmentEnd = Math.min(end, entry.getKey() + segmentRecords);
+            for (; offset < segmentEnd && records.size() < max; offset++) {
+                records.add(segment.read(offset));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Blocks until a record at or beyond {@code offset} is durable, or the timeout elapses.
+     *
+     * @return {@code true} if such a record exists
+     */
+    public synchronized boolean awaitOffset(long offset, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (durableOffset <= offset && !closed) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return durableOffset > offset;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public ChangeTailer tail(long from) {
+        return new ChangeTailer(this, from);
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            active.force();
+            durableOffset = nextOffset;
+            notifyAll();
+        }
+        flusher.interrupt();
+        synchronized (ChangeJournal.class) {
+            if (shared == this) {
+                shared = null;
+            }
+        }
+    }
+
+    /**
+     * Closes the process-wide journal if it was opened. Called once at application shutdown, after
+     * every component writing to it has stopped.
+     */
+    public static void closeShared() {
+        ChangeJournal journal;
+        synchronized (ChangeJournal.class) {
+            journal = shared;
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private long appendLocked(ChangeRecord.Entity entity, ChangeRecord.Operation operation,
+                              long entityId, long userId, int version) {
+        if (closed) {
+            throw new IllegalStateException("Change journal is closed");
+        }
+        if (active.isFull()) {
+            roll();
+        }
+        long offset = active.append(System.currentTimeMillis(), entity, operation, entityId, userId, version);
+        nextOffset = offset + 1;
+        notifyAll();
+        return offset;
+    }
+
+    /**
+     * Waits, with the lock held, until the flusher has covered {@code offset}.
+     */
+    private void awaitDurable(long offset) {
+        boolean interrupted = false;
+        while (durableOffset <= offset && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            JournalSegment segment;
+            long target;
+            synchronized (this) {
+                while (durableOffset == nextOffset && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        if (closed) {
+                            return;
+                        }
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                segment = active;
+                target = nextOffset;
+            }
+            // Appends keep landing in the mapping while this force runs; the next pass covers them all.
+            segment.force();
+            synchronized (this) {
+                if (target > durableOffset) {
+                    durableOffset = target;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Seals the full segment and starts a new one. Called with the lock held; rare enough that
+     * forcing the old segment inline is cheaper than coordinating with the flusher.
+     */
+    private void roll() {
+        active.force();
+        try {
+            active = createSegment(active.nextOffset());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll change journal segment", e);
+        }
+        while (segments.size() > retainSegments) {
+            JournalSegment oldest = segments.pollFirstEntry().getValue();
+            try {
+                Files.deleteIfExists(oldest.path());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to remove old change journal segment", e);
+            }
+        }
+    }
+
+    private JournalSegment createSegment(long baseOffset) throws IOException {
+        JournalSegment segment = JournalSegment.create(
+                directory.resolve(PREFIX + String.format("%020d", baseOffset) + SUFFIX), baseOffset, segmentRecords);
+        segments.put(baseOffset, segment);
+        return segment;
+    }
+
+    private static boolean isSegmentFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+}
@@ -0,0 +1,27 @@
+package com.guvi.mindfulness.journal;
+
+import java.time.Instant;
+
+/**
+ * One committed mutation as stored in the {@link ChangeJournal}. Records carry identifiers only;
+ * consumers re-read the current state of the entity if they need its fields.
+ *
+ * @param offset    position in the journal, strictly increasing by one per record
+ * @param timestamp time the change was journalled
+ * @param userId    owning user, or {@code 0} when the write path does not know it
+ * @param version   row version after the change, {@code 0} for inserts and deletes
+ */
+public record ChangeRecord(long offset, Instant timestamp, Entity entity, Operation operation,
+                           long entityId, long userId, int version) {
+
+    public enum Entity {
+        USER,
+        SESSION
+    }
+
+    public enum Operation {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+}
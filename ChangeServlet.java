@@ -0,0 +1,94 @@
+package com.guvi.mindfulness.servlet;
+
+import com.guvi.mindfulness.journal.ChangeJournal;
+import com.guvi.mindfulness.journal.ChangeRecord;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feed of committed user and session changes for downstream consumers, e.g.
+ * {@code /api/changes?since=1200&limit=500&waitMs=5000}. Consumers pass the returned {@code next}
+ * offset as {@code since} on their following call. With {@code waitMs} a caught-up consumer is
+ * held until new changes arrive (capped at 10 seconds).
+ */
+@WebServlet(name = "ChangeServlet", urlPatterns = "/api/changes", loadOnStartup = 1)
+public class ChangeServlet extends HttpServlet {
+
+    private static final int DEFAULT_LIMIT = 500;
+    private static final int MAX_LIMIT = 5_000;
+    private static final long MAX_WAIT_MILLIS = 10_000;
+
+    private transient ChangeJournal journal;
+
+    @Override
+    public void init() throws ServletException {
+        this.journal = ChangeJournal.shared();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        long since;
+        int limit;
+        long waitMillis;
+        try {
+            since = Long.parseLong(req.getParameter("since"));
+            String limitParam = req.getParameter("limit");
+            limit = limitParam == null ? DEFAULT_LIMIT : Math.min(MAX_LIMIT, Integer.parseInt(limitParam));
+            String waitParam = req.getParameter("waitMs");
+            waitMillis = waitParam == null ? 0 : Math.min(MAX_WAIT_MILLIS, Long.parseLong(waitParam));
+        } catch (NumberFormatException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"since, limit and waitMs must be numbers\"}");
+            return;
+        }
+        if (since < 0 || limit <= 0) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"since must not be negative and limit must be positive\"}");
+            return;
+        }
+        try {
+            List<ChangeRecord> changes = journal.read(since, limit);
+            if (changes.isEmpty() && waitMillis > 0 && journal.awaitOffset(since, waitMillis, TimeUnit.MILLISECONDS)) {
+                changes = journal.read(since, limit);
+            }
+            long next = changes.isEmpty() ? Math.max(since, journal.earliestOffset())
+                    : changes.get(changes.size() - 1).offset() + 1;
+            resp.getWriter().write(toJson(changes, next));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.getWriter().write("{\"error\":\"Interrupted\"}");
+        } catch (Exception e) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\":\"Internal error\"}");
+        }
+    }
+
+    private String toJson(List<ChangeRecord> changes, long next) {
+        StringBuilder json = new StringBuilder(64 + changes.size() * 128);
+        json.append("{\"next\":").append(next)
+                .append(",\"earliest\":").append(journal.earliestOffset())
+                .append(",\"changes\":[");
+        for (int i = 0; i < changes.size(); i++) {
+            ChangeRecord change = changes.get(i);
+            json.append(i > 0 ? "," : "")
+                    .append("{\"offset\":").append(change.offset())
+                    .append(",\"at\":\"").append(change.timestamp())
+                    .append("\",\"entity\":\"").append(change.entity())
+                    .append("\",\"operation\":\"").append(change.operation())
+                    .append("\",\"id\":").append(change.entityId())
+                    .append(",\"userId\":").append(change.userId())
+                    .append(",\"version\":").append(change.version())
+                    .append('}');
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,42 @@
+package com.guvi.mindfulness.journal;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequential cursor over a {@link ChangeJournal}. Each {@link #poll} returns the next batch of
+ * durable records and advances the cursor; consumers persist {@link #position()} to resume later.
+ * Not thread-safe: use one tailer per consumer thread.
+ */
+public final class ChangeTailer {
+
+    private final ChangeJournal journal;
+    private long position;
+
+    ChangeTailer(ChangeJournal journal, long from) {
+        this.journal = journal;
+        this.position = from;
+    }
+
+    /**
+     * Offset of the next record this tailer will return.
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Returns up to {@code max} records, waiting up to {@code timeout} for new ones when the
+     * tailer has caught up. An empty list means nothing arrived in time.
+     */
+    public List<ChangeRecord> poll(int max, long timeout, TimeUnit unit) throws InterruptedException {
+        List<ChangeRecord> records = journal.read(position, max);
+        if (records.isEmpty() && journal.awaitOffset(position, timeout, unit)) {
+            records = journal.read(position, max);
+        }
+        if (!records.isEmpty()) {
+            position = records.get(records.size() - 1).offset() + 1;
+        }
+        return records;
+    }
+}
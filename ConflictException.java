@@ -0,0 +1,13 @@
+package com.guvi.mindfulness.exception;
+
+/**
+ * Raised when an update was based on a stale version of a row, a session would overlap another
+ * session of the same user, or an e-mail is already registered. The client should reload the
+ * resource and retry; servlets answer it with {@code 409}.
+ */
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
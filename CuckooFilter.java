@@ -0,0 +1,214 @@
+package com.guvi.mindfulness.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Approximate set of 64-bit keys that supports removal. Each key is kept as a 16-bit fingerprint
+ * in one of two buckets of four slots (partial-key cuckoo hashing), so a lookup reads at most two
+ * {@code long}s per table. Absent keys are reported present with a probability of about 0.01% per
+ * table; present keys are never missed, as long as only keys that were added are removed.
+ * <p>
+ * The filter scales: when a table is too full to place a key it is sealed and a table twice its
+ * size is chained after it. Not thread-safe; callers synchronize.
+ */
+public final class CuckooFilter {
+
+    private static final int SLOTS = 4;
+    private static final int MAX_KICKS = 500;
+
+    private final List<Table> tables = new ArrayList<>();
+    private long size;
+
+    /**
+     * @param initialCapacity keys the first table is sized for; later tables double
+     */
+    public CuckooFilter(int initialCapacity) {
+        tables.add(new Table(bucketsFor(initialCapacity)));
+    }
+
+    public void add(long key) {
+        int fingerprint = fingerprint(key);
+        Table last = tables.get(tables.size() - 1);
+        if (!last.insert(key, fingerprint)) {
+            tables.add(new Table(last.buckets.length * 2));
+        }
+        size++;
+    }
+
+    public boolean mightContain(long key) {
+        int fingerprint = fingerprint(key);
+        for (Table table : tables) {
+            if (table.contains(key, fingerprint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes one copy of a key that was added. Removing a key that was never added may remove
+     * another key's fingerprint, turning it into a false negative.
+     */
+    public boolean remove(long key) {
+        int fingerprint = fingerprint(key);
+        for (int i = tables.size() - 1; i >= 0; i--) {
+            if (tables.get(i).remove(key, fingerprint)) {
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Bytes held by the bucket arrays.
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Table table : tables) {
+            bytes += table.buckets.length * (long) Long.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * 64-bit FNV-1a over the characters with a final avalanche, for string keys.
+     */
+    public static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static int bucketsFor(int capacity) {
+        int buckets = Math.max(1, (capacity + SLOTS - 1) / SLOTS);
+        return buckets == 1 ? 1 : Integer.highestOneBit(buckets - 1) << 1;
+    }
+
+    private static int fingerprint(long key) {
+        int fingerprint = (int) (key >>> 48);
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        return value ^ value >>> 33;
+    }
+
+    /**
+     * One power-of-two array of buckets, four 16-bit slots packed per {@code long}; zero is an
+     * empty slot. A key that could not be placed is parked in {@code victim} and seals the table.
+     */
+    private static final class Table {
+
+        final long[] buckets;
+        final int mask;
+        int victimFingerprint;
+        int victimBucket;
+
+        Table(int buckets) {
+            this.buckets = new long[buckets];
+            this.mask = buckets - 1;
+        }
+
+        /**
+         * @return {@code false} if the table is now sealed; the key is stored either way
+         */
+        boolean insert(long key, int fingerprint) {
+            if (victimFingerprint != 0) {
+                throw new IllegalStateException("Table is sealed");
+            }
+            int first = (int) key & mask;
+            int second = alternate(first, fingerprint);
+            if (put(first, fingerprint) || put(second, fingerprint)) {
+                return true;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int bucket = random.nextBoolean() ? first : second;
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int slot = random.nextInt(SLOTS);
+                int evicted = get(bucket, slot);
+                set(bucket, slot, fingerprint);
+                fingerprint = evicted;
+                bucket = alternate(bucket, fingerprint);
+                if (put(bucket, fingerprint)) {
+                    return true;
+                }
+            }
+            victimFingerprint = fingerprint;
+            victimBucket = bucket;
+            return false;
+        }
+
+        boolean contains(long key, int fingerprint) {
+            int first = (int) key & mask;
+            int second = alternate(first, fingerprint);
+            return has(first, fingerprint) || has(second, fingerprint)
+                    || victimFingerprint == fingerprint && (victimBucket == first || victimBucket == second);
+        }
+
+        boolean remove(long key, int fingerprint) {
+            int first = (int) key & mask;
+            int second = alternate(first, fingerprint);
+            if (victimFingerprint == fingerprint && (victimBucket == first || victimBucket == second)) {
+                victimFingerprint = 0;
+                return true;
+            }
+            return clear(first, fingerprint) || clear(second, fingerprint);
+        }
+
+        private int alternate(int bucket, int fingerprint) {
+            return (bucket ^ (int) mix(fingerprint)) & mask;
+        }
+
+        private boolean put(int bucket, int fingerprint) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (get(bucket, slot) == 0) {
+                    set(bucket, slot, fingerprint);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean has(int bucket, int fingerprint) {
+            long packed = buckets[bucket];
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if ((int) (packed >>> (slot * 16) & 0xFFFF) == fingerprint) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean clear(int bucket, int fingerprint) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (get(bucket, slot) == fingerprint) {
+                    set(bucket, slot, 0);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int get(int bucket, int slot) {
+            return (int) (buckets[bucket] >>> (slot * 16) & 0xFFFF);
+        }
+
+        private void set(int bucket, int slot, int fingerprint) {
+            int shift = slot * 16;
+            buckets[bucket] = buckets[bucket] & ~(0xFFFFL << shift) | (long) fingerprint << shift;
+        }
+    }
+}
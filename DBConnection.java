@@ -4,16 +4,30 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
 import java.sql.Statement;
-import java.util.Objects;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 /**
- * Simple singleton helper that manages a single MySQL JDBC connection for the project.
- * The class hides DriverManager details and exposes convenience helpers for DAO classes.
+ * Hands out MySQL JDBC connections from a small pool and hides DriverManager details from the DAOs.
+ * <p>
+ * At most {@code DB_POOL_SIZE} (default 20) connections are lent at once; a caller waits up to
+ * {@code DB_POOL_WAIT_MS} (default 3000) for one and then gets a
+ * {@link SQLTransientConnectionException}. Connections are server-side prepared with the driver's
+ * statement cache on, so a statement is parsed by MySQL once per connection and reused after.
  */
 public final class DBConnection {
 
@@ -22,10 +36,27 @@ public final class DBConnection {
     private static final String DB_NAME = System.getProperty("DB_NAME", "mindfulnessdb");
     private static final String DB_USER = System.getProperty("DB_USER", "root");
     private static final String DB_PASSWORD = System.getProperty("DB_PASSWORD", "");
+    private static final String DB_CONNECT_TIMEOUT_MS = System.getProperty("DB_CONNECT_TIMEOUT_MS", "3000");
+    private static final String DB_SOCKET_TIMEOUT_MS = System.getProperty("DB_SOCKET_TIMEOUT_MS", "15000");
+    // Socket timeouts are a backstop for a hung server; per-request budgets are applied as query timeouts.
     private static final String DB_URL = "jdbc:mysql://" + DB_HOST + ":" + DB_PORT + "/" + DB_NAME
-            + "?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC&createDatabaseIfNotExist=true";
+            + "?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC&createDatabaseIfNotExist=true"
+            + "&rewriteBatchedStatements=true&connectTimeout=" + DB_CONNECT_TIMEOUT_MS + "&socketTimeout=" + DB_SOCKET_TIMEOUT_MS
+            + "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=256&prepStmtCacheSqlLimit=2048";
+    private static final String REPORT_DB_HOST = System.getProperty("REPORT_DB_HOST", DB_HOST);
+    private static final String REPORT_DB_URL = "jdbc:mysql://" + REPORT_DB_HOST + ":" + DB_PORT + "/" + DB_NAME
+            + "?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC&useCursorFetch=true";
 
-    private static Connection connection;
+    private static final int POOL_SIZE = Math.max(1, Integer.getInteger("DB_POOL_SIZE", 20));
+    private static final int POOL_MIN_IDLE = Math.min(POOL_SIZE, Integer.getInteger("DB_POOL_MIN_IDLE", 4));
+    private static final long POOL_WAIT_MS = Long.getLong("DB_POOL_WAIT_MS", 3000);
+    /** An idle connection older than this is pinged before it is lent out again. */
+    private static final long VALIDATE_AFTER_IDLE_MS = 30_000;
+
+    private static final Semaphore PERMITS = new Semaphore(POOL_SIZE, true);
+    // Guarded by itself; most recently returned first, so a quiet period lets the rest go stale
+    private static final Deque<IdleConnection> IDLE = new ArrayDeque<>();
+    private static boolean closed;
 
     static {
         try {
@@ -39,14 +70,69 @@ public final class DBConnection {
     }
 
     /**
-     * Returns a shared connection instance. A lightweight guard recreates the connection
-     * if it has been closed by previous DAO calls.
+     * Lends a pooled connection; closing it gives it back. Idle connections the server dropped
+     * are replaced. Inside a {@link UnitOfWork} the connection bound to the current thread is
+     * returned instead.
      */
-    public static synchronized Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+    public static Connection getConnection() throws SQLException {
+        Connection bound = UnitOfWork.currentConnection();
+        if (bound != null) {
+            return bound;
+        }
+        try {
+            if (!PERMITS.tryAcquire(POOL_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("No database connection free within " + POOL_WAIT_MS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+        }
+        try {
+            return lend(borrow());
+        } catch (SQLException | RuntimeException e) {
+            PERMITS.release();
+            throw e;
         }
-        return connection;
+    }
+
+    /**
+     * Opens {@code DB_POOL_MIN_IDLE} (default 4) connections and prepares every statement in
+     * {@code sqls} on each, so the first requests find them connected and in the statement cache.
+     */
+    public static void prepareAll(Collection<String> sqls) throws SQLException {
+        List<Connection> lent = new ArrayList<>(POOL_MIN_IDLE);
+        try {
+            for (int i = 0; i < POOL_MIN_IDLE; i++) {
+                Connection connection = getConnection();
+                lent.add(connection);
+                for (String sql : sqls) {
+                    // With cachePrepStmts, closing a server-side statement keeps it in the cache.
+                    connection.prepareStatement(sql).close();
+                }
+            }
+        } finally {
+            for (Connection connection : lent) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Opens a dedicated connection to the primary database. The caller owns the connection and must close it.
+     */
+    static Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+    }
+
+    /**
+     * Opens a dedicated read-only connection for long analytical scans. Point
+     * {@code REPORT_DB_HOST} at a replica to keep reports off the primary.
+     * The caller owns the connection and must close it.
+     */
+    public static Connection openReportingConnection() throws SQLException {
+        Connection reporting = DriverManager.getConnection(REPORT_DB_URL, DB_USER, DB_PASSWORD);
+        reporting.setReadOnly(true);
+        return reporting;
     }
 
     /**
@@ -61,11 +147,13 @@ public final class DBConnection {
             String sql = new BufferedReader(new InputStreamReader(schemaStream))
                     .lines()
                     .collect(Collectors.joining("\n"));
-            for (String statement : sql.split(";")) {
-                String trimmed = statement.trim();
-                if (!trimmed.isEmpty()) {
-                    try (Statement stmt = getConnection().createStatement()) {
-                        stmt.execute(trimmed);
+            try (Connection connection = getConnection()) {
+                for (String statement : sql.split(";")) {
+                    String trimmed = statement.trim();
+                    if (!trimmed.isEmpty()) {
+                        try (Statement stmt = connection.createStatement()) {
+                            stmt.execute(trimmed);
+                        }
                     }
                 }
             }
@@ -75,16 +163,97 @@ public final class DBConnection {
     }
 
     /**
-     * Utility to quietly close the shared connection during application shutdown.
+     * Utility to quietly close the pooled connections during application shutdown. Connections
+     * still lent out are closed when they are given back.
      */
-    public static synchronized void closeConnection() {
-        if (Objects.nonNull(connection)) {
-            try {
-                connection.close();
-            } catch (SQLException ignored) {
-                // Nothing else to do during shutdown
+    public static void closeConnection() {
+        synchronized (IDLE) {
+            closed = true;
+            for (IdleConnection idle : IDLE) {
+                closeQuietly(idle.connection());
             }
+            IDLE.clear();
         }
     }
+
+    private static Connection borrow() throws SQLException {
+        while (true) {
+            IdleConnection idle;
+            synchronized (IDLE) {
+                idle = IDLE.pollFirst();
+            }
+            if (idle == null) {
+                return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+            }
+            Connection connection = idle.connection();
+            boolean stale = System.currentTimeMillis() - idle.since() > VALIDATE_AFTER_IDLE_MS;
+            if (!connection.isClosed() && (!stale || connection.isValid(2))) {
+                return connection;
+            }
+            closeQuietly(connection);
+        }
+    }
+
+    private static void giveBack(Connection connection) {
+        try {
+            if (!connection.isClosed() && connection.getAutoCommit()) {
+                synchronized (IDLE) {
+                    if (!closed) {
+                        IDLE.addFirst(new IdleConnection(connection, System.currentTimeMillis()));
+                        return;
+                    }
+                }
+            }
+            closeQuietly(connection);
+        } catch (SQLException e) {
+            closeQuietly(connection);
+        } finally {
+            PERMITS.release();
+        }
+    }
+
+    /**
+     * Wraps a borrowed connection so that {@code close()} gives it back to the pool, once.
+     */
+    private static Connection lend(Connection target) {
+        AtomicBoolean returned = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close" -> {
+                            if (returned.compareAndSet(false, true)) {
+                                giveBack(target);
+                            }
+                            return null;
+                        }
+                        case "isClosed" -> {
+                            if (returned.get()) {
+                                return true;
+                            }
+                        }
+                        default -> {
+                            if (returned.get()) {
+                                throw new SQLException("Connection was already given back to the pool");
+                            }
+                        }
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Already broken; nothing else to do
+        }
+    }
+
+    private record IdleConnection(Connection connection, long since) {
+    }
 }
 
@@ -0,0 +1,95 @@
+package com.guvi.mindfulness.resilience;
+
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientException;
+
+/**
+ * Wraps DAO calls from the service layer with a circuit breaker and a bulkhead. One guard exists per
+ * DAO, so user and session operations have separate capacity and separate failure tracking.
+ * <p>
+ * Only failures that say something about database health (timeouts, lost connections, transient
+ * errors) count against the circuit; constraint violations and similar errors do not.
+ */
+public final class DaoGuard {
+
+    public static final DaoGuard USERS = new DaoGuard("UserDAO", new Bulkhead("user",
+            Integer.getInteger("BULKHEAD_USERS", 16)));
+
+    public static final DaoGuard SESSIONS = new DaoGuard("MindfulnessSessionDAO", new Bulkhead("session",
+            Integer.getInteger("BULKHEAD_SESSIONS", 32)));
+
+    /**
+     * On-demand recommendation scoring. Each call opens an unpooled reporting connection, hence
+     * the small default.
+     */
+    public static final DaoGuard RECOMMENDATIONS = new DaoGuard("RecommendationDAO", new Bulkhead("recommendation",
+            Integer.getInteger("BULKHEAD_RECOMMENDATIONS", 4)));
+
+    private final CircuitBreaker breaker;
+    private final Bulkhead bulkhead;
+
+    public DaoGuard(String name, Bulkhead bulkhead) {
+        this(new CircuitBreaker(name, Integer.getInteger("BREAKER_FAILURE_THRESHOLD", 5),
+                Long.getLong("BREAKER_OPEN_MS", 10_000L)), bulkhead);
+    }
+
+    public DaoGuard(CircuitBreaker breaker, Bulkhead bulkhead) {
+        this.breaker = breaker;
+        this.bulkhead = bulkhead;
+    }
+
+    public <T> T execute(SqlCall<T> call) throws SQLException {
+        if (!breaker.tryAcquirePermission()) {
+            throw new ServiceUnavailableException("Database is unavailable, please retry later",
+                    breaker.retryAfterSeconds());
+        }
+        try {
+            bulkhead.acquire();
+        } catch (ServiceUnavailableException e) {
+            breaker.onIgnored();
+            throw e;
+        }
+        try {
+            T result = call.call();
+            breaker.onSuccess();
+            return result;
+        } catch (SQLTimeoutException e) {
+            breaker.onFailure();
+            throw new ServiceUnavailableException("Database call timed out", breaker.retryAfterSeconds(), e);
+        } catch (SQLException e) {
+            if (isHealthFailure(e)) {
+                breaker.onFailure();
+            } else {
+                breaker.onIgnored();
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onIgnored();
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    private static boolean isHealthFailure(SQLException e) {
+        String sqlState = e.getSQLState();
+        return e instanceof SQLTransientException
+                || e instanceof SQLRecoverableException
+                || e instanceof SQLNonTransientConnectionException
+                || (sqlState != null && sqlState.startsWith("08"));
+    }
+
+    @FunctionalInterface
+    public interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+}
@@ -0,0 +1,88 @@
+package com.guvi.mindfulness.resilience;
+
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request time budget. Servlets open a scope when a request arrives; services and DAOs pick it
+ * up from the current thread, so no method signatures change. DAOs call {@link #applyTo(Statement)}
+ * which turns the remaining budget into a JDBC query timeout, and the driver cancels the statement
+ * on the server once it overruns.
+ */
+public final class Deadline {
+
+    private static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = Long.getLong("REQUEST_TIMEOUT_MS", 2_000L);
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    /**
+     * Starts a deadline of {@code REQUEST_TIMEOUT_MS} (default 2000 ms) for the current thread.
+     */
+    public static Scope startRequest() {
+        return start(DEFAULT_REQUEST_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Starts a deadline for the current thread. A nested scope never extends an outer deadline.
+     */
+    public static Scope start(long timeoutMillis) {
+        Deadline previous = CURRENT.get();
+        long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        if (previous != null && previous.expiresAtNanos - expiresAt < 0) {
+            expiresAt = previous.expiresAtNanos;
+        }
+        CURRENT.set(new Deadline(expiresAt));
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Milliseconds left for the current request, or {@link Long#MAX_VALUE} when no deadline is set.
+     */
+    public static long remainingMillis() {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadline.expiresAtNanos - System.nanoTime());
+    }
+
+    /**
+     * Sets the statement's query timeout to the remaining budget (rounded up to whole seconds, the
+     * JDBC granularity). Fails immediately if the budget is already spent; the database was never
+     * asked, so this is a {@link ServiceUnavailableException} rather than an {@link SQLException}
+     * that would count against the circuit breaker.
+     */
+    public static void applyTo(Statement statement) throws SQLException {
+        long remaining = remainingMillis();
+        if (remaining == Long.MAX_VALUE) {
+            return;
+        }
+        if (remaining <= 0) {
+            throw new ServiceUnavailableException("Request deadline exceeded before the query was sent", 1);
+        }
+        statement.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, (remaining + 999) / 1000));
+    }
+
+    /**
+     * Restores the previous deadline when closed.
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,647 @@
+package com.guvi.mindfulness.embedded;
+
+import com.guvi.mindfulness.dao.LookupStore;
+import com.guvi.mindfulness.dao.RecommendationStore;
+import com.guvi.mindfulness.dao.SessionStore;
+import com.guvi.mindfulness.dao.StorageTransaction;
+import com.guvi.mindfulness.dao.UserStore;
+import com.guvi.mindfulness.exception.DataAccessException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process storage engine for small deployments without a MySQL server. All rows live in memory
+ * with a primary-key map per table, a case-insensitive unique index on user e-mail and an ordered
+ * {@code (user_id, scheduled_at, id)} index on sessions. Durability comes from a write-ahead log of
+ * row images plus periodic snapshots in {@code EMBEDDED_DATA_DIR} (default {@code data/embedded}).
+ * <p>
+ * Readers share a read lock; writers apply their change under the write lock, append it to the log
+ * and wait for the fsync after releasing the lock, so concurrent writers share one fsync. A
+ * {@link #begin() transaction} holds the write lock until it ends and is logged as a single entry.
+ * <p>
+ * A snapshot is written in the background once the current log generation exceeds
+ * {@code EMBEDDED_SNAPSHOT_BYTES} (default 64 MB); replay on startup then only reads the log written
+ * since. {@code EMBEDDED_FSYNC=false} trades durability of the last writes for latency.
+ */
+public final class EmbeddedEngine implements AutoCloseable {
+
+    private static final int SNAPSHOT_MAGIC = 0x4D455331; // "MES1"
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final byte USER_IMAGE = 1;
+    private static final byte SESSION_IMAGE = 2;
+
+    private final Path directory;
+    private final long snapshotBytes;
+    private final WriteAheadLog wal;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<Transaction> currentTransaction = new ThreadLocal<>();
+    private final ExecutorService snapshotter;
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+
+    private final NavigableMap<Long, UserRow> users = new TreeMap<>();
+    private final Map<String, Long> userIdsByEmail = new HashMap<>();
+    private final Map<Long, SessionRow> sessions = new HashMap<>();
+    private final NavigableSet<SessionKey> sessionsByUserAndTime = new TreeSet<>();
+    private long lastUserId;
+    private long lastSessionId;
+
+    private final UserStore userStore = new EmbeddedUserStore(this);
+    private final SessionStore sessionStore = new EmbeddedSessionStore(this);
+    private final LookupStore lookupStore = new EmbeddedLookupStore();
+    private final RecommendationStore recommendationStore = new EmbeddedRecommendationStore(this);
+
+    public EmbeddedEngine(Path directory, long snapshotBytes, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.snapshotBytes = snapshotBytes;
+        Files.createDirectories(directory);
+        long generation = loadSnapshot();
+        this.wal = new WriteAheadLog(directory, fsync);
+        wal.open(generation, this::replay);
+        this.snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "embedded-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Engine configured from {@code EMBEDDED_DATA_DIR}, {@code EMBEDDED_SNAPSHOT_BYTES} and {@code EMBEDDED_FSYNC}.
+     */
+    public static EmbeddedEngine fromSystemProperties() throws IOException {
+        return new EmbeddedEngine(
+                Paths.get(System.getProperty("EMBEDDED_DATA_DIR", "data/embedded")),
+                Long.getLong("EMBEDDED_SNAPSHOT_BYTES", 64L << 20),
+                Boolean.parseBoolean(System.getProperty("EMBEDDED_FSYNC", "true")));
+    }
+
+    public UserStore users() {
+        return userStore;
+    }
+
+    public SessionStore sessions() {
+        return sessionStore;
+    }
+
+    public LookupStore lookups() {
+        return lookupStore;
+    }
+
+    public RecommendationStore recommendations() {
+        return recommendationStore;
+    }
+
+    /**
+     * Starts a transaction on the current thread, or joins the one already open. Other threads'
+     * reads and writes wait until it ends, so they never see its uncommitted rows.
+     */
+    public StorageTransaction begin() {
+        Transaction current = currentTransaction.get();
+        if (current != null) {
+            current.depth++;
+            return current;
+        }
+        lock.writeLock().lock();
+        Transaction transaction = new Transaction();
+        currentTransaction.set(transaction);
+        return transaction;
+    }
+
+    /**
+     * Queues an action to run after the current thread's transaction commits.
+     *
+     * @return {@code false} if no transaction is open on this thread
+     */
+    public boolean afterCommit(Runnable action) {
+        Transaction current = currentTransaction.get();
+        if (current == null) {
+            return false;
+        }
+        current.afterCommit.add(action);
+        return true;
+    }
+
+    public boolean inTransaction() {
+        return currentTransaction.get() != null;
+    }
+
+    /**
+     * Writes a final snapshot and closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotter.shutdown();
+        lock.writeLock().lock();
+        try {
+            long generation = wal.rotate();
+            writeSnapshot(generation, users, sessions);
+            wal.close();
+            wal.deleteBefore(generation);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---- reads, called by the stores ----
+
+    <T> T read(Reader<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.read();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    UserRow user(long id) {
+        return users.get(id);
+    }
+
+    List<UserRow> allUsers() {
+        return new ArrayList<>(users.values());
+    }
+
+    /**
+     * Users with {@code fromId <= id < toId}, by id.
+     */
+    List<UserRow> usersBetween(long fromId, long toId) {
+        return new ArrayList<>(users.subMap(fromId, true, toId, false).values());
+    }
+
+    long maxUserId() {
+        return users.isEmpty() ? 0 : users.lastKey();
+    }
+
+    SessionRow session(long id) {
+        return sessions.get(id);
+    }
+
+    /**
+     * Sessions of a user with {@code from <= scheduled_at < to}, newest first, read from the
+     * {@code (user_id, scheduled_at)} index. {@code null} bounds are open.
+     */
+    List<SessionRow> sessionsOf(long userId, LocalDateTime from, LocalDateTime to) {
+        SessionKey low = new SessionKey(userId, from == null ? Long.MIN_VALUE : epochSecond(from), Long.MIN_VALUE);
+        SessionKey high = new SessionKey(userId, to == null ? Long.MAX_VALUE : epochSecond(to), Long.MIN_VALUE);
+        List<SessionRow> rows = new ArrayList<>();
+        for (SessionKey key : sessionsByUserAndTime.subSet(low, true, high, to == null).descendingSet()) {
+            rows.add(sessions.get(key.id()));
+        }
+        return rows;
+    }
+
+    // ---- writes, called by the stores ----
+
+    /**
+     * Runs a change under the write lock and makes it durable. Inside a transaction the change is
+     * only recorded; it reaches the log when the transaction commits.
+     */
+    <T> T write(Writer<T> writer) throws SQLException {
+        Transaction transaction = currentTransaction.get();
+        if (transaction != null) {
+            return writer.write(transaction.change);
+        }
+        Change change = new Change();
+        long position;
+        T result;
+        lock.writeLock().lock();
+        try {
+            try {
+                result = writer.write(change);
+            } catch (SQLException | RuntimeException e) {
+                change.undo();
+                throw e;
+            }
+            position = log(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        sync(position);
+        return result;
+    }
+
+    long nextUserId() {
+        return lastUserId + 1;
+    }
+
+    long nextSessionId() {
+        return lastSessionId + 1;
+    }
+
+    Long userIdByEmail(String email) {
+        return email == null ? null : userIdsByEmail.get(emailKey(email));
+    }
+
+    // ---- internals ----
+
+    private long log(Change change) throws SQLException {
+        if (change.images.isEmpty()) {
+            return 0;
+        }
+        try {
+            long position = wal.append(change.encode());
+            if (wal.generationBytes() > snapshotBytes && snapshotRunning.compareAndSet(false, true)) {
+                snapshotter.submit(this::snapshotInBackground);
+            }
+            return position;
+        } catch (IOException e) {
+            change.undo();
+            throw new SQLException("Failed to write embedded log", e);
+        }
+    }
+
+    /**
+     * Case-insensitive like the {@code users.email} collation, independent of the default locale.
+     */
+    private static String emailKey(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private void sync(long position) throws SQLException {
+        try {
+            wal.sync(position);
+        } catch (IOException e) {
+            throw new SQLException("Failed to sync embedded log", e);
+        }
+    }
+
+    private UserRow putUser(long id, UserRow row) {
+        UserRow previous = row == null ? users.remove(id) : users.put(id, row);
+        if (previous != null) {
+            userIdsByEmail.remove(emailKey(previous.email()));
+        }
+        if (row != null) {
+            userIdsByEmail.put(emailKey(row.email()), id);
+            lastUserId = Math.max(lastUserId, id);
+        }
+        return previous;
+    }
+
+    private SessionRow putSession(long id, SessionRow row) {
+        SessionRow previous = row == null ? sessions.remove(id) : sessions.put(id, row);
+        if (previous != null) {
+            sessionsByUserAndTime.remove(previous.key());
+        }
+        if (row != null) {
+            sessionsByUserAndTime.add(row.key());
+            lastSessionId = Math.max(lastSessionId, id);
+        }
+        return previous;
+    }
+
+    private void replay(ByteBuffer payload) {
+        int count = payload.getInt();
+        for (int i = 0; i < count; i++) {
+            byte type = payload.get();
+            long id = payload.getLong();
+            boolean present = payload.get() != 0;
+            if (type == USER_IMAGE) {
+                putUser(id, present ? UserRow.read(payload) : null);
+            } else if (type == SESSION_IMAGE) {
+                putSession(id, present ? SessionRow.read(payload) : null);
+            } else {
+                throw new IllegalStateException("Unknown embedded log record type " + type);
+            }
+        }
+    }
+
+    private void snapshotInBackground() {
+        try {
+            // Rows are immutable, so copying the maps is enough to freeze this generation's state;
+            // writers only wait for the copy, not for the file to be written and forced.
+            long generation;
+            Map<Long, UserRow> userCopy;
+            Map<Long, SessionRow> sessionCopy;
+            lock.readLock().lock();
+            try {
+                generation = wal.rotate();
+                userCopy = new HashMap<>(users);
+                sessionCopy = new HashMap<>(sessions);
+            } finally {
+                lock.readLock().unlock();
+            }
+            writeSnapshot(generation, userCopy, sessionCopy);
+            wal.deleteBefore(generation);
+        } catch (IOException e) {
+            // The log still holds everything; the next rotation tries again.
+        } finally {
+            snapshotRunning.set(false);
+        }
+    }
+
+    /**
+     * Writes the given rows to a temporary file, forces it and atomically replaces the previous
+     * snapshot. The maps must not change meanwhile: either the lock is held or they are a copy.
+     */
+    private void writeSnapshot(long generation, Map<Long, UserRow> users, Map<Long, SessionRow> sessions)
+            throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(generation);
+            out.writeInt(users.size());
+            for (Map.Entry<Long, UserRow> entry : users.entrySet()) {
+                out.writeLong(entry.getKey());
+                entry.getValue().write(out);
+            }
+            out.writeInt(sessions.size());
+            for (Map.Entry<Long, SessionRow> entry : sessions.entrySet()) {
+                out.writeLong(entry.getKey());
+                entry.getValue().write(out);
+            }
+            out.flush();
+            file.getChannel().force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return the first log generation not covered by the snapshot
+     */
+    private long loadSnapshot() throws IOException {
+        Path path = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not an embedded snapshot: " + path);
+            }
+            long generation = in.readLong();
+            for (int i = in.readInt(); i > 0; i--) {
+                long id = in.readLong();
+                putUser(id, UserRow.read(in));
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                long id = in.readLong();
+                putSession(id, SessionRow.read(in));
+            }
+            return generation;
+        }
+    }
+
+    static long epochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static SQLIntegrityConstraintViolationException constraintViolation(String message) {
+        return new SQLIntegrityConstraintViolationException(message, "23000");
+    }
+
+    @FunctionalInterface
+    interface Reader<T> {
+        T read();
+    }
+
+    @FunctionalInterface
+    interface Writer<T> {
+        T write(Change change) throws SQLException;
+    }
+
+    /**
+     * Row images written by one operation or transaction, with what is needed to undo them.
+     */
+    final class Change {
+        private final List<Image> images = new ArrayList<>();
+        private final Deque<Runnable> undo = new ArrayDeque<>();
+
+        void putUser(long id, UserRow row) {
+            UserRow previous = EmbeddedEngine.this.putUser(id, row);
+            undo.push(() -> EmbeddedEngine.this.putUser(id, previous));
+            images.add(new Image(USER_IMAGE, id, row));
+        }
+
+        void putSession(long id, SessionRow row) {
+            SessionRow previous = EmbeddedEngine.this.putSession(id, row);
+            undo.push(() -> EmbeddedEngine.this.putSession(id, previous));
+            images.add(new Image(SESSION_IMAGE, id, row));
+        }
+
+        void undo() {
+            while (!undo.isEmpty()) {
+                undo.pop().run();
+            }
+            images.clear();
+        }
+
+        byte[] encode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(images.size());
+            for (Image image : images) {
+                out.writeByte(image.type());
+                out.writeLong(image.id());
+                out.writeBoolean(image.row() != null);
+                if (image.row() instanceof UserRow user) {
+                    user.write(out);
+                } else if (image.row() instanceof SessionRow session) {
+                    session.write(out);
+                }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * New state of one row; {@code row} is {@code null} for a delete.
+     */
+    private record Image(byte type, long id, Object row) {
+    }
+
+    private final class Transaction implements StorageTransaction {
+        private final Change change = new Change();
+        private final List<Runnable> afterCommit = new ArrayList<>();
+        private int depth = 1;
+        private boolean committed;
+        private boolean scopeCommitted;
+        private boolean rollbackOnly;
+
+        @Override
+        public void commit() {
+            if (depth > 1) {
+                scopeCommitted = true;
+                return;
+            }
+            if (rollbackOnly) {
+                throw new IllegalStateException("Transaction was marked rollback-only by a nested scope");
+            }
+            long position;
+            try {
+                position = log(change);
+            } catch (SQLException e) {
+                throw new DataAccessException("Failed to commit embedded transaction", e);
+            }
+            committed = true;
+            end();
+            try {
+                sync(position);
+            } catch (SQLException e) {
+                throw new DataAccessException("Failed to commit embedded transaction", e);
+            }
+            for (Runnable action : afterCommit) {
+                action.run();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (depth > 1) {
+                depth--;
+                // An inner scope that ends without commit() dooms the whole transaction.
+                rollbackOnly |= !scopeCommitted;
+                scopeCommitted = false;
+                return;
+            }
+            if (!committed) {
+                change.undo();
+                end();
+            }
+        }
+
+        private void end() {
+            currentTransaction.remove();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stored user. Immutable; updates replace the whole row.
+     */
+    record UserRow(long id, String fullName, String email, String password, String focusArea, int version) {
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(id);
+            writeString(out, fullName);
+            writeString(out, email);
+            writeString(out, password);
+            writeString(out, focusArea);
+            out.writeInt(version);
+        }
+
+        static UserRow read(DataInputStream in) throws IOException {
+            return new UserRow(in.readLong(), readString(in), readString(in), readString(in), readString(in),
+                    in.readInt());
+        }
+
+        static UserRow read(ByteBuffer in) {
+            return new UserRow(in.getLong(), readString(in), readString(in), readString(in), readString(in),
+                    in.getInt());
+        }
+    }
+
+    /**
+     * Stored session. Immutable; updates replace the whole row.
+     */
+    record SessionRow(long id, long userId, String title, String description, short difficultyCode,
+                      short categoryCode, LocalDateTime scheduledAt, int durationMinutes,
+                      String reflectionNotes, int version) {
+
+        SessionKey key() {
+            return new SessionKey(userId, epochSecond(scheduledAt), id);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(id);
+            out.writeLong(userId);
+            writeString(out, title);
+            writeString(out, description);
+            out.writeShort(difficultyCode);
+            out.writeShort(categoryCode);
+            out.writeLong(epochSecond(scheduledAt));
+            out.writeInt(durationMinutes);
+            writeString(out, reflectionNotes);
+            out.writeInt(version);
+        }
+
+        static SessionRow read(DataInputStream in) throws IOException {
+            return new SessionRow(in.readLong(), in.readLong(), readString(in), readString(in), in.readShort(),
+                    in.readShort(), LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC), in.readInt(),
+                    readString(in), in.readInt());
+        }
+
+        static SessionRow read(ByteBuffer in) {
+            return new SessionRow(in.getLong(), in.getLong(), readString(in), readString(in), in.getShort(),
+                    in.getShort(), LocalDateTime.ofEpochSecond(in.getLong(), 0, ZoneOffset.UTC), in.getInt(),
+                    readString(in), in.getInt());
+        }
+    }
+
+    /**
+     * Entry of the {@code (user_id, scheduled_at)} index; the id makes keys unique.
+     */
+    record SessionKey(long userId, long scheduledAt, long id) implements Comparable<SessionKey> {
+        @Override
+        public int compareTo(SessionKey other) {
+            int result = Long.compare(userId, other.userId);
+            if (result == 0) {
+                result = Long.compare(scheduledAt, other.scheduledAt);
+            }
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
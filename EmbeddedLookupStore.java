@@ -0,0 +1,47 @@
+package com.guvi.mindfulness.embedded;
+
+import com.guvi.mindfulness.dao.LookupStore;
+import com.guvi.mindfulness.model.LookupDictionary;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed category and difficulty labels for the embedded engine, numbered exactly like the seed
+ * rows in {@code schema.sql} so codes mean the same thing on both engines.
+ */
+final class EmbeddedLookupStore implements LookupStore {
+
+    private static final List<String> CATEGORIES = List.of("Breath", "Body Scan", "Focus", "Sleep", "Stress", "Gratitude");
+    private static final List<String> DIFFICULTIES = List.of("Beginner", "Intermediate", "Advanced");
+
+    @Override
+    public void ensureLoaded() {
+        if (!LookupDictionary.CATEGORIES.isLoaded() || !LookupDictionary.DIFFICULTIES.isLoaded()) {
+            refresh();
+        }
+    }
+
+    @Override
+    public void refresh() {
+        LookupDictionary.CATEGORIES.load(numbered(CATEGORIES));
+        LookupDictionary.DIFFICULTIES.load(numbered(DIFFICULTIES));
+    }
+
+    /**
+     * The labels are fixed, so there is never anything new to pick up.
+     */
+    @Override
+    public void refreshIfDue() {
+        ensureLoaded();
+    }
+
+    private static Map<Short, String> numbered(List<String> labels) {
+        Map<Short, String> entries = new HashMap<>();
+        for (int i = 0; i < labels.size(); i++) {
+            entries.put((short) (i + 1), labels.get(i));
+        }
+        return entries;
+    }
+}
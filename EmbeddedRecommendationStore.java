@@ -0,0 +1,72 @@
+package com.guvi.mindfulness.embedded;
+
+import com.guvi.mindfulness.dao.RecommendationStore;
+import com.guvi.mindfulness.model.MindfulnessCourse;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link RecommendationStore} over the {@link EmbeddedEngine}. The engine keeps no course table, so
+ * a fixed starter catalog is served, tagged with the category codes of {@link EmbeddedLookupStore}.
+ */
+final class EmbeddedRecommendationStore implements RecommendationStore {
+
+    private static final List<MindfulnessCourse> CATALOG = List.of(
+            course(1, "Breathing Basics", "Short daily breath practices for calm and clarity.", "Beginner", 140, 1),
+            course(2, "The Body Scan Journey", "Guided body scans to release tension.", "Beginner", 210, 2),
+            course(3, "Deep Focus", "Concentration training for work and study.", "Intermediate", 300, 3),
+            course(4, "Rest Well", "Wind-down routines and sleep meditations.", "Beginner", 180, 4),
+            course(5, "Stress Resilience", "Tools to notice and soften stress reactions.", "Intermediate", 240, 5),
+            course(6, "Everyday Gratitude", "Reflection practices that build appreciation.", "Beginner", 120, 6),
+            course(7, "Advanced Breathwork", "Longer pranayama sequences for experienced practitioners.", "Advanced", 360, 1),
+            course(8, "Silent Focus Retreat", "A week of extended sitting and noting practice.", "Advanced", 600, 3));
+
+    private final EmbeddedEngine engine;
+
+    EmbeddedRecommendationStore(EmbeddedEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public List<MindfulnessCourse> findCourses() {
+        return CATALOG;
+    }
+
+    @Override
+    public long maxUserId() {
+        return engine.read(engine::maxUserId);
+    }
+
+    @Override
+    public List<UsageRow> findUsage(long fromUserId, long toUserId, LocalDateTime since) {
+        return engine.read(() -> {
+            List<UsageRow> rows = new ArrayList<>();
+            for (EmbeddedEngine.UserRow user : engine.usersBetween(fromUserId, toUserId)) {
+                Map<Integer, long[]> usage = new LinkedHashMap<>();
+                for (EmbeddedEngine.SessionRow session : engine.sessionsOf(user.id(), since, null)) {
+                    long[] totals = usage.computeIfAbsent(session.categoryCode() << 16 | session.difficultyCode(),
+                            key -> new long[2]);
+                    totals[0]++;
+                    totals[1] += session.durationMinutes();
+                }
+                if (usage.isEmpty()) {
+                    rows.add(new UsageRow(user.id(), user.focusArea(), (short) 0, (short) 0, 0, 0));
+                }
+                usage.forEach((key, totals) -> rows.add(new UsageRow(user.id(), user.focusArea(),
+                        (short) (key >>> 16), (short) (key & 0xffff), (int) totals[0], totals[1])));
+            }
+            return rows;
+        });
+    }
+
+    private static MindfulnessCourse course(long id, String title, String description, String level,
+                                            int durationMinutes, int categoryCode) {
+        MindfulnessCourse course = new MindfulnessCourse(id, title, description, "Mindfulness Team", level, durationMinutes);
+        course.setCategoryCode((short) categoryCode);
+        return course;
+    }
+}
@@ -0,0 +1,205 @@
+package com.guvi.mindfulness.embedded;
+
+import com.guvi.mindfulness.dao.SessionProjection;
+import com.guvi.mindfulness.dao.SessionStore;
+import com.guvi.mindfulness.dao.UpdateResult;
+import com.guvi.mindfulness.model.LookupDictionary;
+import com.guvi.mindfulness.model.MindfulnessSession;
+import com.guvi.mindfulness.model.SessionSlot;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link SessionStore} over the {@link EmbeddedEngine}. Rows live in memory, so every projection
+ * returns fully populated sessions; the foreign keys of the MySQL table are checked on insert.
+ */
+final class EmbeddedSessionStore implements SessionStore {
+
+    private final EmbeddedEngine engine;
+
+    EmbeddedSessionStore(EmbeddedEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public long insert(MindfulnessSession session) throws SQLException {
+        return engine.write(change -> {
+            if (engine.user(session.getUserId()) == null) {
+                throw EmbeddedEngine.constraintViolation("Cannot add or update a child row: unknown user_id "
+                        + session.getUserId());
+            }
+            requireCode(LookupDictionary.CATEGORIES, session.getCategoryCode(), "category_id");
+            requireCode(LookupDictionary.DIFFICULTIES, session.getDifficultyCode(), "difficulty_id");
+            if (session.getScheduledAt() == null) {
+                throw EmbeddedEngine.constraintViolation("Column 'scheduled_at' cannot be null");
+            }
+            long id = engine.nextSessionId();
+            change.putSession(id, new EmbeddedEngine.SessionRow(id, session.getUserId(), session.getTitle(),
+                    session.getDescription(), session.getDifficultyCode(), session.getCategoryCode(),
+                    session.getScheduledAt().truncatedTo(ChronoUnit.SECONDS), session.getDurationMinutes(),
+                    session.getReflectionNotes(), 0));
+            return id;
+        });
+    }
+
+    /**
+     * A transaction already holds the engine's write lock, which serializes every writer; only
+     * the existence check is left to do.
+     */
+    @Override
+    public Set<Long> lockOwners(Collection<Long> userIds) {
+        if (!engine.inTransaction()) {
+            throw new IllegalStateException("Owners can only be locked inside a transaction");
+        }
+        Set<Long> existing = new HashSet<>();
+        for (long userId : userIds) {
+            if (engine.user(userId) != null) {
+                existing.add(userId);
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    public MindfulnessSession findById(long id, SessionProjection projection) {
+        return engine.read(() -> toSession(engine.session(id)));
+    }
+
+    @Override
+    public List<MindfulnessSession> findByUser(long userId, SessionProjection projection) {
+        return findByUserBetween(userId, null, null, projection);
+    }
+
+    @Override
+    public List<MindfulnessSession> findByUserBetween(long userId, LocalDateTime from, LocalDateTime to,
+                                                      SessionProjection projection) {
+        return engine.read(() -> toSessions(engine.sessionsOf(userId, from, to)));
+    }
+
+    @Override
+    public List<MindfulnessSession> findByUserAndCategory(long userId, short categoryCode) {
+        return engine.read(() -> {
+            List<EmbeddedEngine.SessionRow> rows = engine.sessionsOf(userId, null, null);
+            rows.removeIf(row -> row.categoryCode() != categoryCode);
+            return toSessions(rows);
+        });
+    }
+
+    @Override
+    public List<MindfulnessSession> findByUserAndDifficulty(long userId, short difficultyCode) {
+        return engine.read(() -> {
+            List<EmbeddedEngine.SessionRow> rows = engine.sessionsOf(userId, null, null);
+            rows.removeIf(row -> row.difficultyCode() != difficultyCode);
+            return toSessions(rows);
+        });
+    }
+
+    @Override
+    public List<SessionSlot> findSlots(long userId, LocalDateTime from, LocalDateTime to) {
+        return engine.read(() -> {
+            List<EmbeddedEngine.SessionRow> rows = engine.sessionsOf(userId, from, to);
+            List<SessionSlot> slots = new ArrayList<>(rows.size());
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                EmbeddedEngine.SessionRow row = rows.get(i);
+                slots.add(SessionSlot.of(row.id(), row.scheduledAt(), row.durationMinutes()));
+            }
+            return slots;
+        });
+    }
+
+    @Override
+    public List<DayMinutes> findDailyMinutes(long userId) {
+        return engine.read(() -> {
+            List<EmbeddedEngine.SessionRow> rows = engine.sessionsOf(userId, null, null);
+            List<DayMinutes> days = new ArrayList<>();
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                EmbeddedEngine.SessionRow row = rows.get(i);
+                LocalDate day = row.scheduledAt().toLocalDate();
+                int last = days.size() - 1;
+                if (last >= 0 && days.get(last).day().equals(day)) {
+                    days.set(last, new DayMinutes(day, days.get(last).minutes() + row.durationMinutes()));
+                } else {
+                    days.add(new DayMinutes(day, row.durationMinutes()));
+                }
+            }
+            return days;
+        });
+    }
+
+    @Override
+    public MindfulnessSession.SessionText findText(long sessionId) {
+        return engine.read(() -> {
+            EmbeddedEngine.SessionRow row = engine.session(sessionId);
+            return row == null ? null : new MindfulnessSession.SessionText(row.description(), row.reflectionNotes());
+        });
+    }
+
+    @Override
+    public UpdateResult updateReflection(long sessionId, String notes, int durationMinutes, int expectedVersion)
+            throws SQLException {
+        return engine.write(change -> {
+            EmbeddedEngine.SessionRow current = engine.session(sessionId);
+            if (current == null) {
+                return UpdateResult.NOT_FOUND;
+            }
+            if (current.version() != expectedVersion) {
+                return UpdateResult.CONFLICT;
+            }
+            change.putSession(sessionId, new EmbeddedEngine.SessionRow(current.id(), current.userId(), current.title(),
+                    current.description(), current.difficultyCode(), current.categoryCode(), current.scheduledAt(),
+                    durationMinutes, notes, current.version() + 1));
+            return UpdateResult.UPDATED;
+        });
+    }
+
+    @Override
+    public boolean delete(long sessionId) throws SQLException {
+        return engine.write(change -> {
+            if (engine.session(sessionId) == null) {
+                return false;
+            }
+            change.putSession(sessionId, null);
+            return true;
+        });
+    }
+
+    private static void requireCode(LookupDictionary dictionary, short code, String column) throws SQLException {
+        if (code != LookupDictionary.NONE && !dictionary.contains(code)) {
+            throw EmbeddedEngine.constraintViolation("Cannot add or update a child row: unknown " + column + " " + code);
+        }
+    }
+
+    private static List<MindfulnessSession> toSessions(List<EmbeddedEngine.SessionRow> rows) {
+        List<MindfulnessSession> sessions = new ArrayList<>(rows.size());
+        for (EmbeddedEngine.SessionRow row : rows) {
+            sessions.add(toSession(row));
+        }
+        return sessions;
+    }
+
+    private static MindfulnessSession toSession(EmbeddedEngine.SessionRow row) {
+        if (row == null) {
+            return null;
+        }
+        MindfulnessSession session = new MindfulnessSession();
+        session.setId(row.id());
+        session.setUserId(row.userId());
+        session.setVersion(row.version());
+        session.setTitle(row.title());
+        session.setDescription(row.description());
+        session.setDifficultyCode(row.difficultyCode());
+        session.setCategoryCode(row.categoryCode());
+        session.setScheduledAt(row.scheduledAt());
+        session.setDurationMinutes(row.durationMinutes());
+        session.setReflectionNotes(row.reflectionNotes());
+        return session;
+    }
+}
@@ -0,0 +1,132 @@
+package com.guvi.mindfulness.embedded;
+
+import com.guvi.mindfulness.dao.UpdateResult;
+import com.guvi.mindfulness.dao.UserStore;
+import com.guvi.mindfulness.model.User;
+import com.guvi.mindfulness.model.UserSummary;
+
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * {@link UserStore} over the {@link EmbeddedEngine}, with the same constraints as the MySQL table:
+ * unique e-mail and cascading delete of the user's sessions.
+ */
+final class EmbeddedUserStore implements UserStore {
+
+    private final EmbeddedEngine engine;
+
+    EmbeddedUserStore(EmbeddedEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public long insert(User user) throws SQLException {
+        return engine.write(change -> {
+            requireUniqueEmail(user.getEmail(), 0);
+            long id = engine.nextUserId();
+            change.putUser(id, new EmbeddedEngine.UserRow(id, user.getFullName(), user.getEmail(),
+                    user.getPassword(), user.getFocusArea(), 0));
+            return id;
+        });
+    }
+
+    @Override
+    public User findById(long id) {
+        return engine.read(() -> toUser(engine.user(id)));
+    }
+
+    @Override
+    public User findByEmail(String email) {
+        return engine.read(() -> {
+            Long id = engine.userIdByEmail(email);
+            return id == null ? null : toUser(engine.user(id));
+        });
+    }
+
+    @Override
+    public boolean emailExists(String email) {
+        return engine.read(() -> engine.userIdByEmail(email) != null);
+    }
+
+    @Override
+    public void scanEmails(Consumer<String> consumer) {
+        for (EmbeddedEngine.UserRow row : engine.read(engine::allUsers)) {
+            consumer.accept(row.email());
+        }
+    }
+
+    @Override
+    public void scanDirectory(Consumer<UserSummary> consumer) {
+        for (EmbeddedEngine.UserRow row : engine.read(engine::allUsers)) {
+            consumer.accept(new UserSummary(row.id(), row.fullName(), row.email()));
+        }
+    }
+
+    @Override
+    public UpdateResult update(User user) throws SQLException {
+        UpdateResult result = engine.write(change -> {
+            EmbeddedEngine.UserRow current = engine.user(user.getId());
+            if (current == null) {
+                return UpdateResult.NOT_FOUND;
+            }
+            if (current.version() != user.getVersion()) {
+                return UpdateResult.CONFLICT;
+            }
+            requireUniqueEmail(user.getEmail(), user.getId());
+            change.putUser(user.getId(), new EmbeddedEngine.UserRow(user.getId(), user.getFullName(), user.getEmail(),
+                    user.getPassword(), user.getFocusArea(), current.version() + 1));
+            return UpdateResult.UPDATED;
+        });
+        if (result == UpdateResult.UPDATED) {
+            user.setVersion(user.getVersion() + 1);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean updatePassword(long id, String expected, String replacement) throws SQLException {
+        return engine.write(change -> {
+            EmbeddedEngine.UserRow current = engine.user(id);
+            if (current == null || !current.password().equals(expected)) {
+                return false;
+            }
+            change.putUser(id, new EmbeddedEngine.UserRow(id, current.fullName(), current.email(), replacement,
+                    current.focusArea(), current.version()));
+            return true;
+        });
+    }
+
+    @Override
+    public boolean delete(long id) throws SQLException {
+        return engine.write(change -> {
+            if (engine.user(id) == null) {
+                return false;
+            }
+            for (EmbeddedEngine.SessionRow session : engine.sessionsOf(id, null, null)) {
+                change.putSession(session.id(), null);
+            }
+            change.putUser(id, null);
+            return true;
+        });
+    }
+
+    private void requireUniqueEmail(String email, long ownId) throws SQLException {
+        if (email == null) {
+            throw EmbeddedEngine.constraintViolation("Column 'email' cannot be null");
+        }
+        Long existing = engine.userIdByEmail(email);
+        if (existing != null && existing != ownId) {
+            throw EmbeddedEngine.constraintViolation("Duplicate entry '" + email + "' for key 'users.email'");
+        }
+    }
+
+    private static User toUser(EmbeddedEngine.UserRow row) {
+        if (row == null) {
+            return null;
+        }
+        User user = new User(row.id(), row.fullName(), row.email(), row.password(), row.focusArea());
+        user.setVersion(row.version());
+        return user;
+    }
+}
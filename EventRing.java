@@ -0,0 +1,119 @@
+package com.guvi.mindfulness.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer, single-consumer ring of preallocated {@link LogEvent}s.
+ * <p>
+ * A producer claims the next sequence with one CAS, fills the slot and publishes it by storing the
+ * sequence in the slot's marker. The consumer walks forward while markers match and only then
+ * hands the slots back. No locks are taken, and a producer never waits on the consumer unless it
+ * asks to block when the ring is full.
+ */
+final class EventRing {
+
+    private static final long BLOCK_PARK_NANOS = 50_000;
+
+    private final LogEvent[] events;
+    private final int mask;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private volatile long consumed = -1;
+
+    EventRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        events = new LogEvent[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            events[i] = new LogEvent();
+            published.set(i, -1);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Claims the next slot.
+     *
+     * @return its sequence, or {@code -1} if the ring is full
+     */
+    long tryClaim() {
+        while (true) {
+            long current = claimed.get();
+            long next = current + 1;
+            if (next - events.length > consumed) {
+                return -1;
+            }
+            if (claimed.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Claims the next slot, parking while the ring is full.
+     */
+    long claim() {
+        long sequence;
+        while ((sequence = tryClaim()) < 0) {
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        return sequence;
+    }
+
+    LogEvent slot(long sequence) {
+        return events[(int) sequence & mask];
+    }
+
+    /**
+     * Makes a filled slot visible to the consumer. Every claimed slot must be published.
+     */
+    void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+    }
+
+    /**
+     * Hands up to {@code maxBatch} published events to {@code handler} in sequence order, then
+     * releases their slots. Consumer thread only.
+     *
+     * @return the number of events handled
+     */
+    int drain(Handler handler, int maxBatch) {
+        long next = consumed + 1;
+        int handled = 0;
+        try {
+            while (handled < maxBatch && published.get((int) next & mask) == next) {
+                LogEvent event = events[(int) next & mask];
+                next++;
+                handled++;
+                handler.onEvent(event);
+                event.clear();
+            }
+        } finally {
+            // A handler failure still releases the slots, so one bad event cannot wedge the ring.
+            if (handled > 0) {
+                consumed = next - 1;
+            }
+        }
+        return handled;
+    }
+
+    /**
+     * Events claimed but not yet consumed.
+     */
+    long backlog() {
+        return claimed.get() - consumed;
+    }
+
+    int capacity() {
+        return events.length;
+    }
+
+    @FunctionalInterface
+    interface Handler {
+        void onEvent(LogEvent event);
+    }
+}
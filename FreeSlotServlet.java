@@ -0,0 +1,81 @@
+package com.guvi.mindfulness.servlet;
+
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
+import com.guvi.mindfulness.exception.ValidationException;
+import com.guvi.mindfulness.model.SessionSlot;
+import com.guvi.mindfulness.resilience.Deadline;
+import com.guvi.mindfulness.service.MindfulnessSessionService;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Suggests when a user could book a session, e.g.
+ * {@code /api/sessions/free-slot?userId=42&durationMinutes=20&after=2024-05-01T07:00}. Answers
+ * {@code {"start":"..","end":".."}}, or {@code 404} if the user is booked for the whole window
+ * ({@code withinDays}, default 7). {@code after} defaults to now.
+ */
+@WebServlet(name = "FreeSlotServlet", urlPatterns = "/api/sessions/free-slot", loadOnStartup = 1)
+public class FreeSlotServlet extends HttpServlet {
+
+    private static final int DEFAULT_WITHIN_DAYS = 7;
+
+    private transient MindfulnessSessionService sessionService;
+
+    @Override
+    public void init() throws ServletException {
+        this.sessionService = new MindfulnessSessionService(Storage.sessions());
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        long userId;
+        int durationMinutes;
+        int withinDays;
+        LocalDateTime after;
+        try {
+            userId = Long.parseLong(req.getParameter("userId"));
+            durationMinutes = Integer.parseInt(req.getParameter("durationMinutes"));
+            String days = req.getParameter("withinDays");
+            withinDays = days == null || days.isBlank() ? DEFAULT_WITHIN_DAYS : Integer.parseInt(days.trim());
+            String from = req.getParameter("after");
+            after = from == null || from.isBlank() ? LocalDateTime.now() : LocalDateTime.parse(from.trim());
+        } catch (NumberFormatException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"userId, durationMinutes and withinDays must be numbers\"}");
+            return;
+        } catch (DateTimeParseException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"after must be an ISO date-time such as 2024-05-01T07:30\"}");
+            return;
+        }
+        try (Deadline.Scope deadline = Deadline.startRequest()) {
+            SessionSlot slot = sessionService.nextFreeSlot(userId, after, durationMinutes, withinDays);
+            if (slot == null) {
+                resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                resp.getWriter().write("{\"error\":\"No free slot of " + durationMinutes + " minutes within "
+                        + withinDays + " days\"}");
+                return;
+            }
+            resp.getWriter().write("{\"start\":\"" + slot.start() + "\",\"end\":\"" + slot.end() + "\"}");
+        } catch (ValidationException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (ServiceUnavailableException e) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (Exception e) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\":\"Internal error\"}");
+        }
+    }
+}
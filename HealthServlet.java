@@ -0,0 +1,29 @@
+package com.guvi.mindfulness.servlet;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Readiness probe for the load balancer. Answers {@code 200} only after {@link WarmupListener}
+ * has finished; until then, or if warm-up keeps failing, it answers {@code 503}.
+ */
+@WebServlet(name = "HealthServlet", urlPatterns = "/health/ready", loadOnStartup = 1)
+public class HealthServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        resp.setHeader("Cache-Control", "no-store");
+        Readiness readiness = (Readiness) getServletContext().getAttribute(Readiness.ATTRIBUTE);
+        if (readiness == null || !readiness.isReady()) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+        String state = readiness == null ? Readiness.State.STARTING.name() : readiness.getState().name();
+        String detail = readiness == null ? "Warm-up not started" : readiness.getDetail();
+        resp.getWriter().write("{\"status\":\"" + state + "\",\"detail\":\"" + detail + "\"}");
+    }
+}
@@ -0,0 +1,245 @@
+package com.guvi.mindfulness.schedule;
+
+import com.guvi.mindfulness.model.SessionSlot;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Session slots of one user in an AVL tree ordered by start, where every node also stores the
+ * latest end in its subtree. That lets overlap queries skip whole subtrees that end before the
+ * queried range, so finding the first overlap is {@code O(log n)} and insert/remove stay
+ * {@code O(log n)}. Slots are keyed by session id, so re-inserting a session replaces it.
+ * <p>
+ * Not thread-safe.
+ */
+public final class IntervalTree {
+
+    private final Map<Long, Node> nodesById = new HashMap<>();
+    private Node root;
+
+    public int size() {
+        return nodesById.size();
+    }
+
+    public boolean contains(long sessionId) {
+        return nodesById.containsKey(sessionId);
+    }
+
+    public SessionSlot get(long sessionId) {
+        Node node = nodesById.get(sessionId);
+        return node == null ? null : node.slot;
+    }
+
+    public void insert(SessionSlot slot) {
+        remove(slot.sessionId());
+        Node node = new Node(slot);
+        nodesById.put(slot.sessionId(), node);
+        root = insert(root, node);
+    }
+
+    public boolean remove(long sessionId) {
+        Node node = nodesById.remove(sessionId);
+        if (node == null) {
+            return false;
+        }
+        root = remove(root, node.start, node.id);
+        return true;
+    }
+
+    /**
+     * The earliest-starting slot overlapping {@code [from, to)}, ignoring {@code ignoreSessionId}.
+     */
+    public SessionSlot firstOverlap(LocalDateTime from, LocalDateTime to, long ignoreSessionId) {
+        Node node = firstOverlap(root, seconds(from), seconds(to), ignoreSessionId);
+        return node == null ? null : node.slot;
+    }
+
+    /**
+     * Every slot overlapping {@code [from, to)}, ordered by start.
+     */
+    public List<SessionSlot> overlapping(LocalDateTime from, LocalDateTime to) {
+        List<SessionSlot> slots = new ArrayList<>();
+        collect(root, seconds(from), seconds(to), slots);
+        return slots;
+    }
+
+    /**
+     * Earliest start at or after {@code notBefore} where {@code durationMinutes} fit without
+     * overlapping any slot, or {@code null} if the slot would have to end after {@code searchUntil}.
+     */
+    public SessionSlot firstGap(LocalDateTime notBefore, int durationMinutes, LocalDateTime searchUntil) {
+        LocalDateTime candidate = notBefore;
+        while (!candidate.plusMinutes(durationMinutes).isAfter(searchUntil)) {
+            SessionSlot blocking = firstOverlap(candidate, candidate.plusMinutes(durationMinutes), 0);
+            if (blocking == null) {
+                return SessionSlot.of(0, candidate, durationMinutes);
+            }
+            // Nothing can start before the earliest blocker ends: it overlaps every earlier start.
+            candidate = blocking.end();
+        }
+        return null;
+    }
+
+    private static Node firstOverlap(Node node, long from, long to, long ignore) {
+        if (node == null || node.maxEnd <= from) {
+            return null;
+        }
+        Node left = firstOverlap(node.left, from, to, ignore);
+        if (left != null) {
+            return left;
+        }
+        if (node.start >= to) {
+            return null; // This node and the whole right subtree start too late
+        }
+        if (node.end > from && node.id != ignore) {
+            return node;
+        }
+        return firstOverlap(node.right, from, to, ignore);
+    }
+
+    private static void collect(Node node, long from, long to, List<SessionSlot> out) {
+        if (node == null || node.maxEnd <= from) {
+            return;
+        }
+        collect(node.left, from, to, out);
+        if (node.start >= to) {
+            return;
+        }
+        if (node.end > from) {
+            out.add(node.slot);
+        }
+        collect(node.right, from, to, out);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return rebalance(node);
+    }
+
+    private static Node remove(Node node, long start, long id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, id, node);
+        if (cmp < 0) {
+            node.left = remove(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, start, id);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return rebalance(node);
+    }
+
+    private static Node removeMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return rebalance(node);
+    }
+
+    private static Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int compare(long start, long id, Node node) {
+        int result = Long.compare(start, node.start);
+        return result != 0 ? result : Long.compare(id, node.id);
+    }
+
+    private static long seconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static final class Node {
+        final SessionSlot slot;
+        final long start;
+        final long end;
+        final long id;
+        long maxEnd;
+        int height = 1;
+        Node left;
+        Node right;
+
+        Node(SessionSlot slot) {
+            this.slot = slot;
+            this.start = seconds(slot.start());
+            this.end = seconds(slot.end());
+            this.id = slot.sessionId();
+            this.maxEnd = end;
+        }
+    }
+}
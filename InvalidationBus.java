@@ -0,0 +1,46 @@
+package com.guvi.mindfulness.cache;
+
+/**
+ * Channel that tells the other application nodes which cached session lists went stale.
+ * Delivery may be lossy; implementations report lost messages through {@link Listener#onMessagesLost()}
+ * so receivers can drop everything they cache.
+ */
+public interface InvalidationBus extends AutoCloseable {
+
+    /**
+     * Announces a write to peers. {@code userId} is {@code 0} when the writer does not know the owner.
+     */
+    void publish(long userId, long sessionId);
+
+    /**
+     * Starts delivering peers' announcements to {@code listener}. Own announcements are not delivered.
+     */
+    void start(Listener listener);
+
+    @Override
+    void close();
+
+    interface Listener {
+
+        void onInvalidate(long userId, long sessionId);
+
+        void onMessagesLost();
+    }
+
+    /**
+     * Bus for a single node: nothing to tell anyone.
+     */
+    InvalidationBus LOCAL = new InvalidationBus() {
+        @Override
+        public void publish(long userId, long sessionId) {
+        }
+
+        @Override
+        public void start(Listener listener) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+}
@@ -0,0 +1,146 @@
+package com.guvi.mindfulness.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory-mapped journal file holding a fixed number of fixed-size records. The file is
+ * preallocated to its full size when created, so appends are plain memory writes and the
+ * position of any offset is computed, never searched.
+ * <pre>
+ * header : magic(4) reserved(4) baseOffset(8)
+ * record : offset(8) timestamp(8) entityId(8) userId(8) version(4) entity(1) operation(1) reserved(2) crc(4) reserved(4)
+ * </pre>
+ * The CRC covers the first 40 bytes of a record; a record whose CRC or offset does not match
+ * marks the end of the written data after a crash.
+ */
+final class JournalSegment {
+
+    static final int MAGIC = 0x4D434A31; // "MCJ1"
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 48;
+    private static final int CRC_POSITION = 40;
+
+    private static final ChangeRecord.Entity[] ENTITIES = ChangeRecord.Entity.values();
+    private static final ChangeRecord.Operation[] OPERATIONS = ChangeRecord.Operation.values();
+
+    private final Path path;
+    private final long baseOffset;
+    private final int capacity;
+    private final MappedByteBuffer buffer;
+    private int count;
+
+    private JournalSegment(Path path, long baseOffset, int capacity, MappedByteBuffer buffer) {
+        this.path = path;
+        this.baseOffset = baseOffset;
+        this.capacity = capacity;
+        this.buffer = buffer;
+    }
+
+    static JournalSegment create(Path path, long baseOffset, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putLong(8, baseOffset);
+            buffer.force();
+            return new JournalSegment(path, baseOffset, capacity, buffer);
+        }
+    }
+
+    /**
+     * Maps an existing segment and counts the valid records in it.
+     */
+    static JournalSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + RECORD_SIZE) {
+                throw new IOException("Truncated change journal segment " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a change journal segment: " + path);
+            }
+            JournalSegment segment = new JournalSegment(path, buffer.getLong(8),
+                    (int) ((size - HEADER_SIZE) / RECORD_SIZE), buffer);
+            while (segment.count < segment.capacity && segment.isValid(segment.count)) {
+                segment.count++;
+            }
+            return segment;
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long baseOffset() {
+        return baseOffset;
+    }
+
+    /**
+     * Offset the next appended record will get.
+     */
+    long nextOffset() {
+        return baseOffset + count;
+    }
+
+    boolean isFull() {
+        return count == capacity;
+    }
+
+    /**
+     * Writes a record into the mapping. Not durable until {@link #force()}; callers serialize appends.
+     */
+    long append(long timestampMillis, ChangeRecord.Entity entity, ChangeRecord.Operation operation,
+                long entityId, long userId, int version) {
+        long offset = nextOffset();
+        int position = HEADER_SIZE + count * RECORD_SIZE;
+        buffer.putLong(position, offset);
+        buffer.putLong(position + 8, timestampMillis);
+        buffer.putLong(position + 16, entityId);
+        buffer.putLong(position + 24, userId);
+        buffer.putInt(position + 32, version);
+        buffer.put(position + 36, (byte) entity.ordinal());
+        buffer.put(position + 37, (byte) operation.ordinal());
+        buffer.putInt(position + CRC_POSITION, checksum(position));
+        count++;
+        return offset;
+    }
+
+    ChangeRecord read(long offset) {
+        int position = HEADER_SIZE + (int) (offset - baseOffset) * RECORD_SIZE;
+        return new ChangeRecord(
+                buffer.getLong(position),
+                Instant.ofEpochMilli(buffer.getLong(position + 8)),
+                ENTITIES[buffer.get(position + 36)],
+                OPERATIONS[buffer.get(position + 37)],
+                buffer.getLong(position + 16),
+                buffer.getLong(position + 24),
+                buffer.getInt(position + 32));
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    private boolean isValid(int index) {
+        int position = HEADER_SIZE + index * RECORD_SIZE;
+        return buffer.getLong(position) == baseOffset + index
+                && buffer.getInt(position + CRC_POSITION) == checksum(position)
+                && (buffer.get(position + 36) & 0xFF) < ENTITIES.length
+                && (buffer.get(position + 37) & 0xFF) < OPERATIONS.length;
+    }
+
+    private int checksum(int position) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(position, CRC_POSITION));
+        return (int) crc.getValue();
+    }
+}
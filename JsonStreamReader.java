@@ -0,0 +1,288 @@
+package com.guvi.mindfulness.servlet;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal pull parser for JSON request bodies. It reads straight from the request reader one
+ * character at a time, so an array of any length is processed without holding the body in memory;
+ * only the current value is buffered, and strings are capped at {@value #MAX_STRING_LENGTH} chars.
+ * <p>
+ * Usage mirrors the shape of the document: {@code beginArray()}, {@code hasNext()} before each
+ * element, {@code endArray()}. Errors are reported as {@link MalformedJsonException} with the
+ * character offset.
+ */
+final class JsonStreamReader {
+
+    static final int MAX_STRING_LENGTH = 64 * 1024;
+    private static final int MAX_DEPTH = 32;
+    private static final int MAX_FIELDS = 64;
+
+    private final Reader in;
+    private final int[] counts = new int[MAX_DEPTH];
+    private int depth;
+    private int peeked = -2;
+    private long offset;
+
+    JsonStreamReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Next non-whitespace character without consuming it, or {@code -1} at the end of the body.
+     */
+    int peek() throws IOException {
+        if (peeked == -2) {
+            int c;
+            do {
+                c = in.read();
+                offset++;
+            } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+            peeked = c;
+        }
+        return peeked;
+    }
+
+    void beginArray() throws IOException {
+        open('[');
+    }
+
+    void endArray() throws IOException {
+        close(']');
+    }
+
+    void beginObject() throws IOException {
+        open('{');
+    }
+
+    void endObject() throws IOException {
+        close('}');
+    }
+
+    /**
+     * Consumes the separator before the next element of the current array or object.
+     *
+     * @return {@code false} once the container's closing bracket is next
+     */
+    boolean hasNext() throws IOException {
+        int c = peek();
+        if (c == ']' || c == '}') {
+            return false;
+        }
+        if (counts[depth] > 0) {
+            expect(',');
+        }
+        counts[depth]++;
+        return true;
+    }
+
+    String nextName() throws IOException {
+        if (peek() != '"') {
+            throw syntaxError("Expected a field name");
+        }
+        String name = readString();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * Reads a string, number or boolean as text; {@code null} for JSON {@code null}. Number
+     * literals are returned verbatim for the caller to convert.
+     */
+    String nextScalar() throws IOException {
+        int c = peek();
+        if (c == '"') {
+            return readString();
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            return readNumber();
+        }
+        if (c == 't' || c == 'f' || c == 'n') {
+            String literal = readLiteral();
+            return literal.equals("null") ? null : literal;
+        }
+        throw syntaxError(c == '{' || c == '[' ? "Expected a plain value, not a nested object or array" : "Unexpected character");
+    }
+
+    /**
+     * Skips one value of any shape.
+     */
+    void skipValue() throws IOException {
+        int c = peek();
+        if (c == '{') {
+            beginObject();
+            while (hasNext()) {
+                nextName();
+                skipValue();
+            }
+            endObject();
+        } else if (c == '[') {
+            beginArray();
+            while (hasNext()) {
+                skipValue();
+            }
+            endArray();
+        } else {
+            nextScalar();
+        }
+    }
+
+    /**
+     * Reads an object whose fields are plain values. Nested objects and arrays are skipped.
+     */
+    Map<String, String> nextFlatObject() throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        beginObject();
+        while (hasNext()) {
+            String name = nextName();
+            int c = peek();
+            if (c == '{' || c == '[') {
+                skipValue();
+            } else if (fields.size() < MAX_FIELDS) {
+                fields.put(name, nextScalar());
+            } else {
+                throw syntaxError("Too many fields in one object");
+            }
+        }
+        endObject();
+        return fields;
+    }
+
+    /**
+     * Verifies nothing but whitespace follows the top-level value.
+     */
+    void endDocument() throws IOException {
+        if (peek() != -1) {
+            throw syntaxError("Unexpected content after the JSON value");
+        }
+    }
+
+    private void open(char bracket) throws IOException {
+        expect(bracket);
+        if (++depth == MAX_DEPTH) {
+            throw syntaxError("JSON is nested too deeply");
+        }
+        counts[depth] = 0;
+    }
+
+    private void close(char bracket) throws IOException {
+        expect(bracket);
+        depth--;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (peek() != expected) {
+            throw syntaxError("Expected '" + expected + "'");
+        }
+        peeked = -2;
+    }
+
+    private int read() throws IOException {
+        int c = in.read();
+        offset++;
+        if (c == -1) {
+            throw syntaxError("Unexpected end of input");
+        }
+        return c;
+    }
+
+    private String readString() throws IOException {
+        peeked = -2; // opening quote
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c == '\\') {
+                c = readEscape();
+            } else if (c < 0x20) {
+                throw syntaxError("Control character in string");
+            }
+            if (value.length() == MAX_STRING_LENGTH) {
+                throw syntaxError("String longer than " + MAX_STRING_LENGTH + " characters");
+            }
+            value.append((char) c);
+        }
+    }
+
+    private int readEscape() throws IOException {
+        int c = read();
+        return switch (c) {
+            case '"', '\\', '/' -> c;
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case 'u' -> {
+                int code = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid \\u escape");
+                    }
+                    code = code * 16 + digit;
+                }
+                yield code;
+            }
+            default -> throw syntaxError("Invalid escape sequence");
+        };
+    }
+
+    private String readNumber() throws IOException {
+        StringBuilder number = new StringBuilder();
+        number.append((char) peeked);
+        peeked = -2;
+        while (true) {
+            int c = in.read();
+            offset++;
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                if (number.length() == 64) {
+                    throw syntaxError("Number literal too long");
+                }
+                number.append((char) c);
+            } else {
+                peeked = c;
+                if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                    peeked = -2;
+                }
+                return number.toString();
+            }
+        }
+    }
+
+    private String readLiteral() throws IOException {
+        char[] expected = switch (peeked) {
+            case 't' -> "true".toCharArray();
+            case 'f' -> "false".toCharArray();
+            default -> "null".toCharArray();
+        };
+        peeked = -2;
+        char[] actual = new char[expected.length];
+        actual[0] = expected[0];
+        for (int i = 1; i < expected.length; i++) {
+            actual[i] = (char) read();
+        }
+        if (!Arrays.equals(expected, actual)) {
+            throw syntaxError("Invalid literal");
+        }
+        return new String(actual);
+    }
+
+    private MalformedJsonException syntaxError(String message) {
+        return new MalformedJsonException(message + " at offset " + Math.max(0, offset - 1));
+    }
+
+    /**
+     * The body is not valid JSON, or not in the expected shape.
+     */
+    static final class MalformedJsonException extends IOException {
+        MalformedJsonException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.guvi.mindfulness.servlet;
+
+/**
+ * String quoting for the JSON that servlets write by hand.
+ */
+final class JsonStrings {
+
+    private JsonStrings() {
+    }
+
+    /**
+     * {@code value} as a JSON string literal, or {@code null} for a null value.
+     */
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
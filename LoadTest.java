@@ -0,0 +1,291 @@
+package com.guvi.mindfulness.loadtest;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a weighted mix of register / schedule / list traffic against a deployed instance and
+ * reports throughput and latency percentiles as JSON. Configured by {@link LoadTestConfig}.
+ * <p>
+ * Latency is measured from the moment a request was <em>meant</em> to start, not from when it was
+ * actually sent. In open-loop mode requests are issued asynchronously at a fixed rate; in closed-loop
+ * mode each worker paces itself to one request every {@code LOADTEST_PACING_MS}. Either way a
+ * server stall is charged to every request it delayed, which avoids coordinated omission. The
+ * uncorrected service time is reported alongside for comparison.
+ * <p>
+ * Example: {@code java -DLOADTEST_MODE=open -DLOADTEST_RATE=500 -DDB_HOST=localhost ... LoadTest}
+ */
+public final class LoadTest {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LoadTestConfig config;
+    private final List<Long> userIds;
+    private final HttpClient client;
+    private final LoadTestConfig.Operation[] wheel;
+    private final AtomicLong registrations = new AtomicLong();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private volatile Stats stats = new Stats();
+
+    LoadTest(LoadTestConfig config, List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            throw new IllegalStateException("No users to drive traffic for; seed some first");
+        }
+        this.config = config;
+        this.userIds = userIds;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors())))
+                .build();
+        this.wheel = buildWheel(config.mix());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        List<Long> userIds;
+        if (config.seedUsers() > 0) {
+            long started = System.nanoTime();
+            userIds = LoadTestSeeder.seed(config.seedUsers(), config.seedSessionsPerUser(), config.randomSeed());
+            System.err.printf("Seeded %d users in %d ms%n", userIds.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } else {
+            userIds = existingUsers();
+        }
+        String report = new LoadTest(config, userIds).run();
+        if (config.output() != null) {
+            Files.writeString(Paths.get(config.output()), report);
+        } else {
+            System.out.println(report);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Runs the warm-up phase, discards its numbers, then runs the measured phase.
+     *
+     * @return the JSON report of the measured phase
+     */
+    String run() throws InterruptedException {
+        if (config.warmupSeconds() > 0) {
+            drive(config.warmupSeconds());
+        }
+        stats = new Stats();
+        long started = System.nanoTime();
+        drive(config.durationSeconds());
+        return stats.toJson(config, System.nanoTime() - started);
+    }
+
+    private void drive(int seconds) throws InterruptedException {
+        if (config.openLoop()) {
+            driveOpenLoop(seconds);
+        } else {
+            driveClosedLoop(seconds);
+        }
+    }
+
+    /**
+     * Issues requests at a fixed arrival rate regardless of how fast the server answers.
+     */
+    private void driveOpenLoop(int seconds) {
+        SplittableRandom random = new SplittableRandom(config.randomSeed());
+        long interval = TimeUnit.SECONDS.toNanos(1) / config.rate();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+        for (long intended = start; intended < end; intended += interval) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            LoadTestConfig.Operation operation = pick(random);
+            long scheduledAt = intended;
+            long sentAt = System.nanoTime();
+            inFlight.add(client.sendAsync(request(operation, random), HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        stats.record(operation, scheduledAt, sentAt, System.nanoTime(),
+                                error == null && response.statusCode() < 400);
+                        return null;
+                    }));
+            if (inFlight.size() >= 10_000) {
+                inFlight.removeIf(CompletableFuture::isDone);
+            }
+        }
+        CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    /**
+     * Runs a fixed number of workers, each sending one request at a time on a fixed pacing schedule.
+     */
+    private void driveClosedLoop(int seconds) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(config.concurrency());
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long pacing = TimeUnit.MILLISECONDS.toNanos(config.pacingMillis());
+        for (int w = 0; w < config.concurrency(); w++) {
+            SplittableRandom random = new SplittableRandom(config.randomSeed() + w);
+            workers.submit(() -> {
+                for (long intended = start; intended < end && System.nanoTime() < end; intended += pacing) {
+                    long wait = intended - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    LoadTestConfig.Operation operation = pick(random);
+                    long sentAt = System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = client.send(request(operation, random), HttpResponse.BodyHandlers.discarding())
+                                .statusCode() < 400;
+                    } catch (IOException e) {
+                        ok = false;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    stats.record(operation, intended, sentAt, System.nanoTime(), ok);
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(seconds + REQUEST_TIMEOUT.toSeconds() + 60, TimeUnit.SECONDS);
+    }
+
+    private HttpRequest request(LoadTestConfig.Operation operation, SplittableRandom random) {
+        long userId = userIds.get(random.nextInt(userIds.size()));
+        return switch (operation) {
+            case REGISTER -> form("api/register", Map.of(
+                    "fullName", "Load Test User",
+                    "email", "loadtest-" + runId + "-r" + registrations.incrementAndGet() + "@example.test",
+                    "password", "loadtest-password",
+                    "focusArea", "Focus"));
+            case SCHEDULE -> form("api/sessions", Map.of(
+                    "userId", Long.toString(userId),
+                    "title", "Load test session",
+                    "category", "Breath",
+                    "difficulty", "Beginner",
+                    "scheduledAt", LocalDate.now().plusDays(1 + random.nextInt(30)).atTime(7, 30).toString(),
+                    "durationMinutes", Integer.toString(5 + random.nextInt(40))));
+            case LIST -> HttpRequest.newBuilder(config.baseUri().resolve("api/sessions?userId=" + userId))
+                    .timeout(REQUEST_TIMEOUT)
+                    .GET()
+                    .build();
+        };
+    }
+
+    private HttpRequest form(String path, Map<String, String> fields) {
+        StringBuilder body = new StringBuilder();
+        fields.forEach((name, value) -> body.append(body.length() > 0 ? "&" : "")
+                .append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8)));
+        return HttpRequest.newBuilder(config.baseUri().resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    private LoadTestConfig.Operation pick(SplittableRandom random) {
+        return wheel[random.nextInt(wheel.length)];
+    }
+
+    private static LoadTestConfig.Operation[] buildWheel(Map<LoadTestConfig.Operation, Integer> mix) {
+        List<LoadTestConfig.Operation> wheel = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                wheel.add(operation);
+            }
+        });
+        return wheel.toArray(new LoadTestConfig.Operation[0]);
+    }
+
+    private static List<Long> existingUsers() throws SQLException {
+        return LoadTestSeeder.existingUserIds(10_000);
+    }
+
+    /**
+     * Per-phase counters. Recording is lock-free so the driver threads never contend.
+     */
+    private static final class Stats {
+        private final Map<LoadTestConfig.Operation, LatencyHistogram> latency = new EnumMap<>(LoadTestConfig.Operation.class);
+        private final Map<LoadTestConfig.Operation, AtomicLong> errors = new EnumMap<>(LoadTestConfig.Operation.class);
+        private final LatencyHistogram overall = new LatencyHistogram();
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+
+        Stats() {
+            for (LoadTestConfig.Operation operation : LoadTestConfig.Operation.values()) {
+                latency.put(operation, new LatencyHistogram());
+                errors.put(operation, new AtomicLong());
+            }
+        }
+
+        void record(LoadTestConfig.Operation operation, long intendedNanos, long sentNanos, long doneNanos, boolean ok) {
+            long corrected = TimeUnit.NANOSECONDS.toMicros(doneNanos - intendedNanos);
+            latency.get(operation).record(corrected);
+            overall.record(corrected);
+            serviceTime.record(TimeUnit.NANOSECONDS.toMicros(doneNanos - sentNanos));
+            if (!ok) {
+                errors.get(operation).incrementAndGet();
+            }
+        }
+
+        String toJson(LoadTestConfig config, long elapsedNanos) {
+            double seconds = elapsedNanos / 1e9;
+            long totalErrors = errors.values().stream().mapToLong(AtomicLong::get).sum();
+            StringBuilder json = new StringBuilder(1024);
+            json.append("{\"mode\":\"").append(config.openLoop() ? "open" : "closed").append('"')
+                    .append(config.openLoop() ? ",\"targetRate\":" + config.rate() : ",\"concurrency\":" + config.concurrency())
+                    .append(",\"durationSeconds\":").append(String.format("%.1f", seconds))
+                    .append(",\"requests\":").append(overall.count())
+                    .append(",\"errors\":").append(totalErrors)
+                    .append(",\"throughput\":").append(String.format("%.1f", overall.count() / seconds))
+                    .append(",\"latencyMicros\":");
+            appendPercentiles(json, overall);
+            json.append(",\"serviceTimeMicros\":");
+            appendPercentiles(json, serviceTime);
+            json.append(",\"operations\":{");
+            boolean first = true;
+            for (LoadTestConfig.Operation operation : LoadTestConfig.Operation.values()) {
+                LatencyHistogram histogram = latency.get(operation);
+                if (histogram.count() == 0) {
+                    continue;
+                }
+                json.append(first ? "" : ",").append('"').append(operation.name().toLowerCase()).append("\":{")
+                        .append("\"requests\":").append(histogram.count())
+                        .append(",\"errors\":").append(errors.get(operation).get())
+                        .append(",\"latencyMicros\":");
+                appendPercentiles(json, histogram);
+                json.append('}');
+                first = false;
+            }
+            return json.append("}}").toString();
+        }
+
+        private static void appendPercentiles(StringBuilder json, LatencyHistogram histogram) {
+            json.append("{\"p50\":").append(histogram.percentile(50))
+                    .append(",\"p90\":").append(histogram.percentile(90))
+                    .append(",\"p99\":").append(histogram.percentile(99))
+                    .append(",\"p99.9\":").append(histogram.percentile(99.9))
+                    .append(",\"max\":").append(histogram.max())
+                    .append('}');
+        }
+    }
+}
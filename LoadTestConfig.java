@@ -0,0 +1,71 @@
+package com.guvi.mindfulness.loadtest;
+
+import java.net.URI;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Load-test settings, read from system properties:
+ * <ul>
+ *     <li>{@code LOADTEST_BASE_URL} - deployed application, default {@code http://localhost:8080/mindfulness-platform}</li>
+ *     <li>{@code LOADTEST_MODE} - {@code open} (fixed arrival rate) or {@code closed} (fixed concurrency), default open</li>
+ *     <li>{@code LOADTEST_RATE} - requests per second in open mode, default 200</li>
+ *     <li>{@code LOADTEST_CONCURRENCY} - workers in closed mode, default 16</li>
+ *     <li>{@code LOADTEST_PACING_MS} - per-worker interval between request starts in closed mode, default 10</li>
+ *     <li>{@code LOADTEST_WARMUP_SECONDS} / {@code LOADTEST_DURATION_SECONDS} - default 10 / 60</li>
+ *     <li>{@code LOADTEST_MIX} - operation weights, default {@code register=1,schedule=3,list=6}</li>
+ *     <li>{@code LOADTEST_SEED_USERS} / {@code LOADTEST_SEED_SESSIONS_PER_USER} - rows inserted before the run, default 1000 / 20</li>
+ *     <li>{@code LOADTEST_RANDOM_SEED} - makes the traffic mix reproducible, default 42</li>
+ *     <li>{@code LOADTEST_OUTPUT} - file for the JSON report, stdout when unset</li>
+ * </ul>
+ */
+record LoadTestConfig(URI baseUri, boolean openLoop, int rate, int concurrency, long pacingMillis,
+                      int warmupSeconds, int durationSeconds, Map<Operation, Integer> mix,
+                      int seedUsers, int seedSessionsPerUser, long randomSeed, String output) {
+
+    enum Operation {
+        REGISTER,
+        SCHEDULE,
+        LIST
+    }
+
+    static LoadTestConfig fromSystemProperties() {
+        String mode = System.getProperty("LOADTEST_MODE", "open");
+        if (!mode.equals("open") && !mode.equals("closed")) {
+            throw new IllegalArgumentException("LOADTEST_MODE must be open or closed");
+        }
+        String baseUrl = System.getProperty("LOADTEST_BASE_URL", "http://localhost:8080/mindfulness-platform");
+        return new LoadTestConfig(
+                URI.create(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/"),
+                mode.equals("open"),
+                Integer.getInteger("LOADTEST_RATE", 200),
+                Integer.getInteger("LOADTEST_CONCURRENCY", 16),
+                Long.getLong("LOADTEST_PACING_MS", 10),
+                Integer.getInteger("LOADTEST_WARMUP_SECONDS", 10),
+                Integer.getInteger("LOADTEST_DURATION_SECONDS", 60),
+                parseMix(System.getProperty("LOADTEST_MIX", "register=1,schedule=3,list=6")),
+                Integer.getInteger("LOADTEST_SEED_USERS", 1000),
+                Integer.getInteger("LOADTEST_SEED_SESSIONS_PER_USER", 20),
+                Long.getLong("LOADTEST_RANDOM_SEED", 42),
+                System.getProperty("LOADTEST_OUTPUT"));
+    }
+
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid LOADTEST_MIX entry: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in LOADTEST_MIX: " + part);
+            }
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase()), weight);
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("LOADTEST_MIX needs at least one positive weight");
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,141 @@
+package com.guvi.mindfulness.loadtest;
+
+import com.guvi.mindfulness.dao.SessionLookupDAO;
+import com.guvi.mindfulness.jdbc.DBConnection;
+import com.guvi.mindfulness.jdbc.UnitOfWork;
+import com.guvi.mindfulness.model.LookupDictionary;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fills the database configured through {@code DB_*} system properties with synthetic users and
+ * sessions before a load test, committing in batches so seeding a large data set stays fast.
+ * Seeded e-mails start with {@code loadtest-} so the rows are easy to find and remove.
+ */
+final class LoadTestSeeder {
+
+    private static final int BATCH_SIZE = 1_000;
+
+    private static final String INSERT_USER_SQL = """
+            INSERT INTO users(full_name, email, password, focus_area)
+            VALUES(?, ?, ?, ?)
+            """;
+
+    private static final String INSERT_SESSION_SQL = """
+            INSERT INTO mindfulness_sessions(user_id, title, difficulty_id, category_id, scheduled_at, duration_minutes)
+            VALUES(?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String SELECT_USER_IDS_SQL = "SELECT id FROM users ORDER BY id LIMIT ?";
+
+    private LoadTestSeeder() {
+    }
+
+    /**
+     * Inserts the users and their sessions.
+     *
+     * @return ids of the inserted users
+     */
+    static List<Long> seed(int users, int sessionsPerUser, long randomSeed) throws SQLException {
+        new SessionLookupDAO().ensureLoaded();
+        short[] categories = codes(LookupDictionary.CATEGORIES, "Breath", "Body Scan", "Focus", "Sleep", "Stress");
+        short[] difficulties = codes(LookupDictionary.DIFFICULTIES, "Beginner", "Intermediate", "Advanced");
+        Random random = new Random(randomSeed);
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        List<Long> userIds = new ArrayList<>(users);
+        for (int start = 0; start < users; start += BATCH_SIZE) {
+            int end = Math.min(users, start + BATCH_SIZE);
+            try (UnitOfWork work = UnitOfWork.begin();
+                 Connection connection = DBConnection.getConnection()) {
+                List<Long> batchIds = insertUsers(connection, run, start, end);
+                insertSessions(connection, batchIds, sessionsPerUser, categories, difficulties, random);
+                work.commit();
+                userIds.addAll(batchIds);
+            }
+        }
+        return userIds;
+    }
+
+    /**
+     * Ids of users already in the database, for runs that skip seeding.
+     */
+    static List<Long> existingUserIds(int limit) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (Connection connection = DBConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_USER_IDS_SQL)) {
+            statement.setInt(1, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static List<Long> insertUsers(Connection connection, String run, int start, int end) throws SQLException {
+        List<Long> ids = new ArrayList<>(end - start);
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_USER_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = start; i < end; i++) {
+                statement.setString(1, "Load Test User " + i);
+                statement.setString(2, "loadtest-" + run + "-" + i + "@example.test");
+                statement.setString(3, "loadtest-password");
+                statement.setString(4, "Focus");
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                while (keys.next()) {
+                    ids.add(keys.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static void insertSessions(Connection connection, List<Long> userIds, int sessionsPerUser,
+                                       short[] categories, short[] difficulties, Random random) throws SQLException {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_SESSION_SQL)) {
+            int pending = 0;
+            for (long userId : userIds) {
+                for (int i = 0; i < sessionsPerUser; i++) {
+                    statement.setLong(1, userId);
+                    statement.setString(2, "Seeded session " + i);
+                    statement.setShort(3, difficulties[random.nextInt(difficulties.length)]);
+                    statement.setShort(4, categories[random.nextInt(categories.length)]);
+                    statement.setTimestamp(5, Timestamp.valueOf(now.minusHours(random.nextInt(24 * 365))));
+                    statement.setInt(6, 5 + random.nextInt(40));
+                    statement.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        statement.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    private static short[] codes(LookupDictionary dictionary, String... labels) {
+        short[] codes = new short[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            codes[i] = dictionary.code(labels[i]);
+            if (codes[i] <= LookupDictionary.NONE) {
+                throw new IllegalStateException("Lookup table is missing seed label " + labels[i]);
+            }
+        }
+        return codes;
+    }
+}
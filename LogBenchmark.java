@@ -0,0 +1,120 @@
+package com.guvi.mindfulness.loadtest;
+
+import com.guvi.mindfulness.logging.AsyncLog;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures what logging costs a request thread: {@link AsyncLog#access} against formatting and
+ * writing the same line synchronously under a lock, the way a plain file logger would. Each of
+ * {@code LOGBENCH_THREADS} (default 4) threads logs {@code LOGBENCH_EVENTS} (default 1000000)
+ * events per variant; per-call latency percentiles in nanoseconds, throughput and dropped events
+ * are printed as JSON. Timing each call adds the cost of two {@code nanoTime} reads (about 40 ns).
+ * <p>
+ * Example: {@code java -DLOGBENCH_THREADS=8 -DACCESS_LOG_OVERFLOW=drop ... LogBenchmark}
+ */
+public final class LogBenchmark {
+
+    private static final String METHOD = "GET";
+    private static final String ENDPOINT = "/api/sessions";
+    private static final String REMOTE = "10.0.0.1";
+
+    private LogBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("LOGBENCH_THREADS", 4);
+        int events = Integer.getInteger("LOGBENCH_EVENTS", 1_000_000);
+        Path directory = Files.createTempDirectory("logbench");
+        AsyncLog.Overflow overflow = AsyncLog.Overflow.valueOf(System.getProperty("ACCESS_LOG_OVERFLOW", "DROP").toUpperCase());
+
+        AsyncLog async = new AsyncLog(directory.resolve("async"), Integer.getInteger("LOG_RING_SIZE", 1 << 16),
+                overflow, AsyncLog.Overflow.BLOCK, 64L << 20, 5);
+        Result asyncResult = run(threads, events, i -> async.access(METHOD, ENDPOINT, REMOTE, i, 200, 1_500_000, 12));
+        async.close();
+
+        Files.createDirectories(directory.resolve("sync"));
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(directory.resolve("sync").resolve("access.log"),
+                StandardCharsets.UTF_8))) {
+            Result syncResult = run(threads, events, i -> {
+                String line = "{\"ts\":\"" + Instant.now() + "\",\"method\":\"" + METHOD + "\",\"endpoint\":\"" + ENDPOINT
+                        + "\",\"remote\":\"" + REMOTE + "\",\"userId\":" + i + ",\"status\":200,\"latencyMicros\":1500,\"rows\":12}\n";
+                synchronized (writer) {
+                    try {
+                        writer.write(line);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            System.out.println("{\"threads\":" + threads + ",\"eventsPerThread\":" + events
+                    + ",\"overflow\":\"" + overflow.name().toLowerCase() + "\""
+                    + ",\"async\":" + asyncResult.toJson(async.droppedEvents())
+                    + ",\"synchronous\":" + syncResult.toJson(0) + "}");
+        }
+        deleteRecursively(directory);
+    }
+
+    private static Result run(int threads, int events, LogCall call) throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < events; i++) {
+                    long begin = System.nanoTime();
+                    call.log(i);
+                    histogram.record(System.nanoTime() - begin);
+                }
+            }, "logbench-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return new Result(histogram, System.nanoTime() - begin, (long) threads * events);
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (var files = Files.walk(directory)) {
+            for (Path file : files.sorted((a, b) -> b.getNameCount() - a.getNameCount()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface LogCall {
+        void log(long i);
+    }
+
+    private record Result(LatencyHistogram histogram, long elapsedNanos, long calls) {
+
+        String toJson(long dropped) {
+            return "{\"callsPerSecond\":" + Math.round(calls * 1e9 / elapsedNanos)
+                    + ",\"p50Nanos\":" + histogram.percentile(50)
+                    + ",\"p99Nanos\":" + histogram.percentile(99)
+                    + ",\"p999Nanos\":" + histogram.percentile(99.9)
+                    + ",\"maxNanos\":" + histogram.max()
+                    + ",\"dropped\":" + dropped + "}";
+        }
+    }
+}
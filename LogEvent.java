@@ -0,0 +1,42 @@
+package com.guvi.mindfulness.logging;
+
+/**
+ * One preallocated slot of the {@link EventRing}. Producers overwrite the fields in place, so
+ * publishing allocates nothing; string fields only hold references to strings that already exist
+ * (request method and path, enum names).
+ */
+final class LogEvent {
+
+    static final byte ACCESS = 1;
+    static final byte AUDIT = 2;
+
+    byte kind;
+    long timestampMillis;
+    String method;
+    String endpoint;
+    String remoteAddress;
+    long userId;
+
+    // Access events
+    int status;
+    long latencyNanos;
+    int rows;
+
+    // Audit events
+    String entity;
+    String operation;
+    long entityId;
+    int version;
+
+    /**
+     * Drops references once the consumer has written the event, so a quiet ring keeps no request
+     * data alive.
+     */
+    void clear() {
+        method = null;
+        endpoint = null;
+        remoteAddress = null;
+        entity = null;
+        operation = null;
+    }
+}
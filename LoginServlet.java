@@ -0,0 +1,71 @@
+package com.guvi.mindfulness.servlet;
+
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
+import com.guvi.mindfulness.model.User;
+import com.guvi.mindfulness.resilience.Deadline;
+import com.guvi.mindfulness.service.UserService;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+import java.io.IOException;
+
+/**
+ * Checks an e-mail and password ({@code POST /api/login}). Answers {@code {"userId":..}}, or
+ * {@code 401} without saying whether the e-mail or the password was wrong. When the password
+ * hashing pool is saturated the request is shed with {@code 503} and {@code Retry-After}.
+ * <p>
+ * A successful login starts a fresh HTTP session holding the user id, which endpoints that act
+ * on one user's own data read through {@link #signedInUser}.
+ */
+@WebServlet(name = "LoginServlet", urlPatterns = "/api/login", loadOnStartup = 1)
+public class LoginServlet extends HttpServlet {
+
+    private static final String SESSION_USER_ID = "userId";
+
+    private transient UserService userService;
+
+    @Override
+    public void init() throws ServletException {
+        this.userService = new UserService(Storage.users());
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        try (Deadline.Scope deadline = Deadline.startRequest()) {
+            User user = userService.authenticate(req.getParameter("email"), req.getParameter("password"));
+            if (user == null) {
+                resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                resp.getWriter().write("{\"error\":\"Invalid email or password\"}");
+                return;
+            }
+            req.setAttribute(AccessLogFilter.USER_ID, user.getId());
+            HttpSession previous = req.getSession(false);
+            if (previous != null) {
+                previous.invalidate();
+            }
+            req.getSession(true).setAttribute(SESSION_USER_ID, user.getId());
+            resp.getWriter().write("{\"message\":\"Login successful\",\"userId\":" + user.getId() + "}");
+        } catch (ServiceUnavailableException e) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (Exception e) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\":\"Internal error\"}");
+        }
+    }
+
+    /**
+     * The id of the user signed in on this request's session, or {@code null} if there is none.
+     */
+    static Long signedInUser(HttpServletRequest req) {
+        HttpSession session = req.getSession(false);
+        return session == null ? null : (Long) session.getAttribute(SESSION_USER_ID);
+    }
+}
@@ -0,0 +1,83 @@
+package com.guvi.mindfulness.model;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory code &lt;-&gt; label dictionary for the small lookup tables behind session
+ * categories and difficulty levels. Sessions keep only the compact {@code short} code and
+ * resolve the shared, interned label through this cache.
+ * <p>
+ * Each reload publishes a new immutable snapshot, so readers never lock.
+ */
+public final class LookupDictionary {
+
+    public static final LookupDictionary CATEGORIES = new LookupDictionary();
+    public static final LookupDictionary DIFFICULTIES = new LookupDictionary();
+
+    /** Code used when no label is set. */
+    public static final short NONE = 0;
+
+    /** Returned by {@link #code(String)} for labels that are not in the dictionary. */
+    public static final short UNKNOWN = -1;
+
+    private volatile Snapshot snapshot = new Snapshot(new String[1], Map.of(), false);
+
+    private LookupDictionary() {
+    }
+
+    public String label(short code) {
+        String[] labels = snapshot.labels();
+        return code > 0 && code < labels.length ? labels[code] : null;
+    }
+
+    public short code(String label) {
+        if (label == null || label.isBlank()) {
+            return NONE;
+        }
+        Short code = snapshot.codes().get(key(label));
+        return code != null ? code : UNKNOWN;
+    }
+
+    public boolean contains(short code) {
+        return label(code) != null;
+    }
+
+    /**
+     * One past the highest code currently known, handy for sizing code-indexed arrays.
+     */
+    public int size() {
+        return snapshot.labels().length;
+    }
+
+    public boolean isLoaded() {
+        return snapshot.loaded();
+    }
+
+    /**
+     * Replaces the dictionary contents with the rows read from a lookup table.
+     */
+    public void load(Map<Short, String> entries) {
+        int maxCode = 0;
+        for (short code : entries.keySet()) {
+            maxCode = Math.max(maxCode, code);
+        }
+        String[] labels = new String[maxCode + 1];
+        Map<String, Short> codes = new HashMap<>();
+        entries.forEach((code, label) -> {
+            if (code > 0 && label != null) {
+                labels[code] = label.intern();
+                codes.put(key(label), code);
+            }
+        });
+        snapshot = new Snapshot(labels, Map.copyOf(codes), true);
+    }
+
+    private static String key(String label) {
+        return label.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Snapshot(String[] labels, Map<String, Short> codes, boolean loaded) {
+    }
+}
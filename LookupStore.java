@@ -0,0 +1,26 @@
+package com.guvi.mindfulness.dao;
+
+import java.sql.SQLException;
+
+/**
+ * Source of the category and difficulty labels held in {@link com.guvi.mindfulness.model.LookupDictionary}.
+ */
+public interface LookupStore {
+
+    /**
+     * Loads both dictionaries the first time they are needed.
+     */
+    void ensureLoaded() throws SQLException;
+
+    /**
+     * Reloads both dictionaries, picking up labels added since the last load.
+     */
+    void refresh() throws SQLException;
+
+    /**
+     * {@link #refresh()}, unless the dictionaries were reloaded less than
+     * {@code LOOKUP_REFRESH_MIN_SECONDS} (default 30) ago. For callers that meet an unknown label
+     * or code on a request path, where a full reload per request would be too costly.
+     */
+    void refreshIfDue() throws SQLException;
+}
@@ -9,6 +9,7 @@ public class MindfulnessCourse extends MindfulnessActivity {
     private String instructor;
     private String level;
     private int durationMinutes;
+    private short categoryCode = LookupDictionary.NONE;
 
     public MindfulnessCourse() {
     }
@@ -44,6 +45,17 @@ public class MindfulnessCourse extends MindfulnessActivity {
         this.durationMinutes = durationMinutes;
     }
 
+    /**
+     * Dictionary code of the course's main topic, or {@link LookupDictionary#NONE} if untagged.
+     */
+    public short getCategoryCode() {
+        return categoryCode;
+    }
+
+    public void setCategoryCode(short categoryCode) {
+        this.categoryCode = categoryCode;
+    }
+
     @Override
     public String getPracticeType() {
         return "COURSE";
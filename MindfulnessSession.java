@@ -8,11 +8,17 @@ import java.time.LocalDateTime;
 public class MindfulnessSession extends MindfulnessActivity {
 
     private long userId;
-    private String difficulty;
-    private String category;
+    private short difficultyCode;
+    private short categoryCode;
+    private String unresolvedDifficulty;
+    private String unresolvedCategory;
     private LocalDateTime scheduledAt;
     private int durationMinutes;
     private String reflectionNotes;
+    private int version;
+    private transient TextLoader textLoader;
+    private boolean descriptionLoaded = true;
+    private boolean notesLoaded = true;
 
     public MindfulnessSession() {
     }
@@ -22,13 +28,37 @@ public class MindfulnessSession extends MindfulnessActivity {
                               int durationMinutes, String reflectionNotes) {
         super(id, title, description);
         this.userId = userId;
-        this.difficulty = difficulty;
-        this.category = category;
+        setDifficulty(difficulty);
+        setCategory(category);
         this.scheduledAt = scheduledAt;
         this.durationMinutes = durationMinutes;
         this.reflectionNotes = reflectionNotes;
     }
 
+    /**
+     * Marks the TEXT fields that were not part of the query as deferred. They are fetched
+     * through {@code loader} the first time either getter is called.
+     */
+    public void deferTextFields(TextLoader loader, boolean descriptionDeferred, boolean notesDeferred) {
+        this.textLoader = loader;
+        this.descriptionLoaded = !descriptionDeferred;
+        this.notesLoaded = !notesDeferred;
+    }
+
+    @Override
+    public String getDescription() {
+        if (!descriptionLoaded) {
+            loadTextFields();
+        }
+        return super.getDescription();
+    }
+
+    @Override
+    public void setDescription(String description) {
+        super.setDescription(description);
+        this.descriptionLoaded = true;
+    }
+
     public long getUserId() {
         return userId;
     }
@@ -38,20 +68,66 @@ public class MindfulnessSession extends MindfulnessActivity {
     }
 
     public String getDifficulty() {
-        return difficulty;
+        return difficultyCode > 0 ? LookupDictionary.DIFFICULTIES.label(difficultyCode) : unresolvedDifficulty;
     }
 
+    /**
+     * Stores the dictionary code for the label. Labels missing from the dictionary are kept
+     * as text until {@link #resolveLabels()} succeeds.
+     */
     public void setDifficulty(String difficulty) {
-        this.difficulty = difficulty;
+        short code = LookupDictionary.DIFFICULTIES.code(difficulty);
+        this.difficultyCode = code == LookupDictionary.UNKNOWN ? LookupDictionary.NONE : code;
+        this.unresolvedDifficulty = code == LookupDictionary.UNKNOWN ? difficulty.trim() : null;
+    }
+
+    public short getDifficultyCode() {
+        return difficultyCode;
+    }
+
+    public void setDifficultyCode(short difficultyCode) {
+        this.difficultyCode = difficultyCode;
+        this.unresolvedDifficulty = null;
     }
 
     @Override
     public String getCategory() {
-        return category;
+        return categoryCode > 0 ? LookupDictionary.CATEGORIES.label(categoryCode) : unresolvedCategory;
     }
 
     public void setCategory(String category) {
-        this.category = category;
+        short code = LookupDictionary.CATEGORIES.code(category);
+        this.categoryCode = code == LookupDictionary.UNKNOWN ? LookupDictionary.NONE : code;
+        this.unresolvedCategory = code == LookupDictionary.UNKNOWN ? category.trim() : null;
+    }
+
+    public short getCategoryCode() {
+        return categoryCode;
+    }
+
+    public void setCategoryCode(short categoryCode) {
+        this.categoryCode = categoryCode;
+        this.unresolvedCategory = null;
+    }
+
+    /**
+     * True when a category or difficulty label has no code yet.
+     */
+    public boolean hasUnresolvedLabels() {
+        return unresolvedCategory != null || unresolvedDifficulty != null;
+    }
+
+    /**
+     * Retries the dictionary lookup for labels that were unknown when they were set,
+     * typically after the dictionary has been refreshed.
+     */
+    public void resolveLabels() {
+        if (unresolvedCategory != null) {
+            setCategory(unresolvedCategory);
+        }
+        if (unresolvedDifficulty != null) {
+            setDifficulty(unresolvedDifficulty);
+        }
     }
 
     public LocalDateTime getScheduledAt() {
@@ -72,16 +148,65 @@ public class MindfulnessSession extends MindfulnessActivity {
     }
 
     public String getReflectionNotes() {
+        if (!notesLoaded) {
+            loadTextFields();
+        }
         return reflectionNotes;
     }
 
     public void setReflectionNotes(String reflectionNotes) {
         this.reflectionNotes = reflectionNotes;
+        this.notesLoaded = true;
+    }
+
+    /**
+     * Row version read with the session; updates succeed only while it still matches the stored row.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    /**
+     * Fills whichever TEXT fields are still deferred with a single round trip. Values assigned
+     * through the setters in the meantime are kept.
+     */
+    private void loadTextFields() {
+        TextLoader loader = textLoader;
+        textLoader = null;
+        if (loader == null) {
+            descriptionLoaded = true;
+            notesLoaded = true;
+            return;
+        }
+        SessionText text = loader.load(getId());
+        if (!descriptionLoaded) {
+            setDescription(text != null ? text.description() : null);
+        }
+        if (!notesLoaded) {
+            setReflectionNotes(text != null ? text.reflectionNotes() : null);
+        }
     }
 
     @Override
     public String getPracticeType() {
         return "SESSION";
     }
-}
 
+    /**
+     * Callback used by the DAO layer to fetch the TEXT columns of a session on demand.
+     */
+    @FunctionalInterface
+    public interface TextLoader {
+        SessionText load(long sessionId);
+    }
+
+    /**
+     * The two large text columns of a session, loaded together.
+     */
+    public record SessionText(String description, String reflectionNotes) {
+    }
+}
@@ -1,7 +1,12 @@
 package com.guvi.mindfulness.dao;
 
+import com.guvi.mindfulness.exception.DataAccessException;
 import com.guvi.mindfulness.jdbc.DBConnection;
+import com.guvi.mindfulness.jdbc.UnitOfWork;
+import com.guvi.mindfulness.model.LookupDictionary;
 import com.guvi.mindfulness.model.MindfulnessSession;
+import com.guvi.mindfulness.model.SessionSlot;
+import com.guvi.mindfulness.resilience.Deadline;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -9,51 +14,177 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Data access object for the {@code mindfulness_sessions} table.
  */
-public class MindfulnessSessionDAO {
+public class MindfulnessSessionDAO implements SessionStore {
 
     private static final String INSERT_SQL = """
-            INSERT INTO mindfulness_sessions(user_id, title, description, difficulty, category, scheduled_at, duration_minutes, reflection_notes)
+            INSERT INTO mindfulness_sessions(user_id, title, description, difficulty_id, category_id, scheduled_at, duration_minutes, reflection_notes)
             VALUES(?, ?, ?, ?, ?, ?, ?, ?)
             """;
 
     private static final String SELECT_BY_ID_SQL = """
-            SELECT id, user_id, title, description, difficulty, category, scheduled_at, duration_minutes, reflection_notes
+            SELECT id, user_id, version, title, description, difficulty_id, category_id, scheduled_at, duration_minutes, reflection_notes
+            FROM mindfulness_sessions WHERE id = ?
+            """;
+
+    private static final String SELECT_SUMMARY_BY_ID_SQL = """
+            SELECT id, user_id, version, title, difficulty_id, category_id, scheduled_at, duration_minutes
+            FROM mindfulness_sessions WHERE id = ?
+            """;
+
+    private static final String SELECT_NOTES_BY_ID_SQL = """
+            SELECT id, user_id, version, reflection_notes
             FROM mindfulness_sessions WHERE id = ?
             """;
 
     private static final String SELECT_BY_USER_SQL = """
-            SELECT id, user_id, title, description, difficulty, category, scheduled_at, duration_minutes, reflection_notes
+            SELECT id, user_id, version, title, description, difficulty_id, category_id, scheduled_at, duration_minutes, reflection_notes
+            FROM mindfulness_sessions
+            WHERE user_id = ?
+            ORDER BY scheduled_at DESC
+            """;
+
+    private static final String SELECT_SUMMARY_BY_USER_SQL = """
+            SELECT id, user_id, version, title, difficulty_id, category_id, scheduled_at, duration_minutes
+            FROM mindfulness_sessions
+            WHERE user_id = ?
+            ORDER BY scheduled_at DESC
+            """;
+
+    private static final String SELECT_NOTES_BY_USER_SQL = """
+            SELECT id, user_id, version, reflection_notes
             FROM mindfulness_sessions
             WHERE user_id = ?
             ORDER BY scheduled_at DESC
             """;
 
+    private static final String SELECT_SUMMARY_BY_USER_AND_CATEGORY_SQL = """
+            SELECT id, user_id, version, title, difficulty_id, category_id, scheduled_at, duration_minutes
+            FROM mindfulness_sessions
+            WHERE user_id = ? AND category_id = ?
+            ORDER BY scheduled_at DESC
+            """;
+
+    private static final String SELECT_SUMMARY_BY_USER_AND_DIFFICULTY_SQL = """
+            SELECT id, user_id, version, title, difficulty_id, category_id, scheduled_at, duration_minutes
+            FROM mindfulness_sessions
+            WHERE user_id = ? AND difficulty_id = ?
+            ORDER BY scheduled_at DESC
+            """;
+
+    private static final String SELECT_SUMMARY_BY_USER_BETWEEN_SQL = """
+            SELECT id, user_id, version, title, difficulty_id, category_id, scheduled_at, duration_minutes
+            FROM mindfulness_sessions
+            WHERE user_id = ? AND scheduled_at >= ? AND scheduled_at < ?
+            ORDER BY scheduled_at DESC
+            """;
+
+    private static final String SELECT_BY_USER_BETWEEN_SQL = """
+            SELECT id, user_id, version, title, description, difficulty_id, category_id, scheduled_at, duration_minutes, reflection_notes
+            FROM mindfulness_sessions
+            WHERE user_id = ? AND scheduled_at >= ? AND scheduled_at < ?
+            ORDER BY scheduled_at DESC
+            """;
+
+    private static final String SELECT_NOTES_BY_USER_BETWEEN_SQL = """
+            SELECT id, user_id, version, reflection_notes
+            FROM mindfulness_sessions
+            WHERE user_id = ? AND scheduled_at >= ? AND scheduled_at < ?
+            ORDER BY scheduled_at DESC
+            """;
+
+    private static final String SELECT_SLOTS_BY_USER_BETWEEN_SQL = """
+            SELECT id, scheduled_at, duration_minutes
+            FROM mindfulness_sessions
+            WHERE user_id = ? AND scheduled_at >= ? AND scheduled_at < ?
+            ORDER BY scheduled_at
+            """;
+
+    private static final String SELECT_DAILY_MINUTES_SQL = """
+            SELECT DATE(scheduled_at) AS day, SUM(duration_minutes) AS minutes
+            FROM mindfulness_sessions
+            WHERE user_id = ?
+            GROUP BY DATE(scheduled_at)
+            ORDER BY day
+            """;
+
+    private static final String SELECT_DAILY_MINUTES_SINCE_SQL = """
+            SELECT DATE(scheduled_at) AS day, SUM(duration_minutes) AS minutes
+            FROM mindfulness_sessions
+            WHERE user_id = ? AND scheduled_at >= ?
+            GROUP BY DATE(scheduled_at)
+            ORDER BY day
+            """;
+
+    private static final String SELECT_OLDEST_SCHEDULED_SQL = "SELECT MIN(scheduled_at) FROM mindfulness_sessions";
+
+    private static final String SELECT_FOR_ARCHIVE_SQL = """
+            SELECT id, user_id, version, title, description, difficulty_id, category_id, scheduled_at, duration_minutes, reflection_notes
+            FROM mindfulness_sessions
+            WHERE scheduled_at >= ? AND scheduled_at < ?
+            ORDER BY user_id, scheduled_at DESC
+            """;
+
+    private static final int ARCHIVE_DELETE_BATCH = 5_000;
+
+    /** Deletes up to {@link #ARCHIVE_DELETE_BATCH} rows, each only if still at its archived version. */
+    private static final String DELETE_ARCHIVED_SQL = deleteArchivedSql(ARCHIVE_DELETE_BATCH);
+
+    private static final String SELECT_TEXT_BY_ID_SQL = """
+            SELECT description, reflection_notes
+            FROM mindfulness_sessions WHERE id = ?
+            """;
+
     private static final String UPDATE_NOTES_SQL = """
             UPDATE mindfulness_sessions
-            SET reflection_notes = ?, duration_minutes = ?
-            WHERE id = ?
+            SET reflection_notes = ?, duration_minutes = ?, version = version + 1
+            WHERE id = ? AND version = ?
             """;
 
+    private static final String SELECT_VERSION_SQL = "SELECT version FROM mindfulness_sessions WHERE id = ?";
+
     private static final String DELETE_SQL = "DELETE FROM mindfulness_sessions WHERE id = ?";
 
+    private static final String LOCK_OWNER_SQL = "SELECT id FROM users WHERE id = ? FOR UPDATE";
+
+    private final SessionLookupDAO lookupDAO;
+    private final SessionArchive archive;
+
+    public MindfulnessSessionDAO() {
+        this(new SessionLookupDAO(), SessionArchive.shared());
+    }
+
+    public MindfulnessSessionDAO(SessionLookupDAO lookupDAO) {
+        this(lookupDAO, SessionArchive.shared());
+    }
+
+    public MindfulnessSessionDAO(SessionLookupDAO lookupDAO, SessionArchive archive) {
+        this.lookupDAO = lookupDAO;
+        this.archive = archive;
+    }
+
+    @Override
     public long insert(MindfulnessSession session) throws SQLException {
         try (Connection connection = DBConnection.getConnection();
              PreparedStatement statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
-            statement.setLong(1, session.getUserId());
-            statement.setString(2, session.getTitle());
-            statement.setString(3, session.getDescription());
-            statement.setString(4, session.getDifficulty());
-            statement.setString(5, session.getCategory());
-            statement.setTimestamp(6, Timestamp.valueOf(session.getScheduledAt()));
-            statement.setInt(7, session.getDurationMinutes());
-            statement.setString(8, session.getReflectionNotes());
+            Deadline.applyTo(statement);
+            bindInsert(statement, session);
             statement.executeUpdate();
             try (ResultSet keys = statement.getGeneratedKeys()) {
                 if (keys.next()) {
@@ -64,64 +195,484 @@ public class MindfulnessSessionDAO {
         return -1;
     }
 
-    public MindfulnessSession findById(long id) throws SQLException {
+    /**
+     * Sends all rows as one JDBC batch, which the driver rewrites into multi-row INSERTs.
+     */
+    @Override
+    public long[] insertAll(List<MindfulnessSession> sessions) throws SQLException {
+        long[] ids = new long[sessions.size()];
+        if (sessions.isEmpty()) {
+            return ids;
+        }
+        try (Connection connection = DBConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            Deadline.applyTo(statement);
+            for (MindfulnessSession session : sessions) {
+                bindInsert(statement, session);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                for (int i = 0; i < ids.length && keys.next(); i++) {
+                    ids[i] = keys.getLong(1);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static void bindInsert(PreparedStatement statement, MindfulnessSession session) throws SQLException {
+        statement.setLong(1, session.getUserId());
+        statement.setString(2, session.getTitle());
+        statement.setString(3, session.getDescription());
+        setCode(statement, 4, session.getDifficultyCode());
+        setCode(statement, 5, session.getCategoryCode());
+        statement.setTimestamp(6, Timestamp.valueOf(session.getScheduledAt()));
+        statement.setInt(7, session.getDurationMinutes());
+        statement.setString(8, session.getReflectionNotes());
+    }
+
+    /**
+     * Loads one session reading only the columns of the given projection.
+     * TEXT columns outside the projection are fetched lazily when first accessed.
+     */
+    @Override
+    public MindfulnessSession findById(long id, SessionProjection projection) throws SQLException {
+        lookupDAO.ensureLoaded();
+        MindfulnessSession session = null;
         try (Connection connection = DBConnection.getConnection();
-             PreparedStatement statement = connection.prepareStatement(SELECT_BY_ID_SQL)) {
+             PreparedStatement statement = connection.prepareStatement(byIdSql(projection))) {
+            Deadline.applyTo(statement);
             statement.setLong(1, id);
             try (ResultSet rs = statement.executeQuery()) {
                 if (rs.next()) {
-                    return mapRow(rs);
+                    session = mapRow(rs, projection);
                 }
             }
         }
-        return null;
+        if (session == null && !archive.isEmpty()) {
+            session = archive.findById(id, projection);
+        }
+        if (session != null && !hasKnownCodes(session)) {
+            lookupDAO.refreshIfDue();
+        }
+        return session;
+    }
+
+    /**
+     * Lists a user's sessions, newest first, reading only the columns of the given projection.
+     */
+    @Override
+    public List<MindfulnessSession> findByUser(long userId, SessionProjection projection) throws SQLException {
+        return queryByUser(byUserSql(projection), projection, statement -> statement.setLong(1, userId),
+                userId, null, null, session -> true);
+    }
+
+    /**
+     * Sessions of a user scheduled in {@code [from, to)}, newest first. Archive files are read only
+     * when the window starts before the archive cutoff.
+     */
+    @Override
+    public List<MindfulnessSession> findByUserBetween(long userId, LocalDateTime from, LocalDateTime to,
+                                                      SessionProjection projection) throws SQLException {
+        return queryByUser(byUserBetweenSql(projection), projection, statement -> {
+            statement.setLong(1, userId);
+            statement.setTimestamp(2, Timestamp.valueOf(from));
+            statement.setTimestamp(3, Timestamp.valueOf(to));
+        }, userId, from, to, session -> true);
+    }
+
+    /**
+     * Summary listing of a user's sessions in one category, filtered on the indexed code column.
+     */
+    @Override
+    public List<MindfulnessSession> findByUserAndCategory(long userId, short categoryCode) throws SQLException {
+        return queryByUser(SELECT_SUMMARY_BY_USER_AND_CATEGORY_SQL, SessionProjection.SUMMARY, statement -> {
+            statement.setLong(1, userId);
+            statement.setShort(2, categoryCode);
+        }, userId, null, null, session -> session.getCategoryCode() == categoryCode);
+    }
+
+    /**
+     * Summary listing of a user's sessions at one difficulty, filtered on the indexed code column.
+     */
+    @Override
+    public List<MindfulnessSession> findByUserAndDifficulty(long userId, short difficultyCode) throws SQLException {
+        return queryByUser(SELECT_SUMMARY_BY_USER_AND_DIFFICULTY_SQL, SessionProjection.SUMMARY, statement -> {
+            statement.setLong(1, userId);
+            statement.setShort(2, difficultyCode);
+        }, userId, null, null, session -> session.getDifficultyCode() == difficultyCode);
     }
 
-    public List<MindfulnessSession> findByUser(long userId) throws SQLException {
+    private List<MindfulnessSession> queryByUser(String sql, SessionProjection projection, ParameterBinder binder,
+                                                 long userId, LocalDateTime from, LocalDateTime to,
+                                                 Predicate<MindfulnessSession> archiveFilter) throws SQLException {
+        lookupDAO.ensureLoaded();
         List<MindfulnessSession> sessions = new ArrayList<>();
+        boolean knownCodes = true;
         try (Connection connection = DBConnection.getConnection();
-             PreparedStatement statement = connection.prepareStatement(SELECT_BY_USER_SQL)) {
-            statement.setLong(1, userId);
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            Deadline.applyTo(statement);
+            binder.bind(statement);
             try (ResultSet rs = statement.executeQuery()) {
                 while (rs.next()) {
-                    sessions.add(mapRow(rs));
+                    MindfulnessSession session = mapRow(rs, projection);
+                    knownCodes &= hasKnownCodes(session);
+                    sessions.add(session);
                 }
             }
         }
+        LocalDateTime archivedBefore = archive.archivedBefore();
+        if (archivedBefore != null && (from == null || from.isBefore(archivedBefore))) {
+            int hotRows = sessions.size();
+            // Archived rows stay in MySQL until the archiver purges them, and a row updated after
+            // it was archived is kept there; either way the MySQL copy is the current one.
+            Set<Long> hotIds = new HashSet<>(hotRows * 2);
+            for (MindfulnessSession session : sessions) {
+                hotIds.add(session.getId());
+            }
+            for (MindfulnessSession session : archive.findByUser(userId, from, to, projection)) {
+                if (archiveFilter.test(session) && !hotIds.contains(session.getId())) {
+                    knownCodes &= hasKnownCodes(session);
+                    sessions.add(session);
+                }
+            }
+            if (sessions.size() > hotRows) {
+                sessions.sort(Comparator.comparing(MindfulnessSession::getScheduledAt, Comparator.nullsLast(Comparator.reverseOrder())));
+            }
+        }
+        if (!knownCodes) {
+            lookupDAO.refreshIfDue();
+        }
         return sessions;
     }
 
-    public boolean updateReflection(long sessionId, String notes, int durationMinutes) throws SQLException {
+    /**
+     * Covered by {@code idx_sessions_user_scheduled}, so only the index is read. Archived sessions
+     * are in the past and never needed for scheduling, so the archive is not consulted.
+     */
+    @Override
+    public List<SessionSlot> findSlots(long userId, LocalDateTime from, LocalDateTime to) throws SQLException {
+        List<SessionSlot> slots = new ArrayList<>();
+        try (Connection connection = DBConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_SLOTS_BY_USER_BETWEEN_SQL)) {
+            Deadline.applyTo(statement);
+            statement.setLong(1, userId);
+            statement.setTimestamp(2, Timestamp.valueOf(from));
+            statement.setTimestamp(3, Timestamp.valueOf(to));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    slots.add(SessionSlot.of(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime(), rs.getInt(3)));
+                }
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Grouped on {@code idx_sessions_user_scheduled}, so only the index is read. Days before the
+     * archive cutoff are summed from the archive instead; rows still waiting to be purged after
+     * being archived are not counted twice.
+     */
+    @Override
+    public List<DayMinutes> findDailyMinutes(long userId) throws SQLException {
+        LocalDateTime archivedBefore = archive.archivedBefore();
+        TreeMap<LocalDate, Integer> days = new TreeMap<>();
+        if (archivedBefore != null) {
+            for (MindfulnessSession session : archive.findByUser(userId, null, archivedBefore, SessionProjection.SUMMARY)) {
+                if (session.getScheduledAt().isBefore(archivedBefore)) {
+                    days.merge(session.getScheduledAt().toLocalDate(), session.getDurationMinutes(), Integer::sum);
+                }
+            }
+        }
+        try (Connection connection = DBConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     archivedBefore == null ? SELECT_DAILY_MINUTES_SQL : SELECT_DAILY_MINUTES_SINCE_SQL)) {
+            Deadline.applyTo(statement);
+            statement.setLong(1, userId);
+            if (archivedBefore != null) {
+                statement.setTimestamp(2, Timestamp.valueOf(archivedBefore));
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    days.merge(rs.getDate(1).toLocalDate(), rs.getInt(2), Integer::sum);
+                }
+            }
+        }
+        List<DayMinutes> result = new ArrayList<>(days.size());
+        for (Map.Entry<LocalDate, Integer> day : days.entrySet()) {
+            result.add(new DayMinutes(day.getKey(), day.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Reads only the TEXT columns of one session. Used as the lazy loader for partial projections.
+     */
+    @Override
+    public MindfulnessSession.SessionText findText(long sessionId) throws SQLException {
+        try (Connection connection = DBConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_TEXT_BY_ID_SQL)) {
+            Deadline.applyTo(statement);
+            statement.setLong(1, sessionId);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (rs.next()) {
+                    return new MindfulnessSession.SessionText(rs.getString("description"), rs.getString("reflection_notes"));
+                }
+            }
+        }
+        return archive.isEmpty() ? null : archive.findText(sessionId);
+    }
+
+    /**
+     * Oldest {@code scheduled_at} still in the hot table, or {@code null} when it is empty.
+     */
+    public LocalDateTime findOldestScheduledAt() throws SQLException {
+        try (Connection connection = DBConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_OLDEST_SCHEDULED_SQL);
+             ResultSet rs = statement.executeQuery()) {
+            if (rs.next()) {
+                Timestamp oldest = rs.getTimestamp(1);
+                return oldest != null ? oldest.toLocalDateTime() : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Streams full rows scheduled in {@code [from, to)} ordered by user id and newest first, as the
+     * archive writer expects. The driver is asked to stream rows instead of buffering the result.
+     *
+     * @return highest session id streamed, or {@code -1} when nothing matched
+     */
+    public long streamForArchive(LocalDateTime from, LocalDateTime to, Consumer<MindfulnessSession> sink) throws SQLException {
+        long maxId = -1;
+        try (Connection connection = DBConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_FOR_ARCHIVE_SQL)) {
+            Deadline.applyTo(statement);
+            statement.setFetchSize(Integer.MIN_VALUE);
+            statement.setTimestamp(1, Timestamp.valueOf(from));
+            statement.setTimestamp(2, Timestamp.valueOf(to));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    MindfulnessSession session = mapRow(rs, SessionProjection.DETAIL);
+                    maxId = Math.max(maxId, session.getId());
+                    sink.accept(session);
+                }
+            }
+        }
+        return maxId;
+    }
+
+    /**
+     * Removes the first {@code count} archived rows, given by id and the version that was archived,
+     * in small batches so row locks are held briefly. A row updated since it was archived no longer
+     * matches its version and is left for the next archiver run to archive again.
+     */
+    public long deleteArchived(long[] ids, int[] versions, int count) throws SQLException {
+        long deleted = 0;
+        for (int start = 0; start < count; start += ARCHIVE_DELETE_BATCH) {
+            int batch = Math.min(ARCHIVE_DELETE_BATCH, count - start);
+            try (Connection connection = DBConnection.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         batch == ARCHIVE_DELETE_BATCH ? DELETE_ARCHIVED_SQL : deleteArchivedSql(batch))) {
+                Deadline.applyTo(statement);
+                for (int i = 0; i < batch; i++) {
+                    statement.setLong(2 * i + 1, ids[start + i]);
+                    statement.setInt(2 * i + 2, versions[start + i]);
+                }
+                deleted += statement.executeUpdate();
+            }
+        }
+        return deleted;
+    }
+
+    private static String deleteArchivedSql(int rows) {
+        StringBuilder sql = new StringBuilder(48 + rows * 6)
+                .append("DELETE FROM mindfulness_sessions WHERE (id, version) IN (");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?,?)" : ",(?,?)");
+        }
+        return sql.append(')').toString();
+    }
+
+    /**
+     * Compare-and-set update: the row changes only if its version is still {@code expectedVersion},
+     * and the version is bumped in the same statement.
+     */
+    @Override
+    public UpdateResult updateReflection(long sessionId, String notes, int durationMinutes, int expectedVersion)
+            throws SQLException {
         try (Connection connection = DBConnection.getConnection();
              PreparedStatement statement = connection.prepareStatement(UPDATE_NOTES_SQL)) {
+            Deadline.applyTo(statement);
             statement.setString(1, notes);
             statement.setInt(2, durationMinutes);
             statement.setLong(3, sessionId);
-            return statement.executeUpdate() == 1;
+            statement.setInt(4, expectedVersion);
+            if (statement.executeUpdate() == 1) {
+                return UpdateResult.UPDATED;
+            }
+            return UpdateResult.afterMiss(connection, SELECT_VERSION_SQL, sessionId);
         }
     }
 
+    @Override
     public boolean delete(long sessionId) throws SQLException {
         try (Connection connection = DBConnection.getConnection();
              PreparedStatement statement = connection.prepareStatement(DELETE_SQL)) {
+            Deadline.applyTo(statement);
             statement.setLong(1, sessionId);
             return statement.executeUpdate() == 1;
         }
     }
 
-    private MindfulnessSession mapRow(ResultSet rs) throws SQLException {
+    /**
+     * {@code SELECT ... FOR UPDATE} on the primary key, ids sorted so that two transactions locking
+     * overlapping sets of users cannot deadlock.
+     */
+    @Override
+    public Set<Long> lockOwners(Collection<Long> userIds) throws SQLException {
+        if (!UnitOfWork.isActive()) {
+            throw new IllegalStateException("Owners can only be locked inside a transaction");
+        }
+        long[] ids = userIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        Set<Long> existing = new HashSet<>(ids.length * 2);
+        if (ids.length == 0) {
+            return existing;
+        }
+        try (Connection connection = DBConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     ids.length == 1 ? LOCK_OWNER_SQL : lockOwnersSql(ids.length))) {
+            Deadline.applyTo(statement);
+            for (int i = 0; i < ids.length; i++) {
+                statement.setLong(i + 1, ids[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getLong(1));
+                }
+            }
+        }
+        return existing;
+    }
+
+    private static String lockOwnersSql(int users) {
+        StringBuilder sql = new StringBuilder(64 + users * 2).append("SELECT id FROM users WHERE id IN (");
+        for (int i = 0; i < users; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.append(") ORDER BY id FOR UPDATE").toString();
+    }
+
+    /**
+     * Prepares every statement of this DAO on the connections opened during warm-up, so they are
+     * in each connection's statement cache and the driver's parsing paths are compiled before the
+     * first real request.
+     */
+    public void prepareStatements() throws SQLException {
+        DBConnection.prepareAll(List.of(
+                INSERT_SQL,
+                SELECT_BY_ID_SQL,
+                SELECT_SUMMARY_BY_ID_SQL,
+                SELECT_NOTES_BY_ID_SQL,
+                SELECT_BY_USER_SQL,
+                SELECT_SUMMARY_BY_USER_SQL,
+                SELECT_NOTES_BY_USER_SQL,
+                SELECT_SUMMARY_BY_USER_AND_CATEGORY_SQL,
+                SELECT_SUMMARY_BY_USER_AND_DIFFICULTY_SQL,
+                SELECT_SUMMARY_BY_USER_BETWEEN_SQL,
+                SELECT_BY_USER_BETWEEN_SQL,
+                SELECT_NOTES_BY_USER_BETWEEN_SQL,
+                SELECT_SLOTS_BY_USER_BETWEEN_SQL,
+                SELECT_OLDEST_SCHEDULED_SQL,
+                SELECT_FOR_ARCHIVE_SQL,
+                SELECT_TEXT_BY_ID_SQL,
+                UPDATE_NOTES_SQL,
+                SELECT_VERSION_SQL,
+                DELETE_SQL,
+                LOCK_OWNER_SQL));
+    }
+
+    private static String byIdSql(SessionProjection projection) {
+        return switch (projection) {
+            case SUMMARY -> SELECT_SUMMARY_BY_ID_SQL;
+            case DETAIL -> SELECT_BY_ID_SQL;
+            case NOTES -> SELECT_NOTES_BY_ID_SQL;
+        };
+    }
+
+    private static String byUserBetweenSql(SessionProjection projection) {
+        return switch (projection) {
+            case SUMMARY -> SELECT_SUMMARY_BY_USER_BETWEEN_SQL;
+            case DETAIL -> SELECT_BY_USER_BETWEEN_SQL;
+            case NOTES -> SELECT_NOTES_BY_USER_BETWEEN_SQL;
+        };
+    }
+
+    private static String byUserSql(SessionProjection projection) {
+        return switch (projection) {
+            case SUMMARY -> SELECT_SUMMARY_BY_USER_SQL;
+            case DETAIL -> SELECT_BY_USER_SQL;
+            case NOTES -> SELECT_NOTES_BY_USER_SQL;
+        };
+    }
+
+    private MindfulnessSession mapRow(ResultSet rs, SessionProjection projection) throws SQLException {
         MindfulnessSession session = new MindfulnessSession();
         session.setId(rs.getLong("id"));
         session.setUserId(rs.getLong("user_id"));
-        session.setTitle(rs.getString("title"));
-        session.setDescription(rs.getString("description"));
-        session.setDifficulty(rs.getString("difficulty"));
-        session.setCategory(rs.getString("category"));
-        Timestamp scheduled = rs.getTimestamp("scheduled_at");
-        session.setScheduledAt(scheduled != null ? scheduled.toLocalDateTime() : LocalDateTime.now());
-        session.setDurationMinutes(rs.getInt("duration_minutes"));
-        session.setReflectionNotes(rs.getString("reflection_notes"));
+        session.setVersion(rs.getInt("version"));
+        if (projection != SessionProjection.NOTES) {
+            session.setTitle(rs.getString("title"));
+            session.setDifficultyCode(rs.getShort("difficulty_id"));
+            session.setCategoryCode(rs.getShort("category_id"));
+            Timestamp scheduled = rs.getTimestamp("scheduled_at");
+            session.setScheduledAt(scheduled != null ? scheduled.toLocalDateTime() : LocalDateTime.now());
+            session.setDurationMinutes(rs.getInt("duration_minutes"));
+        }
+        switch (projection) {
+            case DETAIL -> {
+                session.setDescription(rs.getString("description"));
+                session.setReflectionNotes(rs.getString("reflection_notes"));
+            }
+            case NOTES -> {
+                session.setReflectionNotes(rs.getString("reflection_notes"));
+                session.deferTextFields(this::loadText, true, false);
+            }
+            case SUMMARY -> session.deferTextFields(this::loadText, true, true);
+        }
         return session;
     }
-}
 
+    /**
+     * Codes added to the lookup tables after the dictionary was loaded trigger a refresh.
+     */
+    private static boolean hasKnownCodes(MindfulnessSession session) {
+        return (session.getCategoryCode() == LookupDictionary.NONE
+                || LookupDictionary.CATEGORIES.contains(session.getCategoryCode()))
+                && (session.getDifficultyCode() == LookupDictionary.NONE
+                || LookupDictionary.DIFFICULTIES.contains(session.getDifficultyCode()));
+    }
+
+    private static void setCode(PreparedStatement statement, int index, short code) throws SQLException {
+        if (code == LookupDictionary.NONE) {
+            statement.setNull(index, Types.SMALLINT);
+        } else {
+            statement.setShort(index, code);
+        }
+    }
+
+    private MindfulnessSession.SessionText loadText(long sessionId) {
+        try {
+            return findText(sessionId);
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to load session text", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ParameterBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+}
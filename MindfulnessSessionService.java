@@ -1,68 +1,502 @@
 package com.guvi.mindfulness.service;
 
-import com.guvi.mindfulness.dao.MindfulnessSessionDAO;
+import com.guvi.mindfulness.cache.SessionListCache;
+import com.guvi.mindfulness.dao.LookupStore;
+import com.guvi.mindfulness.dao.SessionProjection;
+import com.guvi.mindfulness.dao.SessionStore;
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.dao.StorageTransaction;
+import com.guvi.mindfulness.dao.UpdateResult;
+import com.guvi.mindfulness.exception.ConflictException;
 import com.guvi.mindfulness.exception.DataAccessException;
 import com.guvi.mindfulness.exception.ValidationException;
+import com.guvi.mindfulness.journal.ChangeJournal;
+import com.guvi.mindfulness.journal.ChangeRecord;
+import com.guvi.mindfulness.model.LookupDictionary;
 import com.guvi.mindfulness.model.MindfulnessSession;
+import com.guvi.mindfulness.model.SessionSlot;
+import com.guvi.mindfulness.progress.PracticeHistory;
+import com.guvi.mindfulness.resilience.DaoGuard;
+import com.guvi.mindfulness.schedule.IntervalTree;
+import com.guvi.mindfulness.schedule.ScheduleIndex;
 
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Service orchestrating mindfulness session logic.
  */
 public class MindfulnessSessionService {
 
-    private final MindfulnessSessionDAO sessionDAO;
+    private static final int MAX_FREE_SLOT_SEARCH_DAYS = 366;
+    private static final int MAX_HISTORY_BUCKETS = 3660;
 
-    public MindfulnessSessionService(MindfulnessSessionDAO sessionDAO) {
-        this.sessionDAO = sessionDAO;
+    private final SessionStore sessionStore;
+    private final LookupStore lookupStore;
+    private final DaoGuard guard = DaoGuard.SESSIONS;
+    private final ChangeJournal journal;
+    private final SessionListCache cache;
+    private final ScheduleIndex schedule;
+    private final PracticeHistory history;
+
+    public MindfulnessSessionService(SessionStore sessionStore) {
+        this(sessionStore, Storage.lookups());
+    }
+
+    public MindfulnessSessionService(SessionStore sessionStore, LookupStore lookupStore) {
+        this(sessionStore, lookupStore, ChangeJournal.shared());
+    }
+
+    public MindfulnessSessionService(SessionStore sessionStore, LookupStore lookupStore,
+                                     ChangeJournal journal) {
+        this(sessionStore, lookupStore, journal, SessionListCache.shared());
+    }
+
+    public MindfulnessSessionService(SessionStore sessionStore, LookupStore lookupStore,
+                                     ChangeJournal journal, SessionListCache cache) {
+        this(sessionStore, lookupStore, journal, cache, ScheduleIndex.shared());
     }
 
+    public MindfulnessSessionService(SessionStore sessionStore, LookupStore lookupStore,
+                                     ChangeJournal journal, SessionListCache cache, ScheduleIndex schedule) {
+        this(sessionStore, lookupStore, journal, cache, schedule, PracticeHistory.shared());
+    }
+
+    public MindfulnessSessionService(SessionStore sessionStore, LookupStore lookupStore, ChangeJournal journal,
+                                     SessionListCache cache, ScheduleIndex schedule, PracticeHistory history) {
+        this.sessionStore = sessionStore;
+        this.lookupStore = lookupStore;
+        this.journal = journal;
+        this.cache = cache;
+        this.schedule = schedule;
+        this.history = history;
+    }
+
+    /**
+     * @throws ConflictException when the session overlaps another session of the same user
+     */
     public long scheduleSession(MindfulnessSession session) throws ValidationException {
         validateSession(session);
+        long id;
+        List<Lock> locks = schedule.lock(session.getUserId());
+        try (StorageTransaction work = Storage.begin()) {
+            lockOwners(List.of(session.getUserId()));
+            SessionSlot conflict = findConflict(session.getUserId(), session.getScheduledAt(),
+                    session.getDurationMinutes(), 0);
+            if (conflict != null) {
+                throw new ConflictException(overlapMessage(conflict));
+            }
+            long ticket = history.beginWrite(session.getUserId());
+            try {
+                id = guard.execute(() -> sessionStore.insert(session));
+            } catch (SQLException e) {
+                throw new DataAccessException("Failed to schedule session", e);
+            }
+            journal.record(ChangeRecord.Entity.SESSION, ChangeRecord.Operation.INSERT, id, session.getUserId(), 0);
+            cache.invalidate(session.getUserId(), id);
+            schedule.added(session.getUserId(), slotOf(id, session));
+            history.added(session.getUserId(), ticket, session.getScheduledAt(), session.getDurationMinutes());
+            work.commit();
+        } finally {
+            ScheduleIndex.unlockAll(locks);
+        }
+        return id;
+    }
+
+    /**
+     * Validates and stores a batch of sessions. Sessions overlapping an existing session, or an
+     * earlier session of the same batch, are rejected as conflicts, as are sessions of unknown
+     * users. The owners are locked, checked and the rest inserted in one transaction; if the insert
+     * still fails on a constraint, the transaction is rolled back and the sessions are scheduled
+     * one by one so only the offending ones are rejected.
+     *
+     * @return one result per session, in order
+     */
+    public List<ScheduleResult> scheduleSessions(List<MindfulnessSession> sessions) {
+        ScheduleResult[] results = new ScheduleResult[sessions.size()];
+        List<MindfulnessSession> checked = new ArrayList<>(sessions.size());
+        List<Integer> checkedPositions = new ArrayList<>(sessions.size());
+        Set<Long> users = new HashSet<>();
+        for (int i = 0; i < results.length; i++) {
+            try {
+                validateSession(sessions.get(i));
+                checked.add(sessions.get(i));
+                checkedPositions.add(i);
+                users.add(sessions.get(i).getUserId());
+            } catch (ValidationException e) {
+                results[i] = ScheduleResult.rejected(e.getMessage());
+            }
+        }
+        if (checked.isEmpty()) {
+            return List.of(results);
+        }
+        List<Lock> locks = schedule.lockAll(users);
+        try {
+            checkAndInsert(checked, checkedPositions, users, results);
+        } catch (SQLException e) {
+            if (!isConstraintViolation(e)) {
+                throw new DataAccessException("Failed to schedule sessions", e);
+            }
+            // Rolled back; nothing of the batch was stored. Results decided so far still hold.
+            for (int i = 0; i < checked.size(); i++) {
+                if (results[checkedPositions.get(i)] == null) {
+                    results[checkedPositions.get(i)] = scheduleOne(checked.get(i));
+                }
+            }
+        } finally {
+            ScheduleIndex.unlockAll(locks);
+        }
+        return List.of(results);
+    }
+
+    /**
+     * One transaction: locks the owners, rejects sessions of unknown users and overlapping ones,
+     * and inserts the rest. Results of inserted sessions are only filled in once it commits.
+     */
+    private void checkAndInsert(List<MindfulnessSession> checked, List<Integer> checkedPositions, Set<Long> users,
+                                ScheduleResult[] results) throws SQLException {
+        long[] ids;
+        List<Integer> positions = new ArrayList<>(checked.size());
+        try (StorageTransaction work = Storage.begin()) {
+            Set<Long> known = lockOwners(users);
+            List<MindfulnessSession> valid = new ArrayList<>(checked.size());
+            Map<Long, IntervalTree> accepted = new HashMap<>();
+            for (int i = 0; i < checked.size(); i++) {
+                MindfulnessSession session = checked.get(i);
+                if (!known.contains(session.getUserId())) {
+                    results[checkedPositions.get(i)] = ScheduleResult.rejected("Session refers to an unknown user");
+                    continue;
+                }
+                SessionSlot conflict = findConflict(session.getUserId(), session.getScheduledAt(),
+                        session.getDurationMinutes(), 0);
+                IntervalTree batch = accepted.computeIfAbsent(session.getUserId(), user -> new IntervalTree());
+                SessionSlot slot = slotOf(-1 - i, session);
+                if (conflict != null) {
+                    results[checkedPositions.get(i)] = ScheduleResult.conflicting(overlapMessage(conflict));
+                } else if (batch.firstOverlap(slot.start(), slot.end(), 0) != null) {
+                    results[checkedPositions.get(i)] =
+                            ScheduleResult.conflicting("Session overlaps an earlier session in the same request");
+                } else {
+                    batch.insert(slot);
+                    valid.add(session);
+                    positions.add(checkedPositions.get(i));
+                }
+            }
+            if (valid.isEmpty()) {
+                return;
+            }
+            long[] tickets = new long[valid.size()];
+            for (int i = 0; i < tickets.length; i++) {
+                tickets[i] = history.beginWrite(valid.get(i).getUserId());
+            }
+            ids = guard.execute(() -> sessionStore.insertAll(valid));
+            long[] owners = new long[ids.length];
+            Set<Long> invalidated = new HashSet<>();
+            for (int i = 0; i < ids.length; i++) {
+                owners[i] = valid.get(i).getUserId();
+                if (invalidated.add(valid.get(i).getUserId())) {
+                    cache.invalidate(valid.get(i).getUserId(), ids[i]);
+                }
+                schedule.added(valid.get(i).getUserId(), slotOf(ids[i], valid.get(i)));
+                history.added(valid.get(i).getUserId(), tickets[i], valid.get(i).getScheduledAt(),
+                        valid.get(i).getDurationMinutes());
+            }
+            journal.recordAll(ChangeRecord.Entity.SESSION, ChangeRecord.Operation.INSERT, ids, owners, 0);
+            work.commit();
+        }
+        for (int i = 0; i < ids.length; i++) {
+            results[positions.get(i)] = ScheduleResult.scheduled(ids[i]);
+        }
+    }
+
+    /**
+     * Schedules one session of a batch whose combined insert failed, in its own transaction.
+     */
+    private ScheduleResult scheduleOne(MindfulnessSession session) {
+        try {
+            return ScheduleResult.scheduled(scheduleSession(session));
+        } catch (ConflictException e) {
+            return ScheduleResult.conflicting(e.getMessage());
+        } catch (ValidationException e) {
+            return ScheduleResult.rejected(e.getMessage());
+        } catch (DataAccessException e) {
+            if (e.getCause() instanceof SQLException cause && isConstraintViolation(cause)) {
+                return ScheduleResult.rejected("Session refers to an unknown user");
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Earliest time at or after {@code after} (rounded up to the minute) when the user has
+     * {@code durationMinutes} free, looking at most {@code withinDays} ahead.
+     *
+     * @return the free slot, or {@code null} if the user is booked throughout
+     */
+    public SessionSlot nextFreeSlot(long userId, LocalDateTime after, int durationMinutes, int withinDays)
+            throws ValidationException {
+        if (userId <= 0) {
+            throw new ValidationException("User id is required");
+        }
+        validateDuration(durationMinutes);
+        if (withinDays <= 0 || withinDays > MAX_FREE_SLOT_SEARCH_DAYS) {
+            throw new ValidationException("Search window must be between 1 and " + MAX_FREE_SLOT_SEARCH_DAYS + " days");
+        }
+        LocalDateTime notBefore = after.withSecond(0).withNano(0);
+        if (notBefore.isBefore(after)) {
+            notBefore = notBefore.plusMinutes(1);
+        }
+        LocalDateTime from = notBefore;
+        LocalDateTime until = from.plusDays(withinDays);
+        try {
+            return guard.execute(() -> schedule.nextFreeSlot(userId, from, durationMinutes, until));
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to search the schedule", e);
+        }
+    }
+
+    /**
+     * Minutes practised per day, week or month in {@code [from, to)}; buckets without practice are
+     * left out. Served from the {@link PracticeHistory}, so the cost follows the number of buckets
+     * returned rather than the length of the user's history.
+     */
+    public List<PracticeHistory.Point> practiceHistory(long userId, LocalDate from, LocalDate to,
+                                                       PracticeHistory.Resolution resolution) throws ValidationException {
+        if (userId <= 0) {
+            throw new ValidationException("User id is required");
+        }
+        if (!from.isBefore(to)) {
+            throw new ValidationException("from must be before to");
+        }
+        if (resolution.buckets(from, to) > MAX_HISTORY_BUCKETS) {
+            throw new ValidationException("Range cannot span more than " + MAX_HISTORY_BUCKETS + " "
+                    + resolution.name().toLowerCase() + "s");
+        }
         try {
-            return sessionDAO.insert(session);
+            return guard.execute(() -> history.range(userId, from, to, resolution));
         } catch (SQLException e) {
-            throw new DataAccessException("Failed to schedule session", e);
+            throw new DataAccessException("Failed to read practice history", e);
         }
     }
 
+    /**
+     * Locks the owners' rows for the rest of the current transaction, so that an overlap check and
+     * the write after it are not interleaved with another node's for the same user.
+     */
+    private Set<Long> lockOwners(Collection<Long> userIds) {
+        try {
+            return guard.execute(() -> sessionStore.lockOwners(userIds));
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to lock the schedule", e);
+        }
+    }
+
+    private SessionSlot findConflict(long userId, LocalDateTime start, int durationMinutes, long ignoreSessionId) {
+        try {
+            return guard.execute(() -> schedule.findConflict(userId, start, durationMinutes, ignoreSessionId));
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to check the schedule", e);
+        }
+    }
+
+    private static SessionSlot slotOf(long sessionId, MindfulnessSession session) {
+        return SessionSlot.of(sessionId, session.getScheduledAt(), session.getDurationMinutes());
+    }
+
+    private static String overlapMessage(SessionSlot conflict) {
+        return "Session overlaps session " + conflict.sessionId() + " scheduled " + conflict.start() + " to " + conflict.end();
+    }
+
+    /**
+     * SQLState class 23; batch failures arrive as {@code BatchUpdateException} carrying that state.
+     */
+    private static boolean isConstraintViolation(SQLException e) {
+        return e.getSQLState() != null ? e.getSQLState().startsWith("23")
+                : e instanceof SQLIntegrityConstraintViolationException;
+    }
+
     public List<MindfulnessSession> sessionsForUser(long userId) {
         try {
-            return sessionDAO.findByUser(userId);
+            return guard.execute(() -> sessionStore.findByUser(userId));
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to fetch sessions", e);
+        }
+    }
+
+    /**
+     * Lightweight listing for history screens. Description and reflection notes are loaded
+     * only if a caller actually reads them. Served from the {@link SessionListCache}; the returned
+     * list and sessions are shared and must not be modified.
+     */
+    public List<MindfulnessSession> sessionSummariesForUser(long userId) {
+        try {
+            return cache.get(userId, () -> guard.execute(() -> sessionStore.findByUser(userId, SessionProjection.SUMMARY)));
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to fetch sessions", e);
+        }
+    }
+
+    /**
+     * Summary listing narrowed by category and/or difficulty label. Blank filters are ignored;
+     * labels missing from the dictionary match nothing. With the cache on, the cached listing is
+     * filtered in memory instead of querying per filter.
+     */
+    public List<MindfulnessSession> sessionSummariesForUser(long userId, String category, String difficulty) {
+        try {
+            lookupStore.ensureLoaded();
+            short categoryCode = LookupDictionary.CATEGORIES.code(category);
+            short difficultyCode = LookupDictionary.DIFFICULTIES.code(difficulty);
+            if (categoryCode == LookupDictionary.UNKNOWN || difficultyCode == LookupDictionary.UNKNOWN) {
+                return List.of();
+            }
+            if (cache.isEnabled()) {
+                List<MindfulnessSession> sessions = sessionSummariesForUser(userId);
+                if (categoryCode == LookupDictionary.NONE && difficultyCode == LookupDictionary.NONE) {
+                    return sessions;
+                }
+                List<MindfulnessSession> matching = new ArrayList<>();
+                for (MindfulnessSession session : sessions) {
+                    if ((categoryCode == LookupDictionary.NONE || session.getCategoryCode() == categoryCode)
+                            && (difficultyCode == LookupDictionary.NONE || session.getDifficultyCode() == difficultyCode)) {
+                        matching.add(session);
+                    }
+                }
+                return matching;
+            }
+            if (categoryCode != LookupDictionary.NONE) {
+                List<MindfulnessSession> sessions =
+                        guard.execute(() -> sessionStore.findByUserAndCategory(userId, categoryCode));
+                if (difficultyCode != LookupDictionary.NONE) {
+                    sessions.removeIf(s -> s.getDifficultyCode() != difficultyCode);
+                }
+                return sessions;
+            }
+            if (difficultyCode != LookupDictionary.NONE) {
+                return guard.execute(() -> sessionStore.findByUserAndDifficulty(userId, difficultyCode));
+            }
+            return guard.execute(() -> sessionStore.findByUser(userId, SessionProjection.SUMMARY));
         } catch (SQLException e) {
             throw new DataAccessException("Failed to fetch sessions", e);
         }
     }
 
-    public boolean updateReflection(long sessionId, String notes, int durationMinutes) throws ValidationException {
+    public List<MindfulnessSession> reflectionNotesForUser(long userId) {
+        try {
+            return guard.execute(() -> sessionStore.findByUser(userId, SessionProjection.NOTES));
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to fetch reflection notes", e);
+        }
+    }
+
+    public MindfulnessSession getSession(long sessionId) {
+        try {
+            return guard.execute(() -> sessionStore.findById(sessionId, SessionProjection.DETAIL));
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to fetch session", e);
+        }
+    }
+
+    /**
+     * Updates the reflection if the session is still at {@code expectedVersion}.
+     *
+     * @return {@code false} when the session does not exist
+     * @throws ConflictException when the session was changed by someone else in the meantime, or
+     *                           the longer duration would overlap another session of the user
+     */
+    public boolean updateReflection(long sessionId, String notes, int durationMinutes, int expectedVersion)
+            throws ValidationException {
         if (sessionId <= 0) {
             throw new ValidationException("Session id is required");
         }
         if (durationMinutes <= 0) {
             throw new ValidationException("Duration must be greater than zero");
         }
+        validateDuration(durationMinutes);
+        MindfulnessSession current;
         try {
-            return sessionDAO.updateReflection(sessionId, notes, durationMinutes);
+            current = guard.execute(() -> sessionStore.findById(sessionId, SessionProjection.SUMMARY));
         } catch (SQLException e) {
             throw new DataAccessException("Failed to update session", e);
         }
+        if (current == null) {
+            return false;
+        }
+        UpdateResult result;
+        List<Lock> locks = schedule.lock(current.getUserId());
+        try (StorageTransaction work = Storage.begin()) {
+            if (durationMinutes > current.getDurationMinutes()) {
+                lockOwners(List.of(current.getUserId()));
+                SessionSlot conflict = findConflict(current.getUserId(), current.getScheduledAt(), durationMinutes, sessionId);
+                if (conflict != null) {
+                    throw new ConflictException(overlapMessage(conflict));
+                }
+            }
+            long ticket = history.beginWrite(current.getUserId());
+            try {
+                result = guard.execute(() -> sessionStore.updateReflection(sessionId, notes, durationMinutes, expectedVersion));
+            } catch (SQLException e) {
+                throw new DataAccessException("Failed to update session", e);
+            }
+            if (result == UpdateResult.UPDATED) {
+                schedule.added(current.getUserId(), SessionSlot.of(sessionId, current.getScheduledAt(), durationMinutes));
+                if (current.getVersion() == expectedVersion) {
+                    history.added(current.getUserId(), ticket, current.getScheduledAt(),
+                            durationMinutes - current.getDurationMinutes());
+                } else {
+                    // The duration we read is not the one replaced; reload the totals instead.
+                    history.changed(current.getUserId());
+                }
+                journal.record(ChangeRecord.Entity.SESSION, ChangeRecord.Operation.UPDATE, sessionId,
+                        current.getUserId(), expectedVersion + 1);
+                cache.invalidate(current.getUserId(), sessionId);
+            }
+            work.commit();
+        } finally {
+            ScheduleIndex.unlockAll(locks);
+        }
+        if (result == UpdateResult.CONFLICT) {
+            throw new ConflictException("Session was modified by another request; reload and retry");
+        }
+        return result == UpdateResult.UPDATED;
     }
 
     public boolean delete(long sessionId) {
+        MindfulnessSession current;
+        boolean deleted;
         try {
-            return sessionDAO.delete(sessionId);
+            // Read first so the owner's practice totals and peers' caches can be dropped by user.
+            current = guard.execute(() -> sessionStore.findById(sessionId, SessionProjection.SUMMARY));
+            deleted = guard.execute(() -> sessionStore.delete(sessionId));
         } catch (SQLException e) {
             throw new DataAccessException("Failed to delete session", e);
         }
+        if (deleted) {
+            long owner = current == null ? 0 : current.getUserId();
+            journal.record(ChangeRecord.Entity.SESSION, ChangeRecord.Operation.DELETE, sessionId, owner, 0);
+            cache.invalidate(owner, sessionId);
+            schedule.removed(sessionId);
+            if (owner != 0) {
+                history.changed(owner);
+            }
+        }
+        return deleted;
     }
 
     private void validateSession(MindfulnessSession session) throws ValidationException {
         if (session == null) {
             throw new ValidationException("Session payload cannot be null");
         }
+        resolveLabels(session);
         if (session.getUserId() <= 0) {
             throw new ValidationException("Session must belong to a user");
         }
@@ -72,9 +506,62 @@ public class MindfulnessSessionService {
         if (session.getScheduledAt() == null || session.getScheduledAt().isBefore(LocalDateTime.now().minusDays(1))) {
             throw new ValidationException("Session date looks incorrect");
         }
-        if (session.getDurationMinutes() <= 0) {
+        validateDuration(session.getDurationMinutes());
+    }
+
+    private static void validateDuration(int durationMinutes) throws ValidationException {
+        if (durationMinutes <= 0) {
             throw new ValidationException("Duration must be positive");
         }
+        if (durationMinutes > ScheduleIndex.MAX_DURATION_MINUTES) {
+            throw new ValidationException("Duration cannot exceed " + ScheduleIndex.MAX_DURATION_MINUTES + " minutes");
+        }
     }
-}
 
+    /**
+     * Maps category and difficulty labels to their dictionary codes, refreshing the dictionary
+     * once in case new labels were added to the lookup tables.
+     */
+    private void resolveLabels(MindfulnessSession session) throws ValidationException {
+        try {
+            lookupStore.ensureLoaded();
+            session.resolveLabels();
+            if (session.hasUnresolvedLabels()) {
+                // Picks up labels added on the database; rate-limited, as bad requests hit it too.
+                lookupStore.refreshIfDue();
+                session.resolveLabels();
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to load session categories", e);
+        }
+        if (session.getCategoryCode() == LookupDictionary.NONE && session.getCategory() != null) {
+            throw new ValidationException("Unknown category: " + session.getCategory());
+        }
+        if (session.getDifficultyCode() == LookupDictionary.NONE && session.getDifficulty() != null) {
+            throw new ValidationException("Unknown difficulty: " + session.getDifficulty());
+        }
+    }
+
+    /**
+     * Outcome of one session of {@link #scheduleSessions(List)}: the new id, or why it was rejected.
+     * {@code conflict} marks sessions rejected for overlapping another session.
+     */
+    public record ScheduleResult(long sessionId, String error, boolean conflict) {
+
+        static ScheduleResult scheduled(long sessionId) {
+            return new ScheduleResult(sessionId, null, false);
+        }
+
+        static ScheduleResult rejected(String error) {
+            return new ScheduleResult(0, error, false);
+        }
+
+        static ScheduleResult conflicting(String error) {
+            return new ScheduleResult(0, error, true);
+        }
+
+        public boolean isScheduled() {
+            return error == null;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.guvi.mindfulness.servlet;
 
-import com.guvi.mindfulness.dao.MindfulnessSessionDAO;
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.exception.ConflictException;
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
 import com.guvi.mindfulness.exception.ValidationException;
 import com.guvi.mindfulness.model.MindfulnessSession;
+import com.guvi.mindfulness.resilience.Deadline;
 import com.guvi.mindfulness.service.MindfulnessSessionService;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -11,41 +14,87 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Servlet that demonstrates GET + POST handling with the service layer.
  */
-@WebServlet(name = "MindfulnessSessionServlet", urlPatterns = "/api/sessions")
+@WebServlet(name = "MindfulnessSessionServlet", urlPatterns = "/api/sessions", loadOnStartup = 1)
 public class MindfulnessSessionServlet extends HttpServlet {
 
+    private static final int BATCH_CHUNK = Math.max(1, Integer.getInteger("SESSION_BATCH_CHUNK", 200));
+    private static final int BATCH_MAX_ITEMS = Integer.getInteger("SESSION_BATCH_MAX_ITEMS", 10_000);
+
     private transient MindfulnessSessionService sessionService;
 
     @Override
     public void init() throws ServletException {
-        this.sessionService = new MindfulnessSessionService(new MindfulnessSessionDAO());
+        this.sessionService = new MindfulnessSessionService(Storage.sessions());
     }
 
+    /**
+     * Schedules sessions from form parameters or a JSON body. A JSON object schedules one session;
+     * a JSON array is parsed as it streams in, stored in chunks of {@code SESSION_BATCH_CHUNK}
+     * (default 200) and answered with one result per element, written as each chunk completes.
+     */
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        // JSON is UTF-8; without this the container decodes the body as ISO-8859-1.
+        req.setCharacterEncoding("UTF-8");
         resp.setContentType("application/json");
-        MindfulnessSession session = new MindfulnessSession();
-        session.setUserId(Long.parseLong(req.getParameter("userId")));
-        session.setTitle(req.getParameter("title"));
-        session.setDescription(req.getParameter("description"));
-        session.setCategory(req.getParameter("category"));
-        session.setDifficulty(req.getParameter("difficulty"));
-        session.setScheduledAt(LocalDateTime.parse(req.getParameter("scheduledAt")));
-        session.setDurationMinutes(Integer.parseInt(req.getParameter("durationMinutes")));
-        session.setReflectionNotes(req.getParameter("reflectionNotes"));
-        try {
+        String contentType = req.getContentType();
+        if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("application/json")) {
+            JsonStreamReader json = new JsonStreamReader(req.getReader());
+            int first = json.peek();
+            if (first == '[') {
+                scheduleBatch(json, req, resp);
+                return;
+            }
+            if (first != '{') {
+                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                resp.getWriter().write("{\"error\":\"Body must be a JSON object or an array of objects\"}");
+                return;
+            }
+            Map<String, String> fields;
+            try {
+                fields = json.nextFlatObject();
+                json.endDocument();
+            } catch (JsonStreamReader.MalformedJsonException e) {
+                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                resp.getWriter().write("{\"error\":" + JsonStrings.quote(e.getMessage()) + "}");
+                return;
+            }
+            scheduleOne(fields::get, req, resp);
+        } else {
+            scheduleOne(req::getParameter, req, resp);
+        }
+    }
+
+    private void scheduleOne(Function<String, String> field, HttpServletRequest req, HttpServletResponse resp)
+            throws IOException {
+        try (Deadline.Scope deadline = Deadline.startRequest()) {
+            MindfulnessSession session = toSession(field);
+            req.setAttribute(AccessLogFilter.USER_ID, session.getUserId());
             long id = sessionService.scheduleSession(session);
             resp.setStatus(HttpServletResponse.SC_CREATED);
             resp.getWriter().write("{\"message\":\"Session scheduled\",\"sessionId\":" + id + "}");
         } catch (ValidationException e) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":" + JsonStrings.quote(e.getMessage()) + "}");
+        } catch (ConflictException e) {
+            resp.setStatus(HttpServletResponse.SC_CONFLICT);
+            resp.getWriter().write("{\"error\":" + JsonStrings.quote(e.getMessage()) + "}");
+        } catch (ServiceUnavailableException e) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
             resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
         } catch (Exception e) {
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -53,22 +102,223 @@ public class MindfulnessSessionServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Streams {@code {"results":[{"index":0,"status":201,"sessionId":..},..],"scheduled":n,"failed":m}}.
+     * The status line is sent before the body is read, so problems found later (malformed JSON, too
+     * many elements) end the result list early and are reported in a top-level {@code error} field.
+     * Elements already answered stay stored.
+     */
+    private void scheduleBatch(JsonStreamReader json, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setStatus(HttpServletResponse.SC_OK);
+        PrintWriter out = resp.getWriter();
+        out.write("{\"results\":[");
+        BatchProgress progress = new BatchProgress(out);
+        List<BatchItem> chunk = new ArrayList<>(BATCH_CHUNK);
+        String error = null;
+        try {
+            json.beginArray();
+            int index = 0;
+            while (json.hasNext()) {
+                if (index == BATCH_MAX_ITEMS) {
+                    error = "Too many sessions in one request; the limit is " + BATCH_MAX_ITEMS;
+                    break;
+                }
+                int position = index++;
+                if (json.peek() != '{') {
+                    json.skipValue();
+                    chunk.add(new BatchItem(position, null, "Each element must be a JSON object"));
+                } else {
+                    Map<String, String> fields = json.nextFlatObject();
+                    try {
+                        chunk.add(new BatchItem(position, toSession(fields::get), null));
+                    } catch (ValidationException e) {
+                        chunk.add(new BatchItem(position, null, e.getMessage()));
+                    }
+                }
+                if (chunk.size() == BATCH_CHUNK) {
+                    storeChunk(chunk, progress);
+                    resp.flushBuffer();
+                }
+            }
+            if (error == null) {
+                json.endArray();
+                json.endDocument();
+            }
+        } catch (JsonStreamReader.MalformedJsonException e) {
+            error = e.getMessage();
+        }
+        storeChunk(chunk, progress);
+        req.setAttribute(AccessLogFilter.ROWS, progress.scheduled);
+        out.write("],\"scheduled\":" + progress.scheduled + ",\"failed\":" + progress.failed);
+        if (error != null) {
+            out.write(",\"error\":" + JsonStrings.quote(error));
+        }
+        out.write("}");
+    }
+
+    private void storeChunk(List<BatchItem> chunk, BatchProgress progress) {
+        List<MindfulnessSession> sessions = new ArrayList<>(chunk.size());
+        for (BatchItem item : chunk) {
+            if (item.session() != null) {
+                sessions.add(item.session());
+            }
+        }
+        List<MindfulnessSessionService.ScheduleResult> results = List.of();
+        int failureStatus = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        String failure = null;
+        if (!sessions.isEmpty()) {
+            try (Deadline.Scope deadline = Deadline.startRequest()) {
+                results = sessionService.scheduleSessions(sessions);
+            } catch (ServiceUnavailableException e) {
+                failureStatus = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+                failure = e.getMessage();
+            } catch (RuntimeException e) {
+                failure = "Internal error";
+            }
+        }
+        int next = 0;
+        for (BatchItem item : chunk) {
+            if (item.session() == null) {
+                progress.write(item.index(), HttpServletResponse.SC_BAD_REQUEST, 0, item.error());
+            } else if (failure != null) {
+                progress.write(item.index(), failureStatus, 0, failure);
+            } else {
+                MindfulnessSessionService.ScheduleResult result = results.get(next++);
+                if (result.isScheduled()) {
+                    progress.write(item.index(), HttpServletResponse.SC_CREATED, result.sessionId(), null);
+                } else if (result.conflict()) {
+                    progress.write(item.index(), HttpServletResponse.SC_CONFLICT, 0, result.error());
+                } else {
+                    progress.write(item.index(), HttpServletResponse.SC_BAD_REQUEST, 0, result.error());
+                }
+            }
+        }
+        chunk.clear();
+    }
+
+    /**
+     * Builds a session from request fields, rejecting missing or malformed numbers and dates.
+     */
+    private static MindfulnessSession toSession(Function<String, String> field) throws ValidationException {
+        MindfulnessSession session = new MindfulnessSession();
+        session.setUserId(parseLong(field.apply("userId"), "userId"));
+        session.setTitle(field.apply("title"));
+        session.setDescription(field.apply("description"));
+        session.setCategory(field.apply("category"));
+        session.setDifficulty(field.apply("difficulty"));
+        String scheduledAt = field.apply("scheduledAt");
+        if (scheduledAt == null || scheduledAt.isBlank()) {
+            throw new ValidationException("scheduledAt is required");
+        }
+        try {
+            session.setScheduledAt(LocalDateTime.parse(scheduledAt.trim()));
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("scheduledAt must be an ISO date-time such as 2024-05-01T07:30");
+        }
+        session.setDurationMinutes((int) Math.min(Integer.MAX_VALUE,
+                parseLong(field.apply("durationMinutes"), "durationMinutes")));
+        session.setReflectionNotes(field.apply("reflectionNotes"));
+        return session;
+    }
+
+    private static long parseLong(String value, String name) throws ValidationException {
+        if (value == null || value.isBlank()) {
+            throw new ValidationException(name + " is required");
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ValidationException(name + " must be a whole number");
+        }
+    }
+
+    private record BatchItem(int index, MindfulnessSession session, String error) {
+    }
+
+    private static final class BatchProgress {
+        private final PrintWriter out;
+        private int scheduled;
+        private int failed;
+
+        BatchProgress(PrintWriter out) {
+            this.out = out;
+        }
+
+        void write(int index, int status, long sessionId, String error) {
+            out.write((scheduled + failed > 0 ? "," : "") + "{\"index\":" + index + ",\"status\":" + status);
+            if (error == null) {
+                scheduled++;
+                out.write(",\"sessionId\":" + sessionId + "}");
+            } else {
+                failed++;
+                out.write(",\"error\":" + JsonStrings.quote(error) + "}");
+            }
+        }
+    }
+
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         resp.setContentType("application/json");
         long userId = Long.parseLong(req.getParameter("userId"));
-        List<MindfulnessSession> sessions = sessionService.sessionsForUser(userId);
+        req.setAttribute(AccessLogFilter.USER_ID, userId);
+        List<MindfulnessSession> sessions;
+        try (Deadline.Scope deadline = Deadline.startRequest()) {
+            sessions = sessionService.sessionSummariesForUser(userId,
+                    req.getParameter("category"), req.getParameter("difficulty"));
+        } catch (ServiceUnavailableException e) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+            return;
+        }
         String payload = sessions.stream()
                 .map(s -> """
                         {
                           "id":%d,
                           "title":"%s",
                           "category":"%s",
-                          "durationMinutes":%d
+                          "durationMinutes":%d,
+                          "version":%d
                         }
-                        """.formatted(s.getId(), s.getTitle(), s.getCategory(), s.getDurationMinutes()))
+                        """.formatted(s.getId(), s.getTitle(), s.getCategory(), s.getDurationMinutes(), s.getVersion()))
                 .collect(Collectors.joining(",", "[", "]"));
+        req.setAttribute(AccessLogFilter.ROWS, sessions.size());
         resp.getWriter().write(payload);
     }
-}
 
+    /**
+     * Updates reflection notes and duration. {@code version} must be the version the client last
+     * read; a stale version is answered with {@code 409} so the client can reload and retry.
+     */
+    @Override
+    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        try (Deadline.Scope deadline = Deadline.startRequest()) {
+            long sessionId = Long.parseLong(req.getParameter("sessionId"));
+            int durationMinutes = Integer.parseInt(req.getParameter("durationMinutes"));
+            int version = Integer.parseInt(req.getParameter("version"));
+            if (sessionService.updateReflection(sessionId, req.getParameter("reflectionNotes"), durationMinutes, version)) {
+                resp.getWriter().write("{\"message\":\"Session updated\",\"version\":" + (version + 1) + "}");
+            } else {
+                resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                resp.getWriter().write("{\"error\":\"Session not found\"}");
+            }
+        } catch (NumberFormatException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"sessionId, durationMinutes and version must be numbers\"}");
+        } catch (ValidationException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (ConflictException e) {
+            resp.setStatus(HttpServletResponse.SC_CONFLICT);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (ServiceUnavailableException e) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (Exception e) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\":\"Internal error\"}");
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.guvi.mindfulness.progress;
+
+import java.util.Arrays;
+
+/**
+ * Sorted {@code int} bucket keys (days, weeks or months) with a minute total each, stored as
+ * varint pairs of (gap to the previous key, minutes) in one {@code byte[]}. A typical day costs two
+ * or three bytes instead of a boxed map entry.
+ * <p>
+ * Every {@value #CHECKPOINT_INTERVAL}th entry is a checkpoint whose absolute key and byte offset
+ * are kept aside, so a range is found by binary search over the checkpoints and decoding at most
+ * one block before the first bucket returned. Adding to the newest bucket, or appending a newer
+ * one, rewrites at most the last block; older buckets rewrite the blocks after them.
+ * <p>
+ * Not thread-safe; {@link PracticeHistory} guards each series with its owner.
+ */
+final class MinuteSeries {
+
+    private static final int CHECKPOINT_INTERVAL = 32;
+
+    @FunctionalInterface
+    interface BucketVisitor {
+        void accept(int key, int minutes);
+    }
+
+    private byte[] data = new byte[16];
+    private int length;
+    private int size;
+    private int[] checkpointKeys = new int[1];
+    private int[] checkpointOffsets = new int[1];
+    private int checkpoints;
+    private int lastKey;
+
+    /**
+     * Adds {@code minutes}, which may be negative, to bucket {@code key}. A bucket brought back to
+     * zero stays in the series but is no longer visited.
+     */
+    void add(int key, int minutes) {
+        if (size == 0 || key > lastKey) {
+            append(key, minutes);
+            return;
+        }
+        int block = floorCheckpoint(key);
+        int first = block * CHECKPOINT_INTERVAL;
+        int count = size - first;
+        int[] keys = new int[count + 1];
+        int[] values = new int[count + 1];
+        int offset = checkpointOffsets[block];
+        int current = 0;
+        for (int i = 0; i < count; i++) {
+            int gap = readVarint(offset);
+            offset += varintLength(gap);
+            current = (first + i) % CHECKPOINT_INTERVAL == 0 ? checkpointKeys[(first + i) / CHECKPOINT_INTERVAL]
+                    : current + gap;
+            keys[i] = current;
+            values[i] = readVarint(offset);
+            offset += varintLength(values[i]);
+        }
+        int position = Arrays.binarySearch(keys, 0, count, key);
+        if (position >= 0) {
+            values[position] += minutes;
+        } else {
+            position = -position - 1;
+            System.arraycopy(keys, position, keys, position + 1, count - position);
+            System.arraycopy(values, position, values, position + 1, count - position);
+            keys[position] = key;
+            values[position] = minutes;
+            count++;
+        }
+        length = checkpointOffsets[block];
+        size = first;
+        checkpoints = block;
+        for (int i = 0; i < count; i++) {
+            append(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * Visits the non-empty buckets with {@code fromKey <= key < toKey}, oldest first.
+     *
+     * @return the number of buckets visited
+     */
+    int forEach(int fromKey, int toKey, BucketVisitor visitor) {
+        if (size == 0 || fromKey >= toKey || fromKey > lastKey) {
+            return 0;
+        }
+        int block = floorCheckpoint(fromKey);
+        int index = block * CHECKPOINT_INTERVAL;
+        int offset = checkpointOffsets[block];
+        int key = 0;
+        int visited = 0;
+        for (; index < size; index++) {
+            int gap = readVarint(offset);
+            offset += varintLength(gap);
+            key = index % CHECKPOINT_INTERVAL == 0 ? checkpointKeys[index / CHECKPOINT_INTERVAL] : key + gap;
+            int minutes = readVarint(offset);
+            offset += varintLength(minutes);
+            if (key >= toKey) {
+                break;
+            }
+            if (key >= fromKey && minutes != 0) {
+                visitor.accept(key, minutes);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Releases the spare capacity left by growing, once a series is fully loaded.
+     */
+    void trim() {
+        data = Arrays.copyOf(data, length);
+        checkpointKeys = Arrays.copyOf(checkpointKeys, Math.max(1, checkpoints));
+        checkpointOffsets = Arrays.copyOf(checkpointOffsets, Math.max(1, checkpoints));
+    }
+
+    private void append(int key, int minutes) {
+        ensureCapacity(10);
+        if (size % CHECKPOINT_INTERVAL == 0) {
+            if (checkpoints == checkpointKeys.length) {
+                checkpointKeys = Arrays.copyOf(checkpointKeys, checkpoints * 2);
+                checkpointOffsets = Arrays.copyOf(checkpointOffsets, checkpoints * 2);
+            }
+            checkpointKeys[checkpoints] = key;
+            checkpointOffsets[checkpoints] = length;
+            checkpoints++;
+            writeVarint(0);
+        } else {
+            writeVarint(key - lastKey);
+        }
+        writeVarint(minutes);
+        lastKey = key;
+        size++;
+    }
+
+    /**
+     * Index of the last checkpoint whose key is at most {@code key}, or {@code 0} if none is.
+     */
+    private int floorCheckpoint(int key) {
+        int low = 0;
+        int high = checkpoints - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (checkpointKeys[middle] <= key) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(length + extra, data.length + (data.length >> 1)));
+        }
+    }
+
+    private void writeVarint(int value) {
+        while ((value & ~0x7f) != 0) {
+            data[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    private int readVarint(int offset) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[offset++];
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int varintLength(int value) {
+        return value == 0 ? 1 : (38 - Integer.numberOfLeadingZeros(value)) / 7;
+    }
+}
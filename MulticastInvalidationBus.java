@@ -0,0 +1,158 @@
+package com.guvi.mindfulness.cache;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link InvalidationBus} over UDP multicast. Every node joins the same group and sends one small
+ * datagram per write: {@code magic, nodeId, sequence, userId, sessionId}. Sequence numbers are per
+ * sending node, so a receiver that sees a gap knows it missed an invalidation and reports it.
+ * <p>
+ * Several nodes on one machine can share a group: each socket sets {@code SO_REUSEADDR} and
+ * loopback delivery is on, with datagrams from the node itself filtered out by node id.
+ */
+public final class MulticastInvalidationBus implements InvalidationBus {
+
+    private static final int MAGIC = 0x4D534331; // "MSC1"
+    private static final int MESSAGE_BYTES = 4 + 8 + 8 + 8 + 8;
+
+    private final DatagramChannel channel;
+    private final MembershipKey membership;
+    private final InetSocketAddress group;
+    private final long nodeId = ThreadLocalRandom.current().nextLong();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, Long> lastSequenceByNode = new ConcurrentHashMap<>();
+    private Thread receiver;
+
+    /**
+     * @param networkInterface interface to send and receive on, e.g. {@code lo} for nodes on one
+     *                         machine; {@code null} picks the first multicast-capable interface
+     */
+    public MulticastInvalidationBus(String groupAddress, int port, String networkInterface, int ttl)
+            throws IOException {
+        InetAddress address = InetAddress.getByName(groupAddress);
+        NetworkInterface nic = networkInterface != null
+                ? NetworkInterface.getByName(networkInterface)
+                : defaultInterface();
+        if (nic == null) {
+            throw new SocketException("No multicast network interface " + (networkInterface != null ? networkInterface : "found"));
+        }
+        this.group = new InetSocketAddress(address, port);
+        this.channel = DatagramChannel.open(StandardProtocolFamily.INET)
+                .setOption(StandardSocketOptions.SO_REUSEADDR, true)
+                .bind(new InetSocketAddress(port))
+                .setOption(StandardSocketOptions.IP_MULTICAST_IF, nic)
+                .setOption(StandardSocketOptions.IP_MULTICAST_TTL, ttl)
+                .setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        this.membership = channel.join(address, nic);
+    }
+
+    /**
+     * Bus configured from {@code SESSION_CACHE_GROUP} (default 239.255.77.77),
+     * {@code SESSION_CACHE_PORT} (default 47077), {@code SESSION_CACHE_INTERFACE} and
+     * {@code SESSION_CACHE_MULTICAST_TTL} (default 1, the local network only).
+     */
+    public static MulticastInvalidationBus fromSystemProperties() throws IOException {
+        return new MulticastInvalidationBus(
+                System.getProperty("SESSION_CACHE_GROUP", "239.255.77.77"),
+                Integer.getInteger("SESSION_CACHE_PORT", 47077),
+                System.getProperty("SESSION_CACHE_INTERFACE"),
+                Integer.getInteger("SESSION_CACHE_MULTICAST_TTL", 1));
+    }
+
+    @Override
+    public void publish(long userId, long sessionId) {
+        ByteBuffer message = ByteBuffer.allocate(MESSAGE_BYTES)
+                .putInt(MAGIC)
+                .putLong(nodeId)
+                .putLong(sequence.incrementAndGet())
+                .putLong(userId)
+                .putLong(sessionId)
+                .flip();
+        try {
+            channel.send(message, group);
+        } catch (IOException e) {
+            // Peers notice the sequence gap on our next message, or their entries expire.
+        }
+    }
+
+    @Override
+    public synchronized void start(Listener listener) {
+        if (receiver != null) {
+            return;
+        }
+        receiver = new Thread(() -> receive(listener), "session-cache-invalidation");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    @Override
+    public void close() {
+        membership.drop();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+
+    private void receive(Listener listener) {
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        while (channel.isOpen()) {
+            buffer.clear();
+            try {
+                channel.receive(buffer);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                listener.onMessagesLost();
+                continue;
+            }
+            buffer.flip();
+            if (buffer.remaining() != MESSAGE_BYTES || buffer.getInt() != MAGIC) {
+                continue;
+            }
+            long sender = buffer.getLong();
+            long seq = buffer.getLong();
+            if (sender == nodeId) {
+                continue;
+            }
+            Long previous = lastSequenceByNode.put(sender, seq);
+            // Unknown senders count from 1; anything else means we missed something they sent.
+            if (seq != (previous == null ? 1 : previous + 1)) {
+                listener.onMessagesLost();
+            }
+            listener.onInvalidate(buffer.getLong(), buffer.getLong());
+        }
+    }
+
+    /**
+     * First interface that is up and multicast-capable, preferring a real network over loopback.
+     */
+    private static NetworkInterface defaultInterface() throws SocketException {
+        NetworkInterface loopback = null;
+        for (NetworkInterface nic : NetworkInterface.networkInterfaces().toList()) {
+            if (!nic.isUp() || !nic.supportsMulticast() || nic.inetAddresses().findAny().isEmpty()) {
+                continue;
+            }
+            if (!nic.isLoopback()) {
+                return nic;
+            }
+            loopback = nic;
+        }
+        return loopback;
+    }
+}
@@ -0,0 +1,68 @@
+package com.guvi.mindfulness.service;
+
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.dao.StorageTransaction;
+import com.guvi.mindfulness.exception.ValidationException;
+import com.guvi.mindfulness.model.MindfulnessSession;
+import com.guvi.mindfulness.model.User;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registers a user and schedules the starter programme in one transaction: either the account and
+ * all starter sessions are stored with a single commit, or nothing is.
+ */
+public class OnboardingService {
+
+    private static final LocalTime STARTER_TIME = LocalTime.of(7, 30);
+    private static final List<StarterSession> STARTER_PROGRAMME = List.of(
+            new StarterSession(1, "Breath awareness", "Breath", 10),
+            new StarterSession(2, "Body scan", "Body Scan", 15),
+            new StarterSession(3, "Steady focus", "Focus", 15));
+
+    private final UserService userService;
+    private final MindfulnessSessionService sessionService;
+
+    public OnboardingService(UserService userService, MindfulnessSessionService sessionService) {
+        this.userService = userService;
+        this.sessionService = sessionService;
+    }
+
+    /**
+     * @return the new user's id and the ids of the scheduled starter sessions
+     */
+    public Enrollment enroll(User user) throws ValidationException {
+        // Hash before the transaction so the slow part does not hold the connection.
+        String passwordHash = userService.prepareRegistration(user);
+        try (StorageTransaction work = Storage.begin()) {
+            long userId = userService.registerUser(user, passwordHash);
+            List<Long> sessionIds = new ArrayList<>(STARTER_PROGRAMME.size());
+            LocalDate today = LocalDate.now();
+            for (StarterSession starter : STARTER_PROGRAMME) {
+                sessionIds.add(sessionService.scheduleSession(starter.toSession(userId, today)));
+            }
+            work.commit();
+            return new Enrollment(userId, List.copyOf(sessionIds));
+        }
+    }
+
+    public record Enrollment(long userId, List<Long> sessionIds) {
+    }
+
+    private record StarterSession(int dayOffset, String title, String category, int durationMinutes) {
+
+        MindfulnessSession toSession(long userId, LocalDate start) {
+            MindfulnessSession session = new MindfulnessSession();
+            session.setUserId(userId);
+            session.setTitle(title);
+            session.setCategory(category);
+            session.setDifficulty("Beginner");
+            session.setDurationMinutes(durationMinutes);
+            session.setScheduledAt(start.plusDays(dayOffset).atTime(STARTER_TIME));
+            return session;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.guvi.mindfulness.loadtest;
+
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
+import com.guvi.mindfulness.resilience.Deadline;
+import com.guvi.mindfulness.security.PasswordHasher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Picks {@code PASSWORD_HASH_ITERATIONS} for this machine. First it times single PBKDF2 hashes on
+ * one thread and scales the iteration count until a hash takes about {@code PWBENCH_TARGET_MS}
+ * (default 250). Then {@code PWBENCH_CLIENTS} threads (default four per processor) call the
+ * {@link PasswordHasher} pool at that cost under the usual request deadline, showing the latency a
+ * login sees when many arrive at once and how many are shed with {@code 503}. Prints JSON.
+ * <p>
+ * Example: {@code java -DPWBENCH_TARGET_MS=150 -DPASSWORD_HASH_THREADS=4 ... PasswordHashBenchmark}
+ */
+public final class PasswordHashBenchmark {
+
+    private static final char[] PASSWORD = "correct horse battery staple".toCharArray();
+    private static final int SAMPLES = 5;
+    private static final int ROUNDING = 10_000;
+
+    private PasswordHashBenchmark() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long targetMillis = Long.getLong("PWBENCH_TARGET_MS", 250L);
+        int processors = Runtime.getRuntime().availableProcessors();
+        int clients = Integer.getInteger("PWBENCH_CLIENTS", 4 * processors);
+        int callsPerClient = Integer.getInteger("PWBENCH_CALLS", 20);
+
+        // Warm up the JIT on a cheap cost, then extrapolate from a measured one.
+        for (int i = 0; i < 20; i++) {
+            PasswordHasher.encode(PASSWORD, 10_000, PasswordHasher.salt());
+        }
+        int iterations = 50_000;
+        double millis = medianMillis(iterations);
+        for (int round = 0; round < 3; round++) {
+            iterations = Math.max(ROUNDING, (int) Math.round(iterations * targetMillis / millis / ROUNDING) * ROUNDING);
+            millis = medianMillis(iterations);
+            if (Math.abs(millis - targetMillis) <= targetMillis * 0.05) {
+                break;
+            }
+        }
+
+        PasswordHasher hasher = new PasswordHasher(iterations,
+                Integer.getInteger("PASSWORD_HASH_THREADS", processors),
+                Integer.getInteger("PASSWORD_HASH_QUEUE", 32));
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder completed = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(clients);
+        for (int c = 0; c < clients; c++) {
+            Thread client = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < callsPerClient; i++) {
+                    long begin = System.nanoTime();
+                    try (Deadline.Scope deadline = Deadline.startRequest()) {
+                        hasher.hash("correct horse battery staple");
+                        completed.increment();
+                        latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - begin));
+                    } catch (ServiceUnavailableException e) {
+                        // Counted by the hasher; a real client would back off for Retry-After.
+                    }
+                }
+            }, "pwbench-" + c);
+            threads.add(client);
+            client.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread client : threads) {
+            client.join();
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+        hasher.close();
+
+        System.out.println("{\"targetMillis\":" + targetMillis
+                + ",\"recommendedIterations\":" + iterations
+                + ",\"singleHashMillis\":" + Math.round(millis * 10) / 10.0
+                + ",\"processors\":" + processors
+                + ",\"clients\":" + clients
+                + ",\"hashesPerSecond\":" + Math.round(completed.sum() * 1e9 / elapsedNanos)
+                + ",\"p50Millis\":" + latency.percentile(50) / 1000
+                + ",\"p99Millis\":" + latency.percentile(99) / 1000
+                + ",\"maxMillis\":" + latency.max() / 1000
+                + ",\"completed\":" + completed.sum()
+                + ",\"shed\":" + hasher.shedCalls() + "}");
+    }
+
+    private static double medianMillis(int iterations) {
+        double[] samples = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long begin = System.nanoTime();
+            PasswordHasher.encode(PASSWORD, iterations, PasswordHasher.salt());
+            samples[i] = (System.nanoTime() - begin) / 1e6;
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+    }
+}
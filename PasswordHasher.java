@@ -0,0 +1,221 @@
+package com.guvi.mindfulness.security;
+
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
+import com.guvi.mindfulness.resilience.Deadline;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 password hashes, stored as
+ * {@code pbkdf2-sha256$<iterations>$<salt>$<hash>} (Base64) so the cost can be raised later
+ * without invalidating existing hashes.
+ * <p>
+ * Hashing is deliberately slow, so it never runs on the calling servlet thread. Work goes to a
+ * pool of {@code PASSWORD_HASH_THREADS} threads (default: the processor count) with at most
+ * {@code PASSWORD_HASH_QUEUE} (default 32) requests waiting. When the queue is full, or the
+ * request deadline passes while waiting, the call is shed with a
+ * {@link ServiceUnavailableException} instead of piling up behind the CPU.
+ * {@code PASSWORD_HASH_ITERATIONS} (default 310000) sets the cost of new hashes;
+ * {@code com.guvi.mindfulness.loadtest.PasswordHashBenchmark} picks one for a target latency.
+ */
+public final class PasswordHasher implements AutoCloseable {
+
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static volatile PasswordHasher shared;
+
+    private final int iterations;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder shed = new LongAdder();
+    /** Verified against when the account does not exist, so a miss costs as much as a wrong password. */
+    private final String decoy;
+
+    public PasswordHasher(int iterations, int threads, int queueCapacity) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be positive");
+        }
+        this.iterations = iterations;
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.decoy = encode("decoy-password".toCharArray(), iterations, salt());
+    }
+
+    /**
+     * Process-wide hasher configured from system properties.
+     */
+    public static PasswordHasher shared() {
+        PasswordHasher hasher = shared;
+        if (hasher == null) {
+            synchronized (PasswordHasher.class) {
+                hasher = shared;
+                if (hasher == null) {
+                    hasher = new PasswordHasher(Integer.getInteger("PASSWORD_HASH_ITERATIONS", 310_000),
+                            Integer.getInteger("PASSWORD_HASH_THREADS", Runtime.getRuntime().availableProcessors()),
+                            Integer.getInteger("PASSWORD_HASH_QUEUE", 32));
+                    shared = hasher;
+                }
+            }
+        }
+        return hasher;
+    }
+
+    /**
+     * Hashes a new password with a fresh salt at the configured cost.
+     *
+     * @throws ServiceUnavailableException when the hashing pool is saturated
+     */
+    public String hash(String password) {
+        return submit(() -> encode(password.toCharArray(), iterations, salt()));
+    }
+
+    /**
+     * Checks a password against a stored value: a hash made by this class, or a plain-text
+     * password left from before hashing was introduced. {@code stored == null} (no such account)
+     * costs a full verification and fails.
+     *
+     * @throws ServiceUnavailableException when the hashing pool is saturated
+     */
+    public boolean verify(String password, String stored) {
+        if (password == null) {
+            return false;
+        }
+        if (stored == null) {
+            submit(() -> matches(password, decoy));
+            return false;
+        }
+        if (!isHash(stored)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        return submit(() -> matches(password, stored));
+    }
+
+    /**
+     * Whether a stored value should be replaced after the next successful login: it is plain text,
+     * unreadable, or hashed at a lower cost than the current setting.
+     */
+    public boolean needsRehash(String stored) {
+        if (!isHash(stored)) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(stored.substring(PREFIX.length(), stored.indexOf('$', PREFIX.length()))) < iterations;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    public static boolean isHash(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    public int iterations() {
+        return iterations;
+    }
+
+    /**
+     * Calls rejected because the pool was saturated or the deadline passed.
+     */
+    public long shedCalls() {
+        return shed.sum();
+    }
+
+    /**
+     * Hashes on the calling thread, for benchmarks that time the raw cost.
+     */
+    public static String encode(char[] password, int iterations, byte[] salt) {
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + '$' + base64.encodeToString(salt) + '$'
+                + base64.encodeToString(derive(password, iterations, salt));
+    }
+
+    public static byte[] salt() {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        return salt;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static boolean matches(String password, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        int cost;
+        byte[] salt;
+        byte[] expected;
+        try {
+            cost = Integer.parseInt(parts[1]);
+            salt = Base64.getDecoder().decode(parts[2]);
+            expected = Base64.getDecoder().decode(parts[3]);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return cost > 0 && MessageDigest.isEqual(derive(password.toCharArray(), cost, salt), expected);
+    }
+
+    private static byte[] derive(char[] password, int iterations, byte[] salt) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_BYTES * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private <T> T submit(Callable<T> work) {
+        Future<T> future;
+        try {
+            future = executor.submit(work);
+        } catch (RejectedExecutionException e) {
+            shed.increment();
+            throw new ServiceUnavailableException("Too many password hashing requests", 1);
+        }
+        try {
+            long remaining = Deadline.remainingMillis();
+            return remaining == Long.MAX_VALUE ? future.get() : future.get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Drops the task if it is still queued; a hash already running finishes and is discarded.
+            future.cancel(false);
+            executor.remove((Runnable) future);
+            shed.increment();
+            throw new ServiceUnavailableException("Password hashing did not finish within the request deadline", 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            throw new ServiceUnavailableException("Interrupted while hashing a password", 1, e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.guvi.mindfulness.progress;
+
+import com.guvi.mindfulness.cache.InvalidationBus;
+import com.guvi.mindfulness.cache.SessionListCache;
+import com.guvi.mindfulness.dao.SessionStore;
+import com.guvi.mindfulness.dao.Storage;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Minutes of practice per user per day, with week (Monday to Sunday) and month totals kept
+ * alongside, for history charts. A session counts on the day it is scheduled for, with its full
+ * duration.
+ * <p>
+ * A user's three {@link MinuteSeries} are built from one grouped query on the
+ * {@code (user_id, scheduled_at, duration_minutes)} index plus the archive, then maintained on
+ * writes: new sessions and duration changes on this node are added to the day, week and month
+ * once committed, deletions drop the user's series. Writes on peers arrive through the
+ * {@link SessionListCache} bus and drop the user's series too. At most
+ * {@code PRACTICE_HISTORY_MAX_USERS} (default 50000) users are kept.
+ * <p>
+ * A range costs a binary search plus the buckets returned, whatever the length of the history.
+ * <p>
+ * Writers call {@link #beginWrite(long)} before the statement and pass the ticket to
+ * {@link #added}, so a series loaded while the write was in flight, which may or may not include
+ * it, is dropped rather than counted twice.
+ */
+public final class PracticeHistory implements InvalidationBus.Listener {
+
+    public enum Resolution {
+        DAY, WEEK, MONTH;
+
+        int key(LocalDate date) {
+            return switch (this) {
+                case DAY -> (int) date.toEpochDay();
+                // Epoch day 0 was a Thursday; shifting by three makes weeks start on Monday.
+                case WEEK -> (int) Math.floorDiv(date.toEpochDay() + 3, 7);
+                case MONTH -> date.getYear() * 12 + date.getMonthValue() - 1;
+            };
+        }
+
+        LocalDate start(int key) {
+            return switch (this) {
+                case DAY -> LocalDate.ofEpochDay(key);
+                case WEEK -> LocalDate.ofEpochDay(key * 7L - 3);
+                case MONTH -> LocalDate.of(Math.floorDiv(key, 12), Math.floorMod(key, 12) + 1, 1);
+            };
+        }
+
+        /**
+         * Number of buckets overlapping {@code [from, to)}.
+         */
+        public int buckets(LocalDate from, LocalDate to) {
+            return from.isBefore(to) ? key(to.minusDays(1)) - key(from) + 1 : 0;
+        }
+    }
+
+    /**
+     * Minutes in the bucket starting on {@code start}.
+     */
+    public record Point(LocalDate start, int minutes) {
+    }
+
+    private static final int STRIPES = 64;
+
+    private static volatile PracticeHistory shared;
+
+    private final SessionStore store;
+    private final int maxUsers;
+    private final ConcurrentMap<Long, UserHistory> histories = new ConcurrentHashMap<>();
+    private final AtomicLongArray writes = new AtomicLongArray(STRIPES);
+
+    public PracticeHistory(SessionStore store, int maxUsers) {
+        this.store = store;
+        this.maxUsers = maxUsers;
+    }
+
+    /**
+     * Process-wide history over {@link Storage#sessions()}, listening to peer invalidations of the
+     * shared {@link SessionListCache}.
+     */
+    public static PracticeHistory shared() {
+        PracticeHistory history = shared;
+        if (history == null) {
+            synchronized (PracticeHistory.class) {
+                history = shared;
+                if (history == null) {
+                    history = new PracticeHistory(Storage.sessions(),
+                            Integer.getInteger("PRACTICE_HISTORY_MAX_USERS", 50_000));
+                    SessionListCache.shared().addPeerListener(history);
+                    shared = history;
+                }
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Non-empty buckets of the given resolution overlapping {@code [from, to)}, oldest first. The
+     * first and last bucket cover their whole week or month even if the range starts or ends
+     * inside it.
+     */
+    public List<Point> range(long userId, LocalDate from, LocalDate to, Resolution resolution) throws SQLException {
+        int fromKey = resolution.key(from);
+        int toKey = resolution.key(to.minusDays(1)) + 1;
+        UserHistory history = Storage.inTransaction() ? load(userId) : cached(userId);
+        List<Point> points = new ArrayList<>();
+        synchronized (history) {
+            history.series(resolution).forEach(fromKey, toKey,
+                    (key, minutes) -> points.add(new Point(resolution.start(key), minutes)));
+        }
+        return points;
+    }
+
+    /**
+     * Announces a write to one of the user's sessions.
+     *
+     * @return the ticket to pass to {@link #added}
+     */
+    public long beginWrite(long userId) {
+        return writes.incrementAndGet(stripe(userId));
+    }
+
+    /**
+     * Adds {@code minutes}, negative when a session was shortened, to the day of
+     * {@code scheduledAt} and its week and month once the current transaction commits.
+     */
+    public void added(long userId, long ticket, LocalDateTime scheduledAt, int minutes) {
+        afterCommit(() -> {
+            writes.incrementAndGet(stripe(userId));
+            UserHistory history = histories.get(userId);
+            if (history == null) {
+                return;
+            }
+            if (history.loadedAt >= ticket) {
+                // Loaded while the write was in flight: it may already be counted.
+                histories.remove(userId, history);
+                return;
+            }
+            synchronized (history) {
+                history.add(scheduledAt.toLocalDate(), minutes);
+            }
+        });
+    }
+
+    /**
+     * Drops the user's series once the current transaction commits, e.g. after a session was
+     * deleted.
+     */
+    public void changed(long userId) {
+        afterCommit(() -> onInvalidate(userId, 0));
+    }
+
+    /**
+     * A peer changed a session of {@code userId}. Messages that only carry the session drop every
+     * user, as the owner is not tracked here.
+     */
+    @Override
+    public void onInvalidate(long userId, long sessionId) {
+        if (userId == 0) {
+            clear();
+            return;
+        }
+        writes.incrementAndGet(stripe(userId));
+        histories.remove(userId);
+    }
+
+    @Override
+    public void onMessagesLost() {
+        clear();
+    }
+
+    public void clear() {
+        for (int i = 0; i < STRIPES; i++) {
+            writes.incrementAndGet(i);
+        }
+        histories.clear();
+    }
+
+    private UserHistory cached(long userId) throws SQLException {
+        UserHistory history = histories.get(userId);
+        if (history != null) {
+            return history;
+        }
+        long seen = writes.get(stripe(userId));
+        UserHistory fresh = load(userId);
+        fresh.loadedAt = seen;
+        // A write to this stripe while we were loading may or may not be in what we loaded.
+        histories.compute(userId, (id, current) -> current != null ? current
+                : writes.get(stripe(userId)) == seen ? fresh : null);
+        if (histories.size() > maxUsers) {
+            evictOne(userId);
+        }
+        return fresh;
+    }
+
+    private UserHistory load(long userId) throws SQLException {
+        UserHistory history = new UserHistory();
+        for (SessionStore.DayMinutes day : store.findDailyMinutes(userId)) {
+            history.add(day.day(), day.minutes());
+        }
+        history.days.trim();
+        history.weeks.trim();
+        history.months.trim();
+        return history;
+    }
+
+    private void evictOne(long keep) {
+        Iterator<Map.Entry<Long, UserHistory>> users = histories.entrySet().iterator();
+        while (users.hasNext()) {
+            if (users.next().getKey() != keep) {
+                users.remove();
+                return;
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (!Storage.afterCommit(update)) {
+            update.run();
+        }
+    }
+
+    private static int stripe(long userId) {
+        return (Long.hashCode(userId) & 0x7fffffff) % STRIPES;
+    }
+
+    private static final class UserHistory {
+        final MinuteSeries days = new MinuteSeries();
+        final MinuteSeries weeks = new MinuteSeries();
+        final MinuteSeries months = new MinuteSeries();
+        long loadedAt = Long.MAX_VALUE;
+
+        void add(LocalDate day, int minutes) {
+            days.add(Resolution.DAY.key(day), minutes);
+            weeks.add(Resolution.WEEK.key(day), minutes);
+            months.add(Resolution.MONTH.key(day), minutes);
+        }
+
+        MinuteSeries series(Resolution resolution) {
+            return switch (resolution) {
+                case DAY -> days;
+                case WEEK -> weeks;
+                case MONTH -> months;
+            };
+        }
+    }
+}
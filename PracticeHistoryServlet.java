@@ -0,0 +1,108 @@
+package com.guvi.mindfulness.servlet;
+
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
+import com.guvi.mindfulness.exception.ValidationException;
+import com.guvi.mindfulness.progress.PracticeHistory;
+import com.guvi.mindfulness.resilience.Deadline;
+import com.guvi.mindfulness.service.MindfulnessSessionService;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Minutes practised over time for history charts, e.g.
+ * {@code /api/sessions/history?userId=42&from=2024-01-01&to=2024-07-01&resolution=week}. Answers
+ * {@code {"userId":42,"resolution":"week","from":"..","to":"..","points":[{"start":"2024-01-01","minutes":..}],"totalMinutes":..}}
+ * with one point per day, week (starting Monday) or month that has practice; missing buckets are
+ * zero. {@code to} is exclusive and defaults to tomorrow, {@code from} to 30 days, 26 weeks or 12
+ * months before it, and {@code resolution} to {@code day}.
+ */
+@WebServlet(name = "PracticeHistoryServlet", urlPatterns = "/api/sessions/history", loadOnStartup = 1)
+public class PracticeHistoryServlet extends HttpServlet {
+
+    private transient MindfulnessSessionService sessionService;
+
+    @Override
+    public void init() throws ServletException {
+        this.sessionService = new MindfulnessSessionService(Storage.sessions());
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        long userId;
+        PracticeHistory.Resolution resolution;
+        LocalDate from;
+        LocalDate to;
+        try {
+            userId = Long.parseLong(req.getParameter("userId"));
+            String value = req.getParameter("resolution");
+            resolution = value == null || value.isBlank() ? PracticeHistory.Resolution.DAY
+                    : PracticeHistory.Resolution.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            String end = req.getParameter("to");
+            to = end == null || end.isBlank() ? LocalDate.now().plusDays(1) : LocalDate.parse(end.trim());
+            String start = req.getParameter("from");
+            from = start != null && !start.isBlank() ? LocalDate.parse(start.trim()) : switch (resolution) {
+                case DAY -> to.minusDays(30);
+                case WEEK -> to.minusWeeks(26);
+                case MONTH -> to.minusMonths(12);
+            };
+        } catch (NumberFormatException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"userId must be a number\"}");
+            return;
+        } catch (IllegalArgumentException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"resolution must be day, week or month\"}");
+            return;
+        } catch (DateTimeParseException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"from and to must be ISO dates such as 2024-05-01\"}");
+            return;
+        }
+        req.setAttribute(AccessLogFilter.USER_ID, userId);
+        List<PracticeHistory.Point> points;
+        try (Deadline.Scope deadline = Deadline.startRequest()) {
+            points = sessionService.practiceHistory(userId, from, to, resolution);
+        } catch (ValidationException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+            return;
+        } catch (ServiceUnavailableException e) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+            return;
+        } catch (Exception e) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\":\"Internal error\"}");
+            return;
+        }
+        long total = 0;
+        StringBuilder json = new StringBuilder(96 + points.size() * 40);
+        json.append("{\"userId\":").append(userId)
+                .append(",\"resolution\":\"").append(resolution.name().toLowerCase(Locale.ROOT)).append('"')
+                .append(",\"from\":\"").append(from).append("\",\"to\":\"").append(to).append('"')
+                .append(",\"points\":[");
+        for (int i = 0; i < points.size(); i++) {
+            PracticeHistory.Point point = points.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"start\":\"").append(point.start()).append("\",\"minutes\":").append(point.minutes()).append('}');
+            total += point.minutes();
+        }
+        json.append("],\"totalMinutes\":").append(total).append('}');
+        req.setAttribute(AccessLogFilter.ROWS, points.size());
+        resp.getWriter().write(json.toString());
+    }
+}
@@ -0,0 +1,44 @@
+package com.guvi.mindfulness.servlet;
+
+/**
+ * Readiness flag shared through the servlet context. {@link WarmupListener} flips it once the
+ * application is warm and {@link HealthServlet} reports it to the load balancer.
+ */
+public final class Readiness {
+
+    public static final String ATTRIBUTE = Readiness.class.getName();
+
+    public enum State {
+        STARTING, READY, FAILED
+    }
+
+    private volatile State state = State.STARTING;
+    private volatile String detail = "Warm-up in progress";
+
+    public State getState() {
+        return state;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public boolean isReady() {
+        return state == State.READY;
+    }
+
+    void markReady(String detail) {
+        this.detail = detail;
+        this.state = State.READY;
+    }
+
+    void markFailed(String detail) {
+        this.detail = detail;
+        this.state = State.FAILED;
+    }
+
+    void markStarting(String detail) {
+        this.detail = detail;
+        this.state = State.STARTING;
+    }
+}
@@ -0,0 +1,90 @@
+package com.guvi.mindfulness.dao;
+
+import com.guvi.mindfulness.jdbc.DBConnection;
+import com.guvi.mindfulness.model.LookupDictionary;
+import com.guvi.mindfulness.model.MindfulnessCourse;
+import com.guvi.mindfulness.resilience.Deadline;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MySQL reads for course recommendations. Scans run on their own read-only connections from
+ * {@link DBConnection#openReportingConnection()}, so parallel scoring shards neither share the
+ * OLTP connection nor load the primary when {@code REPORT_DB_HOST} points at a replica. The usage
+ * scan also serves on-demand scoring of single users and honours the request {@link Deadline}.
+ */
+public class RecommendationDAO implements RecommendationStore {
+
+    private static final String SELECT_COURSES_SQL = """
+            SELECT id, title, description, instructor, level, duration_minutes, category_id
+            FROM mindfulness_courses
+            """;
+
+    private static final String MAX_USER_ID_SQL = "SELECT MAX(id) FROM users";
+
+    private static final String SELECT_USAGE_SQL = """
+            SELECT u.id, u.focus_area, s.category_id, s.difficulty_id,
+                   COUNT(s.id) AS sessions, COALESCE(SUM(s.duration_minutes), 0) AS minutes
+            FROM users u
+            LEFT JOIN mindfulness_sessions s ON s.user_id = u.id AND s.scheduled_at >= ?
+            WHERE u.id >= ? AND u.id < ?
+            GROUP BY u.id, u.focus_area, s.category_id, s.difficulty_id
+            ORDER BY u.id
+            """;
+
+    private static final int FETCH_SIZE = 1000;
+
+    @Override
+    public List<MindfulnessCourse> findCourses() throws SQLException {
+        List<MindfulnessCourse> courses = new ArrayList<>();
+        try (Connection connection = DBConnection.openReportingConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_COURSES_SQL);
+             ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                MindfulnessCourse course = new MindfulnessCourse(rs.getLong("id"), rs.getString("title"),
+                        rs.getString("description"), rs.getString("instructor"), rs.getString("level"),
+                        rs.getInt("duration_minutes"));
+                short category = rs.getShort("category_id");
+                course.setCategoryCode(rs.wasNull() ? LookupDictionary.NONE : category);
+                courses.add(course);
+            }
+        }
+        return courses;
+    }
+
+    @Override
+    public long maxUserId() throws SQLException {
+        try (Connection connection = DBConnection.openReportingConnection();
+             PreparedStatement statement = connection.prepareStatement(MAX_USER_ID_SQL);
+             ResultSet rs = statement.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    @Override
+    public List<UsageRow> findUsage(long fromUserId, long toUserId, LocalDateTime since) throws SQLException {
+        List<UsageRow> rows = new ArrayList<>();
+        try (Connection connection = DBConnection.openReportingConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_USAGE_SQL)) {
+            Deadline.applyTo(statement);
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setTimestamp(1, Timestamp.valueOf(since));
+            statement.setLong(2, fromUserId);
+            statement.setLong(3, toUserId);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new UsageRow(rs.getLong(1), rs.getString(2), rs.getShort(3), rs.getShort(4),
+                            rs.getInt(5), rs.getLong(6)));
+                }
+            }
+        }
+        return rows;
+    }
+}
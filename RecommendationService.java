@@ -0,0 +1,433 @@
+package com.guvi.mindfulness.recommend;
+
+import com.guvi.mindfulness.dao.LookupStore;
+import com.guvi.mindfulness.dao.RecommendationStore;
+import com.guvi.mindfulness.dao.RecommendationStore.UsageRow;
+import com.guvi.mindfulness.exception.DataAccessException;
+import com.guvi.mindfulness.journal.ChangeJournal;
+import com.guvi.mindfulness.journal.ChangeRecord;
+import com.guvi.mindfulness.journal.ChangeTailer;
+import com.guvi.mindfulness.model.LookupDictionary;
+import com.guvi.mindfulness.model.MindfulnessCourse;
+import com.guvi.mindfulness.resilience.DaoGuard;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Course recommendations scored ahead of time, so a request is a cache lookup.
+ * <p>
+ * Users and courses are sparse vectors over the session categories and difficulty levels. A
+ * course weighs its category and level; a user weighs their focus area, the share of minutes
+ * practised per category and level over the last {@code RECOMMENDATION_HISTORY_DAYS} (default 180)
+ * days, and Beginner when there is no history. A course's score is the cosine of the two vectors.
+ * <p>
+ * Every {@code RECOMMENDATION_REBUILD_MINUTES} (default 60) all users are re-scored on a fork/join
+ * pool of {@code RECOMMENDATION_PARALLELISM} threads (default: the processor count), one usage scan
+ * per {@code RECOMMENDATION_SHARD_USERS} (default 5000) user ids. In between, the change journal is
+ * followed and a user is re-scored as soon as they log a session or change their focus area. The
+ * top {@code RECOMMENDATION_TOP_K} (default 10, at most 100) courses per user are kept in a
+ * {@link TopKCache}. Users not in it yet are scored on demand under {@link DaoGuard#RECOMMENDATIONS}
+ * and the request deadline; an id with nothing to score, e.g. an unknown user, is cached with an
+ * empty ranking until the next rebuild or a journalled change to that user.
+ */
+public class RecommendationService implements AutoCloseable {
+
+    private static final int TOP_K = Math.min(100, Math.max(1, Integer.getInteger("RECOMMENDATION_TOP_K", 10)));
+    private static final int HISTORY_DAYS = Integer.getInteger("RECOMMENDATION_HISTORY_DAYS", 180);
+    private static final int SHARD_USERS = Math.max(1, Integer.getInteger("RECOMMENDATION_SHARD_USERS", 5_000));
+    private static final long REBUILD_MINUTES = Math.max(1, Long.getLong("RECOMMENDATION_REBUILD_MINUTES", 60));
+
+    private static final float FOCUS_WEIGHT = 1.0f;
+    private static final float HISTORY_WEIGHT = 1.0f;
+    private static final float DIFFICULTY_WEIGHT = 0.5f;
+    private static final float MENTIONED_CATEGORY_WEIGHT = 0.5f;
+    private static final TopKCache.Ranking NO_COURSES = new TopKCache.Ranking(new long[0], new float[0]);
+
+    private final RecommendationStore store;
+    private final LookupStore lookups;
+    private final ChangeJournal journal;
+    private final TopKCache cache = new TopKCache(TOP_K);
+    private final DaoGuard guard = DaoGuard.RECOMMENDATIONS;
+    private final AtomicLong stamps = new AtomicLong();
+    private final ForkJoinPool pool;
+    private final ScheduledExecutorService rebuilder;
+    private final Thread rescorer;
+    private volatile Catalog catalog;
+    private volatile long lastRebuildMillis;
+    private volatile String lastRebuildError;
+
+    public RecommendationService(RecommendationStore store, LookupStore lookups) {
+        this(store, lookups, ChangeJournal.shared(),
+                Integer.getInteger("RECOMMENDATION_PARALLELISM", Runtime.getRuntime().availableProcessors()));
+    }
+
+    public RecommendationService(RecommendationStore store, LookupStore lookups, ChangeJournal journal, int parallelism) {
+        this.store = store;
+        this.lookups = lookups;
+        this.journal = journal;
+        this.pool = new ForkJoinPool(Math.max(1, parallelism), forkJoinPool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("recommendation-scorer-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "recommendation-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.rescorer = new Thread(this::rescoreFromJournal, "recommendation-rescorer");
+        rescorer.setDaemon(true);
+    }
+
+    /**
+     * Follows the change journal and schedules the full rebuilds, the first one right away.
+     */
+    public void start() {
+        rescorer.start();
+        rebuilder.scheduleWithFixedDelay(this::rebuildQuietly, 0, REBUILD_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Up to {@code limit} courses for the user, best first. Empty if the user does not exist. An
+     * uncached user that cannot be scored in time, or while the database is failing, is answered
+     * with a {@code ServiceUnavailableException}.
+     */
+    public List<Recommendation> recommend(long userId, int limit) {
+        if (userId <= 0) {
+            return List.of();
+        }
+        Catalog current = catalog();
+        TopKCache.Ranking ranking = cache.get(userId);
+        if (ranking == null) {
+            long stamp = stamps.incrementAndGet();
+            List<UsageRow> rows;
+            try {
+                rows = guard.execute(() -> store.findUsage(userId, userId + 1, historyStart()));
+            } catch (SQLException e) {
+                throw new DataAccessException("Failed to load usage for recommendations", e);
+            }
+            ranking = rows.isEmpty() ? NO_COURSES : rank(userVector(rows, 0, rows.size()), current);
+            cache.put(userId, ranking, stamp);
+        }
+        int count = Math.min(limit, ranking.size());
+        List<Recommendation> recommendations = new ArrayList<>(count);
+        for (int i = 0; i < ranking.size() && recommendations.size() < count; i++) {
+            MindfulnessCourse course = current.byId.get(ranking.courseIds()[i]);
+            if (course != null) {
+                recommendations.add(new Recommendation(course, ranking.scores()[i]));
+            }
+        }
+        return recommendations;
+    }
+
+    /**
+     * Re-scores every user and replaces the cache contents.
+     */
+    public void rebuild() {
+        long stamp = stamps.incrementAndGet();
+        Catalog current = loadCatalog();
+        long maxUserId;
+        try {
+            maxUserId = store.maxUserId();
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to read user ids for recommendations", e);
+        }
+        LocalDateTime since = historyStart();
+        List<TopKCache.Shard> shards = pool.invoke(new ScoreRange(1, maxUserId + 1, current, since));
+        catalog = current;
+        cache.publish(TopKCache.Table.build(shards, TOP_K), stamp);
+        lastRebuildMillis = System.currentTimeMillis();
+        lastRebuildError = null;
+    }
+
+    public int topK() {
+        return TOP_K;
+    }
+
+    /**
+     * Users with a cached ranking.
+     */
+    public int cachedUsers() {
+        return cache.size();
+    }
+
+    /**
+     * End of the last successful rebuild in epoch milliseconds, or {@code 0} if none finished yet.
+     */
+    public long lastRebuildMillis() {
+        return lastRebuildMillis;
+    }
+
+    public String lastRebuildError() {
+        return lastRebuildError;
+    }
+
+    @Override
+    public void close() {
+        rebuilder.shutdownNow();
+        rescorer.interrupt();
+        pool.shutdownNow();
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            // Keep serving the previous rankings; the next run retries.
+            lastRebuildError = e.getMessage();
+        }
+    }
+
+    /**
+     * Re-scores users whose input changed: sessions scheduled, updated or deleted, and focus area
+     * edits. Deleted users are dropped. Session records carry their owner; the rare delete whose
+     * owner could not be read first is journalled with user 0 and waits for the next rebuild.
+     */
+    private void rescoreFromJournal() {
+        ChangeTailer tailer = journal.tail(journal.latestOffset());
+        while (!Thread.currentThread().isInterrupted() && !journal.isClosed()) {
+            List<ChangeRecord> records;
+            try {
+                records = tailer.poll(1_000, 1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            for (ChangeRecord record : records) {
+                long userId = record.entity() == ChangeRecord.Entity.USER ? record.entityId() : record.userId();
+                if (userId <= 0) {
+                    continue;
+                }
+                long stamp = stamps.incrementAndGet();
+                if (record.entity() == ChangeRecord.Entity.USER && record.operation() == ChangeRecord.Operation.DELETE) {
+                    cache.remove(userId, stamp);
+                    continue;
+                }
+                try {
+                    TopKCache.Ranking ranking = score(userId, catalog());
+                    if (ranking == null) {
+                        cache.remove(userId, stamp);
+                    } else {
+                        cache.put(userId, ranking, stamp);
+                    }
+                } catch (DataAccessException e) {
+                    // The cached ranking stays until the next rebuild.
+                }
+            }
+        }
+    }
+
+    private TopKCache.Ranking score(long userId, Catalog current) {
+        List<UsageRow> rows;
+        try {
+            rows = store.findUsage(userId, userId + 1, historyStart());
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to load usage for recommendations", e);
+        }
+        if (rows.isEmpty()) {
+            return null;
+        }
+        return rank(userVector(rows, 0, rows.size()), current);
+    }
+
+    private Catalog catalog() {
+        Catalog current = catalog;
+        if (current == null) {
+            synchronized (this) {
+                current = catalog;
+                if (current == null) {
+                    current = loadCatalog();
+                    catalog = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Catalog loadCatalog() {
+        List<MindfulnessCourse> courses;
+        try {
+            lookups.ensureLoaded();
+            courses = store.findCourses();
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to load courses for recommendations", e);
+        }
+        long[] ids = new long[courses.size()];
+        SparseVector[] vectors = new SparseVector[courses.size()];
+        Map<Long, MindfulnessCourse> byId = new HashMap<>();
+        for (int i = 0; i < courses.size(); i++) {
+            MindfulnessCourse course = courses.get(i);
+            ids[i] = course.getId();
+            vectors[i] = courseVector(course);
+            byId.put(course.getId(), course);
+        }
+        return new Catalog(ids, vectors, Map.copyOf(byId));
+    }
+
+    private static LocalDateTime historyStart() {
+        return LocalDateTime.now().minusDays(HISTORY_DAYS);
+    }
+
+    private static SparseVector courseVector(MindfulnessCourse course) {
+        float[] dense = new float[dimensions()];
+        short category = course.getCategoryCode();
+        if (LookupDictionary.CATEGORIES.contains(category)) {
+            dense[category] = 1.0f;
+        } else {
+            mentionedCategories(course.getTitle() + " " + course.getDescription(), dense, MENTIONED_CATEGORY_WEIGHT);
+        }
+        short difficulty = LookupDictionary.DIFFICULTIES.code(course.getLevel());
+        if (difficulty > 0) {
+            dense[difficultyIndex(difficulty)] = DIFFICULTY_WEIGHT;
+        }
+        return SparseVector.normalized(dense);
+    }
+
+    /**
+     * Vector of the user whose usage rows are {@code rows[from, to)}.
+     */
+    private static SparseVector userVector(List<UsageRow> rows, int from, int to) {
+        float[] dense = new float[dimensions()];
+        mentionedCategories(rows.get(from).focusArea(), dense, FOCUS_WEIGHT);
+        long minutes = 0;
+        for (int i = from; i < to; i++) {
+            minutes += rows.get(i).minutes();
+        }
+        if (minutes == 0) {
+            short beginner = LookupDictionary.DIFFICULTIES.code("Beginner");
+            if (beginner > 0) {
+                dense[difficultyIndex(beginner)] = DIFFICULTY_WEIGHT;
+            }
+            return SparseVector.normalized(dense);
+        }
+        for (int i = from; i < to; i++) {
+            UsageRow row = rows.get(i);
+            float share = (float) row.minutes() / minutes;
+            if (LookupDictionary.CATEGORIES.contains(row.categoryCode())) {
+                dense[row.categoryCode()] += HISTORY_WEIGHT * share;
+            }
+            if (LookupDictionary.DIFFICULTIES.contains(row.difficultyCode())) {
+                dense[difficultyIndex(row.difficultyCode())] += DIFFICULTY_WEIGHT * share;
+            }
+        }
+        return SparseVector.normalized(dense);
+    }
+
+    /**
+     * Adds {@code weight} for every category whose label appears in the text.
+     */
+    private static void mentionedCategories(String text, float[] dense, float weight) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (short code = 1; code < LookupDictionary.CATEGORIES.size(); code++) {
+            String label = LookupDictionary.CATEGORIES.label(code);
+            if (label != null && lower.contains(label.toLowerCase(Locale.ROOT))) {
+                dense[code] += weight;
+            }
+        }
+    }
+
+    /**
+     * Categories take indices {@code 1 .. categories-1}, difficulty levels follow them.
+     */
+    private static int difficultyIndex(short difficulty) {
+        return LookupDictionary.CATEGORIES.size() + difficulty;
+    }
+
+    private static int dimensions() {
+        return LookupDictionary.CATEGORIES.size() + LookupDictionary.DIFFICULTIES.size();
+    }
+
+    /**
+     * Top K courses by score, ties broken by course id. Courses with no overlap are left out.
+     */
+    private static TopKCache.Ranking rank(SparseVector user, Catalog current) {
+        long[] ids = new long[TOP_K];
+        float[] scores = new float[TOP_K];
+        int count = 0;
+        for (int c = 0; c < current.ids.length; c++) {
+            float score = user.dot(current.vectors[c]);
+            if (score <= 0 || count == TOP_K && score <= scores[TOP_K - 1]) {
+                continue;
+            }
+            int position = count < TOP_K ? count++ : TOP_K - 1;
+            while (position > 0 && (scores[position - 1] < score
+                    || scores[position - 1] == score && ids[position - 1] > current.ids[c])) {
+                ids[position] = ids[position - 1];
+                scores[position] = scores[position - 1];
+                position--;
+            }
+            ids[position] = current.ids[c];
+            scores[position] = score;
+        }
+        return new TopKCache.Ranking(Arrays.copyOf(ids, count), Arrays.copyOf(scores, count));
+    }
+
+    /**
+     * Scores the users with {@code fromUserId <= id < toUserId}, splitting the range in halves
+     * until each leaf covers at most {@code RECOMMENDATION_SHARD_USERS} ids and can be read with
+     * one usage scan.
+     */
+    private final class ScoreRange extends RecursiveTask<List<TopKCache.Shard>> {
+
+        private final long fromUserId;
+        private final long toUserId;
+        private final Catalog courses;
+        private final LocalDateTime since;
+
+        ScoreRange(long fromUserId, long toUserId, Catalog courses, LocalDateTime since) {
+            this.fromUserId = fromUserId;
+            this.toUserId = toUserId;
+            this.courses = courses;
+            this.since = since;
+        }
+
+        @Override
+        protected List<TopKCache.Shard> compute() {
+            if (toUserId - fromUserId > SHARD_USERS) {
+                long middle = fromUserId + (toUserId - fromUserId) / 2;
+                ScoreRange upper = new ScoreRange(middle, toUserId, courses, since);
+                upper.fork();
+                List<TopKCache.Shard> shards = new ArrayList<>(new ScoreRange(fromUserId, middle, courses, since).compute());
+                shards.addAll(upper.join());
+                return shards;
+            }
+            List<UsageRow> rows;
+            try {
+                rows = store.findUsage(fromUserId, toUserId, since);
+            } catch (SQLException e) {
+                throw new DataAccessException("Failed to load usage for recommendations", e);
+            }
+            TopKCache.Shard shard = new TopKCache.Shard((int) (toUserId - fromUserId), TOP_K);
+            int start = 0;
+            for (int i = 1; i <= rows.size(); i++) {
+                if (i == rows.size() || rows.get(i).userId() != rows.get(start).userId()) {
+                    shard.add(rows.get(start).userId(), rank(userVector(rows, start, i), courses));
+                    start = i;
+                }
+            }
+            return List.of(shard);
+        }
+    }
+
+    private record Catalog(long[] ids, SparseVector[] vectors, Map<Long, MindfulnessCourse> byId) {
+    }
+
+    public record Recommendation(MindfulnessCourse course, float score) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.guvi.mindfulness.servlet;
+
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
+import com.guvi.mindfulness.recommend.RecommendationService;
+import com.guvi.mindfulness.resilience.Deadline;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Courses recommended for a user, e.g. {@code /api/recommendations?userId=42&limit=5}. Answers
+ * {@code {"userId":42,"courses":[{"id":..,"title":"..","level":"..","durationMinutes":..,"score":..}]}}
+ * from the precomputed rankings; {@code limit} defaults to, and is capped at,
+ * {@code RECOMMENDATION_TOP_K}.
+ */
+@WebServlet(name = "RecommendationServlet", urlPatterns = "/api/recommendations", loadOnStartup = 1)
+public class RecommendationServlet extends HttpServlet {
+
+    private transient RecommendationService recommendationService;
+
+    @Override
+    public void init() throws ServletException {
+        this.recommendationService = new RecommendationService(Storage.recommendations(), Storage.lookups());
+        recommendationService.start();
+    }
+
+    @Override
+    public void destroy() {
+        recommendationService.close();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        long userId;
+        int limit;
+        try {
+            userId = Long.parseLong(req.getParameter("userId"));
+            String value = req.getParameter("limit");
+            limit = value == null || value.isBlank() ? recommendationService.topK() : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"userId and limit must be numbers\"}");
+            return;
+        }
+        if (limit < 1) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"limit must be at least 1\"}");
+            return;
+        }
+        req.setAttribute(AccessLogFilter.USER_ID, userId);
+        List<RecommendationService.Recommendation> recommendations;
+        try (Deadline.Scope deadline = Deadline.startRequest()) {
+            recommendations = recommendationService.recommend(userId, limit);
+        } catch (ServiceUnavailableException e) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+            return;
+        } catch (Exception e) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\":\"Internal error\"}");
+            return;
+        }
+        StringBuilder json = new StringBuilder(64 + recommendations.size() * 128);
+        json.append("{\"userId\":").append(userId).append(",\"courses\":[");
+        for (int i = 0; i < recommendations.size(); i++) {
+            RecommendationService.Recommendation recommendation = recommendations.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(recommendation.course().getId())
+                    .append(",\"title\":").append(JsonStrings.quote(recommendation.course().getTitle()))
+                    .append(",\"level\":").append(JsonStrings.quote(recommendation.course().getLevel()))
+                    .append(",\"durationMinutes\":").append(recommendation.course().getDurationMinutes())
+                    .append(",\"score\":").append(Math.round(recommendation.score() * 1000) / 1000.0)
+                    .append('}');
+        }
+        json.append("]}");
+        req.setAttribute(AccessLogFilter.ROWS, recommendations.size());
+        resp.getWriter().write(json.toString());
+    }
+}
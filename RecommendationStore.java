@@ -0,0 +1,32 @@
+package com.guvi.mindfulness.dao;
+
+import com.guvi.mindfulness.model.MindfulnessCourse;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Bulk reads behind course recommendations, implemented by {@link RecommendationDAO} (MySQL) and
+ * the embedded engine. Scans are keyed by user id ranges so they can be split across threads.
+ */
+public interface RecommendationStore {
+
+    List<MindfulnessCourse> findCourses() throws SQLException;
+
+    /**
+     * Highest user id in use, or {@code 0} if there are no users.
+     */
+    long maxUserId() throws SQLException;
+
+    /**
+     * Focus area and session usage since {@code since} of every user with
+     * {@code fromUserId <= id < toUserId}, ordered by user. A user has one row per category and
+     * difficulty combination used, or a single row with {@code sessions == 0} if none.
+     */
+    List<UsageRow> findUsage(long fromUserId, long toUserId, LocalDateTime since) throws SQLException;
+
+    record UsageRow(long userId, String focusArea, short categoryCode, short difficultyCode,
+                    int sessions, long minutes) {
+    }
+}
@@ -1,9 +1,14 @@
 package com.guvi.mindfulness.servlet;
 
+import com.guvi.mindfulness.dao.Storage;
 
-import com.guvi.mindfulness.dao.UserDAO;
+import com.guvi.mindfulness.exception.ConflictException;
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
 import com.guvi.mindfulness.exception.ValidationException;
 import com.guvi.mindfulness.model.User;
+import com.guvi.mindfulness.resilience.Deadline;
+import com.guvi.mindfulness.service.MindfulnessSessionService;
+import com.guvi.mindfulness.service.OnboardingService;
 import com.guvi.mindfulness.service.UserService;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -15,15 +20,19 @@ import java.io.IOException;
 
 /**
  * Minimal servlet that shows how HTTP requests interact with the service/DAO layer.
+ * An e-mail that is already registered is answered with {@code 409}.
  */
-@WebServlet(name = "RegisterServlet", urlPatterns = "/api/register")
+@WebServlet(name = "RegisterServlet", urlPatterns = "/api/register", loadOnStartup = 1)
 public class RegisterServlet extends HttpServlet {
 
     private transient UserService userService;
+    private transient OnboardingService onboardingService;
 
     @Override
     public void init() throws ServletException {
-        this.userService = new UserService(new UserDAO());
+        this.userService = new UserService(Storage.users());
+        this.onboardingService = new OnboardingService(userService,
+                new MindfulnessSessionService(Storage.sessions()));
     }
 
     @Override
@@ -34,13 +43,28 @@ public class RegisterServlet extends HttpServlet {
         user.setEmail(req.getParameter("email"));
         user.setPassword(req.getParameter("password"));
         user.setFocusArea(req.getParameter("focusArea"));
-        try {
-            long id = userService.registerUser(user);
-            resp.getWriter().write("{\"message\":\"User registered\",\"userId\":" + id + "}");
+        try (Deadline.Scope deadline = Deadline.startRequest()) {
+            if (Boolean.parseBoolean(req.getParameter("starterProgramme"))) {
+                OnboardingService.Enrollment enrollment = onboardingService.enroll(user);
+                req.setAttribute(AccessLogFilter.USER_ID, enrollment.userId());
+                resp.getWriter().write("{\"message\":\"User registered\",\"userId\":" + enrollment.userId()
+                        + ",\"sessionIds\":" + enrollment.sessionIds() + "}");
+            } else {
+                long id = userService.registerUser(user);
+                req.setAttribute(AccessLogFilter.USER_ID, id);
+                resp.getWriter().write("{\"message\":\"User registered\",\"userId\":" + id + "}");
+            }
             resp.setStatus(HttpServletResponse.SC_CREATED);
         } catch (ValidationException e) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (ConflictException e) {
+            resp.setStatus(HttpServletResponse.SC_CONFLICT);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (ServiceUnavailableException e) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
         } catch (Exception e) {
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             resp.getWriter().write("{\"error\":\"Internal error\"}");
@@ -0,0 +1,168 @@
+package com.guvi.mindfulness.cache;
+
+import com.guvi.mindfulness.dao.UserStore;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This node's {@link CuckooFilter} of registered e-mails, normalized to trimmed lower case, so
+ * registration can spot a likely repeat sign-up without touching {@code users}. Loaded with one
+ * index scan at start-up, kept up to date by {@link #added} and {@link #removed}, and rebuilt
+ * every {@code EMAIL_FILTER_REBUILD_MINUTES} (default 15) to pick up writes made on other nodes and
+ * shed stale entries. Until the first load finishes, {@link #mightBeRegistered} answers
+ * {@code true}, which means "unknown".
+ * <p>
+ * The filter only decides whether a confirming lookup is worth doing. A stale entry (an e-mail
+ * changed or deleted on another node) costs one extra lookup; a missing one (registered on another
+ * node since the last rebuild) falls through to the {@code UNIQUE} constraint. Neither gives a
+ * wrong answer. {@code EMAIL_FILTER_INITIAL_CAPACITY} (default 65536) sizes the first table; it
+ * grows by doubling.
+ */
+public final class RegisteredEmails {
+
+    private static final int INITIAL_CAPACITY = Integer.getInteger("EMAIL_FILTER_INITIAL_CAPACITY", 1 << 16);
+    private static final long REBUILD_MINUTES = Math.max(1, Long.getLong("EMAIL_FILTER_REBUILD_MINUTES", 15));
+
+    private static final RegisteredEmails SHARED = new RegisteredEmails(INITIAL_CAPACITY);
+
+    private final int initialCapacity;
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "email-filter-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private CuckooFilter filter;
+    private boolean loaded;
+    private boolean rebuilding;
+    /** Changes made while a rebuild scans, replayed onto the new filter. Non-null only then. */
+    private List<Change> duringRebuild;
+
+    public RegisteredEmails(int initialCapacity) {
+        this.initialCapacity = initialCapacity;
+        this.filter = new CuckooFilter(initialCapacity);
+    }
+
+    public static RegisteredEmails shared() {
+        return SHARED;
+    }
+
+    /**
+     * Loads the filter now and then rebuilds it periodically. Returns without doing anything if it
+     * was already started.
+     */
+    public void start(UserStore store) throws SQLException {
+        synchronized (this) {
+            if (rebuilding) {
+                return;
+            }
+            rebuilding = true;
+        }
+        try {
+            rebuild(store);
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                rebuilding = false;
+            }
+            throw e;
+        }
+        maintenance.scheduleWithFixedDelay(() -> {
+            try {
+                rebuild(store);
+            } catch (SQLException | RuntimeException e) {
+                // Keep serving the current filter; the next run retries.
+            }
+        }, REBUILD_MINUTES, REBUILD_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Replaces the filter with the e-mails currently in the store. Registrations keep using the
+     * previous filter while this runs. Returns without doing anything if a rebuild is already
+     * running.
+     */
+    public void rebuild(UserStore store) throws SQLException {
+        synchronized (this) {
+            if (duringRebuild != null) {
+                return;
+            }
+            duringRebuild = new ArrayList<>();
+        }
+        CuckooFilter fresh = new CuckooFilter(initialCapacity);
+        try {
+            store.scanEmails(email -> fresh.add(key(email)));
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                duringRebuild = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            for (Change change : duringRebuild) {
+                if (change.added) {
+                    fresh.add(change.key);
+                } else {
+                    fresh.remove(change.key);
+                }
+            }
+            duringRebuild = null;
+            filter = fresh;
+            loaded = true;
+        }
+    }
+
+    /**
+     * {@code false} means the e-mail is certainly not registered on this node's knowledge;
+     * {@code true} means it probably is, or the filter is not loaded yet.
+     */
+    public synchronized boolean mightBeRegistered(String email) {
+        return !loaded || filter.mightContain(key(email));
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized void added(String email) {
+        long key = key(email);
+        filter.add(key);
+        if (duringRebuild != null) {
+            duringRebuild.add(new Change(key, true));
+        }
+    }
+
+    public synchronized void removed(String email) {
+        long key = key(email);
+        filter.remove(key);
+        if (duringRebuild != null) {
+            duringRebuild.add(new Change(key, false));
+        }
+    }
+
+    public synchronized long size() {
+        return filter.size();
+    }
+
+    public synchronized long memoryBytes() {
+        return filter.memoryBytes();
+    }
+
+    /**
+     * The form the filter keys e-mails by: trimmed and lower-cased. Confirming lookups use it too,
+     * so the filter and the index agree on what counts as the same address.
+     */
+    public static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long key(String email) {
+        return CuckooFilter.hash(normalize(email));
+    }
+
+    private record Change(long key, boolean added) {
+    }
+}
@@ -0,0 +1,358 @@
+package com.guvi.mindfulness.report;
+
+import com.guvi.mindfulness.dao.SessionLookupDAO;
+import com.guvi.mindfulness.dao.SessionReportDAO;
+import com.guvi.mindfulness.exception.DataAccessException;
+import com.guvi.mindfulness.jdbc.DBConnection;
+import com.guvi.mindfulness.model.LookupDictionary;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Computes platform-wide reports over {@code mindfulness_sessions} without going through the
+ * OLTP connection. The table is split into id ranges that are scanned in parallel on a
+ * fork/join pool, each leaf on its own reporting connection, and partial results are merged
+ * as flat {@code long[]} tables.
+ * <p>
+ * Finished reports are cached per {@link ReportRequest}; concurrent callers asking for the same
+ * report wait for a single computation.
+ */
+public class ReportEngine {
+
+    /** Retention columns after the cohort size: active in month 0 .. month 12 after sign-up. */
+    static final int RETENTION_MONTHS = 13;
+
+    /** Cohort reports cover at most this many sign-up months. */
+    static final int MAX_COHORTS = 60;
+
+    private static final int THROTTLE_BATCH = 1_000;
+    private static final String[] SESSION_COLUMNS = {"sessions", "minutes"};
+
+    private final SessionReportDAO reportDAO;
+    private final SessionLookupDAO lookupDAO;
+    private final ReportSettings settings;
+    private final ForkJoinPool pool;
+    private final Semaphore connectionPermits;
+    private final ScanThrottle throttle;
+    private final ConcurrentMap<ReportRequest, CachedReport> cache = new ConcurrentHashMap<>();
+
+    public ReportEngine(SessionReportDAO reportDAO, SessionLookupDAO lookupDAO, ReportSettings settings) {
+        this.reportDAO = reportDAO;
+        this.lookupDAO = lookupDAO;
+        this.settings = settings;
+        this.pool = new ForkJoinPool(settings.maxConnections());
+        this.connectionPermits = new Semaphore(settings.maxConnections());
+        this.throttle = new ScanThrottle(settings.maxRowsPerSecond());
+    }
+
+    /**
+     * Returns the cached report if it is still fresh, otherwise computes it.
+     */
+    public ReportResult run(ReportRequest request) {
+        long now = System.currentTimeMillis();
+        CompletableFuture<ReportResult> created = new CompletableFuture<>();
+        CachedReport entry = cache.compute(request, (key, existing) ->
+                existing != null && existing.isUsable(now)
+                        ? existing
+                        : new CachedReport(created, now + settings.cacheTtl().toMillis()));
+        if (entry.result() == created) {
+            try {
+                created.complete(execute(request));
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+                cache.remove(request, entry);
+            }
+        }
+        try {
+            return entry.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Default request window used when the caller does not pass dates: the last twelve months.
+     */
+    public static ReportRequest defaultRequest(ReportType type) {
+        LocalDate today = LocalDate.now();
+        return new ReportRequest(type, today.minusMonths(12), today.plusDays(1));
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+        cache.clear();
+    }
+
+    private ReportResult execute(ReportRequest request) {
+        LocalDateTime from = request.from().atStartOfDay();
+        LocalDateTime to = request.to().atStartOfDay();
+        try {
+            lookupDAO.ensureLoaded();
+            return switch (request.type()) {
+                case MINUTES_BY_CATEGORY -> sessionReport(request, from, to, LookupDictionary.CATEGORIES);
+                case DIFFICULTY_MIX -> sessionReport(request, from, to, LookupDictionary.DIFFICULTIES);
+                case BUSIEST_HOURS -> busiestHours(request, from, to);
+                case COHORT_RETENTION -> cohortRetention(request, from, to);
+            };
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to run " + request.type().param() + " report", e);
+        }
+    }
+
+    private ReportResult sessionReport(ReportRequest request, LocalDateTime from, LocalDateTime to,
+                                       LookupDictionary dictionary) throws SQLException {
+        boolean byCategory = dictionary == LookupDictionary.CATEGORIES;
+        long[] bounds = withConnection(reportDAO::sessionIdBounds);
+        Partial partial = bounds == null ? new Partial(new long[0], 0)
+                : pool.invoke(new RangeScan(bounds[0], bounds[1] + 1, (fromId, toId, cells) ->
+                scanSessions(fromId, toId, from, to, (category, difficulty, day, hour, minutes) -> {
+                    int row = byCategory ? category : difficulty;
+                    cells.add(row * 2, 1);
+                    cells.add(row * 2 + 1, minutes);
+                })));
+        int rows = Math.max(dictionary.size(), (partial.cells().length + 1) / 2);
+        String[] rowLabels = new String[rows];
+        for (short code = 0; code < rows; code++) {
+            String label = dictionary.label(code);
+            rowLabels[code] = label != null ? label : code == 0 ? "(none)" : "#" + code;
+        }
+        return new ReportResult(request, rowLabels, SESSION_COLUMNS,
+                Arrays.copyOf(partial.cells(), rows * 2), partial.rowsScanned(), Instant.now());
+    }
+
+    private ReportResult busiestHours(ReportRequest request, LocalDateTime from, LocalDateTime to) throws SQLException {
+        long[] bounds = withConnection(reportDAO::sessionIdBounds);
+        Partial partial = bounds == null ? new Partial(new long[0], 0)
+                : pool.invoke(new RangeScan(bounds[0], bounds[1] + 1, (fromId, toId, cells) ->
+                scanSessions(fromId, toId, from, to, (category, difficulty, day, hour, minutes) ->
+                        // MySQL DAYOFWEEK is 1 = Sunday .. 7 = Saturday; rows are Monday-first.
+                        cells.add(((day + 5) % 7) * 24 + hour, 1))));
+        String[] days = new String[7];
+        for (DayOfWeek day : DayOfWeek.values()) {
+            days[day.ordinal()] = day.getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+        }
+        String[] hours = new String[24];
+        for (int hour = 0; hour < 24; hour++) {
+            hours[hour] = "%02d".formatted(hour);
+        }
+        return new ReportResult(request, days, hours, Arrays.copyOf(partial.cells(), 7 * 24),
+                partial.rowsScanned(), Instant.now());
+    }
+
+    private ReportResult cohortRetention(ReportRequest request, LocalDateTime from, LocalDateTime to) throws SQLException {
+        YearMonth firstCohort = YearMonth.from(request.from());
+        int cohorts = (int) Math.min(MAX_COHORTS,
+                ChronoUnit.MONTHS.between(firstCohort, YearMonth.from(request.to().minusDays(1))) + 1);
+        LocalDateTime cohortEnd = firstCohort.plusMonths(cohorts).atDay(1).atStartOfDay();
+        LocalDateTime signupEnd = to.isBefore(cohortEnd) ? to : cohortEnd;
+        int baseMonth = firstCohort.getYear() * 100 + firstCohort.getMonthValue();
+        int columns = RETENTION_MONTHS + 1;
+
+        long[] bounds = withConnection(connection -> reportDAO.userIdBounds(connection, from, signupEnd));
+        Partial partial = bounds == null ? new Partial(new long[0], 0)
+                : pool.invoke(new RangeScan(bounds[0], bounds[1] + 1, (fromId, toId, cells) ->
+                scanActivity(fromId, toId, baseMonth, from, signupEnd, cells, columns)));
+        long[] sizes = withConnection(connection -> reportDAO.cohortSizes(connection, baseMonth, cohorts, from, signupEnd));
+
+        long[] values = Arrays.copyOf(partial.cells(), cohorts * columns);
+        String[] rowLabels = new String[cohorts];
+        for (int cohort = 0; cohort < cohorts; cohort++) {
+            rowLabels[cohort] = firstCohort.plusMonths(cohort).toString();
+            values[cohort * columns] = sizes[cohort];
+        }
+        String[] columnLabels = new String[columns];
+        columnLabels[0] = "users";
+        for (int month = 0; month < RETENTION_MONTHS; month++) {
+            columnLabels[month + 1] = "m" + month;
+        }
+        return new ReportResult(request, rowLabels, columnLabels, values, partial.rowsScanned(), Instant.now());
+    }
+
+    private long scanSessions(long fromId, long toId, LocalDateTime from, LocalDateTime to,
+                              SessionReportDAO.SessionRowVisitor visitor) throws SQLException, InterruptedException {
+        return withScanConnection(connection -> reportDAO.scanSessions(connection, fromId, toId, from, to,
+                throttled(visitor)));
+    }
+
+    /**
+     * Folds each user's activity into a bitmask of active months and adds it to the cohort row once
+     * the scan moves on to the next user. Rows arrive ordered by user id, and a user never spans
+     * two leaf ranges because this report is split on {@code user_id}.
+     */
+    private long scanActivity(long fromId, long toId, int baseMonth, LocalDateTime from, LocalDateTime to,
+                              Cells cells, int columns) throws SQLException, InterruptedException {
+        long[] state = {-1L, -1L, 0L};
+        ThrottledCounter counter = new ThrottledCounter();
+        long rows = withScanConnection(connection -> reportDAO.scanActivity(connection, fromId, toId, baseMonth,
+                from, to, (userId, cohort, offset) -> {
+                    counter.tick();
+                    if (userId != state[0]) {
+                        flushUser(cells, columns, state);
+                        state[0] = userId;
+                        state[1] = cohort;
+                        state[2] = 0L;
+                    }
+                    if (offset >= 0 && offset < RETENTION_MONTHS) {
+                        state[2] |= 1L << offset;
+                    }
+                }));
+        flushUser(cells, columns, state);
+        return rows;
+    }
+
+    private static void flushUser(Cells cells, int columns, long[] state) {
+        int cohort = (int) state[1];
+        long months = state[2];
+        if (cohort < 0 || cohort >= MAX_COHORTS) {
+            return;
+        }
+        while (months != 0) {
+            int month = Long.numberOfTrailingZeros(months);
+            cells.add(cohort * columns + month + 1, 1);
+            months &= months - 1;
+        }
+    }
+
+    private SessionReportDAO.SessionRowVisitor throttled(SessionReportDAO.SessionRowVisitor visitor) {
+        ThrottledCounter counter = new ThrottledCounter();
+        return (category, difficulty, day, hour, minutes) -> {
+            counter.tick();
+            visitor.visit(category, difficulty, day, hour, minutes);
+        };
+    }
+
+    private long withScanConnection(ConnectionWork<Long> work) throws SQLException, InterruptedException {
+        connectionPermits.acquire();
+        try {
+            return withConnection(work);
+        } finally {
+            connectionPermits.release();
+        }
+    }
+
+    private <T> T withConnection(ConnectionWork<T> work) throws SQLException {
+        try (Connection connection = DBConnection.openReportingConnection()) {
+            return work.apply(connection);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionWork<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface LeafScan {
+        long scan(long fromId, long toId, Cells cells) throws SQLException, InterruptedException;
+    }
+
+    /**
+     * Charges the throttle once per {@link #THROTTLE_BATCH} rows instead of per row.
+     */
+    private final class ThrottledCounter {
+        private int pending;
+
+        void tick() {
+            if (++pending == THROTTLE_BATCH) {
+                pending = 0;
+                try {
+                    throttle.acquire(THROTTLE_BATCH);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new DataAccessException("Report scan interrupted", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Growable {@code long[]} used as the per-leaf accumulator.
+     */
+    private static final class Cells {
+        private long[] values = new long[64];
+
+        void add(int index, long amount) {
+            if (index >= values.length) {
+                values = Arrays.copyOf(values, Math.max(index + 1, values.length * 2));
+            }
+            values[index] += amount;
+        }
+    }
+
+    private record Partial(long[] cells, long rowsScanned) {
+
+        Partial merge(Partial other) {
+            long[] merged = Arrays.copyOf(cells, Math.max(cells.length, other.cells.length));
+            for (int i = 0; i < other.cells.length; i++) {
+                merged[i] += other.cells[i];
+            }
+            return new Partial(merged, rowsScanned + other.rowsScanned);
+        }
+    }
+
+    private final class RangeScan extends RecursiveTask<Partial> {
+
+        private final long fromId;
+        private final long toId;
+        private final LeafScan leaf;
+
+        RangeScan(long fromId, long toId, LeafScan leaf) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.leaf = leaf;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (toId - fromId <= settings.chunkSize()) {
+                Cells cells = new Cells();
+                try {
+                    long rows = leaf.scan(fromId, toId, cells);
+                    return new Partial(cells.values, rows);
+                } catch (SQLException e) {
+                    throw new DataAccessException("Report scan failed for ids " + fromId + "-" + toId, e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new DataAccessException("Report scan interrupted", e);
+                }
+            }
+            long mid = fromId + (toId - fromId) / 2;
+            RangeScan left = new RangeScan(fromId, mid, leaf);
+            RangeScan right = new RangeScan(mid, toId, leaf);
+            left.fork();
+            Partial rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+    }
+
+    private record CachedReport(CompletableFuture<ReportResult> result, long expiresAtMillis) {
+
+        boolean isUsable(long nowMillis) {
+            return nowMillis < expiresAtMillis && !result.isCompletedExceptionally();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.guvi.mindfulness.report;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Report type plus its parameters. Also used as the result cache key.
+ *
+ * @param type report to run
+ * @param from first day included (session date, or sign-up date for cohort reports)
+ * @param to   first day excluded
+ */
+public record ReportRequest(ReportType type, LocalDate from, LocalDate to) {
+
+    public ReportRequest {
+        Objects.requireNonNull(type, "type");
+        Objects.requireNonNull(from, "from");
+        Objects.requireNonNull(to, "to");
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Report start date must be before the end date");
+        }
+    }
+}
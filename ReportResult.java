@@ -0,0 +1,61 @@
+package com.guvi.mindfulness.report;
+
+import java.time.Instant;
+
+/**
+ * Dense report table stored row-major in a primitive array.
+ */
+public final class ReportResult {
+
+    private final ReportRequest request;
+    private final String[] rowLabels;
+    private final String[] columnLabels;
+    private final long[] values;
+    private final long rowsScanned;
+    private final Instant generatedAt;
+
+    public ReportResult(ReportRequest request, String[] rowLabels, String[] columnLabels,
+                        long[] values, long rowsScanned, Instant generatedAt) {
+        if (values.length != rowLabels.length * columnLabels.length) {
+            throw new IllegalArgumentException("Report values do not match the table shape");
+        }
+        this.request = request;
+        this.rowLabels = rowLabels;
+        this.columnLabels = columnLabels;
+        this.values = values;
+        this.rowsScanned = rowsScanned;
+        this.generatedAt = generatedAt;
+    }
+
+    public ReportRequest getRequest() {
+        return request;
+    }
+
+    public int rowCount() {
+        return rowLabels.length;
+    }
+
+    public int columnCount() {
+        return columnLabels.length;
+    }
+
+    public String rowLabel(int row) {
+        return rowLabels[row];
+    }
+
+    public String columnLabel(int column) {
+        return columnLabels[column];
+    }
+
+    public long value(int row, int column) {
+        return values[row * columnLabels.length + column];
+    }
+
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    public Instant getGeneratedAt() {
+        return generatedAt;
+    }
+}
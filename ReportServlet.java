@@ -0,0 +1,94 @@
+package com.guvi.mindfulness.servlet;
+
+import com.guvi.mindfulness.dao.SessionLookupDAO;
+import com.guvi.mindfulness.dao.SessionReportDAO;
+import com.guvi.mindfulness.report.ReportEngine;
+import com.guvi.mindfulness.report.ReportRequest;
+import com.guvi.mindfulness.report.ReportResult;
+import com.guvi.mindfulness.report.ReportSettings;
+import com.guvi.mindfulness.report.ReportType;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Read-only endpoint for the content team's platform reports, e.g.
+ * {@code /api/reports?type=minutes-by-category&from=2025-01-01&to=2026-01-01}. Reports scan the
+ * whole sessions table, so like the admin console they are only served to the
+ * {@value AdminUserServlet#ADMIN_ROLE} role; {@code web.xml} makes the container authenticate them.
+ */
+@WebServlet(name = "ReportServlet", urlPatterns = "/api/reports", loadOnStartup = 1)
+public class ReportServlet extends HttpServlet {
+
+    private transient ReportEngine reportEngine;
+
+    @Override
+    public void init() throws ServletException {
+        this.reportEngine = new ReportEngine(new SessionReportDAO(), new SessionLookupDAO(),
+                ReportSettings.fromSystemProperties());
+    }
+
+    @Override
+    public void destroy() {
+        reportEngine.shutdown();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        if (!req.isUserInRole(AdminUserServlet.ADMIN_ROLE)) {
+            resp.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            resp.getWriter().write("{\"error\":\"Admin role required\"}");
+            return;
+        }
+        ReportRequest request;
+        try {
+            ReportType type = ReportType.fromParam(req.getParameter("type"));
+            ReportRequest defaults = ReportEngine.defaultRequest(type);
+            String from = req.getParameter("from");
+            String to = req.getParameter("to");
+            request = new ReportRequest(type,
+                    from != null ? LocalDate.parse(from) : defaults.from(),
+                    to != null ? LocalDate.parse(to) : defaults.to());
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+            return;
+        }
+        try {
+            resp.getWriter().write(toJson(reportEngine.run(request)));
+        } catch (Exception e) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\":\"Internal error\"}");
+        }
+    }
+
+    private String toJson(ReportResult result) {
+        StringBuilder json = new StringBuilder(256);
+        ReportRequest request = result.getRequest();
+        json.append("{\"type\":\"").append(request.type().param())
+                .append("\",\"from\":\"").append(request.from())
+                .append("\",\"to\":\"").append(request.to())
+                .append("\",\"generatedAt\":\"").append(result.getGeneratedAt())
+                .append("\",\"rowsScanned\":").append(result.getRowsScanned())
+                .append(",\"columns\":[");
+        for (int column = 0; column < result.columnCount(); column++) {
+            json.append(column > 0 ? "," : "").append('"').append(result.columnLabel(column)).append('"');
+        }
+        json.append("],\"rows\":[");
+        for (int row = 0; row < result.rowCount(); row++) {
+            json.append(row > 0 ? "," : "").append("{\"label\":\"").append(result.rowLabel(row)).append("\",\"values\":[");
+            for (int column = 0; column < result.columnCount(); column++) {
+                json.append(column > 0 ? "," : "").append(result.value(row, column));
+            }
+            json.append("]}");
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.guvi.mindfulness.report;
+
+import java.time.Duration;
+
+/**
+ * Tuning knobs for {@link ReportEngine}. The DB load budget is the combination of
+ * {@code maxConnections} and {@code maxRowsPerSecond}.
+ *
+ * @param maxConnections   upper bound on concurrent scan connections across all reports
+ * @param chunkSize        id range scanned by one leaf task
+ * @param maxRowsPerSecond rows the engine may read per second across all scans
+ * @param cacheTtl         how long a finished report is served from memory
+ */
+public record ReportSettings(int maxConnections, long chunkSize, long maxRowsPerSecond, Duration cacheTtl) {
+
+    public ReportSettings {
+        if (maxConnections <= 0 || chunkSize <= 0 || maxRowsPerSecond <= 0) {
+            throw new IllegalArgumentException("Report settings must be positive");
+        }
+    }
+
+    /**
+     * Reads {@code REPORT_MAX_CONNECTIONS}, {@code REPORT_CHUNK_SIZE}, {@code REPORT_MAX_ROWS_PER_SECOND}
+     * and {@code REPORT_CACHE_TTL_SECONDS}, the same way {@code DBConnection} reads its settings.
+     */
+    public static ReportSettings fromSystemProperties() {
+        return new ReportSettings(
+                Integer.getInteger("REPORT_MAX_CONNECTIONS", 2),
+                Long.getLong("REPORT_CHUNK_SIZE", 50_000L),
+                Long.getLong("REPORT_MAX_ROWS_PER_SECOND", 200_000L),
+                Duration.ofSeconds(Long.getLong("REPORT_CACHE_TTL_SECONDS", 900L)));
+    }
+}
@@ -0,0 +1,39 @@
+package com.guvi.mindfulness.report;
+
+import java.util.Locale;
+
+/**
+ * Platform-wide reports supported by {@link ReportEngine}.
+ */
+public enum ReportType {
+
+    /** Sessions and minutes practised per category. */
+    MINUTES_BY_CATEGORY,
+
+    /** Sessions and minutes per difficulty level. */
+    DIFFICULTY_MIX,
+
+    /** Session counts per weekday and hour of day. */
+    BUSIEST_HOURS,
+
+    /** Active users per sign-up month and months since sign-up. */
+    COHORT_RETENTION;
+
+    /**
+     * Parses the URL form, e.g. {@code minutes-by-category}.
+     */
+    public static ReportType fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Report type is required");
+        }
+        try {
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown report type: " + value);
+        }
+    }
+
+    public String param() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
@@ -0,0 +1,172 @@
+package com.guvi.mindfulness.logging;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Line-oriented log file {@code <name>.log} that rolls over when it reaches {@code maxBytes} or the
+ * day changes. A rolled file is renamed to {@code <name>-<timestamp>.log}, then gzipped on the
+ * {@code compressor} so the writer never waits for compression; only the newest {@code maxFiles}
+ * archives are kept.
+ * <p>
+ * Not thread-safe; used by the single log consumer.
+ */
+final class RollingLogFile implements Closeable {
+
+    private static final DateTimeFormatter ROLL_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Path directory;
+    private final String name;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final ExecutorService compressor;
+
+    private OutputStream out;
+    private long bytes;
+    private long nextDayMillis;
+    private byte[] encoded = new byte[1024];
+
+    RollingLogFile(Path directory, String name, long maxBytes, int maxFiles, ExecutorService compressor)
+            throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        this.compressor = compressor;
+        Files.createDirectories(directory);
+        // Archives left uncompressed by a previous run (e.g. killed mid-roll) are finished now.
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String fileName = file.getFileName().toString();
+                if (fileName.startsWith(name + "-") && fileName.endsWith(".log")) {
+                    compressor.execute(() -> compress(file));
+                }
+            }
+        }
+        open();
+    }
+
+    /**
+     * Appends {@code line} and a newline, rolling first if the file is full or {@code nowMillis}
+     * falls on a later day than the file.
+     */
+    void write(CharSequence line, long nowMillis) throws IOException {
+        if (bytes >= maxBytes || nowMillis >= nextDayMillis) {
+            roll();
+        }
+        int length = encode(line);
+        out.write(encoded, 0, length);
+        bytes += length;
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void open() throws IOException {
+        Path active = activePath();
+        out = new BufferedOutputStream(Files.newOutputStream(active, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024);
+        bytes = Files.size(active);
+        LocalDate day = bytes == 0 ? LocalDate.now()
+                : LocalDate.ofInstant(Files.getLastModifiedTime(active).toInstant(), ZoneId.systemDefault());
+        nextDayMillis = day.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * UTF-8 encodes the line plus a newline into the reusable buffer. Log lines are almost always
+     * ASCII, which is copied byte for byte.
+     */
+    private int encode(CharSequence line) {
+        int length = line.length();
+        if (encoded.length < length * 3 + 1) {
+            encoded = new byte[length * 3 + 1];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (c >= 0x80) {
+                byte[] utf8 = line.toString().getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(utf8, 0, encoded, 0, utf8.length);
+                encoded[utf8.length] = '\n';
+                return utf8.length + 1;
+            }
+            encoded[i] = (byte) c;
+        }
+        encoded[length] = '\n';
+        return length + 1;
+    }
+
+    private void roll() throws IOException {
+        out.close();
+        if (bytes > 0) {
+            Path rolled = directory.resolve(name + "-" + LocalDateTime.now().format(ROLL_STAMP) + ".log");
+            Files.move(activePath(), rolled, StandardCopyOption.ATOMIC_MOVE);
+            try {
+                compressor.execute(() -> compress(rolled));
+            } catch (RejectedExecutionException e) {
+                // Shutting down: the next start compresses archives left as plain logs.
+            }
+        }
+        open();
+    }
+
+    private void compress(Path rolled) {
+        Path gzipped = rolled.resolveSibling(rolled.getFileName() + ".gz");
+        Path partial = rolled.resolveSibling(rolled.getFileName() + ".gz.tmp");
+        try {
+            try (InputStream in = Files.newInputStream(rolled);
+                 OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(partial), 64 * 1024)) {
+                in.transferTo(gzip);
+            }
+            Files.move(partial, gzipped, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(rolled);
+            prune();
+        } catch (IOException e) {
+            // Leave the plain file in place; the next start retries it.
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+                // Nothing more to do
+            }
+        }
+    }
+
+    private void prune() throws IOException {
+        List<Path> archives;
+        try (Stream<Path> files = Files.list(directory)) {
+            archives = files.filter(f -> {
+                String fileName = f.getFileName().toString();
+                return fileName.startsWith(name + "-") && fileName.endsWith(".log.gz");
+            }).sorted(Comparator.comparing(Path::getFileName)).toList();
+        }
+        for (int i = 0; i < archives.size() - maxFiles; i++) {
+            Files.deleteIfExists(archives.get(i));
+        }
+    }
+
+    private Path activePath() {
+        return directory.resolve(name + ".log");
+    }
+}
@@ -0,0 +1,37 @@
+package com.guvi.mindfulness.report;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket shared by all scan tasks. Workers charge the rows they read and sleep once the
+ * bucket runs dry, which caps the read rate the engine imposes on the database.
+ */
+final class ScanThrottle {
+
+    private final long rowsPerSecond;
+    private long available;
+    private long lastRefillNanos;
+
+    ScanThrottle(long rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+        this.available = rowsPerSecond;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    void acquire(long rows) throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long refill = (now - lastRefillNanos) * rowsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            if (refill > 0) {
+                available = Math.min(rowsPerSecond, available + refill);
+                lastRefillNanos = now;
+            }
+            available -= rows;
+            waitNanos = available < 0 ? -available * TimeUnit.SECONDS.toNanos(1) / rowsPerSecond : 0;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.guvi.mindfulness.schedule;
+
+import com.guvi.mindfulness.cache.InvalidationBus;
+import com.guvi.mindfulness.cache.SessionListCache;
+import com.guvi.mindfulness.dao.SessionStore;
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.model.SessionSlot;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Per-user {@link IntervalTree} of upcoming sessions, used to suggest free slots without reading a
+ * user's whole history, plus the per-user locks that serialize double-booking checks.
+ * <p>
+ * A user's tree covers sessions from yesterday up to {@code SCHEDULE_HORIZON_DAYS} (default 120)
+ * ahead, loaded with one range query on the {@code (user_id, scheduled_at)} index. Writes on this
+ * node update it in place once committed; writes on peers arrive through the
+ * {@link SessionListCache} bus and drop the user's tree. Trees also expire after
+ * {@code SCHEDULE_CACHE_TTL_MS} (default 60000, {@code 0} turns caching off), and at most
+ * {@code SCHEDULE_CACHE_MAX_USERS} (default 50000) are kept. Queries outside the horizon go to the
+ * database directly.
+ * <p>
+ * The cached trees may lag peers' writes, so {@link #findConflict} never uses them: it asks the
+ * database for the user's sessions around the requested time. Checking and inserting must happen
+ * under {@link #lock(long)}, taken before the storage transaction, so two requests of the same
+ * user cannot both pass the check. The lock is per node; requests of one user racing on different
+ * nodes are not serialized.
+ */
+public final class ScheduleIndex implements InvalidationBus.Listener {
+
+    /**
+     * Longest session accepted. Bounds how far before a range a session overlapping it can start.
+     */
+    public static final int MAX_DURATION_MINUTES = 24 * 60;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static volatile ScheduleIndex shared;
+
+    private final SessionStore store;
+    private final long ttlNanos;
+    private final int horizonDays;
+    private final int maxUsers;
+    private final ConcurrentMap<Long, UserSchedule> schedules = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Long> sessionOwners = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public ScheduleIndex(SessionStore store, long ttlMillis, int horizonDays, int maxUsers) {
+        this.store = store;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.horizonDays = horizonDays;
+        this.maxUsers = maxUsers;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Process-wide index over {@link Storage#sessions()}, listening to peer invalidations of the
+     * shared {@link SessionListCache}.
+     */
+    public static ScheduleIndex shared() {
+        ScheduleIndex index = shared;
+        if (index == null) {
+            synchronized (ScheduleIndex.class) {
+                index = shared;
+                if (index == null) {
+                    index = new ScheduleIndex(Storage.sessions(),
+                            Long.getLong("SCHEDULE_CACHE_TTL_MS", 60_000L),
+                            Integer.getInteger("SCHEDULE_HORIZON_DAYS", 120),
+                            Integer.getInteger("SCHEDULE_CACHE_MAX_USERS", 50_000));
+                    SessionListCache.shared().addPeerListener(index);
+                    shared = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Locks the user's schedule on this node.
+     *
+     * @return the locks taken, to be released with {@link #unlockAll(List)} in a {@code finally} block
+     */
+    public List<Lock> lock(long userId) {
+        return lockAll(List.of(userId));
+    }
+
+    /**
+     * Locks the schedules of several users, always in the same order so batches cannot deadlock.
+     * <p>
+     * Schedule locks come before the storage transaction. A caller already inside an embedded
+     * transaction holds the engine's write lock, which keeps every other thread out, so nothing is
+     * locked: waiting for a stripe there could deadlock with a thread holding the stripe and
+     * waiting for the engine.
+     *
+     * @return the locks taken, to be released with {@link #unlockAll(List)}
+     */
+    public List<Lock> lockAll(Collection<Long> userIds) {
+        if (Storage.isEmbedded() && Storage.inTransaction()) {
+            return List.of();
+        }
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (long userId : userIds) {
+            stripes.add(stripe(userId));
+        }
+        List<Lock> taken = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+            taken.add(locks[stripe]);
+        }
+        return taken;
+    }
+
+    public static void unlockAll(List<Lock> taken) {
+        for (int i = taken.size() - 1; i >= 0; i--) {
+            taken.get(i).unlock();
+        }
+    }
+
+    /**
+     * The earliest of the user's sessions overlapping {@code [start, start + durationMinutes)},
+     * other than {@code ignoreSessionId}, or {@code null} if the time is free. Always read from
+     * the database, inside the caller's transaction if one is open, as the answer guards a write.
+     */
+    public SessionSlot findConflict(long userId, LocalDateTime start, int durationMinutes, long ignoreSessionId)
+            throws SQLException {
+        LocalDateTime end = start.plusMinutes(durationMinutes);
+        return load(userId, start, end).firstOverlap(start, end, ignoreSessionId);
+    }
+
+    /**
+     * The earliest free slot of {@code durationMinutes} starting at or after {@code notBefore} and
+     * ending by {@code searchUntil}, or {@code null} if there is none.
+     */
+    public SessionSlot nextFreeSlot(long userId, LocalDateTime notBefore, int durationMinutes, LocalDateTime searchUntil)
+            throws SQLException {
+        return query(userId, notBefore, searchUntil, tree -> tree.firstGap(notBefore, durationMinutes, searchUntil));
+    }
+
+    /**
+     * Records a new or resized session once the current transaction commits.
+     */
+    public void added(long userId, SessionSlot slot) {
+        afterCommit(() -> {
+            invalidations.incrementAndGet();
+            UserSchedule schedule = schedules.get(userId);
+            if (schedule != null) {
+                synchronized (schedule) {
+                    schedule.tree.insert(slot);
+                }
+                sessionOwners.put(slot.sessionId(), userId);
+            }
+        });
+    }
+
+    /**
+     * Forgets a deleted session once the current transaction commits.
+     */
+    public void removed(long sessionId) {
+        afterCommit(() -> {
+            invalidations.incrementAndGet();
+            Long owner = sessionOwners.remove(sessionId);
+            UserSchedule schedule = owner == null ? null : schedules.get(owner);
+            if (schedule != null) {
+                synchronized (schedule) {
+                    schedule.tree.remove(sessionId);
+                }
+            }
+        });
+    }
+
+    /**
+     * A peer changed a session; its owner's schedule is reloaded on next use.
+     */
+    @Override
+    public void onInvalidate(long userId, long sessionId) {
+        invalidations.incrementAndGet();
+        Long owner = userId != 0 ? Long.valueOf(userId) : sessionOwners.get(sessionId);
+        if (owner != null) {
+            schedules.remove(owner);
+        }
+    }
+
+    @Override
+    public void onMessagesLost() {
+        clear();
+    }
+
+    public void clear() {
+        invalidations.incrementAndGet();
+        schedules.clear();
+        sessionOwners.clear();
+    }
+
+    /**
+     * Runs {@code search} on a tree holding every session overlapping {@code [from, to)}: the cached
+     * one when the range lies within the horizon, otherwise one built from a range query.
+     */
+    private SessionSlot query(long userId, LocalDateTime from, LocalDateTime to, Function<IntervalTree, SessionSlot> search)
+            throws SQLException {
+        LocalDateTime windowStart = LocalDate.now().minusDays(1).atStartOfDay();
+        LocalDateTime windowEnd = windowStart.plusDays(horizonDays + 1L);
+        // Inside a transaction the reads see its own uncommitted sessions, which must not be cached.
+        if (ttlNanos <= 0 || from.isBefore(windowStart) || to.isAfter(windowEnd) || Storage.inTransaction()) {
+            return search.apply(load(userId, from, to));
+        }
+        long now = System.nanoTime();
+        UserSchedule schedule = schedules.get(userId);
+        if (schedule == null || now - schedule.loadedAtNanos >= ttlNanos || !schedule.windowStart.equals(windowStart)) {
+            long seen = invalidations.get();
+            UserSchedule fresh = new UserSchedule(load(userId, windowStart, windowEnd), windowStart, now);
+            // A write applied while we were loading may be missing from what we loaded.
+            schedules.compute(userId, (id, current) -> invalidations.get() == seen ? fresh : current);
+            for (SessionSlot slot : fresh.slots()) {
+                sessionOwners.put(slot.sessionId(), userId);
+            }
+            if (schedules.size() > maxUsers) {
+                evictOne(userId);
+            }
+            schedule = fresh;
+        }
+        synchronized (schedule) {
+            return search.apply(schedule.tree);
+        }
+    }
+
+    private IntervalTree load(long userId, LocalDateTime from, LocalDateTime to) throws SQLException {
+        IntervalTree tree = new IntervalTree();
+        for (SessionSlot slot : store.findSlots(userId, from.minusMinutes(MAX_DURATION_MINUTES), to)) {
+            tree.insert(slot);
+        }
+        return tree;
+    }
+
+    private void evictOne(long keep) {
+        Iterator<Map.Entry<Long, UserSchedule>> users = schedules.entrySet().iterator();
+        while (users.hasNext()) {
+            Map.Entry<Long, UserSchedule> user = users.next();
+            if (user.getKey() != keep) {
+                users.remove();
+                for (SessionSlot slot : user.getValue().slots()) {
+                    sessionOwners.remove(slot.sessionId(), user.getKey());
+                }
+                return;
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (!Storage.afterCommit(update)) {
+            update.run();
+        }
+    }
+
+    private static int stripe(long userId) {
+        return (Long.hashCode(userId) & 0x7fffffff) % LOCK_STRIPES;
+    }
+
+    private static final class UserSchedule {
+        final IntervalTree tree;
+        final LocalDateTime windowStart;
+        final long loadedAtNanos;
+
+        UserSchedule(IntervalTree tree, LocalDateTime windowStart, long loadedAtNanos) {
+            this.tree = tree;
+            this.windowStart = windowStart;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+
+        synchronized List<SessionSlot> slots() {
+            return tree.overlapping(windowStart.minusMinutes(MAX_DURATION_MINUTES), LocalDateTime.MAX);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.guvi.mindfulness.exception;
+
+/**
+ * Raised when a call is shed instead of attempted: the database circuit is open, a bulkhead is
+ * full or the request deadline ran out. Servlets answer it with {@code 503}.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public ServiceUnavailableException(String message, long retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,284 @@
+package com.guvi.mindfulness.dao;
+
+import com.guvi.mindfulness.exception.DataAccessException;
+import com.guvi.mindfulness.model.MindfulnessSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Directory of month-partitioned session archives ({@code sessions-YYYY-MM.msa}) moved out of
+ * MySQL by {@code SessionArchiver}. {@link MindfulnessSessionDAO} consults it when a history
+ * query reaches before {@link #archivedBefore()}.
+ * <p>
+ * Archived sessions are read-only.
+ * <p>
+ * The archiver runs as a separate process, so readers look for new or replaced files at most every
+ * {@code ARCHIVE_REFRESH_MS} (default 5000): the directory's modification time is checked and the
+ * directory re-scanned when it changed. The archiver waits that long after publishing a month
+ * before it deletes the month's rows, so running nodes always see one copy or the other.
+ */
+public class SessionArchive {
+
+    private static final String PREFIX = "sessions-";
+    private static final String SUFFIX = ".msa";
+
+    private static volatile SessionArchive shared;
+
+    private final Path directory;
+    private final long refreshMillis;
+    private final NavigableMap<YearMonth, ArchiveSegment> segments = new ConcurrentSkipListMap<>();
+    private final Map<YearMonth, FileTime> segmentTimes = new HashMap<>();
+    private FileTime directoryTime;
+    private volatile long nextCheckNanos;
+
+    public SessionArchive(Path directory) {
+        this(directory, Long.getLong("ARCHIVE_REFRESH_MS", 5_000L));
+    }
+
+    public SessionArchive(Path directory, long refreshMillis) {
+        this.directory = directory;
+        this.refreshMillis = refreshMillis;
+        refresh();
+        this.nextCheckNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(refreshMillis);
+    }
+
+    /**
+     * Uses the {@code ARCHIVE_DIR} system property, defaulting to {@code archive/sessions}.
+     */
+    public static SessionArchive fromSystemProperties() {
+        return new SessionArchive(Paths.get(System.getProperty("ARCHIVE_DIR", "archive/sessions")));
+    }
+
+    /**
+     * Process-wide archive over {@code ARCHIVE_DIR}, shared by every DAO so segments are mapped
+     * and re-scanned once.
+     */
+    public static SessionArchive shared() {
+        SessionArchive archive = shared;
+        if (archive == null) {
+            synchronized (SessionArchive.class) {
+                archive = shared;
+                if (archive == null) {
+                    archive = fromSystemProperties();
+                    shared = archive;
+                }
+            }
+        }
+        return archive;
+    }
+
+    /**
+     * How long a published month may take to become visible to readers in other processes.
+     */
+    public long refreshMillis() {
+        return refreshMillis;
+    }
+
+    /**
+     * Re-scans the directory: new and replaced segment files are mapped, removed ones dropped.
+     */
+    public synchronized void refresh() {
+        if (!Files.isDirectory(directory)) {
+            segments.clear();
+            segmentTimes.clear();
+            directoryTime = null;
+            return;
+        }
+        try {
+            // Taken before listing, so a file published while we list triggers another scan.
+            directoryTime = Files.getLastModifiedTime(directory);
+            Map<YearMonth, Path> found = new HashMap<>();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList()) {
+                    YearMonth month = monthOf(file);
+                    if (month != null) {
+                        found.put(month, file);
+                    }
+                }
+            }
+            for (Map.Entry<YearMonth, Path> file : found.entrySet()) {
+                FileTime modified = Files.getLastModifiedTime(file.getValue());
+                if (!modified.equals(segmentTimes.get(file.getKey())) || !segments.containsKey(file.getKey())) {
+                    segments.put(file.getKey(), ArchiveSegment.open(file.getKey(), file.getValue()));
+                    segmentTimes.put(file.getKey(), modified);
+                }
+            }
+            segments.keySet().retainAll(found.keySet());
+            segmentTimes.keySet().retainAll(found.keySet());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read session archive " + directory, e);
+        }
+    }
+
+    public boolean isEmpty() {
+        checkForChanges();
+        return segments.isEmpty();
+    }
+
+    /**
+     * First instant that is not covered by archive files, or {@code null} when nothing is archived.
+     */
+    public LocalDateTime archivedBefore() {
+        checkForChanges();
+        Map.Entry<YearMonth, ArchiveSegment> last = segments.lastEntry();
+        return last == null ? null : last.getKey().plusMonths(1).atDay(1).atStartOfDay();
+    }
+
+    public boolean contains(YearMonth month) {
+        checkForChanges();
+        return segments.containsKey(month);
+    }
+
+    /**
+     * All archived sessions of a user, newest first.
+     */
+    public List<MindfulnessSession> findByUser(long userId, SessionProjection projection) {
+        return findByUser(userId, null, null, projection);
+    }
+
+    /**
+     * Archived sessions of a user in the months overlapping {@code [from, to)}, newest first.
+     * A {@code null} bound is open.
+     */
+    public List<MindfulnessSession> findByUser(long userId, LocalDateTime from, LocalDateTime to,
+                                               SessionProjection projection) {
+        checkForChanges();
+        List<MindfulnessSession> sessions = new ArrayList<>();
+        for (ArchiveSegment segment : monthsBetween(from, to).descendingMap().values()) {
+            for (MindfulnessSession session : segment.findByUser(userId, projection, this::findText)) {
+                if ((from == null || !session.getScheduledAt().isBefore(from))
+                        && (to == null || session.getScheduledAt().isBefore(to))) {
+                    sessions.add(session);
+                }
+            }
+        }
+        return sessions;
+    }
+
+    public MindfulnessSession findById(long id, SessionProjection projection) {
+        checkForChanges();
+        for (ArchiveSegment segment : segments.descendingMap().values()) {
+            MindfulnessSession session = segment.findById(id, projection, this::findText);
+            if (session != null) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    public MindfulnessSession.SessionText findText(long id) {
+        MindfulnessSession session = findById(id, SessionProjection.DETAIL);
+        return session == null ? null
+                : new MindfulnessSession.SessionText(session.getDescription(), session.getReflectionNotes());
+    }
+
+    /**
+     * Opens a writer for a month. The data goes to a temporary file until {@link #publish} is called.
+     */
+    ArchiveSegmentWriter openWriter(YearMonth month) throws IOException {
+        Files.createDirectories(directory);
+        return new ArchiveSegmentWriter(tempPathFor(month));
+    }
+
+    /**
+     * Streams every row already archived for a month; used when a month has to be rewritten.
+     */
+    void forEachArchived(YearMonth month, Consumer<MindfulnessSession> consumer) {
+        ArchiveSegment segment = segments.get(month);
+        if (segment != null) {
+            segment.forEach(consumer);
+        }
+    }
+
+    /**
+     * Atomically replaces the month's segment with the finished temporary file and starts serving it.
+     */
+    synchronized void publish(YearMonth month) throws IOException {
+        Path target = pathFor(month);
+        Files.move(tempPathFor(month), target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        segments.put(month, ArchiveSegment.open(month, target));
+        segmentTimes.put(month, Files.getLastModifiedTime(target));
+    }
+
+    void discard(YearMonth month) {
+        try {
+            Files.deleteIfExists(tempPathFor(month));
+        } catch (IOException e) {
+            throw new DataAccessException("Failed to remove partial archive for " + month, e);
+        }
+    }
+
+    /**
+     * Re-scans if the directory changed since the last scan, checking at most every
+     * {@code refreshMillis}. A failing check keeps serving what is mapped and retries later.
+     */
+    private void checkForChanges() {
+        long now = System.nanoTime();
+        if (now - nextCheckNanos < 0) {
+            return;
+        }
+        synchronized (this) {
+            if (now - nextCheckNanos < 0) {
+                return;
+            }
+            nextCheckNanos = now + TimeUnit.MILLISECONDS.toNanos(refreshMillis);
+            try {
+                FileTime modified = Files.isDirectory(directory) ? Files.getLastModifiedTime(directory) : null;
+                if (modified == null ? directoryTime != null || !segments.isEmpty() : !modified.equals(directoryTime)) {
+                    refresh();
+                }
+            } catch (IOException | UncheckedIOException e) {
+                // Retried on the next check
+            }
+        }
+    }
+
+    private NavigableMap<YearMonth, ArchiveSegment> monthsBetween(LocalDateTime from, LocalDateTime to) {
+        NavigableMap<YearMonth, ArchiveSegment> view = segments;
+        if (from != null) {
+            view = view.tailMap(YearMonth.from(from), true);
+        }
+        if (to != null) {
+            view = view.headMap(YearMonth.from(to), true);
+        }
+        return view;
+    }
+
+    private Path pathFor(YearMonth month) {
+        return directory.resolve(PREFIX + month + SUFFIX);
+    }
+
+    private Path tempPathFor(YearMonth month) {
+        return directory.resolve(PREFIX + month + SUFFIX + ".tmp");
+    }
+
+    private static YearMonth monthOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.guvi.mindfulness.dao;
+
+import com.guvi.mindfulness.exception.DataAccessException;
+import com.guvi.mindfulness.model.MindfulnessSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Moves whole months of old sessions out of {@code mindfulness_sessions} into {@link SessionArchive}
+ * files. Each month is written to a temporary file, fsynced and atomically published before the
+ * matching rows are deleted, so a crash at any point leaves every session readable from one side.
+ * Only rows still at the version that was archived are deleted; one updated in the meantime stays
+ * in MySQL, where readers prefer it over the archived copy, and is archived again on the next run.
+ * <p>
+ * Can be run from cron: {@code java ... SessionArchiver [monthsToKeep]} (default 12).
+ */
+public class SessionArchiver {
+
+    private static final Comparator<MindfulnessSession> ARCHIVE_ORDER = Comparator
+            .comparingLong(MindfulnessSession::getUserId)
+            .thenComparing(MindfulnessSession::getScheduledAt, Comparator.reverseOrder());
+
+    private final MindfulnessSessionDAO sessionDAO;
+    private final SessionArchive archive;
+
+    public SessionArchiver(MindfulnessSessionDAO sessionDAO, SessionArchive archive) {
+        this.sessionDAO = sessionDAO;
+        this.archive = archive;
+    }
+
+    /**
+     * Archives every month that ends on or before the start of {@code cutoff}.
+     *
+     * @return number of sessions moved out of MySQL
+     */
+    public long archiveBefore(YearMonth cutoff) {
+        long moved = 0;
+        try {
+            LocalDateTime oldest = sessionDAO.findOldestScheduledAt();
+            if (oldest == null) {
+                return 0;
+            }
+            for (YearMonth month = YearMonth.from(oldest); month.isBefore(cutoff); month = month.plusMonths(1)) {
+                moved += archiveMonth(month);
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to archive sessions", e);
+        }
+        return moved;
+    }
+
+    private long archiveMonth(YearMonth month) throws SQLException {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        long maxId;
+        ArchivedRows archived = new ArchivedRows();
+        try (ArchiveSegmentWriter writer = archive.openWriter(month)) {
+            if (archive.contains(month)) {
+                // Rare: late or updated rows for a month that is already archived. Merge both sides
+                // in memory; a row still in MySQL replaces its archived copy.
+                Map<Long, MindfulnessSession> rows = new LinkedHashMap<>();
+                archive.forEachArchived(month, row -> rows.put(row.getId(), row));
+                maxId = sessionDAO.streamForArchive(from, to, session -> {
+                    archived.add(session);
+                    rows.put(session.getId(), session);
+                });
+                if (maxId < 0) {
+                    archive.discard(month);
+                    return 0;
+                }
+                for (MindfulnessSession row : rows.values().stream().sorted(ARCHIVE_ORDER).toList()) {
+                    writer.append(row);
+                }
+            } else {
+                maxId = sessionDAO.streamForArchive(from, to, session -> {
+                    archived.add(session);
+                    try {
+                        writer.append(session);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if (maxId < 0) {
+                    archive.discard(month);
+                    return 0;
+                }
+            }
+            writer.finish();
+        } catch (IOException | UncheckedIOException e) {
+            archive.discard(month);
+            throw new DataAccessException("Failed to write archive for " + month, e);
+        }
+        try {
+            archive.publish(month);
+        } catch (IOException e) {
+            throw new DataAccessException("Failed to publish archive for " + month, e);
+        }
+        // Running nodes re-scan the archive periodically; let them map the new file before its
+        // rows disappear from MySQL.
+        try {
+            Thread.sleep(archive.refreshMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Interrupted before deleting archived rows for " + month, e);
+        }
+        return sessionDAO.deleteArchived(archived.ids, archived.versions, archived.size);
+    }
+
+    /**
+     * Id and version of every row streamed from MySQL, so only unchanged rows are deleted.
+     */
+    private static final class ArchivedRows {
+        long[] ids = new long[1024];
+        int[] versions = new int[1024];
+        int size;
+
+        void add(MindfulnessSession session) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                versions = Arrays.copyOf(versions, size * 2);
+            }
+            ids[size] = session.getId();
+            versions[size] = session.getVersion();
+            size++;
+        }
+    }
+
+    public static void main(String[] args) {
+        int monthsToKeep = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+        SessionArchive archive = SessionArchive.fromSystemProperties();
+        SessionArchiver archiver = new SessionArchiver(new MindfulnessSessionDAO(new SessionLookupDAO(), archive), archive);
+        long moved = archiver.archiveBefore(YearMonth.now().minusMonths(monthsToKeep));
+        System.out.println("Archived " + moved + " sessions");
+    }
+}
@@ -0,0 +1,189 @@
+package com.guvi.mindfulness.cache;
+
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.model.MindfulnessSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-node cache of each user's session summary listing. Writes invalidate the user's entry here
+ * and, through the {@link InvalidationBus}, on every peer node once they have committed.
+ * <p>
+ * Entries also expire after {@code SESSION_CACHE_TTL_MS} (default 30000), which bounds staleness
+ * when a peer's message is lost; a detected loss clears the whole cache at once. {@code 0} turns
+ * caching off. At most {@code SESSION_CACHE_MAX_USERS} (default 50000) users are cached.
+ * <p>
+ * Cached lists and the sessions in them are shared between requests and must not be modified.
+ * Other node-local caches can follow peer invalidations through {@link #addPeerListener}.
+ */
+public final class SessionListCache implements InvalidationBus.Listener {
+
+    private static volatile SessionListCache shared;
+
+    private final long ttlNanos;
+    private final int maxUsers;
+    private final InvalidationBus bus;
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Long> sessionOwners = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final List<InvalidationBus.Listener> peerListeners = new CopyOnWriteArrayList<>();
+
+    public SessionListCache(long ttlMillis, int maxUsers, InvalidationBus bus) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxUsers = maxUsers;
+        this.bus = bus;
+        bus.start(new InvalidationBus.Listener() {
+            @Override
+            public void onInvalidate(long userId, long sessionId) {
+                SessionListCache.this.onInvalidate(userId, sessionId);
+                for (InvalidationBus.Listener listener : peerListeners) {
+                    listener.onInvalidate(userId, sessionId);
+                }
+            }
+
+            @Override
+            public void onMessagesLost() {
+                SessionListCache.this.onMessagesLost();
+                for (InvalidationBus.Listener listener : peerListeners) {
+                    listener.onMessagesLost();
+                }
+            }
+        });
+    }
+
+    /**
+     * Process-wide cache. {@code SESSION_CACHE_BUS=multicast} connects it to peers with
+     * {@link MulticastInvalidationBus}; the default {@code local} suits a single node.
+     */
+    public static SessionListCache shared() {
+        SessionListCache cache = shared;
+        if (cache == null) {
+            synchronized (SessionListCache.class) {
+                cache = shared;
+                if (cache == null) {
+                    InvalidationBus bus = InvalidationBus.LOCAL;
+                    if ("multicast".equalsIgnoreCase(System.getProperty("SESSION_CACHE_BUS", "local"))) {
+                        try {
+                            bus = MulticastInvalidationBus.fromSystemProperties();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException("Failed to join session cache multicast group", e);
+                        }
+                    }
+                    cache = new SessionListCache(Long.getLong("SESSION_CACHE_TTL_MS", 30_000L),
+                            Integer.getInteger("SESSION_CACHE_MAX_USERS", 50_000), bus);
+                    shared = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the user's cached listing, loading and caching it on a miss.
+     */
+    public List<MindfulnessSession> get(long userId, Loader loader) throws SQLException {
+        if (ttlNanos <= 0) {
+            return loader.load();
+        }
+        long now = System.nanoTime();
+        Entry entry = entries.get(userId);
+        if (entry != null && now - entry.loadedAtNanos() < ttlNanos) {
+            return entry.sessions();
+        }
+        long seen = invalidations.get();
+        List<MindfulnessSession> sessions = List.copyOf(loader.load());
+        Entry fresh = new Entry(sessions, now);
+        // A write announced while we were loading must win over what we loaded.
+        entries.compute(userId, (id, current) -> invalidations.get() == seen ? fresh : current);
+        for (MindfulnessSession session : sessions) {
+            sessionOwners.put(session.getId(), userId);
+        }
+        if (entries.size() > maxUsers) {
+            evictOne(userId);
+        }
+        return sessions;
+    }
+
+    /**
+     * Drops the user's listing on this node and on peers after the current transaction commits
+     * (immediately when there is none). {@code userId} may be {@code 0} if only the session is
+     * known; each node then finds the owner among the listings it cached.
+     */
+    public void invalidate(long userId, long sessionId) {
+        Runnable invalidation = () -> {
+            onInvalidate(userId, sessionId);
+            bus.publish(userId, sessionId);
+        };
+        if (!Storage.afterCommit(invalidation)) {
+            invalidation.run();
+        }
+    }
+
+    /**
+     * Also notifies {@code listener} of invalidations received from peers. Writes made on this node
+     * are not forwarded; local caches apply those themselves.
+     */
+    public void addPeerListener(InvalidationBus.Listener listener) {
+        peerListeners.add(listener);
+    }
+
+    public void removePeerListener(InvalidationBus.Listener listener) {
+        peerListeners.remove(listener);
+    }
+
+    @Override
+    public void onInvalidate(long userId, long sessionId) {
+        invalidations.incrementAndGet();
+        Long owner = userId != 0 ? Long.valueOf(userId) : sessionOwners.get(sessionId);
+        if (owner != null) {
+            entries.remove(owner);
+        }
+    }
+
+    @Override
+    public void onMessagesLost() {
+        clear();
+    }
+
+    public void clear() {
+        invalidations.incrementAndGet();
+        entries.clear();
+        sessionOwners.clear();
+    }
+
+    public boolean isEnabled() {
+        return ttlNanos > 0;
+    }
+
+    private void evictOne(long keep) {
+        Iterator<Map.Entry<Long, Entry>> users = entries.entrySet().iterator();
+        while (users.hasNext()) {
+            Map.Entry<Long, Entry> user = users.next();
+            if (user.getKey() != keep) {
+                users.remove();
+                for (MindfulnessSession session : user.getValue().sessions()) {
+                    sessionOwners.remove(session.getId(), user.getKey());
+                }
+                return;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        List<MindfulnessSession> load() throws SQLException;
+    }
+
+    private record Entry(List<MindfulnessSession> sessions, long loadedAtNanos) {
+    }
+}
@@ -0,0 +1,82 @@
+package com.guvi.mindfulness.dao;
+
+import com.guvi.mindfulness.jdbc.DBConnection;
+import com.guvi.mindfulness.model.LookupDictionary;
+import com.guvi.mindfulness.resilience.Deadline;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads the {@code session_categories} and {@code session_difficulties} lookup tables
+ * into the shared {@link LookupDictionary} caches.
+ */
+public class SessionLookupDAO implements LookupStore {
+
+    private static final String SELECT_CATEGORIES_SQL = "SELECT id, label FROM session_categories";
+
+    private static final String SELECT_DIFFICULTIES_SQL = "SELECT id, label FROM session_difficulties";
+
+    private static final long MIN_REFRESH_NANOS =
+            TimeUnit.SECONDS.toNanos(Math.max(0, Long.getLong("LOOKUP_REFRESH_MIN_SECONDS", 30)));
+
+    /** When the shared dictionaries were last reloaded, shared by every instance like they are. */
+    private static final AtomicLong LAST_REFRESH = new AtomicLong(System.nanoTime() - MIN_REFRESH_NANOS);
+
+    /**
+     * Loads both dictionaries the first time they are needed.
+     */
+    @Override
+    public void ensureLoaded() throws SQLException {
+        if (!LookupDictionary.CATEGORIES.isLoaded() || !LookupDictionary.DIFFICULTIES.isLoaded()) {
+            refresh();
+        }
+    }
+
+    /**
+     * Re-reads both lookup tables, picking up labels added since the last load.
+     */
+    @Override
+    public void refresh() throws SQLException {
+        Map<Short, String> categories;
+        Map<Short, String> difficulties;
+        try (Connection connection = DBConnection.getConnection()) {
+            categories = readTable(connection, SELECT_CATEGORIES_SQL);
+            difficulties = readTable(connection, SELECT_DIFFICULTIES_SQL);
+        }
+        LookupDictionary.CATEGORIES.load(categories);
+        LookupDictionary.DIFFICULTIES.load(difficulties);
+        LAST_REFRESH.set(System.nanoTime());
+    }
+
+    /**
+     * Only one caller per interval reloads; the others keep the dictionaries they have.
+     */
+    @Override
+    public void refreshIfDue() throws SQLException {
+        long last = LAST_REFRESH.get();
+        long now = System.nanoTime();
+        if (now - last >= MIN_REFRESH_NANOS && LAST_REFRESH.compareAndSet(last, now)) {
+            refresh();
+        }
+    }
+
+    private Map<Short, String> readTable(Connection connection, String sql) throws SQLException {
+        Map<Short, String> entries = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            Deadline.applyTo(statement);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    entries.put(rs.getShort("id"), rs.getString("label"));
+                }
+            }
+        }
+        return entries;
+    }
+}
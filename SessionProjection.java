@@ -0,0 +1,17 @@
+package com.guvi.mindfulness.dao;
+
+/**
+ * Column sets that {@link MindfulnessSessionDAO} can read from {@code mindfulness_sessions}.
+ * Views that skip the TEXT columns leave them to be loaded lazily on first access.
+ */
+public enum SessionProjection {
+
+    /** Scalar columns only; {@code description} and {@code reflection_notes} are deferred. */
+    SUMMARY,
+
+    /** Every column, including both TEXT fields. */
+    DETAIL,
+
+    /** Identity columns plus {@code reflection_notes}; {@code description} is deferred. */
+    NOTES
+}
@@ -0,0 +1,169 @@
+package com.guvi.mindfulness.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only range scans used by the report engine. Every method works on a connection owned
+ * by the caller so that parallel scans never share the OLTP connection.
+ */
+public class SessionReportDAO {
+
+    private static final String SESSION_ID_BOUNDS_SQL = "SELECT MIN(id), MAX(id) FROM mindfulness_sessions";
+
+    private static final String USER_ID_BOUNDS_SQL = """
+            SELECT MIN(id), MAX(id) FROM users
+            WHERE created_at >= ? AND created_at < ?
+            """;
+
+    private static final String SCAN_SESSIONS_SQL = """
+            SELECT category_id, difficulty_id, DAYOFWEEK(scheduled_at) AS day_of_week,
+                   HOUR(scheduled_at) AS hour_of_day, duration_minutes
+            FROM mindfulness_sessions
+            WHERE id >= ? AND id < ? AND scheduled_at >= ? AND scheduled_at < ?
+            """;
+
+    private static final String SCAN_ACTIVITY_SQL = """
+            SELECT s.user_id,
+                   PERIOD_DIFF(DATE_FORMAT(u.created_at, '%Y%m'), ?) AS cohort_index,
+                   PERIOD_DIFF(DATE_FORMAT(s.scheduled_at, '%Y%m'), DATE_FORMAT(u.created_at, '%Y%m')) AS month_offset
+            FROM mindfulness_sessions s
+            JOIN users u ON u.id = s.user_id
+            WHERE s.user_id >= ? AND s.user_id < ? AND u.created_at >= ? AND u.created_at < ?
+            ORDER BY s.user_id
+            """;
+
+    private static final String COHORT_SIZES_SQL = """
+            SELECT PERIOD_DIFF(DATE_FORMAT(created_at, '%Y%m'), ?) AS cohort_index, COUNT(*) AS users
+            FROM users
+            WHERE created_at >= ? AND created_at < ?
+            GROUP BY cohort_index
+            """;
+
+    private static final int FETCH_SIZE = 1000;
+
+    /**
+     * Callback for each session row in a scanned id range.
+     */
+    @FunctionalInterface
+    public interface SessionRowVisitor {
+        void visit(short categoryCode, short difficultyCode, int dayOfWeek, int hourOfDay, int durationMinutes);
+    }
+
+    /**
+     * Callback for each (user, month) activity row; rows arrive grouped by user.
+     */
+    @FunctionalInterface
+    public interface ActivityRowVisitor {
+        void visit(long userId, int cohortIndex, int monthOffset);
+    }
+
+    /**
+     * Returns {@code {minId, maxId}} of {@code mindfulness_sessions}, or {@code null} when empty.
+     */
+    public long[] sessionIdBounds(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SESSION_ID_BOUNDS_SQL);
+             ResultSet rs = statement.executeQuery()) {
+            return readBounds(rs);
+        }
+    }
+
+    /**
+     * Returns {@code {minId, maxId}} of users created in {@code [from, to)}, or {@code null} when none.
+     */
+    public long[] userIdBounds(Connection connection, LocalDateTime from, LocalDateTime to) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(USER_ID_BOUNDS_SQL)) {
+            statement.setTimestamp(1, Timestamp.valueOf(from));
+            statement.setTimestamp(2, Timestamp.valueOf(to));
+            try (ResultSet rs = statement.executeQuery()) {
+                return readBounds(rs);
+            }
+        }
+    }
+
+    /**
+     * Streams sessions with {@code fromId <= id < toId} scheduled in {@code [from, to)}.
+     *
+     * @return number of rows visited
+     */
+    public long scanSessions(Connection connection, long fromId, long toId, LocalDateTime from, LocalDateTime to,
+                             SessionRowVisitor visitor) throws SQLException {
+        long rows = 0;
+        try (PreparedStatement statement = connection.prepareStatement(SCAN_SESSIONS_SQL)) {
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setLong(1, fromId);
+            statement.setLong(2, toId);
+            statement.setTimestamp(3, Timestamp.valueOf(from));
+            statement.setTimestamp(4, Timestamp.valueOf(to));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    visitor.visit(rs.getShort(1), rs.getShort(2), rs.getInt(3), rs.getInt(4), rs.getInt(5));
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Streams the activity of users with {@code fromUserId <= id < toUserId} who signed up in
+     * {@code [from, to)}. Cohort indexes count months from {@code baseMonth} ({@code yyyyMM}).
+     *
+     * @return number of rows visited
+     */
+    public long scanActivity(Connection connection, long fromUserId, long toUserId, int baseMonth,
+                             LocalDateTime from, LocalDateTime to, ActivityRowVisitor visitor) throws SQLException {
+        long rows = 0;
+        try (PreparedStatement statement = connection.prepareStatement(SCAN_ACTIVITY_SQL)) {
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setInt(1, baseMonth);
+            statement.setLong(2, fromUserId);
+            statement.setLong(3, toUserId);
+            statement.setTimestamp(4, Timestamp.valueOf(from));
+            statement.setTimestamp(5, Timestamp.valueOf(to));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    visitor.visit(rs.getLong(1), rs.getInt(2), rs.getInt(3));
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Number of sign-ups per cohort month, indexed from {@code baseMonth}.
+     */
+    public long[] cohortSizes(Connection connection, int baseMonth, int cohorts,
+                              LocalDateTime from, LocalDateTime to) throws SQLException {
+        long[] sizes = new long[cohorts];
+        try (PreparedStatement statement = connection.prepareStatement(COHORT_SIZES_SQL)) {
+            statement.setInt(1, baseMonth);
+            statement.setTimestamp(2, Timestamp.valueOf(from));
+            statement.setTimestamp(3, Timestamp.valueOf(to));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    int index = rs.getInt("cohort_index");
+                    if (index >= 0 && index < cohorts) {
+                        sizes[index] = rs.getLong("users");
+                    }
+                }
+            }
+        }
+        return sizes;
+    }
+
+    private long[] readBounds(ResultSet rs) throws SQLException {
+        if (rs.next()) {
+            long min = rs.getLong(1);
+            if (!rs.wasNull()) {
+                return new long[]{min, rs.getLong(2)};
+            }
+        }
+        return null;
+    }
+}
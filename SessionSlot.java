@@ -0,0 +1,17 @@
+package com.guvi.mindfulness.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * The time a session occupies, {@code [start, end)}. A free-slot suggestion has {@code sessionId} 0.
+ */
+public record SessionSlot(long sessionId, LocalDateTime start, LocalDateTime end) {
+
+    public static SessionSlot of(long sessionId, LocalDateTime start, int durationMinutes) {
+        return new SessionSlot(sessionId, start, start.plusMinutes(durationMinutes));
+    }
+
+    public boolean overlaps(LocalDateTime otherStart, LocalDateTime otherEnd) {
+        return start.isBefore(otherEnd) && end.isAfter(otherStart);
+    }
+}
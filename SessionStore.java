@@ -0,0 +1,100 @@
+package com.guvi.mindfulness.dao;
+
+import com.guvi.mindfulness.model.MindfulnessSession;
+import com.guvi.mindfulness.model.SessionSlot;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Storage contract for mindfulness sessions, implemented by {@link MindfulnessSessionDAO} (MySQL)
+ * and the embedded engine. Listings are ordered newest first. Fields outside the requested
+ * {@link SessionProjection} may be loaded lazily on first access.
+ */
+public interface SessionStore {
+
+    /**
+     * @return the generated id
+     */
+    long insert(MindfulnessSession session) throws SQLException;
+
+    /**
+     * Inserts several sessions. Callers wrap this in a transaction when the rows must be stored
+     * all-or-nothing.
+     *
+     * @return the generated ids, in the order of {@code sessions}
+     */
+    default long[] insertAll(List<MindfulnessSession> sessions) throws SQLException {
+        long[] ids = new long[sessions.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = insert(sessions.get(i));
+        }
+        return ids;
+    }
+
+    MindfulnessSession findById(long id, SessionProjection projection) throws SQLException;
+
+    default MindfulnessSession findById(long id) throws SQLException {
+        return findById(id, SessionProjection.DETAIL);
+    }
+
+    List<MindfulnessSession> findByUser(long userId, SessionProjection projection) throws SQLException;
+
+    default List<MindfulnessSession> findByUser(long userId) throws SQLException {
+        return findByUser(userId, SessionProjection.DETAIL);
+    }
+
+    /**
+     * Sessions of a user scheduled in {@code [from, to)}.
+     */
+    List<MindfulnessSession> findByUserBetween(long userId, LocalDateTime from, LocalDateTime to,
+                                               SessionProjection projection) throws SQLException;
+
+    /**
+     * Summary listing of a user's sessions in one category.
+     */
+    List<MindfulnessSession> findByUserAndCategory(long userId, short categoryCode) throws SQLException;
+
+    /**
+     * Summary listing of a user's sessions at one difficulty.
+     */
+    List<MindfulnessSession> findByUserAndDifficulty(long userId, short difficultyCode) throws SQLException;
+
+    /**
+     * Time slots of a user's sessions starting in {@code [from, to)}, read from the
+     * {@code (user_id, scheduled_at)} index without touching the rows.
+     */
+    List<SessionSlot> findSlots(long userId, LocalDateTime from, LocalDateTime to) throws SQLException;
+
+    /**
+     * Minutes scheduled per calendar day over the user's whole history, archived sessions included,
+     * oldest day first. Days without sessions are left out.
+     */
+    List<DayMinutes> findDailyMinutes(long userId) throws SQLException;
+
+    MindfulnessSession.SessionText findText(long sessionId) throws SQLException;
+
+    /**
+     * Compare-and-set update of the reflection notes and duration.
+     */
+    UpdateResult updateReflection(long sessionId, String notes, int durationMinutes, int expectedVersion)
+            throws SQLException;
+
+    boolean delete(long sessionId) throws SQLException;
+
+    /**
+     * Locks the rows of the given users, in id order, until the surrounding transaction ends, so
+     * that schedule checks and writes for one user are serialized across nodes. Must be called
+     * inside a transaction.
+     *
+     * @return the ids among {@code userIds} that exist
+     */
+    Set<Long> lockOwners(Collection<Long> userIds) throws SQLException;
+
+    record DayMinutes(LocalDate day, int minutes) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.guvi.mindfulness.recommend;
+
+import java.util.Arrays;
+
+/**
+ * Immutable sparse vector of {@code float} weights over small non-negative feature indices, kept
+ * as two parallel arrays sorted by index. Vectors here have a handful of entries, so a dot
+ * product is a merge of two short arrays with no boxing or hashing.
+ */
+final class SparseVector {
+
+    static final SparseVector EMPTY = new SparseVector(new int[0], new float[0]);
+
+    private final int[] indices;
+    private final float[] values;
+
+    private SparseVector(int[] indices, float[] values) {
+        this.indices = indices;
+        this.values = values;
+    }
+
+    /**
+     * Builds a vector from a dense scratch array, keeping the non-zero entries and scaling them to
+     * unit length so the dot product of two vectors is their cosine similarity.
+     */
+    static SparseVector normalized(float[] dense) {
+        int count = 0;
+        double norm = 0;
+        for (float value : dense) {
+            if (value != 0) {
+                count++;
+                norm += (double) value * value;
+            }
+        }
+        if (count == 0) {
+            return EMPTY;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        int[] indices = new int[count];
+        float[] values = new float[count];
+        int next = 0;
+        for (int i = 0; i < dense.length; i++) {
+            if (dense[i] != 0) {
+                indices[next] = i;
+                values[next++] = dense[i] * scale;
+            }
+        }
+        return new SparseVector(indices, values);
+    }
+
+    float dot(SparseVector other) {
+        float sum = 0;
+        int i = 0;
+        int j = 0;
+        while (i < indices.length && j < other.indices.length) {
+            int a = indices[i];
+            int b = other.indices[j];
+            if (a == b) {
+                sum += values[i++] * other.values[j++];
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return sum;
+    }
+
+    boolean isEmpty() {
+        return indices.length == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SparseVector" + Arrays.toString(indices) + Arrays.toString(values);
+    }
+}
@@ -0,0 +1,101 @@
+package com.guvi.mindfulness.dao;
+
+import com.guvi.mindfulness.embedded.EmbeddedEngine;
+import com.guvi.mindfulness.jdbc.UnitOfWork;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Entry point to the storage engine selected by {@code STORAGE_ENGINE}: {@code jdbc} (default,
+ * MySQL through {@link com.guvi.mindfulness.jdbc.DBConnection}) or {@code embedded} (the in-process
+ * {@link EmbeddedEngine}). Services and servlets get their stores here so they work on either.
+ */
+public final class Storage {
+
+    private static final boolean EMBEDDED = "embedded".equalsIgnoreCase(System.getProperty("STORAGE_ENGINE", "jdbc"));
+
+    private Storage() {
+    }
+
+    public static boolean isEmbedded() {
+        return EMBEDDED;
+    }
+
+    public static UserStore users() {
+        return EMBEDDED ? Embedded.ENGINE.users() : new UserDAO();
+    }
+
+    public static SessionStore sessions() {
+        return EMBEDDED ? Embedded.ENGINE.sessions() : new MindfulnessSessionDAO();
+    }
+
+    public static LookupStore lookups() {
+        return EMBEDDED ? Embedded.ENGINE.lookups() : new SessionLookupDAO();
+    }
+
+    public static RecommendationStore recommendations() {
+        return EMBEDDED ? Embedded.ENGINE.recommendations() : new RecommendationDAO();
+    }
+
+    /**
+     * Starts (or joins) a transaction on the current thread: a {@link UnitOfWork} on MySQL, an
+     * engine transaction when embedded.
+     */
+    public static StorageTransaction begin() {
+        if (EMBEDDED) {
+            return Embedded.ENGINE.begin();
+        }
+        UnitOfWork work = UnitOfWork.begin();
+        return new StorageTransaction() {
+            @Override
+            public void commit() {
+                work.commit();
+            }
+
+            @Override
+            public void close() {
+                work.close();
+            }
+        };
+    }
+
+    /**
+     * Queues an action to run after the current thread's transaction commits.
+     *
+     * @return {@code false} if no transaction is open, in which case the caller runs it directly
+     */
+    public static boolean afterCommit(Runnable action) {
+        return EMBEDDED ? Embedded.ENGINE.afterCommit(action) : UnitOfWork.afterCommit(action);
+    }
+
+    /**
+     * Whether a transaction is open on the current thread, so reads may see its uncommitted writes.
+     */
+    public static boolean inTransaction() {
+        return EMBEDDED ? Embedded.ENGINE.inTransaction() : UnitOfWork.isActive();
+    }
+
+    /**
+     * Holder so the engine, and its log replay, is only created when the embedded engine is selected.
+     */
+    private static final class Embedded {
+        static final EmbeddedEngine ENGINE = open();
+
+        private static EmbeddedEngine open() {
+            try {
+                EmbeddedEngine engine = EmbeddedEngine.fromSystemProperties();
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        engine.close();
+                    } catch (IOException e) {
+                        // The log is intact; the next start replays it instead of loading a snapshot.
+                    }
+                }, "embedded-shutdown"));
+                return engine;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open embedded storage", e);
+            }
+        }
+    }
+}
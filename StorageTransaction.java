@@ -0,0 +1,13 @@
+package com.guvi.mindfulness.dao;
+
+/**
+ * Groups several store calls made on the current thread into one atomic, durable change.
+ * Closing without {@link #commit()} rolls the changes back. Obtained from {@link Storage#begin()}.
+ */
+public interface StorageTransaction extends AutoCloseable {
+
+    void commit();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,176 @@
+package com.guvi.mindfulness.recommend;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every user's top K courses, laid out for cheap reads. A full rebuild publishes a {@link Table}:
+ * user ids in an open-addressing {@code long[]} and the rankings in flat {@code long[]} and
+ * {@code float[]} arrays, K slots per user, so the whole cache is a few large arrays instead of an
+ * object per user. A lookup is a hash probe and a copy of at most K entries.
+ * <p>
+ * Users re-scored between rebuilds go to a small overlay map that is checked first. Overlay
+ * entries carry the stamp of the moment their inputs were read; when a rebuild publishes, entries
+ * stamped before the rebuild started are dropped, since the new table read newer data.
+ */
+final class TopKCache {
+
+    private static final Ranking REMOVED = new Ranking(new long[0], new float[0]);
+
+    private volatile Table table;
+    private final Map<Long, Stamped> overlay = new ConcurrentHashMap<>();
+
+    TopKCache(int k) {
+        this.table = Table.build(List.of(), k);
+    }
+
+    /**
+     * The user's ranking, or {@code null} if the user is not cached.
+     */
+    Ranking get(long userId) {
+        Stamped stamped = overlay.get(userId);
+        if (stamped != null) {
+            return stamped.ranking == REMOVED ? null : stamped.ranking;
+        }
+        return table.get(userId);
+    }
+
+    void put(long userId, Ranking ranking, long stamp) {
+        overlay.merge(userId, new Stamped(ranking, stamp), (current, fresh) -> fresh.stamp >= current.stamp ? fresh : current);
+    }
+
+    void remove(long userId, long stamp) {
+        put(userId, REMOVED, stamp);
+    }
+
+    void publish(Table rebuilt, long buildStamp) {
+        table = rebuilt;
+        overlay.values().removeIf(stamped -> stamped.stamp < buildStamp);
+    }
+
+    int size() {
+        return table.users + overlay.size();
+    }
+
+    /**
+     * Courses ordered from best to worst, with their scores.
+     */
+    record Ranking(long[] courseIds, float[] scores) {
+
+        int size() {
+            return courseIds.length;
+        }
+    }
+
+    /**
+     * Rankings of a contiguous range of users, scored by one fork/join leaf.
+     */
+    static final class Shard {
+
+        final int k;
+        final long[] userIds;
+        final long[] courseIds;
+        final float[] scores;
+        final byte[] counts;
+        int users;
+
+        Shard(int capacity, int k) {
+            this.k = k;
+            this.userIds = new long[capacity];
+            this.courseIds = new long[capacity * k];
+            this.scores = new float[capacity * k];
+            this.counts = new byte[capacity];
+        }
+
+        void add(long userId, Ranking ranking) {
+            int row = users++;
+            userIds[row] = userId;
+            counts[row] = (byte) ranking.size();
+            System.arraycopy(ranking.courseIds(), 0, courseIds, row * k, ranking.size());
+            System.arraycopy(ranking.scores(), 0, scores, row * k, ranking.size());
+        }
+    }
+
+    /**
+     * Immutable snapshot built from the shards of one rebuild.
+     */
+    static final class Table {
+
+        private final int k;
+        private final int users;
+        private final long[] keys;
+        private final int[] rows;
+        private final long[] courseIds;
+        private final float[] scores;
+        private final byte[] counts;
+
+        private Table(int k, int users, int capacity) {
+            this.k = k;
+            this.users = users;
+            this.keys = new long[capacity];
+            this.rows = new int[capacity];
+            this.courseIds = new long[users * k];
+            this.scores = new float[users * k];
+            this.counts = new byte[users];
+        }
+
+        static Table build(List<Shard> shards, int k) {
+            int users = 0;
+            for (Shard shard : shards) {
+                users += shard.users;
+            }
+            // Power of two at least twice the user count keeps probe chains short.
+            int capacity = Integer.highestOneBit(Math.max(4, users * 2 - 1)) << 1;
+            Table table = new Table(k, users, capacity);
+            int row = 0;
+            for (Shard shard : shards) {
+                System.arraycopy(shard.courseIds, 0, table.courseIds, row * k, shard.users * k);
+                System.arraycopy(shard.scores, 0, table.scores, row * k, shard.users * k);
+                System.arraycopy(shard.counts, 0, table.counts, row, shard.users);
+                for (int i = 0; i < shard.users; i++) {
+                    int slot = table.slot(shard.userIds[i]);
+                    table.keys[slot] = shard.userIds[i];
+                    table.rows[slot] = row + i;
+                }
+                row += shard.users;
+            }
+            return table;
+        }
+
+        Ranking get(long userId) {
+            int slot = slot(userId);
+            if (keys[slot] != userId) {
+                return null;
+            }
+            int row = rows[slot];
+            int count = counts[row];
+            long[] ids = new long[count];
+            float[] values = new float[count];
+            System.arraycopy(courseIds, row * k, ids, 0, count);
+            System.arraycopy(scores, row * k, values, 0, count);
+            return new Ranking(ids, values);
+        }
+
+        /**
+         * Slot holding {@code userId}, or the empty slot where it would go. User ids are positive,
+         * so {@code 0} marks an empty slot.
+         */
+        private int slot(long userId) {
+            int mask = keys.length - 1;
+            int slot = (int) (mix(userId) & mask);
+            while (keys[slot] != 0 && keys[slot] != userId) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static long mix(long key) {
+            key *= 0x9E3779B97F4A7C15L;
+            return key ^ (key >>> 32);
+        }
+    }
+
+    private record Stamped(Ranking ranking, long stamp) {
+    }
+}
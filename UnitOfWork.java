@@ -0,0 +1,213 @@
+package com.guvi.mindfulness.jdbc;
+
+import com.guvi.mindfulness.exception.DataAccessException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binds one JDBC connection to the current thread so that several DAO calls run in a single
+ * transaction with a single commit. While a unit of work is open, {@link DBConnection#getConnection()}
+ * hands out the bound connection; the DAOs' usual try-with-resources {@code close()} is ignored
+ * so the connection survives until the unit of work ends.
+ * <pre>
+ * try (UnitOfWork work = UnitOfWork.begin()) {
+ *     long userId = userService.registerUser(user);
+ *     sessionService.scheduleSession(session);
+ *     work.commit();
+ * }
+ * </pre>
+ * Closing without {@link #commit()} rolls back. Nested {@code begin()} calls join the outer unit of
+ * work; only the outermost commit is effective.
+ */
+public final class UnitOfWork implements AutoCloseable {
+
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private final Connection connection;
+    private final Connection sharedHandle;
+    private final boolean readOnly;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private int depth = 1;
+    private boolean committed;
+    private boolean scopeCommitted;
+    private boolean rollbackOnly;
+
+    private UnitOfWork(Connection connection, boolean readOnly) {
+        this.connection = connection;
+        this.readOnly = readOnly;
+        this.sharedHandle = nonClosing(connection);
+    }
+
+    /**
+     * Starts a read-write unit of work, or joins the one already open on this thread.
+     */
+    public static UnitOfWork begin() {
+        return begin(false);
+    }
+
+    /**
+     * Starts a unit of work. With {@code readOnly} the connection is flagged read-only so InnoDB can
+     * skip transaction id allocation and undo logging. A read-write request cannot join a read-only one.
+     */
+    public static UnitOfWork begin(boolean readOnly) {
+        UnitOfWork current = CURRENT.get();
+        if (current != null) {
+            if (current.readOnly && !readOnly) {
+                throw new IllegalStateException("Cannot join a read-only unit of work for writing");
+            }
+            current.depth++;
+            return current;
+        }
+        try {
+            Connection connection = DBConnection.openConnection();
+            try {
+                connection.setAutoCommit(false);
+                connection.setReadOnly(readOnly);
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+            UnitOfWork work = new UnitOfWork(connection, readOnly);
+            CURRENT.set(work);
+            return work;
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to start unit of work", e);
+        }
+    }
+
+    /**
+     * Connection bound to the current thread, or {@code null} outside a unit of work.
+     */
+    static Connection currentConnection() {
+        UnitOfWork current = CURRENT.get();
+        return current == null ? null : current.sharedHandle;
+    }
+
+    /**
+     * Queues an action to run once the unit of work open on this thread has committed. Actions are
+     * dropped on rollback.
+     *
+     * @return {@code false} if no unit of work is open, in which case nothing was queued
+     */
+    public static boolean afterCommit(Runnable action) {
+        UnitOfWork current = CURRENT.get();
+        if (current == null) {
+            return false;
+        }
+        current.afterCommit.add(action);
+        return true;
+    }
+
+    /**
+     * Whether a unit of work is open on this thread.
+     */
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Commits the transaction. Inside a nested scope this only records that the inner work finished;
+     * the outermost scope performs the commit.
+     */
+    public void commit() {
+        if (depth > 1) {
+            scopeCommitted = true;
+            return;
+        }
+        if (rollbackOnly) {
+            throw new IllegalStateException("Unit of work was marked rollback-only by a nested scope");
+        }
+        try {
+            connection.commit();
+            committed = true;
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to commit unit of work", e);
+        }
+        for (Runnable action : afterCommit) {
+            action.run();
+        }
+        afterCommit.clear();
+    }
+
+    public Savepoint savepoint(String name) {
+        try {
+            return connection.setSavepoint(name);
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to create savepoint " + name, e);
+        }
+    }
+
+    public void rollbackTo(Savepoint savepoint) {
+        try {
+            connection.rollback(savepoint);
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to roll back to savepoint", e);
+        }
+    }
+
+    public void releaseSavepoint(Savepoint savepoint) {
+        try {
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to release savepoint", e);
+        }
+    }
+
+    /**
+     * Ends this scope. The outermost scope rolls back unless committed, then releases the connection.
+     */
+    @Override
+    public void close() {
+        if (depth > 1) {
+            depth--;
+            // An inner scope that ends without commit() dooms the whole unit of work.
+            rollbackOnly |= !scopeCommitted;
+            scopeCommitted = false;
+            return;
+        }
+        CURRENT.remove();
+        try {
+            if (!committed) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to roll back unit of work", e);
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // The transaction is already finished
+            }
+        }
+    }
+
+    private static Connection nonClosing(Connection target) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            return null;
+                        case "commit":
+                        case "rollback":
+                        case "setAutoCommit":
+                            throw new SQLException("Transaction is managed by the unit of work");
+                        default:
+                            try {
+                                return method.invoke(target, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+}
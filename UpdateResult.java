@@ -0,0 +1,31 @@
+package com.guvi.mindfulness.dao;
+
+import com.guvi.mindfulness.resilience.Deadline;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Outcome of a versioned (compare-and-set) update.
+ */
+public enum UpdateResult {
+    UPDATED,
+    /** The row exists but another writer changed it since it was read. */
+    CONFLICT,
+    NOT_FOUND;
+
+    /**
+     * Tells a stale version apart from a missing row after an update matched nothing.
+     */
+    static UpdateResult afterMiss(Connection connection, String selectVersionSql, long id) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(selectVersionSql)) {
+            Deadline.applyTo(statement);
+            statement.setLong(1, id);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? CONFLICT : NOT_FOUND;
+            }
+        }
+    }
+}
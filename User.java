@@ -13,6 +13,7 @@ public class User {
     private String email;
     private String password;
     private String focusArea;
+    private int version;
     private final List<MindfulnessSession> completedSessions = new ArrayList<>();
 
     public User() {
@@ -66,6 +67,17 @@ public class User {
         this.focusArea = focusArea;
     }
 
+    /**
+     * Row version read with the user; updates succeed only while it still matches the stored row.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public List<MindfulnessSession> getCompletedSessions() {
         return completedSessions;
     }
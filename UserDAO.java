@@ -2,20 +2,22 @@ package com.guvi.mindfulness.dao;
 
 import com.guvi.mindfulness.jdbc.DBConnection;
 import com.guvi.mindfulness.model.User;
+import com.guvi.mindfulness.model.UserSummary;
+import com.guvi.mindfulness.resilience.Deadline;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * DAO responsible for CRUD operations on the {@code users} table.
  * Shows how PreparedStatement protects us from SQL injection while keeping the code concise.
  */
-public class UserDAO {
+public class UserDAO implements UserStore {
 
     private static final String INSERT_SQL = """
             INSERT INTO users(full_name, email, password, focus_area)
@@ -23,26 +25,40 @@ public class UserDAO {
             """;
 
     private static final String SELECT_BY_ID_SQL = """
-            SELECT id, full_name, email, password, focus_area
+            SELECT id, full_name, email, password, focus_area, version
             FROM users WHERE id = ?
             """;
 
-    private static final String SELECT_ALL_SQL = """
-            SELECT id, full_name, email, password, focus_area
-            FROM users ORDER BY id
+    private static final String SELECT_BY_EMAIL_SQL = """
+            SELECT id, full_name, email, password, focus_area, version
+            FROM users WHERE email = ?
             """;
 
+    private static final String EMAIL_EXISTS_SQL = "SELECT 1 FROM users WHERE email = ?";
+
+    private static final String SELECT_EMAILS_SQL = "SELECT email FROM users";
+
+    private static final String SELECT_DIRECTORY_SQL = "SELECT id, full_name, email FROM users ORDER BY id";
+
     private static final String UPDATE_SQL = """
             UPDATE users
-            SET full_name = ?, email = ?, password = ?, focus_area = ?
-            WHERE id = ?
+            SET full_name = ?, email = ?, password = ?, focus_area = ?, version = version + 1
+            WHERE id = ? AND version = ?
             """;
 
+    private static final String UPDATE_PASSWORD_SQL = "UPDATE users SET password = ? WHERE id = ? AND password = ?";
+
+    private static final String SELECT_VERSION_SQL = "SELECT version FROM users WHERE id = ?";
+
     private static final String DELETE_SQL = "DELETE FROM users WHERE id = ?";
 
+    private static final int FETCH_SIZE = 1000;
+
+    @Override
     public long insert(User user) throws SQLException {
         try (Connection connection = DBConnection.getConnection();
              PreparedStatement statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            Deadline.applyTo(statement);
             statement.setString(1, user.getFullName());
             statement.setString(2, user.getEmail());
             statement.setString(3, user.getPassword());
@@ -57,9 +73,11 @@ public class UserDAO {
         return -1;
     }
 
+    @Override
     public User findById(long id) throws SQLException {
         try (Connection connection = DBConnection.getConnection();
              PreparedStatement statement = connection.prepareStatement(SELECT_BY_ID_SQL)) {
+            Deadline.applyTo(statement);
             statement.setLong(1, id);
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
@@ -70,38 +88,129 @@ public class UserDAO {
         return null;
     }
 
-    public List<User> findAll() throws SQLException {
-        List<User> users = new ArrayList<>();
+    /**
+     * Uses the unique index on {@code email}; the column's case-insensitive collation makes the
+     * match ignore case.
+     */
+    @Override
+    public User findByEmail(String email) throws SQLException {
+        try (Connection connection = DBConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_BY_EMAIL_SQL)) {
+            Deadline.applyTo(statement);
+            statement.setString(1, email);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return mapRow(resultSet);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean emailExists(String email) throws SQLException {
         try (Connection connection = DBConnection.getConnection();
-             PreparedStatement statement = connection.prepareStatement(SELECT_ALL_SQL);
-             ResultSet resultSet = statement.executeQuery()) {
-            while (resultSet.next()) {
-                users.add(mapRow(resultSet));
+             PreparedStatement statement = connection.prepareStatement(EMAIL_EXISTS_SQL)) {
+            Deadline.applyTo(statement);
+            statement.setString(1, email);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    /**
+     * Scans the e-mail index on a reporting connection, fetched in chunks so the result set is
+     * never held in memory at once.
+     */
+    @Override
+    public void scanEmails(Consumer<String> consumer) throws SQLException {
+        try (Connection connection = DBConnection.openReportingConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_EMAILS_SQL)) {
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(resultSet.getString(1));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void scanDirectory(Consumer<UserSummary> consumer) throws SQLException {
+        try (Connection connection = DBConnection.openReportingConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_DIRECTORY_SQL)) {
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(new UserSummary(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3)));
+                }
             }
         }
-        return users;
     }
 
-    public boolean update(User user) throws SQLException {
+    /**
+     * Compare-and-set update against {@link User#getVersion()}. On success the user's version is
+     * advanced to match the stored row.
+     */
+    @Override
+    public UpdateResult update(User user) throws SQLException {
         try (Connection connection = DBConnection.getConnection();
              PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+            Deadline.applyTo(statement);
             statement.setString(1, user.getFullName());
             statement.setString(2, user.getEmail());
             statement.setString(3, user.getPassword());
             statement.setString(4, user.getFocusArea());
             statement.setLong(5, user.getId());
+            statement.setInt(6, user.getVersion());
+            if (statement.executeUpdate() == 1) {
+                user.setVersion(user.getVersion() + 1);
+                return UpdateResult.UPDATED;
+            }
+            return UpdateResult.afterMiss(connection, SELECT_VERSION_SQL, user.getId());
+        }
+    }
+
+    @Override
+    public boolean updatePassword(long id, String expected, String replacement) throws SQLException {
+        try (Connection connection = DBConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(UPDATE_PASSWORD_SQL)) {
+            Deadline.applyTo(statement);
+            statement.setString(1, replacement);
+            statement.setLong(2, id);
+            statement.setString(3, expected);
             return statement.executeUpdate() == 1;
         }
     }
 
+    @Override
     public boolean delete(long id) throws SQLException {
         try (Connection connection = DBConnection.getConnection();
              PreparedStatement statement = connection.prepareStatement(DELETE_SQL)) {
+            Deadline.applyTo(statement);
             statement.setLong(1, id);
             return statement.executeUpdate() == 1;
         }
     }
 
+    /**
+     * Prepares every statement of this DAO on the connections opened during warm-up, so they are
+     * in each connection's statement cache and the driver's parsing paths are compiled before the
+     * first real request.
+     */
+    public void prepareStatements() throws SQLException {
+        DBConnection.prepareAll(List.of(
+                INSERT_SQL,
+                SELECT_BY_ID_SQL,
+                SELECT_BY_EMAIL_SQL,
+                EMAIL_EXISTS_SQL,
+                UPDATE_SQL,
+                UPDATE_PASSWORD_SQL,
+                SELECT_VERSION_SQL,
+                DELETE_SQL));
+    }
+
     private User mapRow(ResultSet rs) throws SQLException {
         User user = new User();
         user.setId(rs.getLong("id"));
@@ -109,6 +218,7 @@ public class UserDAO {
         user.setEmail(rs.getString("email"));
         user.setPassword(rs.getString("password"));
         user.setFocusArea(rs.getString("focus_area"));
+        user.setVersion(rs.getInt("version"));
         return user;
     }
 }
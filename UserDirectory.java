@@ -0,0 +1,475 @@
+package com.guvi.mindfulness.cache;
+
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.dao.UserStore;
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
+import com.guvi.mindfulness.model.UserSummary;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory directory of users for the admin console: id, name and e-mail, never credentials.
+ * Supports listing by id and case-insensitive prefix search on e-mail or full name, both paged
+ * with keyset cursors so page N costs the same as page 1.
+ * <p>
+ * The bulk of the directory is an immutable {@link Snapshot} of sorted parallel arrays: rows by
+ * id, plus row numbers sorted by lower-cased e-mail and by lower-cased name, searched by binary
+ * search. Writes made through {@code UserService} go to a small id-ordered delta that overrides
+ * the snapshot and is merged into a new one in the background once it holds
+ * {@code USER_DIRECTORY_COMPACT_THRESHOLD} (default 4096) changes. The whole directory is reloaded
+ * every {@code USER_DIRECTORY_REFRESH_MINUTES} (default 15) to pick up writes made on other nodes.
+ */
+public final class UserDirectory {
+
+    public enum Field {
+        EMAIL, NAME
+    }
+
+    private static final int COMPACT_THRESHOLD = Integer.getInteger("USER_DIRECTORY_COMPACT_THRESHOLD", 4096);
+    private static final long REFRESH_MINUTES = Math.max(1, Long.getLong("USER_DIRECTORY_REFRESH_MINUTES", 15));
+
+    private static final UserDirectory SHARED = new UserDirectory();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-directory-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Guarded by lock
+    private Snapshot base = Snapshot.of(List.of());
+    private final TreeMap<Long, Change> delta = new TreeMap<>();
+    private long stamps;
+    private boolean loaded;
+    private boolean compacting;
+    private boolean refreshing;
+
+    public static UserDirectory shared() {
+        return SHARED;
+    }
+
+    /**
+     * Loads the directory now and then reloads it periodically. Returns without doing anything if
+     * it was already started.
+     */
+    public void start(UserStore store) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (refreshing) {
+                return;
+            }
+            refreshing = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            reload(store);
+        } catch (SQLException | RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                refreshing = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        maintenance.scheduleWithFixedDelay(() -> {
+            try {
+                reload(store);
+            } catch (SQLException | RuntimeException e) {
+                // Keep serving the current directory; the next run retries.
+            }
+        }, REFRESH_MINUTES, REFRESH_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Replaces the snapshot with the users in the store. Changes recorded before the scan began
+     * are covered by it and dropped; later ones keep overriding it.
+     */
+    public void reload(UserStore store) throws SQLException {
+        long scanStamp = nextStamp();
+        List<UserSummary> users = new ArrayList<>();
+        store.scanDirectory(users::add);
+        Snapshot loadedSnapshot = Snapshot.of(users);
+        lock.writeLock().lock();
+        try {
+            base = loadedSnapshot;
+            delta.values().removeIf(change -> change.stamp < scanStamp);
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records a created or updated user once the surrounding transaction, if any, commits.
+     */
+    public void saved(UserSummary user) {
+        afterCommit(() -> record(user.id(), user));
+    }
+
+    public void removed(long id) {
+        afterCommit(() -> record(id, null));
+    }
+
+    /**
+     * Users with an id above {@code cursor} (a previous page's {@link Page#nextCursor()}, or
+     * {@code null} for the first page), by id.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Page list(String cursor, int limit) {
+        long afterId = cursor == null ? 0 : parseId(cursor);
+        lock.readLock().lock();
+        try {
+            requireLoaded();
+            List<UserSummary> page = new ArrayList<>(Math.min(limit, 1024));
+            int row = base.firstRowAfter(afterId);
+            Iterator<Change> changes = delta.tailMap(afterId, false).values().iterator();
+            Change change = next(changes);
+            while (page.size() < limit && (row < base.ids.length || change != null)) {
+                long baseId = row < base.ids.length ? base.ids[row] : Long.MAX_VALUE;
+                if (change != null && change.id <= baseId) {
+                    if (change.user != null) {
+                        page.add(change.user);
+                    }
+                    if (change.id == baseId) {
+                        row++;
+                    }
+                    change = next(changes);
+                } else {
+                    page.add(base.summary(row++));
+                }
+            }
+            boolean more = row < base.ids.length || change != null;
+            String next = more && !page.isEmpty() ? Long.toString(page.get(page.size() - 1).id()) : null;
+            return new Page(page, next);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Users whose e-mail or full name starts with {@code prefix}, ignoring case, ordered by that
+     * field and then id.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Page search(Field field, String prefix, String cursor, int limit) {
+        String lowered = key(prefix);
+        String afterKey = null;
+        long afterId = 0;
+        if (cursor != null) {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf('\n');
+            if (separator < 0 || !decoded.startsWith(lowered)) {
+                throw new IllegalArgumentException("Cursor does not belong to this search");
+            }
+            afterKey = decoded.substring(0, separator);
+            afterId = parseId(decoded.substring(separator + 1));
+        }
+        lock.readLock().lock();
+        try {
+            requireLoaded();
+            // Matching delta entries are few; sort them and merge with the snapshot's run.
+            List<UserSummary> changed = new ArrayList<>();
+            for (Change change : delta.values()) {
+                if (change.user != null && key(field, change.user).startsWith(lowered)
+                        && (afterKey == null || compare(key(field, change.user), change.id, afterKey, afterId) > 0)) {
+                    changed.add(change.user);
+                }
+            }
+            changed.sort(Comparator.comparing((UserSummary user) -> key(field, user)).thenComparingLong(UserSummary::id));
+
+            int[] order = base.order(field);
+            String[] keys = base.keys(field);
+            int position = afterKey == null ? base.lowerBound(field, lowered, Long.MIN_VALUE)
+                    : base.lowerBound(field, afterKey, afterId + 1);
+            int nextChanged = 0;
+            List<UserSummary> page = new ArrayList<>(Math.min(limit, 1024));
+            while (page.size() < limit) {
+                while (position < order.length && keys[order[position]].startsWith(lowered)
+                        && delta.containsKey(base.ids[order[position]])) {
+                    position++;
+                }
+                boolean baseLeft = position < order.length && keys[order[position]].startsWith(lowered);
+                boolean changedLeft = nextChanged < changed.size();
+                if (!baseLeft && !changedLeft) {
+                    break;
+                }
+                if (changedLeft && (!baseLeft || compare(key(field, changed.get(nextChanged)), changed.get(nextChanged).id(),
+                        keys[order[position]], base.ids[order[position]]) < 0)) {
+                    page.add(changed.get(nextChanged++));
+                } else {
+                    page.add(base.summary(order[position++]));
+                }
+            }
+            boolean more = nextChanged < changed.size()
+                    || position < order.length && keys[order[position]].startsWith(lowered);
+            String next = null;
+            if (more && !page.isEmpty()) {
+                UserSummary last = page.get(page.size() - 1);
+                next = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                        (key(field, last) + '\n' + last.id()).getBytes(StandardCharsets.UTF_8));
+            }
+            return new Page(page, next);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int size = base.ids.length;
+            for (Change change : delta.values()) {
+                boolean inBase = base.rowOf(change.id) >= 0;
+                size += change.user == null ? (inBase ? -1 : 0) : (inBase ? 0 : 1);
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void record(long id, UserSummary user) {
+        boolean compact;
+        lock.writeLock().lock();
+        try {
+            delta.put(id, new Change(id, user, ++stamps));
+            compact = delta.size() >= COMPACT_THRESHOLD && !compacting;
+            if (compact) {
+                compacting = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (compact) {
+            maintenance.execute(this::compact);
+        }
+    }
+
+    /**
+     * Folds the delta into a new snapshot. Runs off the lock except for copying the delta and
+     * publishing; changes recorded meanwhile stay in the delta.
+     */
+    private void compact() {
+        Snapshot current;
+        List<Change> changes;
+        long upTo;
+        lock.readLock().lock();
+        try {
+            current = base;
+            changes = new ArrayList<>(delta.values());
+            upTo = stamps;
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            List<UserSummary> merged = new ArrayList<>(current.ids.length + changes.size());
+            int row = 0;
+            for (Change change : changes) {
+                while (row < current.ids.length && current.ids[row] < change.id) {
+                    merged.add(current.summary(row++));
+                }
+                if (row < current.ids.length && current.ids[row] == change.id) {
+                    row++;
+                }
+                if (change.user != null) {
+                    merged.add(change.user);
+                }
+            }
+            while (row < current.ids.length) {
+                merged.add(current.summary(row++));
+            }
+            Snapshot compacted = Snapshot.of(merged);
+            lock.writeLock().lock();
+            try {
+                // A reload may have replaced the snapshot meanwhile; then its result wins.
+                if (base == current) {
+                    base = compacted;
+                    delta.values().removeIf(change -> change.stamp <= upTo);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                compacting = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private long nextStamp() {
+        lock.writeLock().lock();
+        try {
+            return ++stamps;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void requireLoaded() {
+        if (!loaded) {
+            throw new ServiceUnavailableException("User directory is still loading", 5);
+        }
+    }
+
+    private static Change next(Iterator<Change> changes) {
+        return changes.hasNext() ? changes.next() : null;
+    }
+
+    private static long parseId(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    private static int compare(String key, long id, String otherKey, long otherId) {
+        int result = key.compareTo(otherKey);
+        return result != 0 ? result : Long.compare(id, otherId);
+    }
+
+    private static String key(Field field, UserSummary user) {
+        return key(field == Field.EMAIL ? user.email() : user.fullName());
+    }
+
+    private static String key(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (!Storage.afterCommit(update)) {
+            update.run();
+        }
+    }
+
+    /**
+     * One page of users and the cursor for the next one, {@code null} on the last page.
+     */
+    public record Page(List<UserSummary> users, String nextCursor) {
+    }
+
+    /**
+     * Latest known state of a user; {@code user == null} marks a deletion.
+     */
+    private record Change(long id, UserSummary user, long stamp) {
+    }
+
+    /**
+     * Immutable sorted-array index. Rows are ordered by id; {@code byEmail} and {@code byName}
+     * hold row numbers ordered by the lower-cased field and then id. Lower-casing an e-mail that
+     * is already lower case returns the same string, so most keys cost no extra memory.
+     */
+    private static final class Snapshot {
+
+        final long[] ids;
+        final String[] names;
+        final String[] emails;
+        final String[] nameKeys;
+        final String[] emailKeys;
+        final int[] byName;
+        final int[] byEmail;
+
+        private Snapshot(int size) {
+            ids = new long[size];
+            names = new String[size];
+            emails = new String[size];
+            nameKeys = new String[size];
+            emailKeys = new String[size];
+            byName = new int[size];
+            byEmail = new int[size];
+        }
+
+        /**
+         * @param users ordered by id
+         */
+        static Snapshot of(List<UserSummary> users) {
+            Snapshot snapshot = new Snapshot(users.size());
+            for (int row = 0; row < users.size(); row++) {
+                UserSummary user = users.get(row);
+                snapshot.ids[row] = user.id();
+                snapshot.names[row] = user.fullName();
+                snapshot.emails[row] = user.email();
+                snapshot.nameKeys[row] = key(user.fullName());
+                snapshot.emailKeys[row] = key(user.email());
+            }
+            snapshot.sortRows(snapshot.byName, snapshot.nameKeys);
+            snapshot.sortRows(snapshot.byEmail, snapshot.emailKeys);
+            return snapshot;
+        }
+
+        UserSummary summary(int row) {
+            return new UserSummary(ids[row], names[row], emails[row]);
+        }
+
+        int[] order(Field field) {
+            return field == Field.EMAIL ? byEmail : byName;
+        }
+
+        String[] keys(Field field) {
+            return field == Field.EMAIL ? emailKeys : nameKeys;
+        }
+
+        int rowOf(long id) {
+            int row = Arrays.binarySearch(ids, id);
+            return row >= 0 ? row : -1;
+        }
+
+        int firstRowAfter(long id) {
+            int row = Arrays.binarySearch(ids, id);
+            return row >= 0 ? row + 1 : -row - 1;
+        }
+
+        /**
+         * First position in the field's order whose (key, id) is at least {@code (key, id)}.
+         */
+        int lowerBound(Field field, String key, long id) {
+            int[] order = order(field);
+            String[] keys = keys(field);
+            int low = 0;
+            int high = order.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int row = order[middle];
+                if (compare(keys[row], ids[row], key, id) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private void sortRows(int[] order, String[] keys) {
+            Integer[] rows = new Integer[order.length];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = i;
+            }
+            // Rows are in id order and the sort is stable, so equal keys stay ordered by id.
+            Arrays.sort(rows, Comparator.comparing((Integer row) -> keys[row]));
+            for (int i = 0; i < rows.length; i++) {
+                order[i] = rows[i];
+            }
+        }
+    }
+}
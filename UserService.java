@@ -1,70 +1,267 @@
 package com.guvi.mindfulness.service;
 
-import com.guvi.mindfulness.dao.UserDAO;
+import com.guvi.mindfulness.cache.RegisteredEmails;
+import com.guvi.mindfulness.cache.UserDirectory;
+import com.guvi.mindfulness.dao.UpdateResult;
+import com.guvi.mindfulness.dao.UserStore;
+import com.guvi.mindfulness.exception.ConflictException;
 import com.guvi.mindfulness.exception.DataAccessException;
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
 import com.guvi.mindfulness.exception.ValidationException;
+import com.guvi.mindfulness.journal.ChangeJournal;
+import com.guvi.mindfulness.journal.ChangeRecord;
 import com.guvi.mindfulness.model.User;
+import com.guvi.mindfulness.model.UserSummary;
+import com.guvi.mindfulness.resilience.DaoGuard;
+import com.guvi.mindfulness.security.PasswordHasher;
 
 import java.sql.SQLException;
-import java.util.List;
+import java.sql.SQLIntegrityConstraintViolationException;
 
 /**
- * Business layer around {@link UserDAO}. Responsible for validating inputs before delegating to JDBC.
+ * Business layer around a {@link UserStore}. Responsible for validating inputs before delegating to storage.
+ * Passwords are stored as {@link PasswordHasher} hashes; plain-text passwords from older rows are
+ * still accepted at login and replaced by a hash on the first successful one.
+ * <p>
+ * Repeat sign-ups are answered with {@link ConflictException} before any hashing or insert: the
+ * {@link RegisteredEmails} filter flags likely duplicates and an index lookup confirms them.
  */
 public class UserService {
 
-    private final UserDAO userDAO;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private final UserStore userStore;
+    private final DaoGuard guard = DaoGuard.USERS;
+    private final ChangeJournal journal;
+    private final PasswordHasher hasher;
+    private final RegisteredEmails registeredEmails;
+    private final UserDirectory directory;
+
+    public UserService(UserStore userStore) {
+        this(userStore, ChangeJournal.shared(), PasswordHasher.shared(), RegisteredEmails.shared(),
+                UserDirectory.shared());
+    }
 
-    public UserService(UserDAO userDAO) {
-        this.userDAO = userDAO;
+    public UserService(UserStore userStore, ChangeJournal journal, PasswordHasher hasher,
+                       RegisteredEmails registeredEmails, UserDirectory directory) {
+        this.userStore = userStore;
+        this.journal = journal;
+        this.hasher = hasher;
+        this.registeredEmails = registeredEmails;
+        this.directory = directory;
     }
 
+    /**
+     * @throws ConflictException when the e-mail is already registered
+     */
     public long registerUser(User user) throws ValidationException {
+        return registerUser(user, prepareRegistration(user));
+    }
+
+    /**
+     * Validates a new user, rejects a known e-mail and hashes the password, without storing
+     * anything. Lets callers do the slow hashing before they open a transaction.
+     */
+    String prepareRegistration(User user) throws ValidationException {
         validateUser(user);
+        if (isRegistered(user.getEmail())) {
+            throw new ConflictException("Email is already registered");
+        }
+        return hasher.hash(user.getPassword());
+    }
+
+    /**
+     * Stores a user prepared by {@link #prepareRegistration(User)}. A duplicate that got past the
+     * pre-check (registered on another node, or concurrently) is still caught by the constraint.
+     */
+    long registerUser(User user, String passwordHash) {
+        user.setPassword(passwordHash);
+        long id;
         try {
-            return userDAO.insert(user);
+            id = guard.execute(() -> userStore.insert(user));
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new ConflictException("Email is already registered");
         } catch (SQLException e) {
             throw new DataAccessException("Failed to create user", e);
         }
+        // Added before a surrounding transaction commits: a rollback leaves a stale entry, which
+        // only costs a confirming lookup later.
+        registeredEmails.added(user.getEmail());
+        directory.saved(new UserSummary(id, user.getFullName(), user.getEmail()));
+        journal.record(ChangeRecord.Entity.USER, ChangeRecord.Operation.INSERT, id, id, 0);
+        return id;
     }
 
-    public List<User> listUsers() {
+    /**
+     * A page of the user directory by id. {@code cursor} is the previous page's
+     * {@link UserDirectory.Page#nextCursor()}, or {@code null} for the first page.
+     */
+    public UserDirectory.Page listUsers(String cursor, int limit) throws ValidationException {
+        validatePageSize(limit);
         try {
-            return userDAO.findAll();
-        } catch (SQLException e) {
-            throw new DataAccessException("Failed to list users", e);
+            return directory.list(cursor, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("cursor is not valid for this listing");
+        }
+    }
+
+    /**
+     * A page of users whose e-mail or full name starts with {@code prefix}, ignoring case.
+     */
+    public UserDirectory.Page searchUsers(UserDirectory.Field field, String prefix, String cursor, int limit)
+            throws ValidationException {
+        validatePageSize(limit);
+        if (prefix == null || prefix.isBlank()) {
+            throw new ValidationException("Search prefix is mandatory");
+        }
+        try {
+            return directory.search(field, prefix, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("cursor is not valid for this search");
         }
     }
 
     public User getUser(long id) {
         try {
-            return userDAO.findById(id);
+            return guard.execute(() -> userStore.findById(id));
         } catch (SQLException e) {
             throw new DataAccessException("Failed to fetch user", e);
         }
     }
 
-    public boolean updateUser(User user) throws ValidationException {
+    /**
+     * Updates the user if the stored row is still at {@link User#getVersion()}. A blank
+     * {@link User#getPassword()} keeps the stored hash, so profile edits cost no hashing; a new
+     * password is only accepted together with the current one.
+     *
+     * @return {@code false} when the user does not exist
+     * @throws ConflictException when the user was changed by someone else in the meantime
+     * @throws ValidationException when a new password is given without the correct current one
+     */
+    public boolean updateUser(User user, String currentPassword) throws ValidationException {
         if (user.getId() <= 0) {
             throw new ValidationException("User id is required for update");
         }
-        validateUser(user);
+        boolean changingPassword = user.getPassword() != null && !user.getPassword().isEmpty();
+        validateProfile(user);
+        if (changingPassword) {
+            validatePassword(user.getPassword());
+        }
+        User existing = getUser(user.getId());
+        if (existing == null) {
+            return false;
+        }
+        if (existing.getVersion() != user.getVersion()) {
+            throw new ConflictException("User was modified by another request; reload and retry");
+        }
+        if (changingPassword) {
+            if (currentPassword == null || !hasher.verify(currentPassword, existing.getPassword())) {
+                throw new ValidationException("Current password is incorrect");
+            }
+            user.setPassword(hasher.hash(user.getPassword()));
+        } else {
+            // A password change in between advances the version, so the update below fails.
+            user.setPassword(existing.getPassword());
+        }
+        UpdateResult result;
         try {
-            return userDAO.update(user);
+            result = guard.execute(() -> userStore.update(user));
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new ConflictException("Email is already registered");
         } catch (SQLException e) {
             throw new DataAccessException("Failed to update user", e);
         }
+        if (result == UpdateResult.CONFLICT) {
+            throw new ConflictException("User was modified by another request; reload and retry");
+        }
+        if (result == UpdateResult.UPDATED) {
+            // The previous e-mail stays in the filter until the next rebuild; harmless, see RegisteredEmails.
+            registeredEmails.added(user.getEmail());
+            directory.saved(UserSummary.of(user));
+            journal.record(ChangeRecord.Entity.USER, ChangeRecord.Operation.UPDATE, user.getId(), user.getId(),
+                    user.getVersion());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks an e-mail and password. On success, a password stored in plain text or at a lower
+     * hashing cost than configured is re-hashed; if that is shed or races with a password change,
+     * the old value stays and the next login tries again.
+     *
+     * @return the user, or {@code null} if the e-mail is unknown or the password is wrong
+     */
+    public User authenticate(String email, String password) {
+        if (email == null || password == null) {
+            return null;
+        }
+        User user;
+        try {
+            user = guard.execute(() -> userStore.findByEmail(email.trim()));
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to look up user", e);
+        }
+        String stored = user != null ? user.getPassword() : null;
+        if (!hasher.verify(password, stored) || user == null) {
+            return null;
+        }
+        if (hasher.needsRehash(stored)) {
+            try {
+                String rehashed = hasher.hash(password);
+                if (guard.execute(() -> userStore.updatePassword(user.getId(), stored, rehashed))) {
+                    user.setPassword(rehashed);
+                }
+            } catch (SQLException | DataAccessException | ServiceUnavailableException e) {
+                // The login itself succeeded; upgrading the hash can wait for the next one.
+            }
+        }
+        return user;
     }
 
     public boolean deleteUser(long id) {
+        boolean deleted;
+        User existing;
         try {
-            return userDAO.delete(id);
+            existing = guard.execute(() -> userStore.findById(id));
+            deleted = existing != null && guard.execute(() -> userStore.delete(id));
         } catch (SQLException e) {
             throw new DataAccessException("Failed to delete user", e);
         }
+        if (deleted) {
+            registeredEmails.removed(existing.getEmail());
+            directory.removed(id);
+            journal.record(ChangeRecord.Entity.USER, ChangeRecord.Operation.DELETE, id, id, 0);
+        }
+        return deleted;
+    }
+
+    /**
+     * Filter first; only a likely duplicate costs an index lookup.
+     */
+    private boolean isRegistered(String email) {
+        if (!registeredEmails.mightBeRegistered(email)) {
+            return false;
+        }
+        try {
+            return guard.execute(() -> userStore.emailExists(RegisteredEmails.normalize(email)));
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to check email", e);
+        }
+    }
+
+    private static void validatePageSize(int limit) throws ValidationException {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
     }
 
     private void validateUser(User user) throws ValidationException {
+        validateProfile(user);
+        validatePassword(user.getPassword());
+    }
+
+    private void validateProfile(User user) throws ValidationException {
         if (user == null) {
             throw new ValidationException("User payload cannot be null");
         }
@@ -74,7 +271,10 @@ public class UserService {
         if (user.getEmail() == null || !user.getEmail().contains("@")) {
             throw new ValidationException("A valid email is required");
         }
-        if (user.getPassword() == null || user.getPassword().length() < 6) {
+    }
+
+    private static void validatePassword(String password) throws ValidationException {
+        if (password == null || password.length() < 6) {
             throw new ValidationException("Password must contain at least 6 characters");
         }
     }
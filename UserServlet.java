@@ -0,0 +1,126 @@
+package com.guvi.mindfulness.servlet;
+
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.exception.ConflictException;
+import com.guvi.mindfulness.exception.ServiceUnavailableException;
+import com.guvi.mindfulness.exception.ValidationException;
+import com.guvi.mindfulness.model.User;
+import com.guvi.mindfulness.resilience.Deadline;
+import com.guvi.mindfulness.service.UserService;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Reads and updates a user profile. Updates carry the version the client last read and are
+ * rejected with {@code 409} if the profile changed in the meantime. {@code password} is optional;
+ * a new one is only taken together with {@code currentPassword}.
+ * <p>
+ * Callers must be signed in through {@link LoginServlet} as the user they ask for, or be in the
+ * {@code admin} role; otherwise they get {@code 401} or {@code 403}.
+ */
+@WebServlet(name = "UserServlet", urlPatterns = "/api/users", loadOnStartup = 1)
+public class UserServlet extends HttpServlet {
+
+    private transient UserService userService;
+
+    @Override
+    public void init() throws ServletException {
+        this.userService = new UserService(Storage.users());
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        try (Deadline.Scope deadline = Deadline.startRequest()) {
+            long id = Long.parseLong(req.getParameter("id"));
+            if (!authorize(req, resp, id)) {
+                return;
+            }
+            User user = userService.getUser(id);
+            if (user == null) {
+                resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                resp.getWriter().write("{\"error\":\"User not found\"}");
+                return;
+            }
+            resp.getWriter().write("""
+                    {"id":%d,"fullName":"%s","email":"%s","focusArea":"%s","version":%d}"""
+                    .formatted(user.getId(), user.getFullName(), user.getEmail(), user.getFocusArea(), user.getVersion()));
+        } catch (NumberFormatException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"id must be a number\"}");
+        } catch (ServiceUnavailableException e) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (Exception e) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\":\"Internal error\"}");
+        }
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        try (Deadline.Scope deadline = Deadline.startRequest()) {
+            User user = new User();
+            user.setId(Long.parseLong(req.getParameter("id")));
+            if (!authorize(req, resp, user.getId())) {
+                return;
+            }
+            user.setVersion(Integer.parseInt(req.getParameter("version")));
+            user.setFullName(req.getParameter("fullName"));
+            user.setEmail(req.getParameter("email"));
+            user.setPassword(req.getParameter("password"));
+            user.setFocusArea(req.getParameter("focusArea"));
+            if (userService.updateUser(user, req.getParameter("currentPassword"))) {
+                resp.getWriter().write("{\"message\":\"User updated\",\"version\":" + user.getVersion() + "}");
+            } else {
+                resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                resp.getWriter().write("{\"error\":\"User not found\"}");
+            }
+        } catch (NumberFormatException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"id and version must be numbers\"}");
+        } catch (ValidationException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (ConflictException e) {
+            resp.setStatus(HttpServletResponse.SC_CONFLICT);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (ServiceUnavailableException e) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (Exception e) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\":\"Internal error\"}");
+        }
+    }
+
+    /**
+     * Lets the request through if it is signed in as {@code id} or comes from an admin; otherwise
+     * writes the {@code 401} or {@code 403} answer.
+     */
+    private static boolean authorize(HttpServletRequest req, HttpServletResponse resp, long id) throws IOException {
+        if (req.isUserInRole(AdminUserServlet.ADMIN_ROLE)) {
+            return true;
+        }
+        Long signedIn = LoginServlet.signedInUser(req);
+        if (signedIn == null) {
+            resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            resp.getWriter().write("{\"error\":\"Login required\"}");
+            return false;
+        }
+        if (signedIn != id) {
+            resp.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            resp.getWriter().write("{\"error\":\"Not allowed to access this user\"}");
+            return false;
+        }
+        return true;
+    }
+}
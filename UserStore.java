@@ -0,0 +1,62 @@
+package com.guvi.mindfulness.dao;
+
+import com.guvi.mindfulness.model.User;
+import com.guvi.mindfulness.model.UserSummary;
+
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Storage contract for users, implemented by {@link UserDAO} (MySQL) and the embedded engine.
+ * Implementations report storage failures as {@link SQLException}; a duplicate e-mail is reported
+ * as {@link java.sql.SQLIntegrityConstraintViolationException}.
+ */
+public interface UserStore {
+
+    /**
+     * @return the generated id
+     */
+    long insert(User user) throws SQLException;
+
+    User findById(long id) throws SQLException;
+
+    /**
+     * Looks the user up by e-mail, ignoring case, or returns {@code null}.
+     */
+    User findByEmail(String email) throws SQLException;
+
+    /**
+     * Whether the e-mail is registered, ignoring case. Answered from the e-mail index alone.
+     */
+    boolean emailExists(String email) throws SQLException;
+
+    /**
+     * Streams every registered e-mail to {@code consumer}, in no particular order.
+     */
+    void scanEmails(Consumer<String> consumer) throws SQLException;
+
+    /**
+     * Streams id, name and e-mail of every user to {@code consumer}, ordered by id. Never reads
+     * the password.
+     */
+    void scanDirectory(Consumer<UserSummary> consumer) throws SQLException;
+
+
+    /**
+     * Compare-and-set update against {@link User#getVersion()}; advances the user's version on success.
+     */
+    UpdateResult update(User user) throws SQLException;
+
+    /**
+     * Replaces the stored password hash if it still equals {@code expected}. Leaves the version
+     * alone: a rehash does not change anything a client edits.
+     *
+     * @return {@code false} if the user is gone or the password changed in the meantime
+     */
+    boolean updatePassword(long id, String expected, String replacement) throws SQLException;
+
+    /**
+     * Deletes the user together with their sessions.
+     */
+    boolean delete(long id) throws SQLException;
+}
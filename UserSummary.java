@@ -0,0 +1,12 @@
+package com.guvi.mindfulness.model;
+
+/**
+ * What the admin directory shows of a user. Deliberately has no password field, so credentials
+ * cannot end up in a directory response.
+ */
+public record UserSummary(long id, String fullName, String email) {
+
+    public static UserSummary of(User user) {
+        return new UserSummary(user.getId(), user.getFullName(), user.getEmail());
+    }
+}
@@ -0,0 +1,137 @@
+package com.guvi.mindfulness.servlet;
+
+import com.guvi.mindfulness.cache.RegisteredEmails;
+import com.guvi.mindfulness.cache.UserDirectory;
+import com.guvi.mindfulness.dao.MindfulnessSessionDAO;
+import com.guvi.mindfulness.dao.SessionStore;
+import com.guvi.mindfulness.dao.Storage;
+import com.guvi.mindfulness.dao.UserDAO;
+import com.guvi.mindfulness.dao.UserStore;
+import com.guvi.mindfulness.exception.ValidationException;
+import com.guvi.mindfulness.jdbc.DBConnection;
+import com.guvi.mindfulness.journal.ChangeJournal;
+import com.guvi.mindfulness.model.MindfulnessSession;
+import com.guvi.mindfulness.model.User;
+import com.guvi.mindfulness.security.PasswordHasher;
+import com.guvi.mindfulness.service.MindfulnessSessionService;
+import com.guvi.mindfulness.service.UserService;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the application up before the load balancer sends traffic. On a background thread it
+ * loads the JDBC driver, opens the database connection, prepares every DAO statement (on the
+ * embedded engine it replays the log instead), loads the lookup dictionaries and drives synthetic
+ * read and validation calls through the service hot paths so the JIT has compiled them. {@link Readiness} turns {@code READY} only afterwards;
+ * failures are retried with backoff.
+ * <p>
+ * Servlets are marked load-on-startup so their {@code init()} also runs during deployment.
+ * {@code WARMUP_ITERATIONS} controls how many synthetic calls are made (default 200).
+ * Registered in {@code web.xml} only, so the container never creates it twice.
+ * <p>
+ * On shutdown it also closes the process-wide {@link ChangeJournal}. The container destroys the
+ * servlets first, so no component can still be writing to it.
+ */
+public class WarmupListener implements ServletContextListener {
+
+    private static final int ITERATIONS = Integer.getInteger("WARMUP_ITERATIONS", 200);
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    /** Never issued by AUTO_INCREMENT, so synthetic lookups return nothing and touch no real rows. */
+    private static final long SYNTHETIC_ID = 0L;
+
+    private ExecutorService executor;
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        Readiness readiness = new Readiness();
+        context.setAttribute(Readiness.ATTRIBUTE, readiness);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mindfulness-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.submit(() -> warmUpWithRetry(context, readiness));
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        ChangeJournal.closeShared();
+    }
+
+    private void warmUpWithRetry(ServletContext context, Readiness readiness) {
+        long backoff = 1_000;
+        for (int attempt = 1; !Thread.currentThread().isInterrupted(); attempt++) {
+            long started = System.nanoTime();
+            try {
+                warmUp();
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                readiness.markReady("Warm-up completed in " + millis + " ms");
+                context.log("Warm-up completed in " + millis + " ms");
+                return;
+            } catch (RuntimeException | SQLException e) {
+                readiness.markFailed("Warm-up attempt " + attempt + " failed");
+                context.log("Warm-up attempt " + attempt + " failed, retrying in " + backoff + " ms", e);
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            readiness.markStarting("Warm-up retry " + (attempt + 1));
+            backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+        }
+    }
+
+    private void warmUp() throws SQLException {
+        UserStore userStore = Storage.users();
+        SessionStore sessionStore = Storage.sessions();
+        if (!Storage.isEmbedded()) {
+            ((UserDAO) userStore).prepareStatements();
+            ((MindfulnessSessionDAO) sessionStore).prepareStatements();
+        }
+        Storage.lookups().ensureLoaded();
+        RegisteredEmails.shared().start(userStore);
+        UserDirectory.shared().start(userStore);
+
+        UserService userService = new UserService(userStore);
+        MindfulnessSessionService sessionService = new MindfulnessSessionService(sessionStore);
+        for (int i = 0; i < ITERATIONS && !Thread.currentThread().isInterrupted(); i++) {
+            userService.getUser(SYNTHETIC_ID);
+            sessionService.sessionSummariesForUser(SYNTHETIC_ID);
+            sessionService.sessionSummariesForUser(SYNTHETIC_ID, "Breath", null);
+            expectRejected(() -> userService.registerUser(new User()));
+            expectRejected(() -> sessionService.scheduleSession(new MindfulnessSession()));
+        }
+        // Starts the hashing pool and compiles the PBKDF2 loop before the first registration.
+        PasswordHasher.shared().hash("warm-up-password");
+    }
+
+    /**
+     * Runs a write path with a payload that validation rejects, so nothing reaches the database.
+     */
+    private static void expectRejected(ValidatedCall call) {
+        try {
+            call.run();
+            throw new IllegalStateException("Synthetic warm-up payload was accepted");
+        } catch (ValidationException expected) {
+            // Validation paths are now warm
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValidatedCall {
+        void run() throws ValidationException;
+    }
+}
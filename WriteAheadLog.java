@@ -0,0 +1,213 @@
+package com.guvi.mindfulness.embedded;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Redo log of the embedded engine, split into generations ({@code wal-<generation>.log}) so a
+ * snapshot can retire everything before it. Each entry is {@code length(4) crc32c(4) payload}.
+ * <p>
+ * Appends and fsyncs use separate locks: while one thread forces the file, others keep appending,
+ * and the next force covers all of them (group commit). Positions are global byte counts across
+ * generations, so {@link #sync(long)} works across a rotation.
+ */
+final class WriteAheadLog implements AutoCloseable {
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final int ENTRY_HEADER = 8;
+    private static final int MAX_ENTRY = 64 << 20;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final Object syncLock = new Object();
+
+    private FileChannel channel;
+    private long generation;
+    private volatile long written;
+    private long synced;
+    private long generationBytes;
+    private IOException failure;
+
+    WriteAheadLog(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Replays every entry of generations {@code >= fromGeneration}, truncating a torn tail, and
+     * opens the newest generation for appending.
+     */
+    synchronized void open(long fromGeneration, Consumer<ByteBuffer> replay) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(WriteAheadLog::generationOf).filter(g -> g != null && g >= fromGeneration).forEach(generations::add);
+        }
+        generations.sort(null);
+        for (long g : generations) {
+            replayGeneration(pathFor(g), replay);
+        }
+        generation = generations.isEmpty() ? fromGeneration : generations.get(generations.size() - 1);
+        channel = FileChannel.open(pathFor(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        generationBytes = channel.size();
+        channel.position(generationBytes);
+    }
+
+    /**
+     * Writes an entry. The entry is durable only after {@link #sync} with the returned position.
+     * A failed write is cut back off the file, so later entries follow the last complete one; if
+     * that fails too the log refuses further appends rather than leave a torn entry mid-file.
+     */
+    synchronized long append(byte[] payload) throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log failed earlier and is closed for writes", failure);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+        try {
+            while (entry.hasRemaining()) {
+                channel.write(entry);
+            }
+        } catch (IOException e) {
+            discardPartialEntry(e);
+            throw e;
+        }
+        generationBytes += ENTRY_HEADER + payload.length;
+        written += ENTRY_HEADER + payload.length;
+        return written;
+    }
+
+    private void discardPartialEntry(IOException cause) {
+        try {
+            channel.truncate(generationBytes);
+            channel.position(generationBytes);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            failure = cause;
+        }
+    }
+
+    /**
+     * Blocks until everything up to {@code position} is on disk. A caller that finds its entry
+     * already covered by another thread's force returns immediately.
+     */
+    void sync(long position) throws IOException {
+        if (!fsync) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (synced >= position) {
+                return;
+            }
+            long target = written;
+            channel.force(false);
+            synced = target;
+        }
+    }
+
+    long generationBytes() {
+        return generationBytes;
+    }
+
+    /**
+     * Seals the current generation and starts the next one. The caller must prevent concurrent appends.
+     *
+     * @return the new generation; a snapshot taken now makes all older generations obsolete
+     */
+    synchronized long rotate() throws IOException {
+        synchronized (syncLock) {
+            channel.force(false);
+            synced = written;
+            channel.close();
+            generation++;
+            channel = FileChannel.open(pathFor(generation), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            generationBytes = 0;
+        }
+        return generation;
+    }
+
+    /**
+     * Deletes generations made obsolete by a snapshot.
+     */
+    void deleteBefore(long generationToKeep) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Long g = generationOf(file);
+                if (g != null && g < generationToKeep) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        synchronized (syncLock) {
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    private void replayGeneration(Path path, Consumer<ByteBuffer> replay) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = file.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER);
+            while (position + ENTRY_HEADER <= size) {
+                header.clear();
+                file.read(header, position);
+                int length = header.getInt(0);
+                if (length <= 0 || length > MAX_ENTRY || position + ENTRY_HEADER + length > size) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                file.read(payload, position + ENTRY_HEADER);
+                payload.flip();
+                CRC32C crc = new CRC32C();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != header.getInt(4)) {
+                    break;
+                }
+                replay.accept(payload);
+                position += ENTRY_HEADER + length;
+            }
+            if (position < size) {
+                // Torn write from a crash: drop it so new entries follow the last complete one.
+                file.truncate(position);
+                file.force(true);
+            }
+        }
+    }
+
+    private Path pathFor(long generation) {
+        return directory.resolve(PREFIX + String.format("%010d", generation) + SUFFIX);
+    }
+
+    private static Long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
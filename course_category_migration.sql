@@ -0,0 +1,7 @@
+-- Tags each course with its main topic from session_categories so courses can be recommended
+-- from users' focus areas and session history. Run once against databases created before the
+-- column existed, then set category_id for existing courses; untagged courses are matched on
+-- category labels found in their title and description.
+
+ALTER TABLE mindfulness_courses
+    ADD COLUMN category_id SMALLINT AFTER duration_minutes;
@@ -4,6 +4,7 @@ CREATE TABLE IF NOT EXISTS users (
     email VARCHAR(120) UNIQUE NOT NULL,
     password VARCHAR(255) NOT NULL,
     focus_area VARCHAR(100),
+    version INT NOT NULL DEFAULT 0,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
@@ -13,19 +14,43 @@ CREATE TABLE IF NOT EXISTS mindfulness_courses (
     description TEXT,
     instructor VARCHAR(80),
     level VARCHAR(40),
-    duration_minutes INT
+    duration_minutes INT,
+    category_id SMALLINT  -- session_categories.id of the course's main topic, used for recommendations
 );
 
+CREATE TABLE IF NOT EXISTS session_categories (
+    id SMALLINT PRIMARY KEY AUTO_INCREMENT,
+    label VARCHAR(60) UNIQUE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS session_difficulties (
+    id SMALLINT PRIMARY KEY AUTO_INCREMENT,
+    label VARCHAR(40) UNIQUE NOT NULL
+);
+
+INSERT IGNORE INTO session_categories(label)
+VALUES ('Breath'), ('Body Scan'), ('Focus'), ('Sleep'), ('Stress'), ('Gratitude');
+
+INSERT IGNORE INTO session_difficulties(label)
+VALUES ('Beginner'), ('Intermediate'), ('Advanced');
+
 CREATE TABLE IF NOT EXISTS mindfulness_sessions (
     id BIGINT PRIMARY KEY AUTO_INCREMENT,
     user_id BIGINT NOT NULL,
     title VARCHAR(150) NOT NULL,
     description TEXT,
-    difficulty VARCHAR(40),
-    category VARCHAR(60),
+    difficulty_id SMALLINT,
+    category_id SMALLINT,
     scheduled_at TIMESTAMP NOT NULL,
     duration_minutes INT NOT NULL,
     reflection_notes TEXT,
-    CONSTRAINT fk_sessions_users FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+    version INT NOT NULL DEFAULT 0,
+    CONSTRAINT fk_sessions_users FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    CONSTRAINT fk_sessions_difficulty FOREIGN KEY (difficulty_id) REFERENCES session_difficulties(id),
+    CONSTRAINT fk_sessions_category FOREIGN KEY (category_id) REFERENCES session_categories(id),
+    INDEX idx_sessions_user_category (user_id, category_id),
+    INDEX idx_sessions_user_difficulty (user_id, difficulty_id),
+    INDEX idx_sessions_user_scheduled (user_id, scheduled_at, duration_minutes),
+    INDEX idx_sessions_scheduled_at (scheduled_at)
 );
 
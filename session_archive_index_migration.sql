@@ -0,0 +1,6 @@
+-- Adds the scheduled_at access path used by the archiver to find the oldest month and to stream
+-- each month's rows for archiving.
+-- Run once against databases created before the index existed.
+
+ALTER TABLE mindfulness_sessions
+    ADD INDEX idx_sessions_scheduled_at (scheduled_at);
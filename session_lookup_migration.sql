@@ -0,0 +1,40 @@
+-- One-off migration from free-form category/difficulty text to dictionary codes.
+-- Run once against databases created before session_categories/session_difficulties existed.
+
+CREATE TABLE IF NOT EXISTS session_categories (
+    id SMALLINT PRIMARY KEY AUTO_INCREMENT,
+    label VARCHAR(60) UNIQUE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS session_difficulties (
+    id SMALLINT PRIMARY KEY AUTO_INCREMENT,
+    label VARCHAR(40) UNIQUE NOT NULL
+);
+
+INSERT IGNORE INTO session_categories(label)
+SELECT DISTINCT TRIM(category) FROM mindfulness_sessions
+WHERE category IS NOT NULL AND TRIM(category) <> '';
+
+INSERT IGNORE INTO session_difficulties(label)
+SELECT DISTINCT TRIM(difficulty) FROM mindfulness_sessions
+WHERE difficulty IS NOT NULL AND TRIM(difficulty) <> '';
+
+ALTER TABLE mindfulness_sessions
+    ADD COLUMN difficulty_id SMALLINT AFTER description,
+    ADD COLUMN category_id SMALLINT AFTER difficulty_id;
+
+UPDATE mindfulness_sessions s
+JOIN session_categories c ON c.label = TRIM(s.category)
+SET s.category_id = c.id;
+
+UPDATE mindfulness_sessions s
+JOIN session_difficulties d ON d.label = TRIM(s.difficulty)
+SET s.difficulty_id = d.id;
+
+ALTER TABLE mindfulness_sessions
+    DROP COLUMN category,
+    DROP COLUMN difficulty,
+    ADD CONSTRAINT fk_sessions_difficulty FOREIGN KEY (difficulty_id) REFERENCES session_difficulties(id),
+    ADD CONSTRAINT fk_sessions_category FOREIGN KEY (category_id) REFERENCES session_categories(id),
+    ADD INDEX idx_sessions_user_category (user_id, category_id),
+    ADD INDEX idx_sessions_user_difficulty (user_id, difficulty_id);
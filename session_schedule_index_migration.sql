@@ -0,0 +1,6 @@
+-- Adds the (user_id, scheduled_at) access path used by overlap checks and free-slot search.
+-- duration_minutes is included so those range scans are answered from the index alone.
+-- Run once against databases created before the index existed.
+
+ALTER TABLE mindfulness_sessions
+    ADD INDEX idx_sessions_user_scheduled (user_id, scheduled_at, duration_minutes);
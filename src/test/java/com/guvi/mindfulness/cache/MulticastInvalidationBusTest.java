@@ -0,0 +1,172 @@
+package com.guvi.mindfulness.cache;
+
+import com.guvi.mindfulness.model.MindfulnessSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Two buses in one JVM, joined to the same group on a fresh port. Datagrams stay on this host:
+ * the loopback interface is used when it can multicast, otherwise the default interface with a
+ * TTL of 0, which still loops back locally.
+ */
+class MulticastInvalidationBusTest {
+
+    private static final String GROUP = "239.255.77.78";
+    private static final long WAIT_SECONDS = 5;
+
+    private final List<AutoCloseable> opened = new ArrayList<>();
+    private String networkInterface;
+    private int port;
+
+    @BeforeEach
+    void pickInterfaceAndPort() throws IOException {
+        NetworkInterface loopback = NetworkInterface.getByName("lo");
+        networkInterface = loopback != null && loopback.isUp() && loopback.supportsMulticast() ? "lo" : null;
+        assumeTrue(networkInterface != null || hasMulticastInterface(), "no multicast-capable interface");
+        try (DatagramChannel probe = DatagramChannel.open().bind(new InetSocketAddress(0))) {
+            port = ((InetSocketAddress) probe.getLocalAddress()).getPort();
+        }
+    }
+
+    @AfterEach
+    void closeBuses() throws Exception {
+        for (AutoCloseable closeable : opened) {
+            closeable.close();
+        }
+    }
+
+    @Test
+    void deliversInvalidationsToPeersButNotToTheSender() throws Exception {
+        Recorder onA = new Recorder();
+        Recorder onB = new Recorder();
+        MulticastInvalidationBus a = open(onA);
+        MulticastInvalidationBus b = open(onB);
+
+        a.publish(7, 42);
+        b.publish(8, 0);
+
+        assertEquals("invalidate 7 42", onB.next());
+        assertEquals("invalidate 8 0", onA.next());
+        assertNull(onA.poll(200), "a node must not receive its own messages");
+        assertNull(onB.poll(0));
+    }
+
+    @Test
+    void reportsMessagesMissedFromASender() throws Exception {
+        MulticastInvalidationBus a = open(new Recorder());
+        a.publish(1, 1); // nobody is listening yet: lost
+
+        Recorder onB = new Recorder();
+        open(onB);
+        a.publish(2, 2);
+        a.publish(3, 3);
+
+        assertEquals("lost", onB.next());
+        assertEquals("invalidate 2 2", onB.next());
+        assertEquals("invalidate 3 3", onB.next());
+        assertNull(onB.poll(200), "consecutive messages are not a gap");
+    }
+
+    @Test
+    void peerInvalidationDropsACachedListing() throws Exception {
+        SessionListCache cacheA = new SessionListCache(60_000, 100, open(null));
+        Recorder peerEvents = new Recorder();
+        SessionListCache cacheB = new SessionListCache(60_000, 100, open(null));
+        cacheB.addPeerListener(peerEvents);
+        AtomicInteger loads = new AtomicInteger();
+
+        cacheB.get(5, () -> load(loads));
+        cacheB.get(5, () -> load(loads));
+        assertEquals(1, loads.get());
+
+        cacheA.invalidate(5, 0);
+        assertEquals("invalidate 5 0", peerEvents.next());
+        cacheB.get(5, () -> load(loads));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void listingsExpireWhenAPeerMessageNeverArrives() throws Exception {
+        SessionListCache cache = new SessionListCache(200, 100, open(null));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(5, () -> load(loads));
+        cache.get(5, () -> load(loads));
+        assertEquals(1, loads.get());
+
+        Thread.sleep(300);
+        cache.get(5, () -> load(loads));
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * Opens a bus on the test group. With a {@code null} listener the caller starts it, as
+     * {@link SessionListCache} does.
+     */
+    private MulticastInvalidationBus open(Recorder listener) throws IOException {
+        MulticastInvalidationBus bus = new MulticastInvalidationBus(GROUP, port, networkInterface,
+                networkInterface != null ? 1 : 0);
+        opened.add(bus);
+        if (listener != null) {
+            bus.start(listener);
+        }
+        return bus;
+    }
+
+    private static List<MindfulnessSession> load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return List.of();
+    }
+
+    private static boolean hasMulticastInterface() throws SocketException {
+        for (NetworkInterface nic : NetworkInterface.networkInterfaces().toList()) {
+            if (nic.isUp() && nic.supportsMulticast() && nic.inetAddresses().findAny().isPresent()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Recorder implements InvalidationBus.Listener {
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onInvalidate(long userId, long sessionId) {
+            events.add("invalidate " + userId + " " + sessionId);
+        }
+
+        @Override
+        public void onMessagesLost() {
+            events.add("lost");
+        }
+
+        String next() throws InterruptedException {
+            String event = events.poll(WAIT_SECONDS, TimeUnit.SECONDS);
+            if (event == null) {
+                throw new AssertionError("no message within " + WAIT_SECONDS + " s");
+            }
+            return event;
+        }
+
+        String poll(long millis) throws InterruptedException {
+            return events.poll(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
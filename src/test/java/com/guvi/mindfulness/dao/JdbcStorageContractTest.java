@@ -0,0 +1,54 @@
+package com.guvi.mindfulness.dao;
+
+import com.guvi.mindfulness.jdbc.UnitOfWork;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Runs the storage contract on MySQL through {@link UserDAO} and {@link MindfulnessSessionDAO}.
+ * Needs a database set up from {@code schema.sql}, reached through the usual {@code DB_*}
+ * settings of {@link com.guvi.mindfulness.jdbc.DBConnection}, so it only runs with
+ * {@code -DCONTRACT_JDBC=true}.
+ */
+@EnabledIfSystemProperty(named = "CONTRACT_JDBC", matches = "true")
+class JdbcStorageContractTest extends StorageContractTest {
+
+    private final UserStore users = new UserDAO();
+    private final SessionStore sessions = new MindfulnessSessionDAO();
+    private final LookupStore lookups = new SessionLookupDAO();
+
+    @Override
+    protected UserStore users() {
+        return users;
+    }
+
+    @Override
+    protected SessionStore sessions() {
+        return sessions;
+    }
+
+    @Override
+    protected LookupStore lookups() {
+        return lookups;
+    }
+
+    @Override
+    protected StorageTransaction begin() {
+        UnitOfWork work = UnitOfWork.begin();
+        return new StorageTransaction() {
+            @Override
+            public void commit() {
+                work.commit();
+            }
+
+            @Override
+            public void close() {
+                work.close();
+            }
+        };
+    }
+
+    @Override
+    protected boolean afterCommit(Runnable action) {
+        return UnitOfWork.afterCommit(action);
+    }
+}
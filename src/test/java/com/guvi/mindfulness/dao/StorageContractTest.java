@@ -0,0 +1,349 @@
+package com.guvi.mindfulness.dao;
+
+import com.guvi.mindfulness.model.MindfulnessSession;
+import com.guvi.mindfulness.model.SessionSlot;
+import com.guvi.mindfulness.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Behaviour every storage engine must share, written against {@link UserStore} and
+ * {@link SessionStore} only. Each engine runs it through a subclass that supplies its stores.
+ * <p>
+ * Tests create their own users under random e-mails and only look at those, so they can run
+ * against a database that already holds data.
+ */
+public abstract class StorageContractTest {
+
+    private static final LocalDateTime MORNING = LocalDateTime.of(2024, 3, 4, 7, 30);
+
+    protected abstract UserStore users();
+
+    protected abstract SessionStore sessions();
+
+    protected abstract LookupStore lookups();
+
+    protected abstract StorageTransaction begin();
+
+    protected abstract boolean afterCommit(Runnable action);
+
+    /**
+     * Prepares the engine before each test; runs ahead of the lookup load, which needs it.
+     */
+    protected void open() throws Exception {
+    }
+
+    @BeforeEach
+    void openAndLoadLookups() throws Exception {
+        open();
+        lookups().ensureLoaded();
+    }
+
+    @Test
+    void insertedUserIsFoundByIdAndByEmailIgnoringCase() throws Exception {
+        String email = uniqueEmail();
+        long id = users().insert(new User(0, "Asha Rao", email, "hash", "Sleep"));
+
+        User byId = users().findById(id);
+        assertEquals("Asha Rao", byId.getFullName());
+        assertEquals(email, byId.getEmail());
+        assertEquals("Sleep", byId.getFocusArea());
+        assertEquals(id, users().findByEmail(email.toUpperCase()).getId());
+        assertTrue(users().emailExists(email.toUpperCase()));
+        assertFalse(users().emailExists(uniqueEmail()));
+        assertNull(users().findById(Long.MAX_VALUE));
+    }
+
+    @Test
+    void emailCaseIsIgnoredWhateverTheDefaultLocale() throws Exception {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            String email = "INDIRA-" + UUID.randomUUID() + "@EXAMPLE.COM";
+            long id = users().insert(new User(0, "Indira", email, "hash", "Focus"));
+
+            assertEquals(id, users().findByEmail(email.toLowerCase(Locale.ROOT)).getId());
+            assertTrue(users().emailExists(email.toLowerCase(Locale.ROOT)));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    void duplicateEmailIsAConstraintViolation() throws Exception {
+        String email = uniqueEmail();
+        users().insert(new User(0, "First", email, "hash", "Focus"));
+
+        assertThrows(SQLIntegrityConstraintViolationException.class,
+                () -> users().insert(new User(0, "Second", email, "hash", "Focus")));
+    }
+
+    @Test
+    void userUpdateIsCompareAndSet() throws Exception {
+        long id = newUser();
+        User user = users().findById(id);
+        User stale = users().findById(id);
+        int version = user.getVersion();
+
+        user.setFullName("Renamed");
+        assertEquals(UpdateResult.UPDATED, users().update(user));
+        assertEquals(version + 1, user.getVersion());
+        User stored = users().findById(id);
+        assertEquals("Renamed", stored.getFullName());
+        assertEquals(version + 1, stored.getVersion());
+
+        stale.setFullName("Stale");
+        assertEquals(UpdateResult.CONFLICT, users().update(stale));
+        assertEquals("Renamed", users().findById(id).getFullName());
+
+        stale.setId(Long.MAX_VALUE);
+        assertEquals(UpdateResult.NOT_FOUND, users().update(stale));
+    }
+
+    @Test
+    void passwordIsReplacedOnlyIfUnchanged() throws Exception {
+        long id = newUser();
+        int version = users().findById(id).getVersion();
+
+        assertFalse(users().updatePassword(id, "other", "new"));
+        assertTrue(users().updatePassword(id, "hash", "new"));
+        User stored = users().findById(id);
+        assertEquals("new", stored.getPassword());
+        assertEquals(version, stored.getVersion());
+    }
+
+    @Test
+    void scansSeeInsertedUsersInIdOrder() throws Exception {
+        long first = newUser();
+        long second = newUser();
+        String email = users().findById(second).getEmail();
+
+        List<Long> ids = new ArrayList<>();
+        users().scanDirectory(summary -> {
+            if (summary.id() == first || summary.id() == second) {
+                ids.add(summary.id());
+            }
+        });
+        assertEquals(List.of(first, second), ids);
+
+        AtomicBoolean seen = new AtomicBoolean();
+        users().scanEmails(scanned -> seen.compareAndSet(false, scanned.equalsIgnoreCase(email)));
+        assertTrue(seen.get());
+    }
+
+    @Test
+    void deletingAUserDeletesTheirSessions() throws Exception {
+        long userId = newUser();
+        long sessionId = sessions().insert(session(userId, MORNING, 20));
+
+        assertTrue(users().delete(userId));
+        assertNull(users().findById(userId));
+        assertNull(sessions().findById(sessionId));
+        assertFalse(users().delete(userId));
+    }
+
+    @Test
+    void sessionOfUnknownUserIsAConstraintViolation() {
+        assertThrows(SQLIntegrityConstraintViolationException.class,
+                () -> sessions().insert(session(Long.MAX_VALUE, MORNING, 20)));
+    }
+
+    @Test
+    void insertedSessionRoundTrips() throws Exception {
+        long userId = newUser();
+        MindfulnessSession session = session(userId, MORNING, 25);
+        session.setReflectionNotes("Calmer afterwards");
+        long id = sessions().insert(session);
+
+        MindfulnessSession stored = sessions().findById(id);
+        assertEquals(userId, stored.getUserId());
+        assertEquals("Morning sit", stored.getTitle());
+        assertEquals("Ten breaths, then open awareness", stored.getDescription());
+        assertEquals("Beginner", stored.getDifficulty());
+        assertEquals("Breath", stored.getCategory());
+        assertEquals(MORNING, stored.getScheduledAt());
+        assertEquals(25, stored.getDurationMinutes());
+        assertEquals("Calmer afterwards", stored.getReflectionNotes());
+
+        MindfulnessSession.SessionText text = sessions().findText(id);
+        assertEquals("Ten breaths, then open awareness", text.description());
+        assertEquals("Calmer afterwards", text.reflectionNotes());
+        assertNull(sessions().findById(Long.MAX_VALUE));
+    }
+
+    @Test
+    void listingsAreNewestFirstAndRangesAreHalfOpen() throws Exception {
+        long userId = newUser();
+        long early = sessions().insert(session(userId, MORNING, 10));
+        long middle = sessions().insert(session(userId, MORNING.plusDays(1), 10));
+        long late = sessions().insert(session(userId, MORNING.plusDays(2), 10));
+
+        assertEquals(List.of(late, middle, early), ids(sessions().findByUser(userId, SessionProjection.SUMMARY)));
+        assertEquals(List.of(middle, early), ids(sessions().findByUserBetween(userId, MORNING,
+                MORNING.plusDays(2), SessionProjection.DETAIL)));
+        assertTrue(sessions().findByUser(newUser()).isEmpty());
+    }
+
+    @Test
+    void listingsFilterByCategoryAndDifficulty() throws Exception {
+        long userId = newUser();
+        MindfulnessSession breath = session(userId, MORNING, 10);
+        long breathId = sessions().insert(breath);
+        MindfulnessSession sleep = session(userId, MORNING.plusHours(12), 10);
+        sleep.setCategory("Sleep");
+        sleep.setDifficulty("Advanced");
+        long sleepId = sessions().insert(sleep);
+
+        assertEquals(List.of(breathId), ids(sessions().findByUserAndCategory(userId, breath.getCategoryCode())));
+        assertEquals(List.of(sleepId), ids(sessions().findByUserAndDifficulty(userId, sleep.getDifficultyCode())));
+    }
+
+    @Test
+    void slotsAreOldestFirstWithTheirEnd() throws Exception {
+        long userId = newUser();
+        long first = sessions().insert(session(userId, MORNING, 30));
+        long second = sessions().insert(session(userId, MORNING.plusHours(2), 15));
+        sessions().insert(session(userId, MORNING.plusDays(1), 15));
+
+        List<SessionSlot> slots = sessions().findSlots(userId, MORNING, MORNING.plusHours(3));
+        assertEquals(List.of(SessionSlot.of(first, MORNING, 30), SessionSlot.of(second, MORNING.plusHours(2), 15)), slots);
+    }
+
+    @Test
+    void dailyMinutesAreSummedPerDayOldestFirst() throws Exception {
+        long userId = newUser();
+        sessions().insert(session(userId, MORNING, 10));
+        sessions().insert(session(userId, MORNING.plusHours(10), 15));
+        sessions().insert(session(userId, MORNING.plusDays(3), 20));
+
+        assertEquals(List.of(new SessionStore.DayMinutes(LocalDate.of(2024, 3, 4), 25),
+                        new SessionStore.DayMinutes(LocalDate.of(2024, 3, 7), 20)),
+                sessions().findDailyMinutes(userId));
+    }
+
+    @Test
+    void reflectionUpdateIsCompareAndSet() throws Exception {
+        long id = sessions().insert(session(newUser(), MORNING, 10));
+        int version = sessions().findById(id).getVersion();
+
+        assertEquals(UpdateResult.UPDATED, sessions().updateReflection(id, "Settled", 12, version));
+        assertEquals(UpdateResult.CONFLICT, sessions().updateReflection(id, "Stale", 14, version));
+        assertEquals(UpdateResult.NOT_FOUND, sessions().updateReflection(Long.MAX_VALUE, "None", 1, 0));
+
+        MindfulnessSession stored = sessions().findById(id);
+        assertEquals("Settled", stored.getReflectionNotes());
+        assertEquals(12, stored.getDurationMinutes());
+        assertEquals(version + 1, stored.getVersion());
+    }
+
+    @Test
+    void deletedSessionIsGone() throws Exception {
+        long id = sessions().insert(session(newUser(), MORNING, 10));
+
+        assertTrue(sessions().delete(id));
+        assertNull(sessions().findById(id));
+        assertFalse(sessions().delete(id));
+    }
+
+    @Test
+    void lockingOwnersNeedsATransactionAndReportsWhichExist() throws Exception {
+        long first = newUser();
+        long second = newUser();
+        users().delete(second);
+
+        assertThrows(IllegalStateException.class, () -> sessions().lockOwners(List.of(first)));
+        try (StorageTransaction transaction = begin()) {
+            assertEquals(Set.of(first), sessions().lockOwners(List.of(second, first, first)));
+            assertEquals(Set.of(), sessions().lockOwners(List.of()));
+            transaction.commit();
+        }
+    }
+
+    @Test
+    void committedTransactionKeepsItsWritesAndRunsAfterCommitActions() throws Exception {
+        long userId = newUser();
+        AtomicBoolean ran = new AtomicBoolean();
+        long[] ids;
+        try (StorageTransaction transaction = begin()) {
+            ids = sessions().insertAll(List.of(session(userId, MORNING, 10), session(userId, MORNING.plusDays(1), 10)));
+            assertTrue(afterCommit(() -> ran.set(true)));
+            assertFalse(ran.get());
+            transaction.commit();
+        }
+        assertTrue(ran.get());
+        assertEquals(List.of(ids[1], ids[0]), ids(sessions().findByUser(userId)));
+        assertFalse(afterCommit(() -> { }));
+    }
+
+    @Test
+    void transactionEndingWithoutCommitLeavesNothingBehind() throws Exception {
+        long userId = newUser();
+        AtomicBoolean ran = new AtomicBoolean();
+        try (StorageTransaction transaction = begin()) {
+            sessions().insert(session(userId, MORNING, 10));
+            afterCommit(() -> ran.set(true));
+        }
+        assertFalse(ran.get());
+        assertTrue(sessions().findByUser(userId).isEmpty());
+    }
+
+    @Test
+    void innerScopeWithoutCommitDoomsTheOuterTransaction() throws Exception {
+        long userId = newUser();
+        try (StorageTransaction outer = begin()) {
+            sessions().insert(session(userId, MORNING, 10));
+            try (StorageTransaction inner = begin()) {
+                sessions().insert(session(userId, MORNING.plusDays(1), 10));
+            }
+            assertThrows(IllegalStateException.class, outer::commit);
+        }
+        assertTrue(sessions().findByUser(userId).isEmpty());
+    }
+
+    @Test
+    void uncommittedWritesAreVisibleInsideTheirTransaction() throws Exception {
+        String email = uniqueEmail();
+        try (StorageTransaction transaction = begin()) {
+            long id = users().insert(new User(0, "Inside", email, "hash", "Focus"));
+            assertEquals(id, users().findByEmail(email).getId());
+        }
+        assertNull(users().findByEmail(email));
+    }
+
+    protected long newUser() throws Exception {
+        return users().insert(new User(0, "Contract User", uniqueEmail(), "hash", "Breath"));
+    }
+
+    private static MindfulnessSession session(long userId, LocalDateTime scheduledAt, int minutes) {
+        return new MindfulnessSession(0, userId, "Morning sit", "Ten breaths, then open awareness",
+                "Beginner", "Breath", scheduledAt, minutes, null);
+    }
+
+    private static String uniqueEmail() {
+        return "contract-" + UUID.randomUUID() + "@example.com";
+    }
+
+    private static List<Long> ids(List<MindfulnessSession> sessions) {
+        List<Long> ids = new ArrayList<>();
+        for (MindfulnessSession session : sessions) {
+            ids.add(session.getId());
+        }
+        return ids;
+    }
+}
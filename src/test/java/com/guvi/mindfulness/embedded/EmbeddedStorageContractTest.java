@@ -0,0 +1,106 @@
+package com.guvi.mindfulness.embedded;
+
+import com.guvi.mindfulness.dao.LookupStore;
+import com.guvi.mindfulness.dao.SessionStore;
+import com.guvi.mindfulness.dao.StorageContractTest;
+import com.guvi.mindfulness.dao.StorageTransaction;
+import com.guvi.mindfulness.dao.UserStore;
+import com.guvi.mindfulness.model.MindfulnessSession;
+import com.guvi.mindfulness.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Runs the storage contract on a fresh {@link EmbeddedEngine} per test, plus the durability the
+ * engine adds on its own: rows survive a restart from the log alone and from a snapshot.
+ */
+class EmbeddedStorageContractTest extends StorageContractTest {
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedEngine engine;
+
+    @Override
+    protected void open() throws IOException {
+        engine = new EmbeddedEngine(directory, 1L << 20, false);
+    }
+
+    @AfterEach
+    void closeEngine() throws IOException {
+        engine.close();
+    }
+
+    @Override
+    protected UserStore users() {
+        return engine.users();
+    }
+
+    @Override
+    protected SessionStore sessions() {
+        return engine.sessions();
+    }
+
+    @Override
+    protected LookupStore lookups() {
+        return engine.lookups();
+    }
+
+    @Override
+    protected StorageTransaction begin() {
+        return engine.begin();
+    }
+
+    @Override
+    protected boolean afterCommit(Runnable action) {
+        return engine.afterCommit(action);
+    }
+
+    @Test
+    void rowsSurviveARestartFromTheLog() throws Exception {
+        long userId = newUser();
+        long sessionId = sessions().insert(new MindfulnessSession(0, userId, "Evening", "Body scan",
+                "Intermediate", "Body Scan", LocalDateTime.of(2024, 5, 1, 21, 0), 15, "Slept well"));
+        sessions().updateReflection(sessionId, "Slept very well", 18, 0);
+        long deletedId = newUser();
+        users().delete(deletedId);
+
+        // Reopen without closing, as after a crash: only the log holds the rows.
+        engine = new EmbeddedEngine(directory, 1L << 20, false);
+
+        assertReopened(userId, sessionId, deletedId);
+    }
+
+    @Test
+    void rowsSurviveARestartFromASnapshot() throws Exception {
+        long userId = newUser();
+        long sessionId = sessions().insert(new MindfulnessSession(0, userId, "Evening", "Body scan",
+                "Intermediate", "Body Scan", LocalDateTime.of(2024, 5, 1, 21, 0), 15, "Slept well"));
+        sessions().updateReflection(sessionId, "Slept very well", 18, 0);
+        long deletedId = newUser();
+        users().delete(deletedId);
+
+        engine.close();
+        engine = new EmbeddedEngine(directory, 1L << 20, false);
+
+        assertReopened(userId, sessionId, deletedId);
+    }
+
+    private void assertReopened(long userId, long sessionId, long deletedId) throws Exception {
+        User user = users().findById(userId);
+        assertEquals("Contract User", user.getFullName());
+        MindfulnessSession session = sessions().findById(sessionId);
+        assertEquals("Slept very well", session.getReflectionNotes());
+        assertEquals(18, session.getDurationMinutes());
+        assertEquals(1, session.getVersion());
+        assertNull(users().findById(deletedId));
+    }
+}
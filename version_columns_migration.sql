@@ -0,0 +1,6 @@
+-- Adds the row version used for optimistic concurrency on user and session updates.
+-- Run once against databases created before the version columns existed.
+
+ALTER TABLE users ADD COLUMN version INT NOT NULL DEFAULT 0;
+
+ALTER TABLE mindfulness_sessions ADD COLUMN version INT NOT NULL DEFAULT 0;